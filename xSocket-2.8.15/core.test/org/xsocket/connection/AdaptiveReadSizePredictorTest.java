@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class AdaptiveReadSizePredictorTest {
+
+
+	@Test
+	public void testGrow() throws Exception {
+		AdaptiveReadSizePredictor predictor = new AdaptiveReadSizePredictor(64, 8192, 65536);
+		Assert.assertEquals(8192, predictor.getNextReadSize());
+
+		predictor.record(8192);
+		Assert.assertEquals(16384, predictor.getNextReadSize());
+
+		predictor.record(16384);
+		predictor.record(32768);
+		predictor.record(65536);
+		Assert.assertEquals(65536, predictor.getNextReadSize());
+	}
+
+
+	@Test
+	public void testShrink() throws Exception {
+		AdaptiveReadSizePredictor predictor = new AdaptiveReadSizePredictor(64, 8192, 65536);
+
+		predictor.record(40);
+		Assert.assertEquals(8192, predictor.getNextReadSize());
+
+		predictor.record(40);
+		Assert.assertEquals(4096, predictor.getNextReadSize());
+
+		for (int i = 0; i < 100; i++) {
+			predictor.record(40);
+		}
+		Assert.assertEquals(64, predictor.getNextReadSize());
+	}
+
+
+	@Test
+	public void testNoShrinkOnAlternatingReads() throws Exception {
+		AdaptiveReadSizePredictor predictor = new AdaptiveReadSizePredictor(64, 8192, 65536);
+
+		for (int i = 0; i < 10; i++) {
+			predictor.record(100);
+			predictor.record(6000);
+		}
+		Assert.assertEquals(8192, predictor.getNextReadSize());
+	}
+
+
+	@Test
+	public void testFilledLeftoverBuffer() throws Exception {
+		AdaptiveReadSizePredictor predictor = new AdaptiveReadSizePredictor(64, 8192, 65536);
+
+		// a completely filled leftover buffer is neither a short read nor a reason to increase  
+		for (int i = 0; i < 10; i++) {
+			predictor.record(200, 200);
+		}
+		Assert.assertEquals(8192, predictor.getNextReadSize());
+
+		// filled predicted size
+		predictor.record(8192, 8192);
+		Assert.assertEquals(16384, predictor.getNextReadSize());
+
+		// short read of a leftover buffer
+		predictor.record(100, 200);
+		predictor.record(100, 200);
+		Assert.assertEquals(8192, predictor.getNextReadSize());
+	}
+
+
+	@Test
+	public void testReadSizeOfConnection() throws Exception {
+		IServer server = new Server(new EchoHandler());
+		server.start();
+
+		NonBlockingConnection con = new NonBlockingConnection("localhost", server.getLocalPort());
+		Assert.assertEquals(IoProvider.getReadBufferAdaptiveInitialSize(), con.getReadBufferSize());
+
+		for (int i = 0; i < 10; i++) {
+			con.write("test\r\n");
+			QAUtil.sleep(100);
+			Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+		}
+		Assert.assertTrue(con.getReadBufferSize() < IoProvider.getReadBufferAdaptiveInitialSize());
+
+		con.close();
+		server.close();
+	}
+
+
+	@Test
+	public void testReadSizeMBean() throws Exception {
+		IServer server = new Server(new EchoHandler());
+		server.start();
+
+		ObjectName objectName = ConnectionUtils.registerMBean(server, "testReadSize");
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.write("test\r\n");
+		Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		int max = (Integer) mbeanServer.getAttribute(objectName, "MaxPredictedReadSize");
+		int average = (Integer) mbeanServer.getAttribute(objectName, "AveragePredictedReadSize");
+		Assert.assertTrue(max > 0);
+		Assert.assertTrue(average > 0);
+		Assert.assertTrue(average <= max);
+
+		int dispatcherMax = 0;
+		Set<ObjectName> dispatcherNames = mbeanServer.queryNames(new ObjectName("testReadSize.server.*:type=xDispatcher,*"), null);
+		Assert.assertFalse(dispatcherNames.isEmpty());
+		for (ObjectName dispatcherName : dispatcherNames) {
+			dispatcherMax = Math.max(dispatcherMax, (Integer) mbeanServer.getAttribute(dispatcherName, "MaxPredictedReadSize"));
+			mbeanServer.getAttribute(dispatcherName, "AveragePredictedReadSize");
+		}
+		Assert.assertEquals(max, dispatcherMax);
+
+		con.close();
+		server.close();
+	}
+}
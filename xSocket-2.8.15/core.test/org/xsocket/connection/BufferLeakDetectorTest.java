@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class BufferLeakDetectorTest {
+
+
+	@Test
+	public void testDeactivatedByDefault() throws Exception {
+		IoUnsynchronizedMemoryManager memoryManager = IoUnsynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false);
+		Assert.assertNull(memoryManager.getLeakDetector());
+	}
+
+
+	@Test
+	public void testRecycled() throws Exception {
+		BufferLeakDetector detector = new BufferLeakDetector(1);
+		IoUnsynchronizedMemoryManager memoryManager = IoUnsynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false);
+		memoryManager.setLeakDetector(detector);
+
+		for (int i = 0; i < 10; i++) {
+			ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+			Assert.assertEquals(1, detector.getNumberOfTrackedBuffers());
+
+			buffer.put(new byte[100]);
+			memoryManager.extractAndRecycleMemory(buffer, 100);
+			Assert.assertEquals(0, detector.getNumberOfTrackedBuffers());
+		}
+
+		ByteBuffer buffer = memoryManager.acquireMemoryMinSize(100000);
+		memoryManager.recycleMemory(buffer);
+
+		Assert.assertEquals(0, detector.getNumberOfTrackedBuffers());
+		Assert.assertEquals(0, detector.getNumberOfDoubleRecycles());
+	}
+
+
+	@Test
+	public void testDoubleRecycle() throws Exception {
+		BufferLeakDetector detector = new BufferLeakDetector(1);
+		IoSynchronizedMemoryManager memoryManager = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false);
+		memoryManager.setLeakDetector(detector);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		memoryManager.recycleMemory(buffer);
+		Assert.assertEquals(0, detector.getNumberOfDoubleRecycles());
+
+		memoryManager.recycleMemory(buffer);
+		Assert.assertEquals(1, detector.getNumberOfDoubleRecycles());
+	}
+
+
+	@Test
+	public void testReacquiredIsNoDoubleRecycle() throws Exception {
+		BufferLeakDetector detector = new BufferLeakDetector(1);
+		IoUnsynchronizedMemoryManager memoryManager = IoUnsynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false);
+		memoryManager.setLeakDetector(detector);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		memoryManager.recycleMemory(buffer);
+
+		ByteBuffer buffer2 = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		Assert.assertSame(buffer, buffer2);
+		memoryManager.recycleMemory(buffer2);
+
+		Assert.assertEquals(0, detector.getNumberOfDoubleRecycles());
+	}
+
+
+	@Test
+	public void testLeak() throws Exception {
+		BufferLeakDetector detector = new BufferLeakDetector(1);
+		IoUnsynchronizedMemoryManager memoryManager = IoUnsynchronizedMemoryManager.createNonPreallocatedMemoryManager(false);
+		memoryManager.setLeakDetector(detector);
+
+		memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		Assert.assertEquals(1, detector.getNumberOfTrackedBuffers());
+
+		for (int i = 0; (i < 50) && (detector.getNumberOfLeaks() == 0); i++) {
+			System.gc();
+			QAUtil.sleep(100);
+			detector.checkLeaks();
+		}
+
+		Assert.assertEquals(1, detector.getNumberOfLeaks());
+		Assert.assertEquals(0, detector.getNumberOfTrackedBuffers());
+	}
+
+
+	@Test
+	public void testSampling() throws Exception {
+		BufferLeakDetector detector = new BufferLeakDetector(10);
+		IoUnsynchronizedMemoryManager memoryManager = IoUnsynchronizedMemoryManager.createNonPreallocatedMemoryManager(false);
+		memoryManager.setLeakDetector(detector);
+
+		ByteBuffer[] buffers = new ByteBuffer[100];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = memoryManager.acquireMemoryStandardSizeOrPreallocated(64);
+		}
+		Assert.assertEquals(10, detector.getNumberOfTrackedBuffers());
+
+		for (ByteBuffer buffer : buffers) {
+			memoryManager.recycleMemory(buffer);
+		}
+		Assert.assertEquals(0, detector.getNumberOfTrackedBuffers());
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class BusyPollTest {
+
+
+	@Test
+	public void testEcho() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.setDispatcherBusyPollBudgetMicros(500);
+		server.start();
+		
+		Assert.assertEquals(500, server.getDispatcherBusyPollBudgetMicros());
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		for (int i = 0; i < 200; i++) {
+			con.write("test" + i + "\r\n");
+			Assert.assertEquals("test" + i, con.readStringByDelimiter("\r\n"));
+		}
+		
+		long hits = 0;
+		for (IoSocketDispatcher dispatcher : server.getDispatcherPool().getDispatchers()) {
+			hits += dispatcher.getNumberOfBusyPollHits();
+		}
+		Assert.assertTrue(hits > 0);
+		
+		// idle dispatchers fall back to the blocking select 
+		QAUtil.sleep(300);
+		for (IoSocketDispatcher dispatcher : server.getDispatcherPool().getDispatchers()) {
+			Assert.assertTrue(dispatcher.getNumberOfBlockingSelects() > 0);
+		}
+
+		con.close();
+		server.close();
+	}
+	
+	
+	@Test
+	public void testSwitchOff() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.setDispatcherBusyPollBudgetMicros(500);
+		server.start();
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.write("test\r\n");
+		Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+		
+		server.setDispatcherBusyPollBudgetMicros(0);
+		for (IoSocketDispatcher dispatcher : server.getDispatcherPool().getDispatchers()) {
+			Assert.assertEquals(0, dispatcher.getBusyPollBudgetMicros());
+		}
+		
+		con.write("test2\r\n");
+		Assert.assertEquals("test2", con.readStringByDelimiter("\r\n"));
+
+		// run each dispatcher at least once in blocking mode 
+		server.getDispatcherPool().setAssignmentStrategy(new DispatcherAssignmentStrategies.RoundRobinStrategy());
+		List<IBlockingConnection> cons = new ArrayList<IBlockingConnection>();
+		for (int i = 0; i < server.getDispatcherPool().getDispatchers().size(); i++) {
+			IBlockingConnection c = new BlockingConnection("localhost", server.getLocalPort());
+			c.write("test" + i + "\r\n");
+			Assert.assertEquals("test" + i, c.readStringByDelimiter("\r\n"));
+			cons.add(c);
+		}
+		
+		for (IoSocketDispatcher dispatcher : server.getDispatcherPool().getDispatchers()) {
+			Assert.assertFalse(dispatcher.isLastSelectSpinning());
+		}
+
+		for (IBlockingConnection c : cons) {
+			c.close();
+		}
+		con.close();
+		server.close();
+	}
+	
+	
+	@Test
+	public void testLoopingCheck() throws Exception {
+		
+		// spinning by intention
+		CountingSelector selector = new CountingSelector();
+		for (int i = 0; i < 1000; i++) {
+			selector.checkForLooping(0, System.currentTimeMillis(), true);
+		}
+		Assert.assertEquals(0, selector.countReinit);
+		
+		// looping
+		selector = new CountingSelector();
+		for (int i = 0; i < 1000; i++) {
+			selector.checkForLooping(0, System.currentTimeMillis(), false);
+		}
+		Assert.assertTrue(selector.countReinit > 0);
+	}
+	
+	
+	private static final class CountingSelector extends MonitoredSelector {
+		
+		private int countReinit = 0;
+		
+		@Override
+		int getNumRegisteredHandles() {
+			return 0;
+		}
+		
+		@Override
+		String printRegistered() {
+			return "";
+		}
+		
+		@Override
+		void reinit() throws IOException {
+			countReinit++;
+		}
+	}
+}
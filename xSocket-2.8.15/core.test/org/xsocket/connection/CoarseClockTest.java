@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class CoarseClockTest {
+
+
+	@Test
+	public void testTicking() throws Exception {
+		Assert.assertTrue(CoarseClock.isActivated());
+		
+		for (int i = 0; i < 20; i++) {
+			long deviation = System.currentTimeMillis() - CoarseClock.currentTimeMillis();
+			Assert.assertTrue("deviation " + deviation, deviation < 500);
+			QAUtil.sleep(50);
+		}
+		
+		CoarseClock.update();
+		long deviation = System.currentTimeMillis() - CoarseClock.currentTimeMillis();
+		Assert.assertTrue("deviation " + deviation, deviation < 50);
+	}
+	
+	
+	@Test
+	public void testTimestamps() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.start();
+		
+		NonBlockingConnection con = new NonBlockingConnection("localhost", server.getLocalPort());
+		QAUtil.sleep(300);
+		long lastReceived = con.getLastTimeReceivedMillis();
+		
+		con.write("test\r\n");
+		QAUtil.sleep(300);
+		Assert.assertTrue(con.getLastTimeReceivedMillis() > lastReceived);
+		Assert.assertTrue(con.getLastTimeSendMillis() >= lastReceived);
+		Assert.assertTrue(con.getLastTimeReceivedMillis() <= System.currentTimeMillis());
+
+		con.close();
+		server.close();
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.MaxReadSizeExceededException;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class CompositeByteBufferTest {
+	
+
+	@Test
+	public void testRandomAccess() throws Exception {
+		Random random = new Random(11);
+		
+		for (int run = 0; run < 300; run++) {
+			byte[] data = new byte[random.nextInt(200)];
+			random.nextBytes(data);
+			
+			CompositeByteBuffer composite = new CompositeByteBuffer(split(data, random));
+			ByteBuffer reference = ByteBuffer.wrap(data);
+			
+			Assert.assertEquals(data.length, composite.length());
+			for (int i = 0; i < data.length; i++) {
+				Assert.assertEquals(reference.get(i), composite.get(i));
+				if (i + 2 <= data.length) {
+					Assert.assertEquals(reference.getShort(i), composite.getShort(i));
+				}
+				if (i + 4 <= data.length) {
+					Assert.assertEquals(reference.getInt(i), composite.getInt(i));
+					Assert.assertEquals(Float.floatToRawIntBits(reference.getFloat(i)), Float.floatToRawIntBits(composite.getFloat(i)));
+				}
+				if (i + 8 <= data.length) {
+					Assert.assertEquals(reference.getLong(i), composite.getLong(i));
+				}
+			}
+			
+			Assert.assertTrue(QAUtil.isEquals(data, composite.toBytes()));
+			
+			// random access in reverse order
+			for (int i = data.length - 1; i >= 0; i--) {
+				Assert.assertEquals(data[i], composite.get(i));
+			}
+		}
+	}
+	
+	
+	@Test
+	public void testIndexOf() throws Exception {
+		Random random = new Random(13);
+		
+		for (int run = 0; run < 300; run++) {
+			byte[] data = new byte[random.nextInt(200)];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) random.nextInt(3);
+			}
+			CompositeByteBuffer composite = new CompositeByteBuffer(split(data, random));
+			String reference = new String(data, "ISO-8859-1");
+			
+			byte[] pattern = new byte[1 + random.nextInt(4)];
+			for (int i = 0; i < pattern.length; i++) {
+				pattern[i] = (byte) random.nextInt(3);
+			}
+			int from = random.nextInt(data.length + 1);
+			
+			Assert.assertEquals(reference.indexOf(new String(pattern, "ISO-8859-1"), from), composite.indexOf(pattern, from));
+			Assert.assertEquals(reference.indexOf(pattern[0], from), composite.indexOf(pattern[0], from));
+		}
+	}
+	
+	
+	@Test
+	public void testSlice() throws Exception {
+		Random random = new Random(17);
+		
+		for (int run = 0; run < 300; run++) {
+			byte[] data = new byte[1 + random.nextInt(200)];
+			random.nextBytes(data);
+			CompositeByteBuffer composite = new CompositeByteBuffer(split(data, random));
+			
+			int index = random.nextInt(data.length);
+			int size = random.nextInt(data.length - index + 1);
+			
+			CompositeByteBuffer slice = composite.slice(index, size);
+			Assert.assertEquals(size, slice.length());
+			for (int i = 0; i < size; i++) {
+				Assert.assertEquals(data[index + i], slice.get(i));
+			}
+			
+			// slice of slice
+			if (size > 2) {
+				CompositeByteBuffer sliceOfSlice = slice.slice(1, size - 2);
+				Assert.assertEquals(data[index + 1], sliceOfSlice.get(0));
+				Assert.assertEquals(data[index + size - 2], sliceOfSlice.get(size - 3));
+			}
+		}
+	}
+	
+	
+	@Test
+	public void testReadOnlyAndUnchanged() throws Exception {
+		ByteBuffer first = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+		ByteBuffer second = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+		second.put(new byte[] { 5, 6, 7, 8 }).flip();
+		
+		CompositeByteBuffer composite = new CompositeByteBuffer(first, second);
+		Assert.assertEquals(0x01020304, composite.getInt(0));
+		Assert.assertEquals(0x03040506, composite.getInt(2));
+		Assert.assertEquals(0x05060708, composite.getInt(4));
+		Assert.assertEquals(0, first.position());
+		Assert.assertEquals(0, second.position());
+		
+		ByteBuffer[] buffers = composite.toByteBuffers();
+		Assert.assertTrue(buffers[0].isReadOnly());
+		Assert.assertTrue(buffers[1].isReadOnly());
+		Assert.assertEquals("length=8 fragments=2", composite.toString());
+		
+		try {
+			composite.get(8);
+			Assert.fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException expected) { }
+
+		try {
+			composite.getLong(1);
+			Assert.fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException expected) { }
+		
+		CompositeByteBuffer empty = new CompositeByteBuffer();
+		Assert.assertEquals(0, empty.length());
+		Assert.assertEquals(-1, empty.indexOf((byte) 1));
+		Assert.assertEquals(0, empty.toBytes().length);
+	}
+	
+	
+	@Test
+	public void testReadFromConnection() throws Exception {
+		IServer server = new Server(new ServerHandler());
+		server.start();
+		
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		
+		// send the record in small chunks to get multiple received buffers 
+		String record = "key: value with some text\r\n";
+		for (int i = 0; i < record.length(); i += 3) {
+			con.write(record.substring(i, Math.min(i + 3, record.length())));
+			QAUtil.sleep(20);
+		}
+		
+		Assert.assertEquals("key|value with some text", con.readStringByDelimiter("\r\n"));
+		
+		con.write(12345678L);
+		Assert.assertEquals(12345678L, con.readLong());
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	private static ByteBuffer[] split(byte[] data, Random random) {
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		
+		int offset = 0;
+		while (offset < data.length) {
+			int length = Math.min(1 + random.nextInt(9), data.length - offset);
+			
+			ByteBuffer buffer = null;
+			if (random.nextBoolean()) {
+				buffer = ByteBuffer.allocateDirect(length + 2);
+			} else {
+				buffer = ByteBuffer.allocate(length + 2);
+			}
+			buffer.put((byte) 99);
+			buffer.put(data, offset, length);
+			buffer.flip();
+			buffer.get(); // skip the leading byte
+			
+			buffers.add(buffer);
+			offset += length;
+		}
+		
+		return buffers.toArray(new ByteBuffer[buffers.size()]);
+	}
+
+	
+	
+	private static final class ServerHandler implements IDataHandler {
+		
+		public boolean onData(INonBlockingConnection connection) throws IOException, BufferUnderflowException, MaxReadSizeExceededException {
+			NonBlockingConnection nbc = (NonBlockingConnection) connection;
+			
+			if (nbc.available() == 8) {
+				nbc.write(nbc.readCompositeByteBufferByLength(8).getLong(0));
+				return true;
+			}
+			
+			CompositeByteBuffer line = nbc.readCompositeByteBufferByDelimiter("\r\n", 1000);
+			int idx = line.indexOf(": ".getBytes("US-ASCII"));
+			
+			nbc.write(line.slice(0, idx).toString("US-ASCII") + "|" + line.slice(idx + 2, line.length() - (idx + 2)).toString("US-ASCII") + "\r\n");
+			return true;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xsocket.Execution;
+import org.xsocket.MaxReadSizeExceededException;
+import org.xsocket.connection.IConnection.FlushMode;
+
+
+
+/**
+ * Connect storm benchmark, which compares the blocking acceptor thread with the non-blocking 
+ * accept by the dispatchers. Each client thread connects, performs a 1 byte ping pong and 
+ * closes the connection (by a RST to avoid running out of ephemeral ports) in a loop. The 
+ * client and the server are running within the same vm
+ *
+ * @author grro@xsocket.org
+ */
+public final class ConnectStormBenchmark {
+
+	
+	public static void main(String... args) throws Exception {
+		int numClients = 16;
+		int durationSec = 5;
+		
+		if (args.length > 0) {
+			numClients = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			durationSec = Integer.parseInt(args[1]);
+		}
+		
+		System.out.println("usage org.xsocket.connection.ConnectStormBenchmark [numClients] [durationSec]");
+		
+		// warm up
+		run(false, numClients, 1);
+		run(true, numClients, 1);
+		
+		long rateBlocking = run(false, numClients, durationSec);
+		long rateNonBlocking = run(true, numClients, durationSec);
+		
+		if (rateBlocking > 0) {
+			System.out.println("change " + (((rateNonBlocking - rateBlocking) * 100) / rateBlocking) + "%");
+		}
+	}
+
+
+	private static long run(boolean isNonBlocking, int numClients, int durationSec) throws Exception {
+		IoProvider.setServerAcceptorNonBlocking(isNonBlocking);
+		
+		final Server server;
+		try {
+			server = new Server(new EchoHandler());
+			server.start();
+		} finally {
+			IoProvider.setServerAcceptorNonBlocking(false);
+		}
+		
+		final AtomicBoolean isRunning = new AtomicBoolean(true);
+		final AtomicLong connects = new AtomicLong(0);
+		final AtomicLong errors = new AtomicLong(0);
+		
+		List<Thread> clients = new ArrayList<Thread>();
+		for (int i = 0; i < numClients; i++) {
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					while (isRunning.get()) {
+						try {
+							Socket socket = new Socket("localhost", server.getLocalPort());
+							socket.setSoLinger(true, 0);
+							OutputStream os = socket.getOutputStream();
+							InputStream is = socket.getInputStream();
+							os.write(1);
+							os.flush();
+							if (is.read() == 1) {
+								connects.incrementAndGet();
+							}
+							socket.close();
+						} catch (IOException ioe) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			};
+			t.start();
+			clients.add(t);
+		}
+		
+		long start = System.currentTimeMillis();
+		Thread.sleep(durationSec * 1000L);
+		isRunning.set(false);
+		long elapsed = System.currentTimeMillis() - start;
+
+		for (Thread t : clients) {
+			t.join();
+		}
+		
+		long connectsPerSec = (connects.get() * 1000) / elapsed;
+		System.out.println("nonBlockingAccept=" + isNonBlocking + " clients=" + numClients + " connects/sec=" + connectsPerSec + " errors=" + errors.get());
+		
+		server.close();
+		return connectsPerSec;
+	}
+	
+	
+	@Execution(Execution.NONTHREADED)
+	private static final class EchoHandler implements IConnectHandler, IDataHandler {
+		
+		public boolean onConnect(INonBlockingConnection connection) throws IOException {
+			connection.setFlushmode(FlushMode.ASYNC);
+			return true;
+		}
+		
+		public boolean onData(INonBlockingConnection connection) throws IOException, BufferUnderflowException, ClosedChannelException, MaxReadSizeExceededException {
+			connection.write(connection.readByteBufferByLength(connection.available()));
+			return true;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.DataConverter;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class DelimiterScannerTest {
+	
+	private static final String[] DELIMITERS = new String[] { "\n", "\r\n", "\r\n\r\n", "abab", "aab", "ab\r\nab", "--boundary_ab\r\n" };
+
+
+	@Test
+	public void testIndexOfByte() throws Exception {
+		Random random = new Random(5);
+		
+		for (int run = 0; run < 1000; run++) {
+			byte[] data = new byte[random.nextInt(40)];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) random.nextInt(4);
+			}
+			byte b = (byte) random.nextInt(4);
+			int from = (data.length == 0) ? 0 : random.nextInt(data.length);
+			
+			int expected = -1;
+			for (int i = from; i < data.length; i++) {
+				if (data[i] == b) {
+					expected = i;
+					break;
+				}
+			}
+			
+			Assert.assertEquals(expected, DelimiterScanner.indexOf(ByteBuffer.wrap(data), from, data.length, b));
+			Assert.assertEquals(expected, DelimiterScanner.indexOf(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN), from, data.length, b));
+			Assert.assertEquals(expected, DelimiterScanner.indexOf(toDirect(data), from, data.length, b));
+		}
+		
+		// negative bytes 
+		byte[] data = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, (byte) 0xFF, (byte) 0x80 };
+		Assert.assertEquals(9, DelimiterScanner.indexOf(ByteBuffer.wrap(data), 0, data.length, (byte) 0xFF));
+		Assert.assertEquals(10, DelimiterScanner.indexOf(ByteBuffer.wrap(data), 0, data.length, (byte) 0x80));
+		Assert.assertEquals(0, DelimiterScanner.indexOf(ByteBuffer.wrap(data), 0, data.length, (byte) 0x01));
+	}
+	
+	
+	@Test
+	public void testReadByDelimiter() throws Exception {
+		Random random = new Random(7);
+		
+		for (String delimiter : DELIMITERS) {
+			for (int run = 0; run < 200; run++) {
+				
+				// the alphabet contains the delimiter bytes to force partial matches   
+				String alphabet = "ab\r\n-_" + delimiter;
+				StringBuilder sb = new StringBuilder();
+				int size = random.nextInt(500);
+				for (int i = 0; i < size; i++) {
+					sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+				}
+				String data = sb.toString();
+				
+				assertRecords(data, delimiter, random, run % 3);
+			}
+		}
+	}
+
+	
+	private static void assertRecords(String data, String delimiter, Random random, int bufferType) throws Exception {
+		List<String> expected = new ArrayList<String>();
+		int pos = 0;
+		int idx = data.indexOf(delimiter, pos);
+		while (idx >= 0) {
+			expected.add(data.substring(pos, idx));
+			pos = idx + delimiter.length();
+			idx = data.indexOf(delimiter, pos);
+		}
+		
+		byte[] bytes = data.getBytes("US-ASCII");
+		byte[] delimiterBytes = delimiter.getBytes("US-ASCII");
+		
+		ReadQueue readQueue = new ReadQueue();
+		List<String> records = new ArrayList<String>();
+		
+		// append the data in random chunks and try to read after each append (partial matches will be cached)  
+		int offset = 0;
+		while (offset < bytes.length) {
+			int chunkSize = 1 + random.nextInt(Math.min(20, bytes.length - offset));
+			byte[] chunk = new byte[chunkSize];
+			System.arraycopy(bytes, offset, chunk, 0, chunkSize);
+			offset += chunkSize;
+			
+			ByteBuffer buffer = null;
+			if (bufferType == 0) {
+				buffer = ByteBuffer.wrap(chunk);
+			} else if (bufferType == 1) {
+				buffer = toDirect(chunk);
+			} else {
+				ByteBuffer slab = ByteBuffer.allocate(chunkSize + 10);
+				slab.position(5);
+				slab.put(chunk);
+				slab.position(5);
+				slab.limit(5 + chunkSize);
+				buffer = slab.slice();
+			}
+			readQueue.append(new ByteBuffer[] { buffer }, chunkSize);
+			
+			while (true) {
+				try {
+					records.add(DataConverter.toString(readQueue.readByteBufferByDelimiter(delimiterBytes, Integer.MAX_VALUE), "US-ASCII"));
+				} catch (BufferUnderflowException bue) {
+					break;
+				}
+			}
+		}
+		
+		Assert.assertEquals("delimiter " + delimiter.replace("\r", "\\r").replace("\n", "\\n"), expected, records);
+	}
+
+	
+	private static ByteBuffer toDirect(byte[] data) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+		buffer.put(data);
+		buffer.flip();
+		return buffer;
+	}
+}
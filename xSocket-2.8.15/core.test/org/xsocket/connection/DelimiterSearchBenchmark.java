@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+
+
+/**
+ * Benchmark of the delimiter search, which compares the searched bytes per second of the former 
+ * byte-at-a-time scanner of the {@link ReadQueue} with the {@link DelimiterScanner} for 1, 2 and 8 
+ * byte delimiters on heap and direct buffers. Each buffer contains 64k records of random printable 
+ * data terminated by the delimiter 
+ *
+ * @author grro@xsocket.org
+ */
+public final class DelimiterSearchBenchmark {
+
+	private static final String[] DELIMITERS = new String[] { "\n", "\r\n", "--bound\n" };
+	
+	
+	public static void main(String... args) throws Exception {
+		int recordSize = 1024;
+		int durationSec = 3;
+		
+		if (args.length > 0) {
+			recordSize = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			durationSec = Integer.parseInt(args[1]);
+		}
+		
+		System.out.println("usage org.xsocket.connection.DelimiterSearchBenchmark [recordSize] [durationSec]");
+		
+		for (String delimiter : DELIMITERS) {
+			for (boolean isDirect : new boolean[] { false, true }) {
+				ByteBuffer buffer = newData(delimiter.getBytes("US-ASCII"), recordSize, 16 * 1024 * 1024, isDirect);
+				
+				// warm up
+				run(buffer, delimiter.getBytes("US-ASCII"), false, 1);
+				run(buffer, delimiter.getBytes("US-ASCII"), true, 1);
+				
+				long bytesDefault = run(buffer, delimiter.getBytes("US-ASCII"), false, durationSec);
+				long bytesOptimized = run(buffer, delimiter.getBytes("US-ASCII"), true, durationSec);
+				
+				System.out.println("delimiter length=" + delimiter.length() + " direct=" + isDirect
+						           + " byte-at-a-time=" + (bytesDefault / (1024 * 1024)) + " MB/sec"
+						           + " scanner=" + (bytesOptimized / (1024 * 1024)) + " MB/sec"
+						           + " change " + (((bytesOptimized - bytesDefault) * 100) / bytesDefault) + "%");
+			}
+		}
+	}
+	
+	
+	private static long run(ByteBuffer buffer, byte[] delimiter, boolean isOptimized, int durationSec) {
+		int end = buffer.limit();
+		
+		long bytes = 0;
+		long records = 0;
+		long deadline = System.currentTimeMillis() + (durationSec * 1000L);
+		
+		while (System.currentTimeMillis() < deadline) {
+			int pos = 0;
+			while (pos < end) {
+				int found = isOptimized ? DelimiterScanner.indexOf(buffer, pos, end, delimiter)
+						                : indexOfByteAtATime(buffer, pos, end, delimiter);
+				if (found < 0) {
+					break;
+				}
+				records++;
+				pos = found + delimiter.length;
+			}
+			bytes += end;
+		}
+		
+		if (records == 0) {
+			throw new RuntimeException("no record found");
+		}
+		
+		return bytes / durationSec;
+	}
+	
+
+	/**
+	 * the former byte-at-a-time scanner of the read queue (reduced to a single buffer) 
+	 */
+	private static int indexOfByteAtATime(ByteBuffer buffer, int from, int to, byte[] delimiter) {
+		int delimiterPosition = 0;
+		byte nextDelimiterByte = delimiter[0];
+		
+		for (int i = from; i < to; i++) {
+			byte b = buffer.get(i);
+			
+			if (b == nextDelimiterByte) {
+				delimiterPosition++;
+				if (delimiterPosition == delimiter.length) {
+					return i - delimiter.length + 1;
+				}
+				nextDelimiterByte = delimiter[delimiterPosition];
+				
+			} else if (delimiterPosition > 0) {
+				delimiterPosition = 0;
+				nextDelimiterByte = delimiter[0];
+				if ((delimiter.length > 1) && (b == nextDelimiterByte)) {
+					delimiterPosition++;
+					nextDelimiterByte = delimiter[delimiterPosition];
+				}
+			}
+		}
+		
+		return -1;
+	}
+	
+	
+	private static ByteBuffer newData(byte[] delimiter, int recordSize, int size, boolean isDirect) {
+		Random random = new Random(9);
+		ByteBuffer buffer = isDirect ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		
+		while (buffer.remaining() >= (recordSize + delimiter.length)) {
+			for (int i = 0; i < recordSize; i++) {
+				buffer.put((byte) ('a' + random.nextInt(26)));
+			}
+			buffer.put(delimiter);
+		}
+		buffer.flip();
+		
+		return buffer;
+	}
+}
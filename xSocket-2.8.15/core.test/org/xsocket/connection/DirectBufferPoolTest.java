@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class DirectBufferPoolTest {
+
+
+	@Test
+	public void testAcquireRelease() throws Exception {
+		DirectBufferPool pool = new DirectBufferPool(8192);
+
+		ByteBuffer buffer = pool.acquire(1000);
+		Assert.assertTrue(buffer.isDirect());
+		Assert.assertEquals(1000, buffer.remaining());
+		Assert.assertTrue(DirectBufferPool.isPooled(buffer));
+		Assert.assertEquals(1, pool.getNumberOfOutstandingBuffers());
+
+		Assert.assertTrue(DirectBufferPool.release(buffer));
+		Assert.assertFalse(DirectBufferPool.isPooled(buffer));
+		Assert.assertEquals(0, pool.getNumberOfOutstandingBuffers());
+
+		// double release
+		Assert.assertFalse(DirectBufferPool.release(buffer));
+
+		// non pooled buffer
+		Assert.assertFalse(DirectBufferPool.release(ByteBuffer.allocateDirect(100)));
+	}
+
+
+	@Test
+	public void testRetain() throws Exception {
+		DirectBufferPool pool = new DirectBufferPool(8192);
+
+		ByteBuffer buffer = pool.acquire(1024);
+		int freeSize = pool.getFreePoolSize();
+
+		ByteBuffer ref1 = DirectBufferPool.retain(buffer);
+		ByteBuffer ref2 = DirectBufferPool.retain(buffer);
+
+		DirectBufferPool.release(buffer);
+		DirectBufferPool.release(ref1);
+		Assert.assertEquals(1, pool.getNumberOfOutstandingBuffers());
+		Assert.assertEquals(freeSize, pool.getFreePoolSize());
+
+		DirectBufferPool.release(ref2);
+		Assert.assertEquals(0, pool.getNumberOfOutstandingBuffers());
+		Assert.assertEquals(freeSize + 1024, pool.getFreePoolSize());
+	}
+
+
+	@Test
+	public void testRetainReleased() throws Exception {
+		DirectBufferPool pool = new DirectBufferPool(8192);
+
+		ByteBuffer buffer = pool.acquire(1024);
+		DirectBufferPool.release(buffer);
+
+		try {
+			DirectBufferPool.retain(buffer);
+			Assert.fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) { }
+	}
+
+
+	@Test
+	public void testReleaseAfterWrite() throws Exception {
+		ReceivingHandler srvHdl = new ReceivingHandler();
+		IServer server = new Server(srvHdl);
+		server.start();
+
+		DirectBufferPool pool = new DirectBufferPool();
+
+		INonBlockingConnection con1 = new NonBlockingConnection("localhost", server.getLocalPort());
+		INonBlockingConnection con2 = new NonBlockingConnection("localhost", server.getLocalPort());
+
+		ByteBuffer buffer = pool.acquire(3000);
+		buffer.put(QAUtil.generateByteArray(3000));
+		buffer.flip();
+
+		con1.write(DirectBufferPool.retain(buffer));
+		con2.write(DirectBufferPool.retain(buffer));
+		DirectBufferPool.release(buffer);
+
+		QAUtil.sleep(1000);
+		Assert.assertEquals(6000, srvHdl.received.get());
+		Assert.assertEquals(0, pool.getNumberOfOutstandingBuffers());
+
+		con1.close();
+		con2.close();
+		server.close();
+	}
+
+
+	@Test
+	public void testReleaseUnwrittenOnDisconnect() throws Exception {
+		IServer server = new Server(new ReceivingHandler());
+		server.start();
+
+		DirectBufferPool pool = new DirectBufferPool();
+
+		INonBlockingConnection con = new NonBlockingConnection("localhost", server.getLocalPort());
+		con.setAutoflush(false);
+
+		ByteBuffer buffer = pool.acquire(1000);
+		buffer.put(QAUtil.generateByteArray(1000));
+		buffer.flip();
+		con.write(buffer);
+		Assert.assertEquals(1, pool.getNumberOfOutstandingBuffers());
+
+		// the peer closes the connection. The buffer is still in the write queue 
+		server.close();
+		
+		for (int i = 0; ((pool.getNumberOfOutstandingBuffers() > 0) || con.isOpen()) && (i < 100); i++) {
+			QAUtil.sleep(50);
+		}
+		Assert.assertFalse(con.isOpen());
+		Assert.assertEquals(0, pool.getNumberOfOutstandingBuffers());
+	}
+	
+	
+	@Test
+	public void testUnreachableReferenceIsReleased() throws Exception {
+		DirectBufferPool pool = new DirectBufferPool(8192);
+
+		ByteBuffer buffer = pool.acquire(1024);
+		DirectBufferPool.retain(buffer);     // reference is dropped without being released 
+		DirectBufferPool.release(buffer);
+		Assert.assertEquals(1, pool.getNumberOfOutstandingBuffers());
+
+		for (int i = 0; (pool.getNumberOfOutstandingBuffers() > 0) && (i < 20); i++) {
+			System.gc();
+			QAUtil.sleep(50);
+			DirectBufferPool.release(pool.acquire(100));
+		}
+		Assert.assertEquals(0, pool.getNumberOfOutstandingBuffers());
+	}
+	
+	
+	private static final class ReceivingHandler implements IDataHandler {
+
+		private final AtomicInteger received = new AtomicInteger();
+
+		public boolean onData(INonBlockingConnection connection) throws IOException {
+			int available = connection.available();
+			if (available > 0) {
+				connection.readByteBufferByLength(available);
+				received.addAndGet(available);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class DispatcherAssignmentStrategyTest {
+
+
+	@Test
+	public void testRoundRobin() throws Exception {
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", 3);
+		pool.setAssignmentStrategy(DispatcherAssignmentStrategies.create(DispatcherAssignmentStrategies.ROUND_ROBIN));
+
+		IoSocketDispatcher first = pool.nextDispatcher();
+		IoSocketDispatcher second = pool.nextDispatcher();
+		IoSocketDispatcher third = pool.nextDispatcher();
+
+		Assert.assertNotSame(first, second);
+		Assert.assertNotSame(second, third);
+		Assert.assertNotSame(first, third);
+		Assert.assertSame(first, pool.nextDispatcher());
+
+		pool.close();
+	}
+
+
+	@Test
+	public void testFewestHandles() throws Exception {
+		assertBalanced(DispatcherAssignmentStrategies.FEWEST_HANDLES, 3);
+	}
+
+
+	@Test
+	public void testLowestLoad() throws Exception {
+		assertBalanced(DispatcherAssignmentStrategies.LOWEST_LOAD, 3);
+	}
+
+
+	@Test
+	public void testPowerOfTwoChoices() throws Exception {
+		assertBalanced(DispatcherAssignmentStrategies.POWER_OF_TWO_CHOICES, 2);
+	}
+
+
+	@Test
+	public void testUnknownStrategy() throws Exception {
+		Assert.assertEquals(DispatcherAssignmentStrategies.ROUND_ROBIN, DispatcherAssignmentStrategies.create("unknown").toString());
+	}
+
+
+	@Test
+	public void testEmptyDispatchers() throws Exception {
+		IoSocketDispatcher[] empty = new IoSocketDispatcher[0];
+		for (String strategy : new String[] { DispatcherAssignmentStrategies.ROUND_ROBIN, DispatcherAssignmentStrategies.FEWEST_HANDLES, 
+		                                      DispatcherAssignmentStrategies.LOWEST_LOAD, DispatcherAssignmentStrategies.POWER_OF_TWO_CHOICES }) {
+			Assert.assertNull(strategy, DispatcherAssignmentStrategies.create(strategy).select(empty));
+		}
+
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", 0);
+		try {
+			pool.nextDispatcher();
+			Assert.fail("IOException expected");
+		} catch (IOException expected) {
+			Assert.assertTrue(expected.getMessage(), expected.getMessage().startsWith("no dispatcher available"));
+		}
+
+		pool.close();
+	}
+
+
+	@Test
+	public void testServer() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.start();
+
+		Assert.assertEquals(DispatcherAssignmentStrategies.ROUND_ROBIN, server.getDispatcherAssignmentStrategy());
+
+		server.setDispatcherAssignmentStrategy(DispatcherAssignmentStrategies.LOWEST_LOAD);
+		Assert.assertEquals(DispatcherAssignmentStrategies.LOWEST_LOAD, server.getDispatcherAssignmentStrategy());
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.write("test\r\n");
+		Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+
+		con.close();
+		server.close();
+	}
+
+
+	private void assertBalanced(String strategy, int size) throws Exception {
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", size);
+		pool.setAssignmentStrategy(DispatcherAssignmentStrategies.create(strategy));
+
+		Map<IoSocketDispatcher, Integer> assigned = new IdentityHashMap<IoSocketDispatcher, Integer>();
+		for (int i = 0; i < size * 10; i++) {
+			IoSocketDispatcher dispatcher = pool.nextDispatcher();
+			Integer count = assigned.get(dispatcher);
+			assigned.put(dispatcher, (count == null) ? 1 : (count + 1));
+		}
+
+		Assert.assertEquals(size, assigned.size());
+		for (Integer count : assigned.values()) {
+			Assert.assertEquals(10, count.intValue());
+		}
+
+		pool.close();
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class DispatcherAutoscalerTest {
+
+
+	@Test
+	public void testMigrate() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.setDispatcherPoolSize(2);
+		server.start();
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.write("test\r\n");
+		Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+
+		IoSocketHandler handler = getRegisteredHandlers(server.getDispatcherPool()).get(0);
+		IoSocketDispatcher source = handler.getDispatcher();
+		IoSocketDispatcher target = getOther(server.getDispatcherPool(), source);
+		
+		source.migrate(handler, target);
+		QAUtil.sleep(200);
+		
+		Assert.assertSame(target, handler.getDispatcher());
+		Assert.assertTrue(target.getRegistered().contains(handler));
+		Assert.assertEquals(1, source.getNumberOfMigratedOutHandles());
+		Assert.assertEquals(1, target.getNumberOfMigratedInHandles());
+
+		con.write("test2\r\n");
+		Assert.assertEquals("test2", con.readStringByDelimiter("\r\n"));
+
+		con.close();
+		server.close();
+	}
+
+	
+	@Test
+	public void testMigrateSuspended() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.setDispatcherPoolSize(2);
+		server.start();
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.write("test\r\n");
+		Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+
+		IoSocketHandler handler = getRegisteredHandlers(server.getDispatcherPool()).get(0);
+		handler.suspendRead();
+		QAUtil.sleep(200);
+		Assert.assertTrue(handler.isReadSuspended());
+		
+		IoSocketDispatcher source = handler.getDispatcher();
+		source.migrate(handler, getOther(server.getDispatcherPool(), source));
+		QAUtil.sleep(200);
+		
+		Assert.assertNotSame(source, handler.getDispatcher());
+		Assert.assertTrue(handler.isReadSuspended());
+		
+		con.write("test2\r\n");
+		QAUtil.sleep(200);
+		
+		handler.resumeRead();
+		Assert.assertEquals("test2", con.readStringByDelimiter("\r\n"));
+
+		con.close();
+		server.close();
+	}
+	
+	
+	@Test
+	public void testRetireDispatcher() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.setDispatcherPoolSize(3);
+		server.start();
+
+		List<IBlockingConnection> cons = new ArrayList<IBlockingConnection>();
+		for (int i = 0; i < 6; i++) {
+			IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+			con.write("test" + i + "\r\n");
+			Assert.assertEquals("test" + i, con.readStringByDelimiter("\r\n"));
+			cons.add(con);
+		}
+		
+		server.setDispatcherPoolSize(1);
+		QAUtil.sleep(200);
+		
+		Assert.assertEquals(1, server.getDispatcherPool().getDispatchers().size());
+		Assert.assertEquals(6, server.getDispatcherPool().getDispatchers().get(0).getRegistered().size());
+		Assert.assertEquals(6, server.getNumberOfOpenConnections());
+
+		for (int i = 0; i < cons.size(); i++) {
+			IBlockingConnection con = cons.get(i);
+			con.write("again" + i + "\r\n");
+			Assert.assertEquals("again" + i, con.readStringByDelimiter("\r\n"));
+			con.close();
+		}
+
+		server.close();
+	}
+
+	
+	@Test
+	public void testScaleUp() throws Exception {
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", 1);
+		
+		// each utilization is high
+		DispatcherPoolAutoscaler autoscaler = new DispatcherPoolAutoscaler(pool, 1, 3, 0, 0, 2);
+		
+		autoscaler.check();
+		Assert.assertEquals(1, pool.getDispatcherSize());
+		
+		autoscaler.check();
+		Assert.assertEquals(2, pool.getDispatcherSize());
+		
+		for (int i = 0; i < 10; i++) {
+			autoscaler.check();
+		}
+		Assert.assertEquals(3, pool.getDispatcherSize());
+		Assert.assertEquals(2, autoscaler.getNumberOfScaleUps());
+
+		pool.close();
+	}
+	
+	
+	@Test
+	public void testScaleDown() throws Exception {
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", 3);
+		
+		// each utilization is low
+		DispatcherPoolAutoscaler autoscaler = new DispatcherPoolAutoscaler(pool, 2, 3, 100, 100, 2);
+		
+		autoscaler.check();
+		Assert.assertEquals(3, pool.getDispatcherSize());
+		
+		for (int i = 0; i < 10; i++) {
+			autoscaler.check();
+		}
+		Assert.assertEquals(2, pool.getDispatcherSize());
+		Assert.assertEquals(2, pool.getDispatchers().size());
+		Assert.assertEquals(1, autoscaler.getNumberOfScaleDowns());
+		
+		pool.close();
+	}
+	
+	
+	@Test
+	public void testUtilization() throws Exception {
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", 1);
+		IoSocketDispatcher dispatcher = pool.getDispatchers().get(0);
+		
+		dispatcher.sampleUtilization();
+		QAUtil.sleep(200);
+		
+		double utilization = dispatcher.sampleUtilization();
+		Assert.assertTrue(utilization >= 0);
+		Assert.assertTrue("idle dispatcher has utilization " + utilization, utilization < 0.5);
+		
+		pool.close();
+	}
+	
+	
+
+	private static List<IoSocketHandler> getRegisteredHandlers(IoSocketDispatcherPool pool) {
+		List<IoSocketHandler> handlers = new ArrayList<IoSocketHandler>();
+		for (IoSocketDispatcher dispatcher : pool.getDispatchers()) {
+			handlers.addAll(dispatcher.getRegistered());
+		}
+		return handlers;
+	}
+	
+	
+	private static IoSocketDispatcher getOther(IoSocketDispatcherPool pool, IoSocketDispatcher dispatcher) {
+		for (IoSocketDispatcher other : pool.getDispatchers()) {
+			if (other != dispatcher) {
+				return other;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.MaxReadSizeExceededException;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class DispatcherRebalancerTest {
+
+
+	@Test
+	public void testMigratePendingSendData() throws Exception {
+		int size = 20000000;
+		
+		Server server = new Server(new BulkHandler(size));
+		server.setDispatcherPoolSize(2);
+		server.start();
+
+		// plain socket, which does not read before the migration 
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		socket.getOutputStream().write("go\r\n".getBytes());
+		QAUtil.sleep(500);
+
+		IoSocketHandler handler = getRegisteredHandlers(server.getDispatcherPool()).get(0);
+		Assert.assertTrue(handler.getPendingWriteDataSize() > 0);
+		
+		IoSocketDispatcher source = handler.getDispatcher();
+		server.getDispatcherPool().migrate(handler, getOther(server.getDispatcherPool(), source));
+		QAUtil.sleep(200);
+		Assert.assertNotSame(source, handler.getDispatcher());
+		
+		byte[] data = new byte[size];
+		new DataInputStream(socket.getInputStream()).readFully(data);
+		for (int i = 0; i < data.length; i++) {
+			Assert.assertEquals((byte) i, data[i]);
+		}
+		
+		Assert.assertEquals(1, server.getNumberOfMigratedConnections());
+
+		socket.close();
+		server.close();
+	}
+
+	
+	@Test
+	public void testRebalance() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.setDispatcherPoolSize(2);
+		server.start();
+		
+		IoSocketDispatcherPool pool = server.getDispatcherPool();
+		IoSocketDispatcher first = pool.getDispatchers().get(0);
+		IoSocketDispatcher second = pool.getDispatchers().get(1);
+
+		List<IBlockingConnection> cons = new ArrayList<IBlockingConnection>();
+		for (int i = 0; i < 4; i++) {
+			IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+			con.write("test\r\n");
+			Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+			cons.add(con);
+		}
+		
+		// skew the load by moving all connections to the first dispatcher 
+		for (IoSocketHandler handler : second.getRegistered()) {
+			pool.migrate(handler, first);
+		}
+		QAUtil.sleep(200);
+		Assert.assertEquals(4, first.getRegistered().size());
+		Assert.assertEquals(0, second.getRegistered().size());
+		
+		DispatcherRebalancer rebalancer = new DispatcherRebalancer(pool, 150, 1);
+		Assert.assertEquals(0, rebalancer.rebalance());
+		
+		// same load for each connection
+		String line = new String(QAUtil.generateByteArray(1000));
+		for (IBlockingConnection con : cons) {
+			for (int i = 0; i < 10; i++) {
+				con.write(line + "\r\n");
+				Assert.assertEquals(line, con.readStringByDelimiter("\r\n"));
+			}
+		}
+		
+		Assert.assertEquals(2, rebalancer.rebalance());
+		QAUtil.sleep(200);
+		
+		Assert.assertEquals(2, first.getRegistered().size());
+		Assert.assertEquals(2, second.getRegistered().size());
+		
+		// loads are balanced
+		for (IBlockingConnection con : cons) {
+			for (int i = 0; i < 10; i++) {
+				con.write(line + "\r\n");
+				Assert.assertEquals(line, con.readStringByDelimiter("\r\n"));
+			}
+		}
+		Assert.assertEquals(0, rebalancer.rebalance());
+		
+		for (IBlockingConnection con : cons) {
+			con.close();
+		}
+		server.close();
+	}
+	
+	
+
+	private static List<IoSocketHandler> getRegisteredHandlers(IoSocketDispatcherPool pool) {
+		List<IoSocketHandler> handlers = new ArrayList<IoSocketHandler>();
+		for (IoSocketDispatcher dispatcher : pool.getDispatchers()) {
+			handlers.addAll(dispatcher.getRegistered());
+		}
+		return handlers;
+	}
+	
+	
+	private static IoSocketDispatcher getOther(IoSocketDispatcherPool pool, IoSocketDispatcher dispatcher) {
+		for (IoSocketDispatcher other : pool.getDispatchers()) {
+			if (other != dispatcher) {
+				return other;
+			}
+		}
+		return null;
+	}
+	
+	
+	private static final class BulkHandler implements IDataHandler {
+		
+		private final int size;
+		
+		public BulkHandler(int size) {
+			this.size = size;
+		}
+		
+		public boolean onData(INonBlockingConnection connection) throws IOException, BufferUnderflowException, ClosedChannelException, MaxReadSizeExceededException {
+			connection.readStringByDelimiter("\r\n");
+			
+			byte[] data = new byte[size];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) i;
+			}
+			connection.write(data);
+			return true;
+		}
+	}
+}
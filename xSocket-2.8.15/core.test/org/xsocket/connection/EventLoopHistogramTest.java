@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class EventLoopHistogramTest {
+
+
+	@Test
+	public void testPercentiles() throws Exception {
+		EventLoopHistogram histogram = new EventLoopHistogram("test", "ns");
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		
+		HistogramSnapshot snapshot = histogram.snapshot();
+		Assert.assertEquals(1000, snapshot.getCount());
+		Assert.assertEquals(1000, snapshot.getMax());
+		Assert.assertEquals(500.5, snapshot.getMean(), 0.01);
+		
+		// power of two buckets -> values are reported with the upper bound of the bucket 
+		long p50 = snapshot.getValueAtPercentile(50);
+		Assert.assertTrue(p50 >= 500 && p50 < 1024);
+		Assert.assertEquals(1000, snapshot.getValueAtPercentile(100));
+		Assert.assertTrue(snapshot.getValueAtPercentile(50) <= snapshot.getValueAtPercentile(99));
+		
+		histogram.reset();
+		Assert.assertEquals(0, histogram.snapshot().getCount());
+		Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+	}
+	
+	
+	@Test
+	public void testEdgeValues() throws Exception {
+		EventLoopHistogram histogram = new EventLoopHistogram("test", "ns");
+		histogram.record(0);
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		
+		HistogramSnapshot snapshot = histogram.snapshot();
+		Assert.assertEquals(3, snapshot.getCount());
+		Assert.assertEquals(0, snapshot.getValueAtPercentile(50));
+		Assert.assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+	}
+	
+	
+	@Test
+	public void testServer() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.start();
+		
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		for (int i = 0; i < 100; i++) {
+			con.write("test" + i + "\r\n");
+			Assert.assertEquals("test" + i, con.readStringByDelimiter("\r\n"));
+		}
+		
+		long readEvents = 0;
+		long writeEvents = 0;
+		long loops = 0;
+		EventLoopStatistics[] statistics = server.getEventLoopStatistics();
+		Assert.assertEquals(server.getDispatcherPool().getDispatchers().size(), statistics.length);
+		for (EventLoopStatistics stats : statistics) {
+			Assert.assertNotNull(stats.getDispatcherName());
+			readEvents += stats.getReadEventTime().getCount();
+			writeEvents += stats.getWriteEventTime().getCount();
+			loops += stats.getProcessingTime().getCount();
+			Assert.assertEquals(stats.getProcessingTime().getCount(), stats.getTaskQueueDepth().getCount());
+		}
+		Assert.assertTrue(readEvents >= 100);
+		Assert.assertTrue(loops > 0);
+		
+		for (IoSocketDispatcher dispatcher : server.getDispatcherPool().getDispatchers()) {
+			Assert.assertNotNull(dispatcher.getProcessingTimeHistogram());
+			dispatcher.resetStatistics();
+			Assert.assertEquals(0, dispatcher.getEventLoopStatistics().getReadEventTime().getCount());
+		}
+		
+		System.out.println(statistics[0] + " write events " + writeEvents);
+
+		con.close();
+		server.close();
+	}
+}
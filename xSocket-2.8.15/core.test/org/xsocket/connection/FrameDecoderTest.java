@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.DataConverter;
+import org.xsocket.Execution;
+import org.xsocket.QAUtil;
+import org.xsocket.connection.IConnection.FlushMode;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class FrameDecoderTest {
+	
+
+	@Test
+	public void testFragmentedFrames() throws Exception {
+		EchoFrameHandler frameHandler = new EchoFrameHandler();
+		IServer server = new Server(new FrameDecoder(frameHandler, 1000));
+		server.start();
+		
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		
+		// send each frame byte by byte 
+		for (int i = 0; i < 5; i++) {
+			String text = "frame " + i;
+			for (byte b : newFrame(text)) {
+				con.write(b);
+				QAUtil.sleep(5);
+			}
+			
+			Assert.assertEquals(text, con.readStringByDelimiter("\r\n"));
+		}
+		
+		// send several frames within one write 
+		byte[] f1 = newFrame("first");
+		byte[] f2 = newFrame("");
+		byte[] f3 = newFrame("third");
+		byte[] data = new byte[f1.length + f2.length + f3.length];
+		System.arraycopy(f1, 0, data, 0, f1.length);
+		System.arraycopy(f2, 0, data, f1.length, f2.length);
+		System.arraycopy(f3, 0, data, f1.length + f2.length, f3.length);
+		con.write(data);
+		
+		Assert.assertEquals("first", con.readStringByDelimiter("\r\n"));
+		Assert.assertEquals("", con.readStringByDelimiter("\r\n"));
+		Assert.assertEquals("third", con.readStringByDelimiter("\r\n"));
+		
+		// onFrame is called for complete frames only 
+		Assert.assertEquals(8, frameHandler.countFrames.get());
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	@Test
+	public void testNonthreadedFrameHandler() throws Exception {
+		NonthreadedFrameHandler frameHandler = new NonthreadedFrameHandler();
+		
+		// 1 byte type, 2 byte little endian length field, header is passed to the handler  
+		IServer server = new Server(new FrameDecoder(frameHandler, 1, 2, ByteOrder.LITTLE_ENDIAN, 1000, false));
+		server.start();
+		
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		
+		byte[] text = "hello little endian".getBytes("US-ASCII");
+		byte[] frame = new byte[3 + text.length];
+		frame[0] = 7;
+		frame[1] = (byte) text.length;
+		frame[2] = 0;
+		System.arraycopy(text, 0, frame, 3, text.length);
+		
+		con.write(frame, 0, 2);
+		QAUtil.sleep(200);
+		con.write(frame, 2, 10);
+		QAUtil.sleep(200);
+		con.write(frame, 12, frame.length - 12);
+		
+		Assert.assertEquals(7, con.readByte());
+		Assert.assertEquals(text.length + 3, con.readInt());
+		Assert.assertEquals("hello little endian", con.readStringByDelimiter("\r\n"));
+		Assert.assertTrue(frameHandler.isDispatcherThread);
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	@Test
+	public void testMaxFrameSizeExceeded() throws Exception {
+		IServer server = new Server(new FrameDecoder(new EchoFrameHandler(), 100));
+		server.start();
+		
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.setReadTimeoutMillis(5 * 1000);
+		
+		con.write(newFrame("ok"));
+		Assert.assertEquals("ok", con.readStringByDelimiter("\r\n"));
+		
+		con.write(101);
+		con.write(new byte[101]);
+		
+		try {
+			con.readStringByDelimiter("\r\n");
+			Assert.fail("IOException expected");
+		} catch (IOException expected) { }
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	@Test
+	public void testConnectionScopedFrameHandler() throws Exception {
+		IServer server = new Server(new FrameDecoder(new ScopedFrameHandler(), 1000));
+		server.start();
+		
+		IBlockingConnection con1 = new BlockingConnection("localhost", server.getLocalPort());
+		IBlockingConnection con2 = new BlockingConnection("localhost", server.getLocalPort());
+		
+		Assert.assertEquals("connected", con1.readStringByDelimiter("\r\n"));
+		Assert.assertEquals("connected", con2.readStringByDelimiter("\r\n"));
+
+		// interleave partial frames of both connections  
+		byte[] frame1 = newFrame("one");
+		byte[] frame2 = newFrame("two");
+		for (int i = 0; i < 3; i++) {
+			con1.write(frame1, 0, 5);
+			con2.write(frame2, 0, 2);
+			QAUtil.sleep(100);
+			con2.write(frame2, 2, frame2.length - 2);
+			con1.write(frame1, 5, frame1.length - 5);
+			
+			Assert.assertEquals("one " + (i + 1), con1.readStringByDelimiter("\r\n"));
+			Assert.assertEquals("two " + (i + 1), con2.readStringByDelimiter("\r\n"));
+		}
+		
+		con1.close();
+		con2.close();
+		server.close();
+	}
+	
+	
+	
+	@Test
+	public void testReadBufferIsNotSingleConsumer() throws Exception {
+		IServer server = new Server(new FrameDecoder(new EchoFrameHandler(), 1000));
+		server.start();
+		
+		// the decoder reads within the dispatcher thread, while multithreaded call backs could also read 
+		NonBlockingConnection con = new NonBlockingConnection("localhost", server.getLocalPort(), new FrameDecoder(new EchoFrameHandler(), 1000));
+		Assert.assertFalse(con.isReadBufferSingleConsumer());
+		
+		con.setHandler(new IDataHandler() {
+			public boolean onData(INonBlockingConnection connection) throws IOException {
+				return true;
+			}
+		});
+		Assert.assertEquals(IoProvider.isReadQueueSingleConsumerOn(), con.isReadBufferSingleConsumer());
+		
+		con.setHandler(new FrameDecoder(new EchoFrameHandler(), 1000));
+		Assert.assertFalse(con.isReadBufferSingleConsumer());
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	
+	private static byte[] newFrame(String text) throws IOException {
+		byte[] data = text.getBytes("US-ASCII");
+		ByteBuffer frame = ByteBuffer.allocate(4 + data.length);
+		frame.putInt(data.length);
+		frame.put(data);
+		return frame.array();
+	}
+	
+	
+	
+	private static final class EchoFrameHandler implements IFrameHandler {
+		
+		private final AtomicInteger countFrames = new AtomicInteger(); 
+		
+		public boolean onFrame(INonBlockingConnection connection, ByteBuffer[] frame) throws IOException {
+			countFrames.incrementAndGet();
+			
+			connection.write(frame);
+			connection.write("\r\n");
+			return true;
+		}
+	}
+	
+	
+	private static final class NonthreadedFrameHandler implements IFrameHandler {
+		
+		private volatile boolean isDispatcherThread = false;
+		
+		@Execution(Execution.NONTHREADED)
+		public boolean onFrame(INonBlockingConnection connection, ByteBuffer[] frame) throws IOException {
+			isDispatcherThread = ConnectionUtils.isDispatcherThread();
+			connection.setFlushmode(FlushMode.ASYNC);
+			
+			byte[] data = DataConverter.toBytes(frame);
+			connection.write(data[0]);
+			connection.write(data.length);
+			connection.write(data, 3, data.length - 3);
+			connection.write("\r\n");
+			return true;
+		}
+	}
+	
+	
+	private static final class ScopedFrameHandler implements IFrameHandler, IConnectHandler, IConnectionScoped {
+		
+		private int count = 0;
+		
+		public boolean onConnect(INonBlockingConnection connection) throws IOException {
+			connection.write("connected\r\n");
+			return true;
+		}
+		
+		public boolean onFrame(INonBlockingConnection connection, ByteBuffer[] frame) throws IOException {
+			count++;
+			connection.write(DataConverter.toString(frame, "US-ASCII") + " " + count + "\r\n");
+			return true;
+		}
+		
+		@Override
+		public Object clone() throws CloneNotSupportedException {
+			return super.clone();
+		}
+	}
+}
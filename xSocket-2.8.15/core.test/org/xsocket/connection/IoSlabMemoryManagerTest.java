@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class IoSlabMemoryManagerTest {
+
+
+	@Test
+	public void testCarveSlab() throws Exception {
+		IoSlabMemoryManager memoryManager = IoSlabMemoryManager.createPreallocatedMemoryManager(16384, 64, false);
+		Assert.assertEquals(16384, memoryManager.getSlabSize());
+		Assert.assertEquals(0, memoryManager.getCurrentSizePreallocatedBuffer());
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(4000);
+		Assert.assertEquals(4096, buffer.capacity());
+		Assert.assertEquals(4096, buffer.remaining());
+
+		// the rest of the slab is available
+		Assert.assertEquals(3, memoryManager.getCountFreeBuffers(4096));
+		Assert.assertEquals(3 * 4096, memoryManager.getCurrentSizePreallocatedBuffer());
+	}
+
+
+	@Test
+	public void testRecycleTail() throws Exception {
+		IoSlabMemoryManager memoryManager = IoSlabMemoryManager.createPreallocatedMemoryManager(8192, 64, false);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(8192);
+		Assert.assertEquals(8192, buffer.capacity());
+
+		buffer.put(new byte[1000]);
+		ByteBuffer data = memoryManager.extractAndRecycleMemory(buffer, 1000);
+		Assert.assertEquals(1000, data.remaining());
+
+		// 7192 bytes remaining -> recycled into the 4096 size class
+		Assert.assertEquals(1, memoryManager.getCountFreeBuffers(4096));
+
+		ByteBuffer buffer2 = memoryManager.acquireMemoryStandardSizeOrPreallocated(3000);
+		Assert.assertEquals(4096, buffer2.capacity());
+		Assert.assertEquals(0, memoryManager.getCountFreeBuffers(4096));
+
+		// data must not be overridden
+		buffer2.put(new byte[4096]);
+		Assert.assertEquals(1000, data.remaining());
+	}
+
+
+	@Test
+	public void testTooSmallToRecycle() throws Exception {
+		IoSlabMemoryManager memoryManager = IoSlabMemoryManager.createPreallocatedMemoryManager(8192, 512, false);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(8192);
+		buffer.put(new byte[7800]);
+		memoryManager.extractAndRecycleMemory(buffer, 7800);
+
+		Assert.assertEquals(0, memoryManager.getCurrentSizePreallocatedBuffer());
+	}
+
+
+	@Test
+	public void testLargerSizeClassIsUsed() throws Exception {
+		IoSlabMemoryManager memoryManager = IoSlabMemoryManager.createPreallocatedMemoryManager(8192, 64, false);
+		memoryManager.recycleMemory(ByteBuffer.allocate(2048));
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(100);
+		Assert.assertEquals(2048, buffer.capacity());
+		Assert.assertEquals(0, memoryManager.getCurrentSizePreallocatedBuffer());
+	}
+
+
+	@Test
+	public void testNonPreallocated() throws Exception {
+		IoSlabMemoryManager memoryManager = IoSlabMemoryManager.createNonPreallocatedMemoryManager(false);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(1000);
+		Assert.assertEquals(1000, buffer.capacity());
+
+		memoryManager.recycleMemory(buffer);
+		Assert.assertEquals(0, memoryManager.getCurrentSizePreallocatedBuffer());
+	}
+
+
+	@Test
+	public void testShiftOf() throws Exception {
+		Assert.assertEquals(6, IoSlabMemoryManager.shiftOf(64));
+		Assert.assertEquals(7, IoSlabMemoryManager.shiftOf(65));
+		Assert.assertEquals(14, IoSlabMemoryManager.shiftOf(16384));
+	}
+}
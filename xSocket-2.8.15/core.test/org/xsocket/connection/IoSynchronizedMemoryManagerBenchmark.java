@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+
+
+/**
+ * Benchmark which compares the thread cached {@link IoSynchronizedMemoryManager} with the former 
+ * list based (synchronized) implementation. Each thread acquires a buffer, writes 1 byte and 
+ * recycles the unused remainder
+ *
+ * @author grro@xsocket.org
+ */
+public final class IoSynchronizedMemoryManagerBenchmark {
+
+
+	public static void main(String... args) throws Exception {
+		int threads = 8;
+		int loops = 200000;
+
+		if (args.length > 0) {
+			threads = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			loops = Integer.parseInt(args[1]);
+		}
+
+		System.out.println("usage org.xsocket.connection.IoSynchronizedMemoryManagerBenchmark [threads] [loops]");
+
+		// warm up
+		run(new ListBasedMemoryManager(16384, 64), threads, loops);
+		run(IoSynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false), threads, loops);
+
+		long elapsedList = run(new ListBasedMemoryManager(16384, 64), threads, loops);
+		long elapsedCached = run(IoSynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false), threads, loops);
+
+		System.out.println("list based (synchronized) " + elapsedList + " millis, thread cached " + elapsedCached + " millis (" + threads + " threads, " + loops + " loops)");
+	}
+
+
+	private static long run(final AbstractMemoryManager memoryManager, int threads, final int loops) throws Exception {
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch doneLatch = new CountDownLatch(threads);
+
+		for (int i = 0; i < threads; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+						for (int j = 0; j < loops; j++) {
+							ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+							buffer.put((byte) 1);
+							memoryManager.extractAndRecycleMemory(buffer, 1);
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						doneLatch.countDown();
+					}
+				}
+			}.start();
+		}
+
+		long start = System.currentTimeMillis();
+		startLatch.countDown();
+		doneLatch.await();
+		return System.currentTimeMillis() - start;
+	}
+
+
+
+	/**
+	 * the former list based implementation (reference for the performance comparison)
+	 */
+	private static final class ListBasedMemoryManager extends AbstractMemoryManager {
+
+		private final List<SoftReference<ByteBuffer>> memoryBuffer = new ArrayList<SoftReference<ByteBuffer>>();
+
+		ListBasedMemoryManager(int preallocationSize, int minPreallocatedBufferSize) {
+			super(preallocationSize, true, minPreallocatedBufferSize, false);
+		}
+
+		public int getCurrentSizePreallocatedBuffer() {
+			int size = 0;
+			synchronized (memoryBuffer) {
+				for (SoftReference<ByteBuffer> bufferRef: memoryBuffer) {
+					ByteBuffer buffer = bufferRef.get();
+					if (buffer != null) {
+						size += buffer.remaining();
+					}
+				}
+			}
+			return size;
+		}
+
+		protected void recyclePreallocatedMemory(ByteBuffer buffer) {
+			if (buffer.remaining() >= getPreallocatedMinBufferSize()) {
+				synchronized (memoryBuffer) {
+					memoryBuffer.add(new SoftReference<ByteBuffer>(buffer));
+				}
+			}
+		}
+
+		public void preallocate() {
+		}
+
+		protected ByteBuffer acquirePreallocatedMemory(int standardSize) throws IOException {
+			ByteBuffer buffer = null;
+			synchronized (memoryBuffer) {
+				if (!memoryBuffer.isEmpty()) {
+					buffer = memoryBuffer.remove(0).get();
+					if ((buffer != null) && (buffer.limit() < getPreallocatedMinBufferSize())) {
+						buffer = null;
+					}
+				}
+			}
+
+			if (buffer == null) {
+				buffer = newBuffer(standardSize);
+			}
+			return buffer;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class IoSynchronizedMemoryManagerTest {
+
+
+	@Test
+	public void testThreadCache() throws Exception {
+		IoSynchronizedMemoryManager memoryManager = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		buffer.put(new byte[1000]);
+		memoryManager.extractAndRecycleMemory(buffer, 1000);
+		Assert.assertEquals(16384 - 1000, memoryManager.getCurrentSizePreallocatedBuffer());
+
+		ByteBuffer buffer2 = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		Assert.assertEquals(16384 - 1000, buffer2.remaining());
+		Assert.assertEquals(0, memoryManager.getCurrentSizePreallocatedBuffer());
+	}
+
+
+	@Test
+	public void testSharedOverflow() throws Exception {
+		final IoSynchronizedMemoryManager memoryManager = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 64, false);
+
+		// fill the thread cache and the shared queue
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		for (int i = 0; i < IoSynchronizedMemoryManager.THREAD_CACHE_SIZE + 2; i++) {
+			buffers.add(ByteBuffer.allocate(1024));
+		}
+		for (ByteBuffer buffer : buffers) {
+			memoryManager.recycleMemory(buffer);
+		}
+		Assert.assertEquals(buffers.size() * 1024, memoryManager.getCurrentSizePreallocatedBuffer());
+
+
+		// another thread gets the shared buffers only
+		final AtomicReference<ByteBuffer> bufferRef = new AtomicReference<ByteBuffer>();
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+					bufferRef.set(memoryManager.acquireMemoryStandardSizeOrPreallocated(16384));
+				} catch (IOException ignore) { }
+			}
+		};
+		t.start();
+		t.join();
+
+		Assert.assertEquals(1024, bufferRef.get().capacity());
+		Assert.assertEquals(IoSynchronizedMemoryManager.THREAD_CACHE_SIZE * 1024, memoryManager.getCurrentSizePreallocatedBuffer());
+	}
+
+
+	@Test
+	public void testTooSmallToRecycle() throws Exception {
+		IoSynchronizedMemoryManager memoryManager = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 512, false);
+
+		memoryManager.recycleMemory(ByteBuffer.allocate(100));
+		Assert.assertEquals(0, memoryManager.getCurrentSizePreallocatedBuffer());
+		Assert.assertEquals(16384, memoryManager.acquireMemoryStandardSizeOrPreallocated(16384).capacity());
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class MemoryBudgetTest {
+
+
+	@Test
+	public void testSuspendAndResume() throws Exception {
+
+		Server server = new Server(new NonConsumingHandler());
+		server.setMemoryBudget(100000, 20000);
+		server.start();
+
+		INonBlockingConnection con1 = new NonBlockingConnection("localhost", server.getLocalPort());
+		INonBlockingConnection con2 = new NonBlockingConnection("localhost", server.getLocalPort());
+
+		con1.write(QAUtil.generateByteArray(400000));
+		con2.write(QAUtil.generateByteArray(400000));
+
+		QAUtil.sleep(1000);
+
+		// budget exceeded -> connections suspended
+		Assert.assertTrue(server.getNumberOfMemoryBudgetSuspendedConnections() > 0);
+		long used = server.getMemoryBudgetUsed();
+		Assert.assertTrue("used " + used, used < 800000);
+
+
+		// consume the data on server-side -> receiving will be resumed
+		int received = 0;
+		for (int i = 0; i < 100; i++) {
+			for (INonBlockingConnection con : server.getOpenConnections()) {
+				int available = con.available();
+				if (available > 0) {
+					con.readBytesByLength(available);
+					received += available;
+				}
+			}
+
+			if (received == 800000) {
+				break;
+			}
+			QAUtil.sleep(100);
+		}
+
+		Assert.assertEquals(800000, received);
+		Assert.assertEquals(0, server.getMemoryBudgetUsed());
+		Assert.assertEquals(0, server.getNumberOfMemoryBudgetSuspendedConnections());
+
+		con1.close();
+		con2.close();
+		server.close();
+	}
+
+
+	@Test
+	public void testNoBudget() throws Exception {
+		Server server = new Server(new NonConsumingHandler());
+		server.start();
+
+		Assert.assertEquals(-1, server.getMemoryBudgetMaxSize());
+		Assert.assertEquals(0, server.getMemoryBudgetUsed());
+
+		server.close();
+	}
+
+
+	private static final class NonConsumingHandler implements IDataHandler {
+
+		public boolean onData(INonBlockingConnection connection) throws IOException {
+			return true;
+		}
+	}
+}
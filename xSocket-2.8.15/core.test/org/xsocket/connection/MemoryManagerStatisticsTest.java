@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class MemoryManagerStatisticsTest {
+
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		IoUnsynchronizedMemoryManager memoryManager = IoUnsynchronizedMemoryManager.createPreallocatedMemoryManager(16384, 512, false);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		buffer.put(new byte[100]);
+		memoryManager.extractAndRecycleMemory(buffer, 100);
+
+		buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(16384);
+		buffer.put(new byte[16000]);
+		memoryManager.extractAndRecycleMemory(buffer, 16000);
+
+		Assert.assertEquals(1, memoryManager.getNumberOfPoolHits());
+		Assert.assertEquals(1, memoryManager.getNumberOfPoolMisses());
+		Assert.assertEquals(1, memoryManager.getNumberOfRecycleRejections());
+		Assert.assertEquals(1, memoryManager.getNumberOfHeapAllocations());
+		Assert.assertEquals(0, memoryManager.getNumberOfDirectAllocations());
+		Assert.assertEquals(16384, memoryManager.getAllocatedBytes());
+
+		// buffer exceeds the preallocation size
+		memoryManager.acquireMemoryMinSize(100000);
+		Assert.assertEquals(2, memoryManager.getNumberOfPoolMisses());
+		Assert.assertEquals(16384 + 100000, memoryManager.getAllocatedBytes());
+	}
+
+
+	@Test
+	public void testDirectAllocations() throws Exception {
+		IoSlabMemoryManager memoryManager = IoSlabMemoryManager.createPreallocatedMemoryManager(65536, 64, true);
+
+		ByteBuffer buffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(1024);
+		memoryManager.recycleMemory(buffer);
+		memoryManager.acquireMemoryStandardSizeOrPreallocated(1024);
+
+		Assert.assertEquals(1, memoryManager.getNumberOfDirectAllocations());
+		Assert.assertEquals(0, memoryManager.getNumberOfHeapAllocations());
+		Assert.assertEquals(1, memoryManager.getNumberOfPoolMisses());
+		Assert.assertEquals(1, memoryManager.getNumberOfPoolHits());
+	}
+
+
+	@Test
+	public void testServerMBean() throws Exception {
+		IServer server = new Server(new EchoHandler());
+		server.start();
+
+		ObjectName objectName = ConnectionUtils.registerMBean(server, "testMemoryStatistics");
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		for (int i = 0; i < 10; i++) {
+			con.write("test\r\n");
+			Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+		}
+		QAUtil.sleep(200);
+
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		long hits = (Long) mbeanServer.getAttribute(objectName, "ReceiveBufferPoolHits");
+		long misses = (Long) mbeanServer.getAttribute(objectName, "ReceiveBufferPoolMisses");
+		long allocatedBytes = (Long) mbeanServer.getAttribute(objectName, "ReceiveBufferAllocatedBytes");
+
+		Assert.assertTrue("hits=" + hits + " misses=" + misses, (hits + misses) >= 10);
+		Assert.assertTrue(allocatedBytes > 0);
+
+		con.close();
+		server.close();
+	}
+}
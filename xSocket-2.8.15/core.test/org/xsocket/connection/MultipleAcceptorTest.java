@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class MultipleAcceptorTest {
+
+
+	@Test
+	public void testConnectionStorm() throws Exception {
+		IoProvider.setServerAcceptorCount(4);
+		
+		try {
+			final Server server = new Server(new EchoHandler());
+			server.start();
+			
+			Assert.assertEquals(4, server.getNumberOfAcceptors());
+			
+			// the additional acceptor threads will be started after the server has been connected 
+			QAUtil.sleep(200);
+			Assert.assertEquals(3, countAcceptorThreads(server.getLocalPort()));
+			
+			final AtomicInteger errors = new AtomicInteger(0);
+			List<Thread> clients = new ArrayList<Thread>();
+			for (int i = 0; i < 10; i++) {
+				Thread t = new Thread() {
+					@Override
+					public void run() {
+						try {
+							for (int j = 0; j < 20; j++) {
+								IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+								con.write("test" + j + "\r\n");
+								Assert.assertEquals("test" + j, con.readStringByDelimiter("\r\n"));
+								con.close();
+							}
+						} catch (Throwable t) {
+							t.printStackTrace();
+							errors.incrementAndGet();
+						}
+					}
+				};
+				t.start();
+				clients.add(t);
+			}
+			
+			for (Thread t : clients) {
+				t.join();
+			}
+			
+			Assert.assertEquals(0, errors.get());
+			Assert.assertEquals(200, server.getNumberOfAcceptedConnections());
+			
+			int port = server.getLocalPort();
+			server.close();
+			QAUtil.sleep(300);
+			Assert.assertEquals(0, countAcceptorThreads(port));
+			
+		} finally {
+			IoProvider.setServerAcceptorCount(1);
+		}
+	}
+	
+	
+	@Test
+	public void testSingleAcceptor() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.start();
+		
+		Assert.assertEquals(1, server.getNumberOfAcceptors());
+		
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.write("test\r\n");
+		Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+		Assert.assertEquals(1, server.getNumberOfAcceptedConnections());
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	private static int countAcceptorThreads(int port) {
+		int count = 0;
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().startsWith("xAcceptor" + port + "#")) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
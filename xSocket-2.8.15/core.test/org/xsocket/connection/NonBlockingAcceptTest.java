@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class NonBlockingAcceptTest {
+
+
+	@Test
+	public void testEcho() throws Exception {
+		final Server server = newServer();
+		server.start();
+		
+		Assert.assertEquals(2, server.getDispatcherPool().getDispatchers().size());
+		
+		final AtomicInteger errors = new AtomicInteger(0);
+		List<Thread> clients = new ArrayList<Thread>();
+		for (int i = 0; i < 5; i++) {
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 20; j++) {
+							IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+							con.write("test" + j + "\r\n");
+							Assert.assertEquals("test" + j, con.readStringByDelimiter("\r\n"));
+							con.close();
+						}
+					} catch (Throwable t) {
+						t.printStackTrace();
+						errors.incrementAndGet();
+					}
+				}
+			};
+			t.start();
+			clients.add(t);
+		}
+		
+		for (Thread t : clients) {
+			t.join();
+		}
+		
+		Assert.assertEquals(0, errors.get());
+		Assert.assertEquals(100, server.getNumberOfAcceptedConnections());
+		
+		// the connections have been accepted by the dispatchers
+		long accepted = 0;
+		for (IoSocketDispatcher dispatcher : server.getDispatcherPool().getDispatchers()) {
+			accepted += dispatcher.getNumberOfAcceptedConnections();
+			
+			// the listening channel is not a registered handle
+			Assert.assertEquals(dispatcher.getRegistered().size(), dispatcher.getNumRegisteredHandles());
+		}
+		Assert.assertEquals(100, accepted);
+		
+		server.close();
+	}
+	
+	
+	@Test
+	public void testDispatcherAdded() throws Exception {
+		Server server = newServer();
+		server.start();
+		
+		server.setDispatcherPoolSize(4);
+		
+		for (int i = 0; i < 40; i++) {
+			IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+			con.write("test\r\n");
+			Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+			con.close();
+		}
+		
+		Assert.assertEquals(40, server.getNumberOfAcceptedConnections());
+		server.close();
+	}
+	
+	
+	@Test
+	public void testMaxConnectionsExceeded() throws Exception {
+		Server server = newServer();
+		server.setMaxConcurrentConnections(1);
+		server.start();
+		
+		IBlockingConnection con1 = new BlockingConnection("localhost", server.getLocalPort());
+		con1.write("test\r\n");
+		Assert.assertEquals("test", con1.readStringByDelimiter("\r\n"));
+
+		// the second connection will be rejected without blocking the dispatcher
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		socket.setSoTimeout(1000);
+		Assert.assertEquals(-1, socket.getInputStream().read());
+		socket.close();
+		
+		con1.write("test2\r\n");
+		Assert.assertEquals("test2", con1.readStringByDelimiter("\r\n"));
+		
+		con1.close();
+		server.close();
+	}
+	
+	
+	private static Server newServer() throws Exception {
+		IoProvider.setServerAcceptorNonBlocking(true);
+		try {
+			Server server = new Server(new EchoHandler());
+			server.setDispatcherPoolSize(2);
+			return server;
+		} finally {
+			IoProvider.setServerAcceptorNonBlocking(false);
+		}
+	}
+}
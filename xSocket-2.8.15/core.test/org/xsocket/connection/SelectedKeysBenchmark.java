@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.xsocket.Execution;
+import org.xsocket.MaxReadSizeExceededException;
+import org.xsocket.connection.IConnection.FlushMode;
+
+
+
+/**
+ * Benchmark of the selector loop, which compares the handled events per second of a single 
+ * dispatcher with the JDK selected key set and with the array-backed selected key set. Each 
+ * connection performs a 1 byte ping pong. The client and the server are running within the same 
+ * vm (each connection requires 2 file descriptors, so the open files limit has to be raised 
+ * for 10k connections). The array-backed selected key set requires 
+ * <code>--add-opens java.base/sun.nio.ch=ALL-UNNAMED</code> on Java 9 and higher 
+ *
+ * @author grro@xsocket.org
+ */
+public final class SelectedKeysBenchmark {
+
+	
+	public static void main(String... args) throws Exception {
+		int numConnections = 10000;
+		int durationSec = 10;
+		
+		if (args.length > 0) {
+			numConnections = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			durationSec = Integer.parseInt(args[1]);
+		}
+		
+		System.out.println("usage org.xsocket.connection.SelectedKeysBenchmark [numConnections] [durationSec]");
+		
+		// warm up
+		run(false, Math.min(numConnections, 1000), 2);
+		
+		long eventsDefault = run(false, numConnections, durationSec);
+		long eventsOptimized = run(true, numConnections, durationSec);
+		
+		if (eventsDefault > 0) {
+			System.out.println("change " + (((eventsOptimized - eventsDefault) * 100) / eventsDefault) + "%");
+		}
+	}
+
+
+	private static long run(boolean isOptimized, int numConnections, int durationSec) throws Exception {
+		IoProvider.setSelectedKeysOptimizationOn(isOptimized);
+		
+		Server server = new Server(new PingPongHandler());
+		server.setDispatcherPoolSize(1);
+		server.start();
+		IoSocketDispatcher dispatcher = server.getDispatcherPool().getDispatchers().get(0);
+		
+		Selector selector = Selector.open();
+		List<SocketChannel> channels = new ArrayList<SocketChannel>();
+		for (int i = 0; i < numConnections; i++) {
+			SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getLocalPort()));
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ);
+			channels.add(channel);
+		}
+		
+		ByteBuffer ping = ByteBuffer.allocate(1);
+		ByteBuffer readBuffer = ByteBuffer.allocate(64);
+		for (SocketChannel channel : channels) {
+			ping.clear();
+			channel.write(ping);
+		}
+		
+		long startEvents = dispatcher.getNumberOfHandledReads() + dispatcher.getNumberOfHandledWrites();
+		long start = System.currentTimeMillis();
+		long end = start + (durationSec * 1000L);
+		
+		while (System.currentTimeMillis() < end) {
+			if (selector.select(100) > 0) {
+				for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+					SelectionKey key = it.next();
+					it.remove();
+					
+					SocketChannel channel = (SocketChannel) key.channel();
+					readBuffer.clear();
+					int read = channel.read(readBuffer);
+					if (read > 0) {
+						readBuffer.flip();
+						channel.write(readBuffer);
+					}
+				}
+			}
+		}
+		
+		long elapsed = System.currentTimeMillis() - start;
+		long events = dispatcher.getNumberOfHandledReads() + dispatcher.getNumberOfHandledWrites() - startEvents;
+		long eventsPerSec = (events * 1000) / elapsed;
+		
+		System.out.println("selectedKeysOptimized=" + dispatcher.isSelectedKeysOptimized() + " connections=" + numConnections + " events/sec=" + eventsPerSec);
+		
+		for (SocketChannel channel : channels) {
+			channel.close();
+		}
+		selector.close();
+		server.close();
+		
+		return eventsPerSec;
+	}
+	
+	
+	@Execution(Execution.NONTHREADED)
+	private static final class PingPongHandler implements IConnectHandler, IDataHandler {
+		
+		public boolean onConnect(INonBlockingConnection connection) throws IOException {
+			connection.setFlushmode(FlushMode.ASYNC);
+			return true;
+		}
+		
+		public boolean onData(INonBlockingConnection connection) throws IOException, BufferUnderflowException, ClosedChannelException, MaxReadSizeExceededException {
+			connection.write(connection.readByteBufferByLength(connection.available()));
+			return true;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class SelectedSelectionKeySetTest {
+
+
+	@Test
+	public void testAddAndClear() throws Exception {
+		Selector selector = Selector.open();
+		Pipe pipe = Pipe.open();
+		pipe.source().configureBlocking(false);
+		SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+		
+		SelectedSelectionKeySet keySet = new SelectedSelectionKeySet();
+		for (int i = 0; i < 3000; i++) {
+			Assert.assertTrue(keySet.add(key));
+		}
+		Assert.assertFalse(keySet.add(null));
+		Assert.assertEquals(3000, keySet.size());
+		Assert.assertSame(key, keySet.getKeys()[2999]);
+		
+		int count = 0;
+		for (Iterator<SelectionKey> it = keySet.iterator(); it.hasNext(); ) {
+			Assert.assertSame(key, it.next());
+			count++;
+		}
+		Assert.assertEquals(3000, count);
+		
+		keySet.clear();
+		Assert.assertEquals(0, keySet.size());
+		Assert.assertNull(keySet.getKeys()[0]);
+		
+		pipe.source().close();
+		pipe.sink().close();
+		selector.close();
+	}
+
+	
+	@Test
+	public void testInstall() throws Exception {
+		Selector selector = Selector.open();
+		
+		// installing requires access to sun.nio.ch (Java 9 and higher: --add-opens java.base/sun.nio.ch=ALL-UNNAMED)
+		SelectedSelectionKeySet keySet = null;
+		if (SelectedSelectionKeySet.isAccessible()) {
+			keySet = SelectedSelectionKeySet.install(selector);
+			Assert.assertNotNull("sun.nio.ch is accessible, but the key set has not been installed", keySet);
+			
+		} else {
+			// fallback: the optimization is off by default and the JDK set will be used 
+			if (System.getProperty(IoProvider.SELECTED_KEYS_OPTIMIZATION_ON_KEY) == null) {
+				Assert.assertFalse(IoProvider.isSelectedKeysOptimizationOn());
+			}
+		}
+		
+		Pipe pipe = Pipe.open();
+		pipe.source().configureBlocking(false);
+		SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+		
+		pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+		Assert.assertEquals(1, selector.select(1000));
+		
+		Assert.assertEquals(1, selector.selectedKeys().size());
+		Assert.assertSame(key, selector.selectedKeys().iterator().next());
+		
+		if (keySet != null) {
+			Assert.assertSame(keySet, selector.selectedKeys());
+			Assert.assertEquals(1, keySet.size());
+			Assert.assertSame(key, keySet.getKeys()[0]);
+			Assert.assertTrue(keySet.getKeys()[0].isReadable());
+		}
+		
+		pipe.source().close();
+		pipe.sink().close();
+		selector.close();
+	}
+	
+	
+	@Test
+	public void testServer() throws Exception {
+		boolean isOn = IoProvider.isSelectedKeysOptimizationOn();
+		
+		try {
+			for (boolean isOptimized : new boolean[] { false, true }) {
+				IoProvider.setSelectedKeysOptimizationOn(isOptimized);
+				
+				Server server = new Server(new EchoHandler());
+				server.start();
+				
+				if (!isOptimized) {
+					Assert.assertFalse(server.getDispatcherPool().getDispatchers().get(0).isSelectedKeysOptimized());
+				} else if (SelectedSelectionKeySet.isAccessible()) {
+					Assert.assertTrue(server.getDispatcherPool().getDispatchers().get(0).isSelectedKeysOptimized());
+				}
+	
+				for (int i = 0; i < 3; i++) {
+					IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+					for (int j = 0; j < 10; j++) {
+						con.write("test" + j + "\r\n");
+						Assert.assertEquals("test" + j, con.readStringByDelimiter("\r\n"));
+					}
+					con.close();
+				}
+				
+				server.close();
+			}
+			
+		} finally {
+			IoProvider.setSelectedKeysOptimizationOn(isOn);
+		}
+	}
+}
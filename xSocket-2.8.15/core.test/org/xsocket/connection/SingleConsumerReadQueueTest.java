@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.DataConverter;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class SingleConsumerReadQueueTest {
+	
+	private static final int COUNT = 200000;
+
+
+	@Test
+	public void testReadByLength() throws Exception {
+		final ReadQueue readQueue = new ReadQueue();
+		readQueue.setSingleConsumer(true);
+		
+		ByteBuffer data = ByteBuffer.allocate(COUNT * 4);
+		for (int i = 0; i < COUNT; i++) {
+			data.putInt(i);
+		}
+		data.flip();
+		
+		SizeWatcher watcher = new SizeWatcher(readQueue);
+		Producer producer = new Producer(readQueue, data);
+		watcher.start();
+		producer.start();
+		
+		int expected = 0;
+		while (expected < COUNT) {
+			try {
+				ByteBuffer[] buffers = readQueue.readByteBufferByLength(4);
+				ByteBuffer buffer = ByteBuffer.allocate(4);
+				for (ByteBuffer buf : buffers) {
+					buffer.put(buf);
+				}
+				buffer.flip();
+				Assert.assertEquals(expected, buffer.getInt());
+				expected++;
+			} catch (BufferUnderflowException bue) {
+				Thread.yield();
+			}
+		}
+		
+		producer.join();
+		watcher.terminate();
+		
+		Assert.assertNull(producer.getError());
+		Assert.assertNull(watcher.getError());
+		Assert.assertEquals(0, readQueue.getSize());
+		Assert.assertTrue(readQueue.isEmpty());
+	}
+	
+	
+	@Test
+	public void testReadByDelimiter() throws Exception {
+		final ReadQueue readQueue = new ReadQueue();
+		readQueue.setSingleConsumer(true);
+		
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < COUNT; i++) {
+			sb.append(i + "\r\n");
+		}
+		
+		SizeWatcher watcher = new SizeWatcher(readQueue);
+		Producer producer = new Producer(readQueue, ByteBuffer.wrap(sb.toString().getBytes("US-ASCII")));
+		watcher.start();
+		producer.start();
+		
+		byte[] delimiter = "\r\n".getBytes("US-ASCII");
+		int expected = 0;
+		while (expected < COUNT) {
+			try {
+				ByteBuffer[] buffers = readQueue.readByteBufferByDelimiter(delimiter, Integer.MAX_VALUE);
+				Assert.assertEquals(Integer.toString(expected), DataConverter.toString(buffers, "US-ASCII"));
+				expected++;
+			} catch (BufferUnderflowException bue) {
+				Thread.yield();
+			}
+		}
+		
+		producer.join();
+		watcher.terminate();
+		
+		Assert.assertNull(producer.getError());
+		Assert.assertNull(watcher.getError());
+		Assert.assertEquals(0, readQueue.getSize());
+	}
+	
+
+	@Test
+	public void testSizeNeverNegative() throws Exception {
+		for (boolean isSingleConsumer : new boolean[] { false, true }) {
+			final ReadQueue readQueue = new ReadQueue();
+			readQueue.setSingleConsumer(isSingleConsumer);
+			
+			Producer producer = new Producer(readQueue, ByteBuffer.allocate(COUNT * 4));
+			producer.start();
+			
+			// the consumer drains the queue while the producer appends. The size 
+			// has to be checked immediately after extracting the data 
+			int read = 0;
+			while (read < (COUNT * 4)) {
+				ByteBuffer[] buffers = readQueue.readAvailable();
+				if (buffers != null) {
+					for (ByteBuffer buf : buffers) {
+						read += buf.remaining();
+					}
+				}
+				
+				int size = readQueue.getSize();
+				Assert.assertTrue("negative size " + size, size >= 0);
+			}
+			
+			producer.join();
+			
+			Assert.assertNull(producer.getError());
+			Assert.assertEquals(0, readQueue.getSize());
+		}
+	}
+	
+
+	@Test
+	public void testSizeIsReadable() throws Exception {
+		for (boolean isSingleConsumer : new boolean[] { false, true }) {
+			final ReadQueue readQueue = new ReadQueue();
+			readQueue.setSingleConsumer(isSingleConsumer);
+			
+			ByteBuffer data = ByteBuffer.allocate(COUNT * 4);
+			for (int i = 0; i < COUNT; i++) {
+				data.putInt(i);
+			}
+			data.flip();
+			
+			Producer producer = new Producer(readQueue, data);
+			producer.start();
+			
+			// the reported size has to be readable at any time (a record of 2 ints is read, 
+			// if the size is sufficient)
+			int expected = 0;
+			while (expected < COUNT) {
+				if (readQueue.getSize() >= 8) {
+					ByteBuffer record = DataConverter.toByteBuffer(readQueue.readByteBufferByLength(8));
+					Assert.assertEquals(expected++, record.getInt());
+					Assert.assertEquals(expected++, record.getInt());
+				}
+			}
+			
+			producer.join();
+			
+			Assert.assertNull(producer.getError());
+			Assert.assertEquals(0, readQueue.getSize());
+		}
+	}
+	
+
+	@Test
+	public void testMarkAndReset() throws Exception {
+		for (boolean isSingleConsumer : new boolean[] { false, true }) {
+			ReadQueue readQueue = new ReadQueue();
+			readQueue.setSingleConsumer(isSingleConsumer);
+			
+			append(readQueue, "abc");
+			int version = readQueue.geVersion();
+			
+			// reset without appending data restores the version 
+			readQueue.markReadPosition();
+			Assert.assertEquals("ab", DataConverter.toString(readQueue.readByteBufferByLength(2), "US-ASCII"));
+			Assert.assertFalse(version == readQueue.geVersion());
+			Assert.assertTrue(readQueue.resetToReadMark());
+			Assert.assertEquals(version, readQueue.geVersion());
+			Assert.assertEquals(3, readQueue.getSize());
+			
+			// reset after appending data 
+			readQueue.markReadPosition();
+			Assert.assertEquals("ab", DataConverter.toString(readQueue.readByteBufferByLength(2), "US-ASCII"));
+			append(readQueue, "de");
+			Assert.assertEquals(3, readQueue.getSize());
+			Assert.assertTrue(readQueue.resetToReadMark());
+			Assert.assertFalse(version == readQueue.geVersion());
+			
+			Assert.assertEquals(5, readQueue.getSize());
+			Assert.assertEquals("abcde", DataConverter.toString(readQueue.readAvailable(), "US-ASCII"));
+			Assert.assertEquals(0, readQueue.getSize());
+		}
+	}
+	
+	
+	@Test
+	public void testUnreadAndReset() throws Exception {
+		ReadQueue readQueue = new ReadQueue();
+		readQueue.setSingleConsumer(true);
+		
+		append(readQueue, "12345");
+		ByteBuffer[] buffers = readQueue.readByteBufferByLength(3);
+		append(readQueue, "67");
+		readQueue.unread(buffers);
+		Assert.assertEquals(7, readQueue.getSize());
+		Assert.assertEquals("1234567", readQueue.toString("US-ASCII"));
+		
+		append(readQueue, "89");
+		readQueue.reset();
+		Assert.assertEquals(0, readQueue.getSize());
+		Assert.assertTrue(readQueue.isEmpty());
+		
+		append(readQueue, "0");
+		Assert.assertEquals(1, readQueue.getSize());
+		Assert.assertEquals("0", DataConverter.toString(readQueue.readAvailable(), "US-ASCII"));
+	}
+	
+	
+	private static void append(ReadQueue readQueue, String data) throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(data.getBytes("US-ASCII"));
+		readQueue.append(new ByteBuffer[] { buffer }, buffer.remaining());
+	}
+	
+	
+	
+	private static final class Producer extends Thread {
+		
+		private final ReadQueue readQueue;
+		private final ByteBuffer data;
+		private final AtomicReference<Throwable> errorRef = new AtomicReference<Throwable>(null);
+		
+		Producer(ReadQueue readQueue, ByteBuffer data) {
+			this.readQueue = readQueue;
+			this.data = data;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				Random random = new Random(3);
+				
+				// append the data in random chunks of 1 to 3 buffers
+				while (data.hasRemaining()) {
+					List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+					int size = 0;
+					
+					int count = 1 + random.nextInt(3);
+					for (int i = 0; (i < count) && data.hasRemaining(); i++) {
+						int length = Math.min(1 + random.nextInt(13), data.remaining());
+						ByteBuffer buffer = data.duplicate();
+						buffer.limit(buffer.position() + length);
+						buffers.add(buffer.slice());
+						data.position(data.position() + length);
+						size += length;
+					}
+					
+					readQueue.append(buffers.toArray(new ByteBuffer[buffers.size()]), size);
+				}
+			} catch (Throwable t) {
+				errorRef.set(t);
+			}
+		}
+		
+		Throwable getError() {
+			return errorRef.get();
+		}
+	}
+	
+	
+	private static final class SizeWatcher extends Thread {
+		
+		private final ReadQueue readQueue;
+		private final AtomicBoolean isRunning = new AtomicBoolean(true);
+		private final AtomicReference<String> errorRef = new AtomicReference<String>(null);
+		
+		SizeWatcher(ReadQueue readQueue) {
+			this.readQueue = readQueue;
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			while (isRunning.get()) {
+				int size = readQueue.getSize();
+				if (size < 0) {
+					errorRef.set("negative size " + size);
+				}
+			}
+		}
+		
+		void terminate() throws InterruptedException {
+			isRunning.set(false);
+			join();
+		}
+		
+		String getError() {
+			return errorRef.get();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class TimingWheelTest {
+
+
+	@Test
+	public void testSchedule() throws Exception {
+		TimingWheel wheel = new TimingWheel(IoProvider.getTimer(), 10, 8);
+		Assert.assertEquals(8, wheel.getWheelSize());
+		
+		CountingTask task = new CountingTask();
+		TimingWheel.Timeout timeout = wheel.newTimeout(task);
+		
+		long start = System.currentTimeMillis();
+		timeout.schedule(200);    // more than one round 
+		Assert.assertTrue(timeout.isScheduled());
+		Assert.assertEquals(1, wheel.getSize());
+		
+		while (task.count.get() == 0) {
+			QAUtil.sleep(5);
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		Assert.assertTrue("elapsed " + elapsed, elapsed >= 190);
+		Assert.assertTrue("elapsed " + elapsed, elapsed < 1000);
+		Assert.assertFalse(timeout.isScheduled());
+		Assert.assertEquals(0, wheel.getSize());
+		
+		wheel.close();
+	}
+
+	
+	@Test
+	public void testCancelAndReschedule() throws Exception {
+		TimingWheel wheel = new TimingWheel(IoProvider.getTimer(), 10, 16);
+		
+		CountingTask task = new CountingTask();
+		TimingWheel.Timeout timeout = wheel.newTimeout(task);
+		
+		timeout.schedule(100);
+		timeout.cancel();
+		timeout.cancel();
+		Assert.assertEquals(0, wheel.getSize());
+		
+		QAUtil.sleep(300);
+		Assert.assertEquals(0, task.count.get());
+		
+		
+		// reschedule moves the timeout 
+		timeout.schedule(100);
+		for (int i = 0; i < 5; i++) {
+			QAUtil.sleep(50);
+			timeout.schedule(100);
+		}
+		Assert.assertEquals(0, task.count.get());
+		Assert.assertEquals(1, wheel.getSize());
+		
+		QAUtil.sleep(300);
+		Assert.assertEquals(1, task.count.get());
+		
+		wheel.close();
+	}
+	
+	
+	@Test
+	public void testManyTimeouts() throws Exception {
+		TimingWheel wheel = new TimingWheel(IoProvider.getTimer(), 10, 64);
+		
+		CountingTask task = new CountingTask();
+		for (int i = 0; i < 10000; i++) {
+			TimingWheel.Timeout timeout = wheel.newTimeout(task);
+			timeout.schedule(500 + (i % 500));
+			if ((i % 2) == 0) {
+				timeout.cancel();
+			}
+		}
+		Assert.assertEquals(5000, wheel.getSize());
+		
+		QAUtil.sleep(1500);
+		Assert.assertEquals(5000, task.count.get());
+		Assert.assertEquals(0, wheel.getSize());
+		Assert.assertEquals(5000, wheel.getNumberOfExpiredTimeouts());
+		
+		wheel.close();
+	}
+	
+	
+	@Test
+	public void testFailingTask() throws Exception {
+		TimingWheel wheel = new TimingWheel(IoProvider.getTimer(), 10, 16);
+		
+		wheel.newTimeout(new Runnable() {
+			public void run() {
+				throw new RuntimeException("test exception");
+			}
+		}).schedule(20);
+		
+		CountingTask task = new CountingTask();
+		wheel.newTimeout(task).schedule(50);
+		
+		QAUtil.sleep(300);
+		Assert.assertEquals(1, task.count.get());
+		
+		wheel.close();
+	}
+	
+	
+	@Test
+	public void testServerIdleTimeout() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.setIdleTimeoutMillis(500);
+		server.start();
+		
+		Assert.assertTrue(server.getConnectionManagerTimingWheel().getTickMillis() > 0);
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		
+		// keep the connection busy  
+		for (int i = 0; i < 10; i++) {
+			con.write("test\r\n");
+			Assert.assertEquals("test", con.readStringByDelimiter("\r\n"));
+			QAUtil.sleep(100);
+		}
+		Assert.assertEquals(0, server.getNumberOfIdleTimeouts());
+		Assert.assertEquals(1, server.getOpenConnections().size());
+		
+		QAUtil.sleep(1500);
+		Assert.assertEquals(1, server.getNumberOfIdleTimeouts());
+		Assert.assertEquals(0, server.getOpenConnections().size());
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	private static final class CountingTask implements Runnable {
+		
+		private final AtomicInteger count = new AtomicInteger(); 
+		
+		public void run() {
+			count.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.ClosedChannelException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.MaxReadSizeExceededException;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class TryReadTest {
+	
+
+	@Test
+	public void testFragmentedRecords() throws Exception {
+		IServer server = new Server(new LengthFieldHandler());
+		server.start();
+		
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		
+		// send each record byte by byte 
+		for (int i = 0; i < 5; i++) {
+			String text = "record " + i;
+			
+			byte[] record = new byte[4 + text.length()];
+			record[0] = 0;
+			record[1] = 0;
+			record[2] = 0;
+			record[3] = (byte) text.length();
+			System.arraycopy(text.getBytes("US-ASCII"), 0, record, 4, text.length());
+			
+			for (byte b : record) {
+				con.write(b);
+				QAUtil.sleep(5);
+			}
+			
+			Assert.assertEquals(text, con.readStringByDelimiter("\r\n"));
+		}
+		
+		con.close();
+		server.close();
+	}
+	
+	
+	@Test
+	public void testClientSide() throws Exception {
+		IServer server = new Server(new EchoHandler());
+		server.start();
+		
+		NonBlockingConnection con = new NonBlockingConnection("localhost", server.getLocalPort());
+		
+		Assert.assertNull(con.tryReadByte());
+		Assert.assertNull(con.tryReadShort());
+		Assert.assertNull(con.tryReadInt());
+		Assert.assertNull(con.tryReadLong());
+		Assert.assertNull(con.tryReadDouble());
+		Assert.assertNull(con.tryReadBytesByLength(3));
+		Assert.assertNull(con.tryReadByteBufferByLength(3));
+		Assert.assertNull(con.tryReadStringByLength(3));
+		Assert.assertNull(con.tryReadStringByDelimiter("\r\n"));
+		Assert.assertNull(con.tryReadBytesByDelimiter("\r\n", 100));
+		Assert.assertNull(con.tryReadByteBufferByDelimiter("\r\n", 100));
+		
+		con.write("line one\r\n");
+		con.flush();
+		
+		String line = null;
+		for (int i = 0; (line == null) && (i < 100); i++) {
+			line = con.tryReadStringByDelimiter("\r\n");
+			if (line == null) {
+				QAUtil.sleep(20);
+			}
+		}
+		Assert.assertEquals("line one", line);
+		
+		// the echo handler returns the data after receiving the delimiter  
+		con.write(66);
+		con.write(77L);
+		con.write("\r\n");
+		con.flush();
+		
+		Integer i = null;
+		for (int j = 0; (i == null) && (j < 100); j++) {
+			i = con.tryReadInt();
+			if (i == null) {
+				QAUtil.sleep(20);
+			}
+		}
+		Assert.assertEquals(Integer.valueOf(66), i);
+		
+		// partial data is not consumed 
+		Assert.assertNull(con.tryReadBytesByLength(11));
+		Assert.assertEquals(Long.valueOf(77), con.tryReadLong());
+		Assert.assertEquals("\r\n", con.tryReadStringByLength(2));
+		
+		// max size exceeded 
+		con.write("1234567890\r\n");
+		con.flush();
+		QAUtil.sleep(300);
+		try {
+			con.tryReadStringByDelimiter("\r\n", 5);
+			Assert.fail("MaxReadSizeExceededException expected");
+		} catch (MaxReadSizeExceededException expected) { }
+		Assert.assertEquals("1234567890", con.tryReadStringByDelimiter("\r\n", 100));
+		
+		con.close();
+		
+		try {
+			con.tryReadInt();
+			Assert.fail("ClosedChannelException expected");
+		} catch (ClosedChannelException expected) { }
+		
+		server.close();
+	}
+	
+	
+	@Test
+	public void testStacklessUnderflow() throws Exception {
+		ReadQueue readQueue = new ReadQueue();
+		
+		BufferUnderflowException first = null;
+		try {
+			readQueue.readSingleByteBuffer(4);
+			Assert.fail("BufferUnderflowException expected");
+		} catch (BufferUnderflowException bue) {
+			first = bue;
+		}
+		Assert.assertEquals(0, first.getStackTrace().length);
+		
+		try {
+			readQueue.readByteBufferByDelimiter(new byte[] { 13, 10 }, Integer.MAX_VALUE);
+			Assert.fail("BufferUnderflowException expected");
+		} catch (BufferUnderflowException bue) {
+			// preallocated 
+			Assert.assertSame(first, bue);
+		}
+		
+		Assert.assertNull(readQueue.tryReadSingleByteBuffer(4));
+		Assert.assertNull(readQueue.tryReadByteBufferByLength(4));
+		Assert.assertNull(readQueue.tryReadByteBufferByDelimiter(new byte[] { 13, 10 }, Integer.MAX_VALUE));
+	}
+	
+	
+	
+	private static final class LengthFieldHandler implements IDataHandler {
+		
+		public boolean onData(INonBlockingConnection connection) throws IOException, BufferUnderflowException, MaxReadSizeExceededException {
+			NonBlockingConnection nbc = (NonBlockingConnection) connection;
+			
+			Integer length = (Integer) connection.getAttachment();
+			if (length == null) {
+				length = nbc.tryReadInt();
+				if (length == null) {
+					return true;
+				}
+				connection.setAttachment(length);
+			}
+			
+			String text = nbc.tryReadStringByLength(length);
+			if (text != null) {
+				connection.setAttachment(null);
+				connection.write(text + "\r\n");
+			}
+			return true;
+		}
+	}
+}
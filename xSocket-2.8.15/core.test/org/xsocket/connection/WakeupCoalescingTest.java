@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class WakeupCoalescingTest {
+
+
+	@Test
+	public void testCoalescing() throws Exception {
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", 1);
+		IoSocketDispatcher dispatcher = pool.getDispatchers().get(0);
+		
+		// block the dispatcher thread
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		dispatcher.addKeyUpdateTask(new Runnable() {
+			public void run() {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ignore) { }
+			}
+		});
+		Assert.assertTrue(blocked.await(3, TimeUnit.SECONDS));
+		
+		long wakeups = dispatcher.getNumberOfWakeups();
+		long savedWakeups = dispatcher.getNumberOfSavedWakeups();
+		
+		final AtomicInteger executed = new AtomicInteger(0);
+		final CountDownLatch done = new CountDownLatch(100);
+		for (int i = 0; i < 100; i++) {
+			dispatcher.addKeyUpdateTask(new Runnable() {
+				public void run() {
+					executed.incrementAndGet();
+					done.countDown();
+				}
+			});
+		}
+		
+		release.countDown();
+		Assert.assertTrue(done.await(3, TimeUnit.SECONDS));
+		
+		Assert.assertEquals(100, executed.get());
+		Assert.assertEquals(wakeups + 1, dispatcher.getNumberOfWakeups());
+		Assert.assertEquals(savedWakeups + 99, dispatcher.getNumberOfSavedWakeups());
+		
+		pool.close();
+	}
+	
+	
+	@Test
+	public void testTaskOfDispatcherThread() throws Exception {
+		IoSocketDispatcherPool pool = new IoSocketDispatcherPool("test", 1);
+		final IoSocketDispatcher dispatcher = pool.getDispatchers().get(0);
+		
+		final CountDownLatch innerExecuted = new CountDownLatch(1);
+		final AtomicInteger wakeupsBeforeInner = new AtomicInteger();
+		
+		dispatcher.addKeyUpdateTask(new Runnable() {
+			public void run() {
+				wakeupsBeforeInner.set((int) dispatcher.getNumberOfWakeups());
+				
+				// added by the dispatcher thread itself -> no wake up
+				dispatcher.addKeyUpdateTask(new Runnable() {
+					public void run() {
+						innerExecuted.countDown();
+					}
+				});
+			}
+		});
+		
+		// the inner task has to be executed within the same loop (not after the select timeout) 
+		Assert.assertTrue(innerExecuted.await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(wakeupsBeforeInner.get(), dispatcher.getNumberOfWakeups());
+		Assert.assertTrue(dispatcher.getNumberOfSavedWakeups() >= 1);
+		
+		pool.close();
+	}
+	
+	
+	@Test
+	public void testServer() throws Exception {
+		Server server = new Server(new EchoHandler());
+		server.start();
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		for (int i = 0; i < 100; i++) {
+			con.write("test" + i + "\r\n");
+			Assert.assertEquals("test" + i, con.readStringByDelimiter("\r\n"));
+		}
+		
+		Assert.assertTrue(server.getNumberOfDispatcherWakeups() + server.getNumberOfSavedDispatcherWakeups() > 0);
+
+		con.close();
+		server.close();
+	}
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.DataConverter;
+import org.xsocket.QAUtil;
+import org.xsocket.connection.IConnection.FlushMode;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class WriteQueueAccumulationTest {
+
+
+	@Test
+	public void testAccumulationBuffersAreRecycled() throws Exception {
+		AbstractMemoryManager memoryManager = WriteQueue.getAccumulationMemoryManager();
+		BufferLeakDetector oldDetector = memoryManager.getLeakDetector();
+		
+		BufferLeakDetector detector = new BufferLeakDetector(1);
+		memoryManager.setLeakDetector(detector);
+		try {
+			WriteQueue queue = new WriteQueue();
+			
+			// fill several accumulation buffers
+			int count = (IoProvider.getWriteBufferAccumulationSize() * 5) / 4;
+			for (int i = 0; i < count; i++) {
+				queue.append(i);
+			}
+			Assert.assertTrue(detector.getNumberOfTrackedBuffers() <= 1);
+			
+			ByteBuffer[] buffers = queue.drain();
+			int size = 0;
+			for (ByteBuffer buffer : buffers) {
+				size += buffer.remaining();
+			}
+			Assert.assertEquals(count * 4, size);
+			
+			queue.append(7L);
+			queue.reset();
+			
+			Assert.assertEquals(0, detector.getNumberOfTrackedBuffers());
+			Assert.assertEquals(0, detector.getNumberOfDoubleRecycles());
+			
+			System.gc();
+			detector.checkLeaks();
+			Assert.assertEquals(0, detector.getNumberOfLeaks());
+			
+		} finally {
+			memoryManager.setLeakDetector(oldDetector);
+		}
+	}
+	
+	
+	@Test
+	public void testRecycledTailIsReused() throws Exception {
+		AbstractMemoryManager memoryManager = WriteQueue.getAccumulationMemoryManager();
+		WriteQueue queue = new WriteQueue();
+		
+		queue.append(1);
+		Assert.assertEquals(4, queue.drain()[0].remaining());
+		queue.reset();   // recycles the unused tail of the accumulation buffer
+		
+		long misses = memoryManager.getNumberOfPoolMisses();
+		long allocated = memoryManager.getAllocatedBytes();
+		queue.append(2);
+		Assert.assertEquals(misses, memoryManager.getNumberOfPoolMisses());
+		Assert.assertEquals(allocated, memoryManager.getAllocatedBytes());
+		
+		queue.reset();
+	}
+	
+	
+	@Test
+	public void testRecycledTailTooSmall() throws Exception {
+		AbstractMemoryManager memoryManager = WriteQueue.getAccumulationMemoryManager();
+		BufferLeakDetector oldDetector = memoryManager.getLeakDetector();
+		
+		BufferLeakDetector detector = new BufferLeakDetector(1);
+		memoryManager.setLeakDetector(detector);
+		try {
+			WriteQueue queue = new WriteQueue();
+			
+			// leave a tail of 100 bytes
+			int length = IoProvider.getWriteBufferAccumulationSize() - 100;
+			for (int i = 0; i < length; i++) {
+				queue.append((byte) 1);
+			}
+			queue.drain();
+			queue.reset();
+			
+			// the array does not fit into the tail 
+			byte[] data = new byte[200];
+			queue.append(data, 0, data.length);
+			ByteBuffer[] buffers = queue.drain();
+			Assert.assertEquals(1, buffers.length);
+			Assert.assertEquals(data.length, buffers[0].remaining());
+			queue.reset();
+			
+			Assert.assertEquals(0, detector.getNumberOfTrackedBuffers());
+			Assert.assertEquals(0, detector.getNumberOfDoubleRecycles());
+			
+		} finally {
+			memoryManager.setLeakDetector(oldDetector);
+		}
+	}
+	
+	
+	@Test
+	public void testPrimitivesAreSealedIntoOneBuffer() throws Exception {
+		WriteQueue queue = new WriteQueue();
+
+		queue.append((byte) 1);
+		queue.append((short) 2);
+		queue.append(3);
+		queue.append(4L);
+		queue.append(5.0);
+		queue.append(new byte[] { 6, 7 }, 0, 2);
+		Assert.assertEquals(1 + 2 + 4 + 8 + 8 + 2, queue.getSize());
+		Assert.assertFalse(queue.isEmpty());
+
+		ByteBuffer[] buffers = queue.drain();
+		Assert.assertEquals(1, buffers.length);
+
+		ByteBuffer buffer = buffers[0];
+		Assert.assertEquals(1, buffer.get());
+		Assert.assertEquals(2, buffer.getShort());
+		Assert.assertEquals(3, buffer.getInt());
+		Assert.assertEquals(4L, buffer.getLong());
+		Assert.assertEquals(5.0, buffer.getDouble(), 0);
+		Assert.assertEquals(6, buffer.get());
+		Assert.assertEquals(7, buffer.get());
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+
+	@Test
+	public void testOrder() throws Exception {
+		WriteQueue queue = new WriteQueue();
+
+		queue.append(1);
+		queue.append(DataConverter.toByteBuffer(2));
+		queue.append(3);
+
+		ByteBuffer[] buffers = queue.drain();
+		Assert.assertEquals(3, buffers.length);
+		Assert.assertEquals(1, buffers[0].getInt());
+		Assert.assertEquals(2, buffers[1].getInt());
+		Assert.assertEquals(3, buffers[2].getInt());
+
+		// sealed data will not be overwritten by subsequent writes
+		queue.append(4);
+		buffers[0].rewind();
+		Assert.assertEquals(1, buffers[0].getInt());
+		Assert.assertEquals(4, queue.drain()[0].getInt());
+	}
+
+
+	@Test
+	public void testAccumulationBufferFull() throws Exception {
+		WriteQueue queue = new WriteQueue();
+
+		int count = (IoProvider.getWriteBufferAccumulationSize() / 8) * 3;
+		for (int i = 0; i < count; i++) {
+			queue.append((long) i);
+		}
+		Assert.assertEquals(count * 8, queue.getSize());
+
+		ByteBuffer[] buffers = queue.drain();
+		Assert.assertTrue(buffers.length > 1);
+
+		ByteBuffer buffer = DataConverter.toByteBuffer(buffers);
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals(i, buffer.getLong());
+		}
+	}
+
+
+	@Test
+	public void testLargeArrayIsNotCopied() throws Exception {
+		WriteQueue queue = new WriteQueue();
+
+		byte[] bytes = QAUtil.generateByteArray(IoProvider.getWriteBufferAccumulationSize());
+		queue.append(bytes, 0, bytes.length);
+
+		ByteBuffer[] buffers = queue.drain();
+		Assert.assertEquals(1, buffers.length);
+		Assert.assertSame(bytes, buffers[0].array());
+	}
+
+
+	@Test
+	public void testWriteMark() throws Exception {
+		WriteQueue queue = new WriteQueue();
+
+		queue.append(1);
+		queue.markWritePosition();
+		queue.append(0);
+		queue.append(3);
+		queue.resetToWriteMark();
+		queue.append(2);
+		queue.removeWriteMark();
+
+		ByteBuffer buffer = DataConverter.toByteBuffer(queue.drain());
+		Assert.assertEquals(1, buffer.getInt());
+		Assert.assertEquals(2, buffer.getInt());
+		Assert.assertEquals(3, buffer.getInt());
+	}
+
+
+	@Test
+	public void testConnection() throws Exception {
+		IServer server = new Server(new RawEchoHandler());
+		server.start();
+
+		IBlockingConnection con = new BlockingConnection("localhost", server.getLocalPort());
+		con.setAutoflush(false);
+		con.setFlushmode(FlushMode.ASYNC);
+
+		for (int j = 0; j < 10; j++) {
+			for (int i = 0; i < 1000; i++) {
+				con.write(i);
+				con.write((byte) 7);
+				con.write((long) i);
+			}
+			con.flush();
+
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertEquals(i, con.readInt());
+				Assert.assertEquals(7, con.readByte());
+				Assert.assertEquals(i, con.readLong());
+			}
+		}
+
+		con.close();
+		server.close();
+	}
+
+
+	private static final class RawEchoHandler implements IDataHandler {
+
+		public boolean onData(INonBlockingConnection connection) throws IOException {
+			connection.write(connection.readByteBufferByLength(connection.available()));
+			return true;
+		}
+	}
+}
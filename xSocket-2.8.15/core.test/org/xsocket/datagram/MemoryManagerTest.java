@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.datagram;
+
+
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xsocket.QAUtil;
+
+
+
+/**
+*
+* @author grro@xsocket.org
+*/
+public final class MemoryManagerTest {
+
+
+	@Test
+	public void testPacketBufferIsReused() throws Exception {
+		for (boolean isDirect : new boolean[] { false, true }) {
+			MemoryManager memoryManager = new MemoryManager(4, isDirect);
+	
+			ByteBuffer packetBuffer = memoryManager.acquireMemory(1000);
+			Assert.assertEquals(1000, packetBuffer.remaining());
+			Assert.assertEquals(1000, packetBuffer.capacity());
+	
+			packetBuffer.put(new byte[] { 1, 2, 3 });
+			ByteBuffer data = memoryManager.extractReceivedData(packetBuffer);
+			Assert.assertEquals(3, data.remaining());
+			Assert.assertEquals(3, data.capacity());
+			Assert.assertEquals(1, data.get(0));
+			
+			memoryManager.recycleMemory(packetBuffer);
+			Assert.assertEquals(1, memoryManager.getNumberOfPooledBuffers());
+	
+			ByteBuffer packetBuffer2 = memoryManager.acquireMemory(1000);
+			Assert.assertSame(packetBuffer, packetBuffer2);
+			Assert.assertEquals(1000, packetBuffer2.remaining());
+			Assert.assertEquals(0, memoryManager.getNumberOfPooledBuffers());
+			Assert.assertEquals(1, memoryManager.getNumberOfAllocations());
+		}
+	}
+
+
+	@Test
+	public void testUnrecycledBufferIsNotReused() throws Exception {
+		MemoryManager memoryManager = new MemoryManager(4, false);
+
+		ByteBuffer packetBuffer = memoryManager.acquireMemory(1000);
+		packetBuffer.put(new byte[] { 1, 2, 3 });
+		ByteBuffer data = memoryManager.extractReceivedData(packetBuffer);
+
+		ByteBuffer packetBuffer2 = memoryManager.acquireMemory(1000);
+		Assert.assertNotSame(packetBuffer, packetBuffer2);
+		packetBuffer2.put(new byte[] { 9, 9, 9 });
+		memoryManager.extractReceivedData(packetBuffer2);
+
+		Assert.assertEquals(1, data.get());
+		Assert.assertEquals(2, data.get());
+		Assert.assertEquals(3, data.get());
+		Assert.assertEquals(2, memoryManager.getNumberOfAllocations());
+	}
+
+
+	@Test
+	public void testReceiveSizeChanged() throws Exception {
+		MemoryManager memoryManager = new MemoryManager(4, false);
+
+		memoryManager.recycleMemory(memoryManager.acquireMemory(1000));
+		Assert.assertEquals(1, memoryManager.getNumberOfPooledBuffers());
+
+		// pooled buffers of the former receive size will be dropped 
+		ByteBuffer packetBuffer = memoryManager.acquireMemory(500);
+		Assert.assertEquals(500, packetBuffer.capacity());
+		Assert.assertEquals(0, memoryManager.getNumberOfPooledBuffers());
+		Assert.assertEquals(2, memoryManager.getNumberOfAllocations());
+	}
+
+
+	@Test
+	public void testMaxPooledBuffers() throws Exception {
+		MemoryManager memoryManager = new MemoryManager(2, false);
+
+		for (int i = 0; i < 3; i++) {
+			memoryManager.recycleMemory(ByteBuffer.allocate(100));
+		}
+		Assert.assertEquals(2, memoryManager.getNumberOfPooledBuffers());
+	}
+
+
+	@Test
+	public void testReleaseDatagram() throws Exception {
+		MemoryManager memoryManager = new MemoryManager(4, false);
+
+		ByteBuffer packetBuffer = memoryManager.acquireMemory(1000);
+		packetBuffer.put(new byte[] { 1, 2, 3 });
+		UserDatagram datagram = new UserDatagram(null, memoryManager.extractReceivedData(packetBuffer), "UTF-8", memoryManager, packetBuffer);
+		Assert.assertEquals(3, datagram.getSize());
+		
+		datagram.release();
+		Assert.assertEquals(1, memoryManager.getNumberOfPooledBuffers());
+		Assert.assertEquals(0, datagram.getSize());
+		
+		// releasing twice has no effect 
+		datagram.release();
+		Assert.assertEquals(1, memoryManager.getNumberOfPooledBuffers());
+	}
+
+
+	@Test
+	public void testEndpoint() throws Exception {
+		Endpoint e1 = new Endpoint(0);
+		e1.setReceiveSize(100);
+
+		IEndpoint e2 = new Endpoint();
+
+		for (int i = 0; i < 10; i++) {
+			byte[] data = QAUtil.generateByteArray(50 + i);
+			e2.send(new UserDatagram(new InetSocketAddress("localhost", e1.getLocalPort()), data));
+
+			UserDatagram received = e1.receive(1000);
+			Assert.assertNotNull(received);
+			Assert.assertTrue(QAUtil.isEquals(data, received.readBytes()));
+			received.release();
+		}
+		
+		// the packet buffer has been reused  
+		Assert.assertTrue(e1.getMemoryManager().getNumberOfAllocations() < 10);
+
+		e1.close();
+		e2.close();
+	}
+}
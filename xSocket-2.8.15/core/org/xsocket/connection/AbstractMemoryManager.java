@@ -49,6 +49,18 @@ abstract class AbstractMemoryManager {
 	private int minPreallocatedBufferSize = 1;
 	private boolean preallocate = false;
 	
+	// leak detection (null, if deactivated)
+	private BufferLeakDetector leakDetector = IoProvider.getBufferLeakDetector();
+	
+	// statistics (not synchronized. The values could be slightly inaccurate, if the memory manager is used by concurrent threads) 
+	private long countPoolHits = 0;
+	private long countPoolMisses = 0;
+	private long countHeapAllocations = 0;
+	private long countDirectAllocations = 0;
+	private long allocatedBytes = 0;
+	private long countRecycleRejections = 0;
+	private long countClearedSoftReferences = 0;
+	
 	
 	
 	/**
@@ -78,7 +90,14 @@ abstract class AbstractMemoryManager {
 	 * 
 	 * @throws IOException if an exception occurs
 	 */
-	public abstract ByteBuffer acquireMemoryStandardSizeOrPreallocated(int standardsize) throws IOException;
+	public final ByteBuffer acquireMemoryStandardSizeOrPreallocated(int standardsize) throws IOException {
+		ByteBuffer buffer = acquirePreallocatedMemory(standardsize);
+		
+		if (leakDetector != null) {
+			leakDetector.onAcquired(buffer);
+		}
+		return buffer;
+	}
 	
 
 	
@@ -89,7 +108,32 @@ abstract class AbstractMemoryManager {
 	 * 
 	 * @param buffer  the ByteBuffer to recycle 
 	 */
-	public abstract void recycleMemory(ByteBuffer buffer);
+	public final void recycleMemory(ByteBuffer buffer) {
+		if (leakDetector != null) {
+			leakDetector.onRecycled(buffer);
+		}
+		
+		recyclePreallocatedMemory(buffer);
+	}
+	
+	
+	/**
+	 * acquire ByteBuffer with free memory (implementation of {@link AbstractMemoryManager#acquireMemoryStandardSizeOrPreallocated(int)})
+	 *
+	 * @param standardsize the standard size
+	 * @return the ByteBuffer with free memory 
+	 * 
+	 * @throws IOException if an exception occurs
+	 */
+	protected abstract ByteBuffer acquirePreallocatedMemory(int standardsize) throws IOException;
+	
+	
+	/**
+	 * recycle a ByteBuffer (implementation of {@link AbstractMemoryManager#recycleMemory(ByteBuffer)})
+	 * 
+	 * @param buffer  the ByteBuffer to recycle 
+	 */
+	protected abstract void recyclePreallocatedMemory(ByteBuffer buffer);
 
 	
 
@@ -170,6 +214,11 @@ abstract class AbstractMemoryManager {
 	 */
 	public final ByteBuffer extractAndRecycleMemory(ByteBuffer buffer, int read) {
 		
+		// the buffer is consumed, even though the remaining part will not be recycled 
+		if (leakDetector != null) {
+			leakDetector.onRecycled(buffer);
+		}
+		
 		ByteBuffer readData = null;
 		
 		if (read > 0) {
@@ -188,14 +237,14 @@ abstract class AbstractMemoryManager {
 			
 				// 回收利用内存
 				// 子类实现
-				recycleMemory(buffer);
+				recyclePreallocatedMemory(buffer);
 			}
 			
 		} else {
 			readData = ByteBuffer.allocate(0);
 			
 			if (preallocate) {
-				recycleMemory(buffer);
+				recyclePreallocatedMemory(buffer);
 			}
 		}
 		
@@ -209,6 +258,16 @@ abstract class AbstractMemoryManager {
 	 * {@inheritDoc}
 	 */
 	public final ByteBuffer acquireMemoryMinSize(int minSize) throws IOException {
+		ByteBuffer buffer = acquireMinSize(minSize);
+		
+		if (leakDetector != null) {
+			leakDetector.onAcquired(buffer);
+		}
+		return buffer;
+	}
+	
+	
+	private ByteBuffer acquireMinSize(int minSize) throws IOException {
 		
 		// preallocation mode?
 		if (preallocate) {
@@ -216,15 +275,17 @@ abstract class AbstractMemoryManager {
 			// ... yes, but is required size larger than preallocation size?
 			if (preallocationSize < minSize) {
 				// ... yes. create a new buffer
+				countPoolMiss();
 				return newBuffer(minSize);
 				
 			// ... no, call method to get preallocated buffer first 
 			} else {
-				ByteBuffer buffer = acquireMemoryStandardSizeOrPreallocated(minSize);
+				ByteBuffer buffer = acquirePreallocatedMemory(minSize);
 				
 				// buffer to small?
 				if (buffer.remaining() < minSize) {
 					// yes, create a new one
+					countPoolMiss();
 					return newBuffer(minSize);
 				}
 				return buffer;
@@ -232,11 +293,89 @@ abstract class AbstractMemoryManager {
 			
 		// .. no 	
 		} else {
+			countPoolMiss();
 			return newBuffer(minSize);
 		}
 	}
 	
 	
+	/**
+	 * counts an acquire, which has been served by free (preallocated or recycled) memory 
+	 */
+	protected final void countPoolHit() {
+		countPoolHits++;
+	}
+	
+	/**
+	 * counts an acquire, which requires to allocate new memory 
+	 */
+	protected final void countPoolMiss() {
+		countPoolMisses++;
+	}
+	
+	/**
+	 * counts a buffer, which has not been recycled because it is too small 
+	 */
+	protected final void countRecycleRejection() {
+		countRecycleRejections++;
+	}
+	
+	/**
+	 * counts a free buffer, which has been cleared by the gc 
+	 */
+	protected final void countClearedSoftReference() {
+		countClearedSoftReferences++;
+	}
+	
+	final long getNumberOfPoolHits() {
+		return countPoolHits;
+	}
+	
+	final long getNumberOfPoolMisses() {
+		return countPoolMisses;
+	}
+	
+	final long getNumberOfHeapAllocations() {
+		return countHeapAllocations;
+	}
+	
+	final long getNumberOfDirectAllocations() {
+		return countDirectAllocations;
+	}
+	
+	final long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+	
+	final long getNumberOfRecycleRejections() {
+		return countRecycleRejections;
+	}
+	
+	final long getNumberOfClearedSoftReferences() {
+		return countClearedSoftReferences;
+	}
+	
+	
+	/**
+	 * sets the leak detector 
+	 * 
+	 * @param leakDetector  the leak detector or null
+	 */
+	final void setLeakDetector(BufferLeakDetector leakDetector) {
+		this.leakDetector = leakDetector;
+	}
+	
+	
+	/**
+	 * returns the leak detector
+	 * 
+	 * @return the leak detector or null
+	 */
+	final BufferLeakDetector getLeakDetector() {
+		return leakDetector;
+	}
+	
+	
 	/**
 	 * creates a new buffer
 	 * @param size  the size of the new buffer
@@ -250,7 +389,10 @@ abstract class AbstractMemoryManager {
 	
     private ByteBuffer newBuffer(int size, boolean isUseDirect) throws IOException {
         try {
+            allocatedBytes += size;
+            
             if (isUseDirect) {
+                countDirectAllocations++;
                 if (LOG.isLoggable(Level.FINE)) {
                     LOG.fine("allocating " + DataConverter.toFormatedBytesSize(size) + " direct memory");
                 }
@@ -258,6 +400,7 @@ abstract class AbstractMemoryManager {
                 return ByteBuffer.allocateDirect(size);
     
             } else {
+                countHeapAllocations++;
                 if (LOG.isLoggable(Level.FINE)) {
                     LOG.fine("allocating " + DataConverter.toFormatedBytesSize(size) + " heap memory");
                 }
@@ -289,7 +432,8 @@ abstract class AbstractMemoryManager {
 		StringBuilder sb = new StringBuilder();
 		sb.append("useDirect=" + useDirectMemory + " preallocationOn=" 
 				  + preallocate + " preallcoationSize=" + DataConverter.toFormatedBytesSize(preallocationSize)
-				  + " preallocatedMinSize=" + DataConverter.toFormatedBytesSize(minPreallocatedBufferSize));		
+				  + " preallocatedMinSize=" + DataConverter.toFormatedBytesSize(minPreallocatedBufferSize)
+				  + " hits=" + countPoolHits + " misses=" + countPoolMisses + " allocated=" + DataConverter.toFormatedBytesSize(allocatedBytes));		
 		return sb.toString();
 	}
 }
\ No newline at end of file
@@ -604,6 +604,50 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	}
 
 
+	/**
+	 * read a read-only view of the data by using a delimiter. The received buffers will not be copied  
+	 * 
+	 * @param delimiter   the delimiter
+	 * @return the read-only view
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws BufferUnderflowException if not enough data is available 
+ 	 * @throws ClosedChannelException If the stream is closed   
+	 */
+	public CompositeByteBuffer readCompositeByteBufferByDelimiter(String delimiter) throws IOException, BufferUnderflowException, ClosedChannelException {
+		return new CompositeByteBuffer(readByteBufferByDelimiter(delimiter));
+	}
+	
+	
+	/**
+	 * read a read-only view of the data by using a delimiter. The received buffers will not be copied  
+	 * 
+	 * @param delimiter   the delimiter
+	 * @param maxLength   the max length of bytes that should be read. If the limit is exceeded a MaxReadSizeExceededException will been thrown
+	 * @return the read-only view
+	 * @throws MaxReadSizeExceededException If the max read length has been exceeded and the delimiter hasn't been found     
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws BufferUnderflowException if not enough data is available 
+ 	 * @throws ClosedChannelException If the stream is closed   
+	 */
+	public CompositeByteBuffer readCompositeByteBufferByDelimiter(String delimiter, int maxLength) throws IOException, BufferUnderflowException, MaxReadSizeExceededException, ClosedChannelException {
+		return new CompositeByteBuffer(readByteBufferByDelimiter(delimiter, maxLength));
+	}
+	
+	
+	/**
+	 * read a read-only view of the data by using a length. The received buffers will not be copied  
+	 * 
+	 * @param length   the length
+	 * @return the read-only view
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws BufferUnderflowException if not enough data is available 
+ 	 * @throws ClosedChannelException If the stream is closed   
+	 */
+	public CompositeByteBuffer readCompositeByteBufferByLength(int length) throws IOException, BufferUnderflowException, ClosedChannelException {
+		return new CompositeByteBuffer(readByteBufferByLength(length));
+	}
+
+
 	/**
 	 * read a byte array by using a delimiter
 	 * 
@@ -883,8 +927,263 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 			}
 		}
 	}
+	
 
 
+	/**
+	 * tries to read a byte. In contrast to {@link #readByte()} no exception will be 
+	 * thrown, if not enough data is available  
+	 * 
+	 * @return the byte or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public Byte tryReadByte() throws IOException, ClosedChannelException {
+		ByteBuffer buffer = tryReadSingleByteBuffer(1);
+		return (buffer == null) ? null : buffer.get();
+	}
+	
+	
+	/**
+	 * tries to read a short. In contrast to {@link #readShort()} no exception will be 
+	 * thrown, if not enough data is available  
+	 * 
+	 * @return the short or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public Short tryReadShort() throws IOException, ClosedChannelException {
+		ByteBuffer buffer = tryReadSingleByteBuffer(2);
+		return (buffer == null) ? null : buffer.getShort();
+	}
+	
+	
+	/**
+	 * tries to read an int. In contrast to {@link #readInt()} no exception will be 
+	 * thrown, if not enough data is available  
+	 * 
+	 * @return the int or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public Integer tryReadInt() throws IOException, ClosedChannelException {
+		ByteBuffer buffer = tryReadSingleByteBuffer(4);
+		return (buffer == null) ? null : buffer.getInt();
+	}
+	
+	
+	/**
+	 * tries to read a long. In contrast to {@link #readLong()} no exception will be 
+	 * thrown, if not enough data is available  
+	 * 
+	 * @return the long or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public Long tryReadLong() throws IOException, ClosedChannelException {
+		ByteBuffer buffer = tryReadSingleByteBuffer(8);
+		return (buffer == null) ? null : buffer.getLong();
+	}
+	
+	
+	/**
+	 * tries to read a double. In contrast to {@link #readDouble()} no exception will be 
+	 * thrown, if not enough data is available  
+	 * 
+	 * @return the double or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public Double tryReadDouble() throws IOException, ClosedChannelException {
+		ByteBuffer buffer = tryReadSingleByteBuffer(8);
+		return (buffer == null) ? null : buffer.getDouble();
+	}
+	
+	
+	/**
+	 * tries to read a ByteBuffer by using a length. In contrast to {@link #readByteBufferByLength(int)} 
+	 * no exception will be thrown, if not enough data is available  
+	 * 
+	 * @param length   the length 
+	 * @return the ByteBuffer or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public ByteBuffer[] tryReadByteBufferByLength(int length) throws IOException, ClosedChannelException {
+		ensureStreamIsOpen();
+		
+		if (length <= 0) {
+			if (!isMoreInputDataExpected()) {
+				closeSilence();
+				throw new ClosedChannelException();
+			}
+			
+			return onRead(new ByteBuffer[0]);
+		}
+		
+		int version = getReadBufferVersion();
+		ByteBuffer[] buffers = readQueue.tryReadByteBufferByLength(length);
+		if (buffers == null) {
+			onInsufficientData(version);
+			return null;
+		}
+		
+		return onRead(buffers);
+	}
+	
+	
+	/**
+	 * tries to read a ByteBuffer by using a delimiter. In contrast to {@link #readByteBufferByDelimiter(String, int)} 
+	 * no exception will be thrown, if the delimiter has not been found  
+	 * 
+	 * @param delimiter   the delimiter
+	 * @param maxLength   the max length of bytes that should be read. If the limit is exceeded a MaxReadSizeExceededException will been thrown	 
+	 * @return the ByteBuffer or <code>null</code>, if the delimiter has not been found 
+	 * @throws MaxReadSizeExceededException If the max read length has been exceeded and the delimiter hasn't been found     
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public ByteBuffer[] tryReadByteBufferByDelimiter(String delimiter, int maxLength) throws IOException, MaxReadSizeExceededException, ClosedChannelException {
+		ensureStreamIsOpen();
+		
+		int version = getReadBufferVersion();
+		try {
+			ByteBuffer[] buffers = readQueue.tryReadByteBufferByDelimiter(delimiter.getBytes(getEncoding()), maxLength);
+			if (buffers == null) {
+				onInsufficientData(version);
+				return null;
+			}
+			
+			return onRead(buffers);
+			
+		} catch (MaxReadSizeExceededException mre) {
+			if (isMoreInputDataExpected()) {
+				throw mre;
+
+			} else {
+				closeSilence();
+				throw new ClosedChannelException();
+			}
+		}
+	}
+
+	
+	/**
+	 * tries to read bytes by using a length. In contrast to {@link #readBytesByLength(int)} 
+	 * no exception will be thrown, if not enough data is available  
+	 * 
+	 * @param length   the length 
+	 * @return the bytes or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public byte[] tryReadBytesByLength(int length) throws IOException, ClosedChannelException {
+		ByteBuffer[] buffers = tryReadByteBufferByLength(length);
+		return (buffers == null) ? null : DataConverter.toBytes(buffers);
+	}
+	
+	
+	/**
+	 * tries to read bytes by using a delimiter. In contrast to {@link #readBytesByDelimiter(String, int)} 
+	 * no exception will be thrown, if the delimiter has not been found  
+	 * 
+	 * @param delimiter   the delimiter
+	 * @param maxLength   the max length of bytes that should be read. If the limit is exceeded a MaxReadSizeExceededException will been thrown	 
+	 * @return the bytes or <code>null</code>, if the delimiter has not been found 
+	 * @throws MaxReadSizeExceededException If the max read length has been exceeded and the delimiter hasn't been found     
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public byte[] tryReadBytesByDelimiter(String delimiter, int maxLength) throws IOException, MaxReadSizeExceededException, ClosedChannelException {
+		ByteBuffer[] buffers = tryReadByteBufferByDelimiter(delimiter, maxLength);
+		return (buffers == null) ? null : DataConverter.toBytes(buffers);
+	}
+	
+	
+	/**
+	 * tries to read a string by using a length. In contrast to {@link #readStringByLength(int)} 
+	 * no exception will be thrown, if not enough data is available  
+	 * 
+	 * @param length   the amount of bytes to read 
+	 * @return the string or <code>null</code>, if not enough data is available
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws UnsupportedEncodingException if the default encoding is not supported 
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public String tryReadStringByLength(int length) throws IOException, UnsupportedEncodingException, ClosedChannelException {
+		ByteBuffer[] buffers = tryReadByteBufferByLength(length);
+		return (buffers == null) ? null : DataConverter.toString(buffers, getEncoding());
+	}
+	
+	
+	/**
+	 * tries to read a string by using a delimiter. In contrast to {@link #readStringByDelimiter(String)} 
+	 * no exception will be thrown, if the delimiter has not been found  
+	 * 
+	 * @param delimiter   the delimiter
+	 * @return the string or <code>null</code>, if the delimiter has not been found 
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws UnsupportedEncodingException if the default encoding is not supported 
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public String tryReadStringByDelimiter(String delimiter) throws IOException, UnsupportedEncodingException, ClosedChannelException {
+		return tryReadStringByDelimiter(delimiter, Integer.MAX_VALUE);
+	}
+	
+	
+	/**
+	 * tries to read a string by using a delimiter. In contrast to {@link #readStringByDelimiter(String, int)} 
+	 * no exception will be thrown, if the delimiter has not been found  
+	 * 
+	 * @param delimiter   the delimiter
+	 * @param maxLength   the max length of bytes that should be read. If the limit is exceeded a MaxReadSizeExceededException will been thrown	 
+	 * @return the string or <code>null</code>, if the delimiter has not been found 
+	 * @throws MaxReadSizeExceededException If the max read length has been exceeded and the delimiter hasn't been found     
+	 * @throws IOException If some other I/O error occurs
+ 	 * @throws UnsupportedEncodingException if the default encoding is not supported 
+ 	 * @throws ClosedChannelException If the stream is closed  
+	 */
+	public String tryReadStringByDelimiter(String delimiter, int maxLength) throws IOException, UnsupportedEncodingException, MaxReadSizeExceededException, ClosedChannelException {
+		ByteBuffer[] buffers = tryReadByteBufferByDelimiter(delimiter, maxLength);
+		return (buffers == null) ? null : DataConverter.toString(buffers, getEncoding());
+	}
+	
+	
+	/**
+	 * tries to read a byte buffer by length. If the underlying data is fragmented over several ByteBuffer,
+	 * the ByteBuffers will be merged
+	 * 
+	 * @param length   the length 
+	 * @return the byte buffer or <code>null</code>, if not enough data is available
+     * @throws IOException If some other I/O error occurs
+ 	 * @throws ClosedChannelException If the stream is closed   
+	 */
+	protected ByteBuffer tryReadSingleByteBuffer(int length) throws IOException, ClosedChannelException {
+		ensureStreamIsOpen();
+		
+		int version = getReadBufferVersion();
+		ByteBuffer buffer = readQueue.tryReadSingleByteBuffer(length);
+		if (buffer == null) {
+			onInsufficientData(version);
+			return null;
+		}
+		
+		return DataConverter.toByteBuffer(new ByteBuffer[] { buffer });
+	}
+	
+	
+	/**
+	 * closes the stream, if not enough data is available and no more data will be received
+	 * (same behaviour as the read methods on a BufferUnderflowException)   
+	 */
+	private void onInsufficientData(int version) throws ClosedChannelException {
+		if (!isMoreInputDataExpected() && (version == getReadBufferVersion())) {
+			closeSilence();
+			throw new ClosedChannelException();
+		}
+	}
+	
+
 
 
 	/**
@@ -899,7 +1198,7 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	public int write(byte b) throws IOException, BufferOverflowException, ClosedChannelException {
 		ensureStreamIsOpenAndWritable();
 		
-		writeQueue.append(DataConverter.toByteBuffer(b));
+		writeQueue.append(b);
 		onWriteDataInserted();
 
 		return 1;
@@ -919,7 +1218,7 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 		ensureStreamIsOpenAndWritable();
 
 		if (bytes.length > 0) {
-			writeQueue.append(DataConverter.toByteBuffer(bytes));
+			writeQueue.append(bytes, 0, bytes.length);
 			onWriteDataInserted();
 
 			return bytes.length;
@@ -948,13 +1247,10 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 		ensureStreamIsOpenAndWritable();
 		
 		if (bytes.length > 0) {
-			ByteBuffer buffer = DataConverter.toByteBuffer(bytes, offset, length);
-			int written = buffer.remaining();
-
-			writeQueue.append(buffer);
+			writeQueue.append(bytes, offset, length);
 			onWriteDataInserted();
 			
-			return written;
+			return length;
 		} else {
 			if (LOG.isLoggable(Level.FINE)) {
 				LOG.fine("warning length of buffer array to send is 0");
@@ -978,7 +1274,7 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	public int write(short s) throws IOException, BufferOverflowException, ClosedChannelException {
 		ensureStreamIsOpenAndWritable();
 		
-		writeQueue.append(DataConverter.toByteBuffer(s));
+		writeQueue.append(s);
 		onWriteDataInserted();
 
 		return 2;
@@ -998,7 +1294,7 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	public int write(int i) throws IOException, BufferOverflowException, ClosedChannelException {
 		ensureStreamIsOpenAndWritable();
 		
-		writeQueue.append(DataConverter.toByteBuffer(i));
+		writeQueue.append(i);
 		onWriteDataInserted();
 
 		return 4;
@@ -1017,7 +1313,7 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	public final int write(long l) throws IOException, BufferOverflowException, ClosedChannelException {
 		ensureStreamIsOpenAndWritable();
 		
-		writeQueue.append(DataConverter.toByteBuffer(l));
+		writeQueue.append(l);
 		onWriteDataInserted();
 
 		return 8;
@@ -1037,7 +1333,7 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	public int write(double d) throws IOException, BufferOverflowException, ClosedChannelException {
 		ensureStreamIsOpenAndWritable();
 			
-		writeQueue.append(DataConverter.toByteBuffer(d));
+		writeQueue.append(d);
 		onWriteDataInserted();
 
 		return 8;
@@ -1412,6 +1708,14 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	}
 
 
+	/**
+	 * discards the unwritten data of the write buffer. Pooled buffers will be released 
+	 */
+	protected final void discardWriteBuffer() {
+		writeQueue.reset();
+	}
+	
+	
 	/**
 	 * resets the stream
 	 * 
@@ -1493,6 +1797,22 @@ public abstract class AbstractNonBlockingStream implements WritableByteChannel,
 	}
 
 
+	/**
+	 * sets the single consumer mode of the read buffer. In this mode the read 
+	 * operations will not be synchronized 
+	 * 
+	 * @param isSingleConsumer  true, if only one thread at the same time reads
+	 */
+	protected final void setReadBufferSingleConsumer(boolean isSingleConsumer) {
+		readQueue.setSingleConsumer(isSingleConsumer);
+	}
+	
+	
+	final boolean isReadBufferSingleConsumer() {
+		return readQueue.isSingleConsumer();
+	}
+	
+
 	/**
 	 * returns if the read buffer is empty
 	 * 
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+
+/**
+ * Predicts the size of the next socket read based on the previous reads. The read size
+ * will be doubled, if the read buffer has been filled completely. It will be halved, if two
+ * subsequent reads would also have fit into the half size. The size is always a power of two.
+ *
+ * The predictor is not thread-safe. It is intended to be used by the dispatcher thread only
+ *
+ * @author grro@xsocket.org
+ */
+final class AdaptiveReadSizePredictor {
+
+	private final int minShift;
+	private final int maxShift;
+
+	private int shift;
+	private boolean decreaseNow = false;
+
+
+
+	/**
+	 * constructor
+	 *
+	 * @param minSize      the min read size
+	 * @param initialSize  the initial read size
+	 * @param maxSize      the max read size
+	 */
+	AdaptiveReadSizePredictor(int minSize, int initialSize, int maxSize) {
+		minShift = IoSlabMemoryManager.shiftOf(minSize);
+		maxShift = Math.max(minShift, IoSlabMemoryManager.shiftOf(maxSize));
+		shift = Math.min(maxShift, Math.max(minShift, IoSlabMemoryManager.shiftOf(initialSize)));
+	}
+
+
+	/**
+	 * returns the size of the next read
+	 *
+	 * @return the size of the next read
+	 */
+	int getNextReadSize() {
+		return 1 << shift;
+	}
+
+
+	/**
+	 * records the size of the last read, which has been performed with the predicted size
+	 *
+	 * @param read  the number of read bytes
+	 */
+	void record(int read) {
+		record(read, getNextReadSize());
+	}
+
+
+	/**
+	 * records the size of the last read
+	 *
+	 * @param read          the number of read bytes
+	 * @param readCapacity  the number of bytes, which could have been read (the remaining of the read buffer)
+	 */
+	void record(int read, int readCapacity) {
+
+		// buffer filled completely 
+		if (read >= readCapacity) {
+			decreaseNow = false;
+			
+			// increase, if the buffer has provided the predicted size. A smaller (leftover) buffer 
+			// which has been filled completely gives no information about the required size  
+			if ((readCapacity >= (1 << shift)) && (shift < maxShift)) {
+				shift++;
+			}
+
+		// would fit into the half size?
+		} else if ((shift > minShift) && (read <= (1 << (shift - 1)))) {
+			if (decreaseNow) {
+				shift--;
+				decreaseNow = false;
+			} else {
+				decreaseNow = true;
+			}
+
+		} else {
+			decreaseNow = false;
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return Integer.toString(getNextReadSize());
+	}
+}
@@ -1234,7 +1234,7 @@ public class BlockingConnection implements IBlockingConnection {
                             if (rbe.getRevision() != delegate.getReadBufferVersion()) {
                                 continue;
                             } else { 
-                                throw new BufferUnderflowException();  // "jump" into catch (BufferUnderflowException)
+                                throw StacklessBufferUnderflowException.INSTANCE;  // "jump" into catch (BufferUnderflowException)
                             }
                         }
                     }
@@ -1311,5 +1311,11 @@ public class BlockingConnection implements IBlockingConnection {
         public int getRevision() {
             return revision;
         }
+        
+        // the exception is used for control flow only -> no stack trace  
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
     }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.xsocket.DataConverter;
+
+
+
+/**
+ * Sampling detector of buffer misuse. Every n-th acquired buffer will be tracked
+ * by recording the acquiring stack. A warning will be logged, if a tracked buffer becomes
+ * unreachable without being recycled (leak), or if a tracked buffer is recycled twice without
+ * being acquired again (double recycle).
+ *
+ * The detector is activated by setting a sampling interval by using the system property
+ * <code>org.xsocket.connection.memory.leakDetection.samplingInterval</code>. If it is not set,
+ * no detector is created and the memory managers perform a null check only
+ *
+ * @author grro@xsocket.org
+ */
+final class BufferLeakDetector {
+
+	private static final Logger LOG = Logger.getLogger(BufferLeakDetector.class.getName());
+
+	private final int samplingInterval;
+
+	// the sampling counter is not synchronized. A lost update affects the sampling rate only
+	private int countAcquired = 0;
+
+	// tracked buffers, keyed by identity hash code (the ByteBuffer hashCode depends on the content)
+	private final Map<Integer, List<TrackedBuffer>> acquired = new HashMap<Integer, List<TrackedBuffer>>();
+	private final Map<Integer, List<TrackedBuffer>> recycled = new HashMap<Integer, List<TrackedBuffer>>();
+	private final ReferenceQueue<ByteBuffer> unreachableQueue = new ReferenceQueue<ByteBuffer>();
+
+	// statistics
+	private long countLeaks = 0;
+	private long countDoubleRecycles = 0;
+
+
+
+	/**
+	 * constructor
+	 *
+	 * @param samplingInterval  the sampling interval (1 = track each buffer)
+	 */
+	BufferLeakDetector(int samplingInterval) {
+		if (samplingInterval < 1) {
+			throw new IllegalArgumentException("sampling interval has to be larger than 0 (" + samplingInterval + ")");
+		}
+		this.samplingInterval = samplingInterval;
+	}
+
+
+	/**
+	 * notifies that a buffer has been acquired
+	 *
+	 * @param buffer  the acquired buffer
+	 */
+	void onAcquired(ByteBuffer buffer) {
+		boolean isSampled = ((++countAcquired % samplingInterval) == 0);
+
+		synchronized (this) {
+			expungeUnreachable();
+
+			Integer key = System.identityHashCode(buffer);
+
+			// the buffer is reused -> remove the recycled entry
+			remove(recycled, key, buffer);
+
+			if (isSampled) {
+				add(acquired, key, new TrackedBuffer(key, buffer, new Throwable("buffer acquired"), unreachableQueue));
+			}
+		}
+	}
+
+
+	/**
+	 * notifies that a buffer has been recycled (or has been consumed)
+	 *
+	 * @param buffer  the recycled buffer
+	 */
+	void onRecycled(ByteBuffer buffer) {
+
+		synchronized (this) {
+			expungeUnreachable();
+
+			Integer key = System.identityHashCode(buffer);
+
+			TrackedBuffer trackedBuffer = remove(acquired, key, buffer);
+			if (trackedBuffer != null) {
+
+				// a recycled buffer will not be reported as leak
+				TrackedBuffer recycledBuffer = new TrackedBuffer(key, buffer, new Throwable("buffer recycled"), null);
+				recycledBuffer.acquireStack = trackedBuffer.acquireStack;
+				trackedBuffer.clear();
+
+				add(recycled, key, recycledBuffer);
+				return;
+			}
+
+			TrackedBuffer recycledBuffer = find(recycled, key, buffer);
+			if (recycledBuffer != null) {
+				countDoubleRecycles++;
+
+				if (LOG.isLoggable(Level.WARNING)) {
+					LOG.log(Level.WARNING, "buffer (" + DataConverter.toFormatedBytesSize(buffer.capacity()) + ") recycled twice. buffer has been acquired at", recycledBuffer.acquireStack);
+					LOG.log(Level.WARNING, "buffer has been recycled first at", recycledBuffer.recycleStack);
+					LOG.log(Level.WARNING, "buffer has been recycled again at", new Throwable("buffer recycled again"));
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * checks for leaked buffers, which have become unreachable
+	 */
+	synchronized void checkLeaks() {
+		expungeUnreachable();
+	}
+
+
+	private void expungeUnreachable() {
+		TrackedBuffer trackedBuffer = (TrackedBuffer) unreachableQueue.poll();
+		while (trackedBuffer != null) {
+
+			// still registered as acquired -> has never been recycled
+			List<TrackedBuffer> buffers = acquired.get(trackedBuffer.key);
+			if ((buffers != null) && buffers.remove(trackedBuffer)) {
+				if (buffers.isEmpty()) {
+					acquired.remove(trackedBuffer.key);
+				}
+
+				countLeaks++;
+				LOG.log(Level.WARNING, "buffer (" + DataConverter.toFormatedBytesSize(trackedBuffer.capacity) + ") has been garbage collected without being recycled. buffer has been acquired at", trackedBuffer.acquireStack);
+			}
+
+			trackedBuffer = (TrackedBuffer) unreachableQueue.poll();
+		}
+
+		// remove garbage collected recycle entries
+		if (!recycled.isEmpty() && ((countAcquired % 1024) == 0)) {
+			for (List<TrackedBuffer> buffers : new ArrayList<List<TrackedBuffer>>(recycled.values())) {
+				for (TrackedBuffer buffer : new ArrayList<TrackedBuffer>(buffers)) {
+					if (buffer.get() == null) {
+						remove(recycled, buffer.key, buffer);
+					}
+				}
+			}
+		}
+	}
+
+
+	private static void add(Map<Integer, List<TrackedBuffer>> map, Integer key, TrackedBuffer trackedBuffer) {
+		List<TrackedBuffer> buffers = map.get(key);
+		if (buffers == null) {
+			buffers = new ArrayList<TrackedBuffer>(1);
+			map.put(key, buffers);
+		}
+		buffers.add(trackedBuffer);
+	}
+
+
+	private static TrackedBuffer find(Map<Integer, List<TrackedBuffer>> map, Integer key, ByteBuffer buffer) {
+		List<TrackedBuffer> buffers = map.get(key);
+		if (buffers != null) {
+			for (TrackedBuffer trackedBuffer : buffers) {
+				if (trackedBuffer.get() == buffer) {
+					return trackedBuffer;
+				}
+			}
+		}
+		return null;
+	}
+
+
+	private static TrackedBuffer remove(Map<Integer, List<TrackedBuffer>> map, Integer key, Object buffer) {
+		List<TrackedBuffer> buffers = map.get(key);
+		if (buffers != null) {
+			for (int i = 0; i < buffers.size(); i++) {
+				TrackedBuffer trackedBuffer = buffers.get(i);
+				if ((trackedBuffer == buffer) || (trackedBuffer.get() == buffer)) {
+					buffers.remove(i);
+					if (buffers.isEmpty()) {
+						map.remove(key);
+					}
+					return trackedBuffer;
+				}
+			}
+		}
+		return null;
+	}
+
+
+	int getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	synchronized int getNumberOfTrackedBuffers() {
+		int count = 0;
+		for (List<TrackedBuffer> buffers : acquired.values()) {
+			count += buffers.size();
+		}
+		return count;
+	}
+
+	synchronized long getNumberOfLeaks() {
+		return countLeaks;
+	}
+
+	synchronized long getNumberOfDoubleRecycles() {
+		return countDoubleRecycles;
+	}
+
+
+	@Override
+	public String toString() {
+		return "samplingInterval=" + samplingInterval + " tracked=" + getNumberOfTrackedBuffers() + " leaks=" + getNumberOfLeaks() + " doubleRecycles=" + getNumberOfDoubleRecycles();
+	}
+
+
+
+	private static final class TrackedBuffer extends WeakReference<ByteBuffer> {
+
+		private final Integer key;
+		private final int capacity;
+		private Throwable acquireStack;
+		private final Throwable recycleStack;
+
+		TrackedBuffer(Integer key, ByteBuffer buffer, Throwable stack, ReferenceQueue<ByteBuffer> queue) {
+			super(buffer, queue);
+			this.key = key;
+			this.capacity = buffer.capacity();
+
+			if (queue == null) {
+				recycleStack = stack;
+			} else {
+				acquireStack = stack;
+				recycleStack = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.util.TimerTask;
+
+
+
+/**
+ * Coarse grained clock for hot path timestamping (e.g. the last time data has been 
+ * received or sent). Reading the clock is a volatile read only. The clock will be 
+ * updated by each dispatcher loop iteration and by a tick task of the xIoTimer, which 
+ * bounds the staleness if all dispatchers are blocked within select. Code which requires 
+ * precise time has to use <code>System.currentTimeMillis()</code>        
+ *
+ * <br/><br/><b>This is a xSocket internal class and subject to change</b>
+ *
+ * @author grro@xsocket.org
+ */
+final class CoarseClock {
+	
+	private static final boolean IS_ACTIVATED = IoProvider.isCoarseClockOn();
+	
+	private static volatile long currentMillis = System.currentTimeMillis();
+	
+	static {
+		if (IS_ACTIVATED) {
+			long tickMillis = IoProvider.getCoarseClockTickMillis();
+			IoProvider.getTimer().scheduleAtFixedRate(new TickTask(), tickMillis, tickMillis);
+		}
+	}
+	
+	
+	private CoarseClock() { }
+	
+	
+	/**
+	 * returns the current time in millis. If the coarse clock is activated the 
+	 * returned time could be stale by the tick period of the clock   
+	 * 
+	 * @return the current time in millis 
+	 */
+	static long currentTimeMillis() {
+		if (IS_ACTIVATED) {
+			return currentMillis;
+		} else {
+			return System.currentTimeMillis();
+		}
+	}
+	
+	
+	/**
+	 * updates the clock 
+	 */
+	static void update() {
+		if (IS_ACTIVATED) {
+			currentMillis = System.currentTimeMillis();
+		}
+	}
+	
+	
+	static boolean isActivated() {
+		return IS_ACTIVATED;
+	}
+	
+	
+	private static final class TickTask extends TimerTask {
+		
+		@Override
+		public void run() {
+			currentMillis = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.xsocket.DataConverter;
+
+
+
+/**
+ * Read-only view of a sequence of byte buffers. The view provides random access, primitive 
+ * getters, search and slicing over the underlying buffers (e.g. the received network chunks) 
+ * without copying them. A record, which spans multiple received chunks, can be parsed in place  
+ * 
+ * <pre>
+ *  ...
+ *  public boolean onData(INonBlockingConnection connection) throws IOException {
+ *     CompositeByteBuffer header = new CompositeByteBuffer(connection.readByteBufferByDelimiter("\r\n\r\n"));
+ *     int idx = header.indexOf((byte) ':');
+ *     ... 
+ *  }
+ * </pre>
+ * 
+ * {@link NonBlockingConnection} provides the shortcuts <code>readCompositeByteBufferByDelimiter</code>
+ * and <code>readCompositeByteBufferByLength</code>. 
+ * 
+ * All indexes are relative to the start of the view. The primitive getters use the network 
+ * byte order (big endian). The view holds read-only duplicates of the given buffers, so  
+ * the positions and limits of the given buffers are not affected. A view is not thread-safe     
+ * 
+ * @author grro@xsocket.org
+ */
+public final class CompositeByteBuffer {
+	
+	private static final ByteBuffer[] EMPTY_BUFFERS = new ByteBuffer[0]; 
+	
+	// fragments
+	private final ByteBuffer[] fragments;
+	private final int[] offsets;	// view index of the first byte of each fragment (offsets[fragments.length] = length)
+	private final int length;
+	
+	// cache of the last accessed fragment (sequential access)
+	private int lastFragment = 0;
+
+	
+	/**
+	 * constructor 
+	 * 
+	 * @param buffers  the buffers (the remaining bytes of each buffer become part of the view)
+	 */
+	public CompositeByteBuffer(ByteBuffer... buffers) {
+		if (buffers == null) {
+			buffers = EMPTY_BUFFERS;
+		}
+		
+		int count = 0;
+		for (ByteBuffer buffer : buffers) {
+			if ((buffer != null) && buffer.hasRemaining()) {
+				count++;
+			}
+		}
+		
+		fragments = new ByteBuffer[count];
+		offsets = new int[count + 1];
+		
+		int size = 0;
+		int i = 0;
+		for (ByteBuffer buffer : buffers) {
+			if ((buffer != null) && buffer.hasRemaining()) {
+				// slice of a read-only duplicate -> fragment starts at index 0 and uses big endian  
+				fragments[i] = buffer.asReadOnlyBuffer().slice();
+				offsets[i] = size;
+				size += fragments[i].remaining();
+				i++;
+			}
+		}
+		offsets[count] = size;
+		length = size;
+	}
+	
+
+	private CompositeByteBuffer(ByteBuffer[] fragments, int[] offsets) {
+		this.fragments = fragments;
+		this.offsets = offsets;
+		this.length = offsets[fragments.length];
+	}
+	
+	
+	/**
+	 * returns the number of bytes of the view
+	 * 
+	 * @return the number of bytes
+	 */
+	public int length() {
+		return length;
+	}
+	
+	
+	/**
+	 * returns the byte at the given index
+	 *  
+	 * @param index  the index
+	 * @return the byte
+	 * @throws IndexOutOfBoundsException if the index is out of range 
+	 */
+	public byte get(int index) throws IndexOutOfBoundsException {
+		checkRange(index, 1);
+		int i = fragmentOf(index);
+		return fragments[i].get(index - offsets[i]);
+	}
+	
+	
+	/**
+	 * copies bytes of the view into the given array 
+	 *  
+	 * @param index   the index of the first byte to copy 
+	 * @param dst     the destination array
+	 * @param offset  the offset within the destination array
+	 * @param size    the number of bytes to copy
+	 * @throws IndexOutOfBoundsException if the range is out of the view or the array 
+	 */
+	public void get(int index, byte[] dst, int offset, int size) throws IndexOutOfBoundsException {
+		checkRange(index, size);
+		if ((offset < 0) || (offset + size > dst.length)) {
+			throw new IndexOutOfBoundsException("offset " + offset + " size " + size + " array length " + dst.length);
+		}
+		if (size == 0) {
+			return;
+		}
+		
+		int i = fragmentOf(index);
+		int pos = index - offsets[i];
+		while (size > 0) {
+			ByteBuffer fragment = fragments[i].duplicate();
+			int toCopy = Math.min(size, fragment.limit() - pos);
+			fragment.position(pos);
+			fragment.get(dst, offset, toCopy);
+			
+			offset += toCopy;
+			size -= toCopy;
+			i++;
+			pos = 0;
+		}
+	}
+	
+	
+	/**
+	 * returns the short (big endian) at the given index
+	 *  
+	 * @param index  the index
+	 * @return the short
+	 * @throws IndexOutOfBoundsException if the index is out of range 
+	 */
+	public short getShort(int index) throws IndexOutOfBoundsException {
+		checkRange(index, 2);
+		int i = fragmentOf(index);
+		if (index + 2 <= offsets[i + 1]) {
+			return fragments[i].getShort(index - offsets[i]);
+		}
+		return (short) getSpanning(index, 2);
+	}
+	
+	
+	/**
+	 * returns the int (big endian) at the given index
+	 *  
+	 * @param index  the index
+	 * @return the int
+	 * @throws IndexOutOfBoundsException if the index is out of range 
+	 */
+	public int getInt(int index) throws IndexOutOfBoundsException {
+		checkRange(index, 4);
+		int i = fragmentOf(index);
+		if (index + 4 <= offsets[i + 1]) {
+			return fragments[i].getInt(index - offsets[i]);
+		}
+		return (int) getSpanning(index, 4);
+	}
+	
+	
+	/**
+	 * returns the long (big endian) at the given index
+	 *  
+	 * @param index  the index
+	 * @return the long
+	 * @throws IndexOutOfBoundsException if the index is out of range 
+	 */
+	public long getLong(int index) throws IndexOutOfBoundsException {
+		checkRange(index, 8);
+		int i = fragmentOf(index);
+		if (index + 8 <= offsets[i + 1]) {
+			return fragments[i].getLong(index - offsets[i]);
+		}
+		return getSpanning(index, 8);
+	}
+	
+	
+	/**
+	 * returns the float (big endian) at the given index
+	 *  
+	 * @param index  the index
+	 * @return the float
+	 * @throws IndexOutOfBoundsException if the index is out of range 
+	 */
+	public float getFloat(int index) throws IndexOutOfBoundsException {
+		return Float.intBitsToFloat(getInt(index));
+	}
+	
+	
+	/**
+	 * returns the double (big endian) at the given index
+	 *  
+	 * @param index  the index
+	 * @return the double
+	 * @throws IndexOutOfBoundsException if the index is out of range 
+	 */
+	public double getDouble(int index) throws IndexOutOfBoundsException {
+		return Double.longBitsToDouble(getLong(index));
+	}
+	
+	
+	// reads a value, which spans multiple fragments
+	private long getSpanning(int index, int size) {
+		long value = 0;
+		int i = fragmentOf(index);
+		int pos = index - offsets[i];
+		for (int j = 0; j < size; j++) {
+			if (pos == fragments[i].limit()) {
+				i++;
+				pos = 0;
+			}
+			value = (value << 8) | (fragments[i].get(pos++) & 0xFF);
+		}
+		return value;
+	}
+	
+	
+	/**
+	 * returns the index of the first occurrence of the byte or -1
+	 * 
+	 * @param b  the byte to search 
+	 * @return the index or -1
+	 */
+	public int indexOf(byte b) {
+		return indexOf(b, 0);
+	}
+	
+	
+	/**
+	 * returns the index of the first occurrence of the byte, starting at the given index, or -1
+	 * 
+	 * @param b          the byte to search 
+	 * @param fromIndex  the index to start the search
+	 * @return the index or -1
+	 */
+	public int indexOf(byte b, int fromIndex) {
+		if (fromIndex < 0) {
+			fromIndex = 0;
+		}
+		if (fromIndex >= length) {
+			return -1;
+		}
+		
+		for (int i = fragmentOf(fromIndex); i < fragments.length; i++) {
+			int from = Math.max(fromIndex - offsets[i], 0);
+			int found = DelimiterScanner.indexOf(fragments[i], from, fragments[i].limit(), b);
+			if (found >= 0) {
+				lastFragment = i;
+				return offsets[i] + found;
+			}
+		}
+		return -1;
+	}
+	
+	
+	/**
+	 * returns the index of the first occurrence of the byte sequence or -1
+	 * 
+	 * @param bytes  the byte sequence to search 
+	 * @return the index or -1
+	 */
+	public int indexOf(byte[] bytes) {
+		return indexOf(bytes, 0);
+	}
+	
+	
+	/**
+	 * returns the index of the first occurrence of the byte sequence, starting at the given index, or -1. 
+	 * The sequence can span multiple fragments
+	 * 
+	 * @param bytes      the byte sequence to search 
+	 * @param fromIndex  the index to start the search
+	 * @return the index or -1
+	 */
+	public int indexOf(byte[] bytes, int fromIndex) {
+		if (bytes.length == 0) {
+			return (fromIndex <= length) ? Math.max(fromIndex, 0) : -1;
+		}
+		
+		int lastCandidate = length - bytes.length;
+		int candidate = indexOf(bytes[0], fromIndex);
+		while ((candidate >= 0) && (candidate <= lastCandidate)) {
+			if (isMatching(candidate, bytes)) {
+				return candidate;
+			}
+			candidate = indexOf(bytes[0], candidate + 1);
+		}
+		return -1;
+	}
+	
+	
+	private boolean isMatching(int index, byte[] bytes) {
+		int i = fragmentOf(index);
+		int pos = index - offsets[i];
+		for (int j = 1; j < bytes.length; j++) {
+			pos++;
+			if (pos == fragments[i].limit()) {
+				i++;
+				pos = 0;
+			}
+			if (fragments[i].get(pos) != bytes[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * returns a view of the given range. The underlying buffers will not be copied  
+	 * 
+	 * @param index  the index of the first byte
+	 * @param size   the number of bytes
+	 * @return the view of the range
+	 * @throws IndexOutOfBoundsException if the range is out of the view
+	 */
+	public CompositeByteBuffer slice(int index, int size) throws IndexOutOfBoundsException {
+		checkRange(index, size);
+		if (size == 0) {
+			return new CompositeByteBuffer(EMPTY_BUFFERS, new int[] { 0 });
+		}
+		
+		int first = fragmentOf(index);
+		int last = fragmentOf(index + size - 1);
+		
+		ByteBuffer[] sliceFragments = new ByteBuffer[last - first + 1];
+		int[] sliceOffsets = new int[sliceFragments.length + 1];
+		
+		for (int i = first; i <= last; i++) {
+			int from = Math.max(index, offsets[i]) - offsets[i];
+			int to = Math.min(index + size, offsets[i + 1]) - offsets[i];
+			
+			ByteBuffer fragment = fragments[i];
+			if ((from > 0) || (to < fragment.limit())) {
+				fragment = fragment.duplicate();
+				fragment.position(from);
+				fragment.limit(to);
+				fragment = fragment.slice();
+			}
+			sliceFragments[i - first] = fragment;
+			sliceOffsets[i - first + 1] = sliceOffsets[i - first] + (to - from);
+		}
+		
+		return new CompositeByteBuffer(sliceFragments, sliceOffsets);
+	}
+	
+	
+	/**
+	 * returns the underlying buffers as read-only buffers. The buffers will not be copied 
+	 * 
+	 * @return the read-only buffers
+	 */
+	public ByteBuffer[] toByteBuffers() {
+		ByteBuffer[] buffers = new ByteBuffer[fragments.length];
+		for (int i = 0; i < fragments.length; i++) {
+			buffers[i] = fragments[i].duplicate();
+		}
+		return buffers;
+	}
+	
+	
+	/**
+	 * returns a copy of the bytes 
+	 * 
+	 * @return the copied bytes
+	 */
+	public byte[] toBytes() {
+		byte[] bytes = new byte[length];
+		get(0, bytes, 0, length);
+		return bytes;
+	}
+	
+	
+	/**
+	 * returns the bytes as string 
+	 * 
+	 * @param encoding  the encoding 
+	 * @return the string
+	 * @throws UnsupportedEncodingException if the encoding is not supported
+	 */
+	public String toString(String encoding) throws UnsupportedEncodingException {
+		return DataConverter.toString(toByteBuffers(), encoding);
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "length=" + length + " fragments=" + fragments.length;
+	}
+	
+	
+	private void checkRange(int index, int size) {
+		if ((index < 0) || (size < 0) || (index + size > length)) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + size + " length " + length);
+		}
+	}
+	
+	
+	/**
+	 * returns the fragment, which contains the index (the index has to be valid)    
+	 */
+	private int fragmentOf(int index) {
+		
+		// same fragment as the last access?
+		int i = lastFragment;
+		if ((index >= offsets[i]) && (index < offsets[i + 1])) {
+			return i;
+		}
+		
+		// .. or the next one (sequential access)?
+		i++;
+		if ((i < fragments.length) && (index >= offsets[i]) && (index < offsets[i + 1])) {
+			lastFragment = i;
+			return i;
+		}
+		
+		// binary search
+		int low = 0;
+		int high = fragments.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (offsets[mid] <= index) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		
+		lastFragment = low;
+		return low;
+	}
+}
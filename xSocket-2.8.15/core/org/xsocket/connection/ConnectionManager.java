@@ -21,11 +21,12 @@
 package org.xsocket.connection;
 
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,7 +36,8 @@ import org.xsocket.DataConverter;
 /**
  * 连接管理.	</br></br>
  * 
- * Connection manager 
+ * Connection manager. The idle and connection timeouts will be driven by the 
+ * {@link TimingWheel} instead of periodically scanning all connections  
  *
  * @author grro@xsocket.org
  */
@@ -45,16 +47,12 @@ final class ConnectionManager {
 	
 
 	// connections
-	private final ArrayList<WeakReference<TimeoutMgmHandle>> handles = new ArrayList<WeakReference<TimeoutMgmHandle>>();
+	private final HashSet<WeakReference<TimeoutMgmHandle>> handles = new HashSet<WeakReference<TimeoutMgmHandle>>();
+	private final ReferenceQueue<TimeoutMgmHandle> collectedHandles = new ReferenceQueue<TimeoutMgmHandle>();
 	
 	
-	
-    // watch dog
-	// 默认监视连接间隔时间：1分钟
-    private static final long DEFAULT_WATCHDOG_PERIOD_CONNECTION_CHECK_MILLISTION_CHECK_MILLIS =  1L * 60L * 1000L;
-    private long watchDogPeriodConCheckMillis = DEFAULT_WATCHDOG_PERIOD_CONNECTION_CHECK_MILLISTION_CHECK_MILLIS;
-    private WachdogTask conCheckWatchDogTask = null;
-	private int watchDogRuns;
+	// timeouts 
+	private final TimingWheel timingWheel;
 
 
 	private int countIdleTimeouts;
@@ -64,7 +62,12 @@ final class ConnectionManager {
 	
 	
 	public ConnectionManager() {
-		updateTimeoutCheckPeriod(watchDogPeriodConCheckMillis);
+		this(IoProvider.getTimingWheel());
+	}
+	
+	
+	ConnectionManager(TimingWheel timingWheel) {
+		this.timingWheel = timingWheel;
 	}
 
 	
@@ -73,10 +76,11 @@ final class ConnectionManager {
 	 * 一个连接注册一个.	</br>
 	 */
 	public TimeoutMgmHandle register(NonBlockingConnection connection) {
+		purgeCollected();
+		
 		TimeoutMgmHandle mgnCon = new TimeoutMgmHandle(connection);
 		
 		WeakReference<TimeoutMgmHandle> ref = mgnCon.getWeakRef();
-		System.out.println("ref：" + ref);
 		if (ref != null) {
 		    synchronized (handles) {
 		        handles.add(ref);
@@ -95,55 +99,62 @@ final class ConnectionManager {
 		return mgnCon;
 	}
 	
-	long getWatchDogPeriodMillis() {
-		return watchDogPeriodConCheckMillis;
-	}
 	
-	int getWatchDogRuns() {
-		return watchDogRuns;
+	TimingWheel getTimingWheel() {
+		return timingWheel;
 	}
 	
 		
 	private void remove(WeakReference<TimeoutMgmHandle> handleRef) {
+		boolean isRemoved = false;
 	    synchronized (handles) {
-	        handles.remove(handleRef);
+	        isRemoved = handles.remove(handleRef);
         }
 		
-		currentSize.decrementAndGet();
+	    if (isRemoved) {
+	    	currentSize.decrementAndGet();
+	    }
 		
 		if (LOG.isLoggable(Level.FINE)) {
 		    TimeoutMgmHandle hdl = handleRef.get();
 		    if (hdl != null) {
 		        INonBlockingConnection con = hdl.getConnection();
 		        if (con != null) {
-		            LOG.fine("[" + con.getId() + "] handle deregistered (connections size=" + computeSize() + ")");
+		            LOG.fine("[" + con.getId() + "] handle deregistered (connections size=" + getSize() + ")");
 		        }
 		    } 
 		}
 	}
 	
 	
-	int getSize() {
-		return currentSize.get();
+	/**
+	 * removes the handles of connections which have been garbage collected without been closed  
+	 */
+	@SuppressWarnings("unchecked")
+	private void purgeCollected() {
+		Reference<? extends TimeoutMgmHandle> ref = collectedHandles.poll();
+		while (ref != null) {
+			remove((WeakReference<TimeoutMgmHandle>) ref);
+			ref = collectedHandles.poll();
+		}
 	}
 	
 	
-	private int computeSize() {
-        synchronized (handles) {
-            int size = handles.size();
-            currentSize.set(size);
-            return size;
-        }
+	int getSize() {
+		return currentSize.get();
 	}
+	
 
 	
 	@SuppressWarnings("unchecked")
 	Set<NonBlockingConnection> getConnections() {
+		purgeCollected();
+		
 		final Set<NonBlockingConnection> cons = new HashSet<NonBlockingConnection>();
 		
 		ArrayList<WeakReference<TimeoutMgmHandle>> connectionsCopy = null;
 		synchronized (handles) {
-			 connectionsCopy = (ArrayList<WeakReference<TimeoutMgmHandle>>) handles.clone();
+			 connectionsCopy = new ArrayList<WeakReference<TimeoutMgmHandle>>(handles);
 		}
 		
 		for (WeakReference<TimeoutMgmHandle> handleRef : connectionsCopy) {
@@ -164,13 +175,6 @@ final class ConnectionManager {
 	
 	void close() {
 		
-		// closing watch dog
-		if (conCheckWatchDogTask != null) {
-		    conCheckWatchDogTask.cancel();
-		    conCheckWatchDogTask = null;
-		}
-
-		
 		// close open connections
 		try {
 			for (NonBlockingConnection connection : getConnections()) {
@@ -189,8 +193,20 @@ final class ConnectionManager {
         }
 
 		
-		// clear handle list 
-		handles.clear();
+		// cancel the pending timeouts and clear handle list 
+		ArrayList<WeakReference<TimeoutMgmHandle>> connectionsCopy = null;
+		synchronized (handles) {
+			connectionsCopy = new ArrayList<WeakReference<TimeoutMgmHandle>>(handles);
+			handles.clear();
+		}
+		
+		for (WeakReference<TimeoutMgmHandle> handleRef : connectionsCopy) {
+			TimeoutMgmHandle handle = handleRef.get();
+			if (handle != null) {
+				handle.cancelTimeouts();
+			}
+		}
+		currentSize.set(0);
 	}
 	
 	
@@ -203,105 +219,45 @@ final class ConnectionManager {
 		return countConnectionTimeouts;
 	}
     
-	void updateTimeoutCheckPeriod(long requiredMinPeriod) {
 
-        // if non watchdog task already exists and the required period is smaller than current one -> return
-        if ((conCheckWatchDogTask != null) && (watchDogPeriodConCheckMillis <= requiredMinPeriod)) {
-            return;
-        }
-
-        // set watch dog period
-        watchDogPeriodConCheckMillis = requiredMinPeriod;
-        if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine("update watchdog period " + DataConverter.toFormatedDuration(watchDogPeriodConCheckMillis));
-        }
 
-        
-        synchronized (this) {
-            
-        	// 任务存在,先终止
-            // if watchdog task task already exits -> terminate it
-            if (conCheckWatchDogTask != null) {
-                TimerTask tt = conCheckWatchDogTask;
-                conCheckWatchDogTask = null;
-                tt.cancel();
-            }
-            
-            // create and run new watchdog task
-            // XXX 创建和运行一个新的watchdog任务
-            conCheckWatchDogTask = new WachdogTask();
-            IoProvider.getTimer().schedule(conCheckWatchDogTask, watchDogPeriodConCheckMillis, watchDogPeriodConCheckMillis);
-            
-        }
-	}	
-	
 	/**
-	 * 监视器任务 
+	 * 空闲超时任务. 只持有连接的弱引用  
 	 */
-	private final class WachdogTask extends TimerTask {
-        
-        @Override
-        public void run() {
-            try {
-            	// 检查
-                check();
-            } catch (Exception e) {
-                
-                // eat and log exception 
-                if (LOG.isLoggable(Level.FINE)) {
-                    LOG.fine("error occured by running check: " + e.toString());
-                }
-            }
-        }
+	private final class IdleTimeoutTask implements Runnable {
+		
+		private final WeakReference<TimeoutMgmHandle> handleRef;
+		
+		IdleTimeoutTask(WeakReference<TimeoutMgmHandle> handleRef) {
+			this.handleRef = handleRef;
+		}
+		
+		public void run() {
+			TimeoutMgmHandle handle = handleRef.get();
+			if (handle != null) {
+				handle.onIdleTimeoutExpired();
+			}
+		}
 	}
 	
-	@SuppressWarnings("unchecked")
-	void check() {
+	
+	/**
+	 * 连接超时任务. 只持有连接的弱引用   
+	 */
+	private final class ConnectionTimeoutTask implements Runnable {
 		
-		watchDogRuns++;
+		private final WeakReference<TimeoutMgmHandle> handleRef;
 		
-		long current = System.currentTimeMillis();
-            
-		ArrayList<WeakReference<TimeoutMgmHandle>> connectionsCopy = null;
-		synchronized (handles) {
-		    connectionsCopy = (ArrayList<WeakReference<TimeoutMgmHandle>>) handles.clone();
-		}
-    		
-		for (WeakReference<TimeoutMgmHandle> handleRef : connectionsCopy) {
-            	
-		    TimeoutMgmHandle handle = handleRef.get();
-		    if (handle == null) {
-		        remove(handleRef);
-            		
-		    } else {
-		        NonBlockingConnection con = handle.getConnection();
-		        if (con.isOpen()) {
-		            checkTimeout(con, current);	
-	            		
-		        } else {
-		            remove(handleRef);
-		        }
-		    }
+		ConnectionTimeoutTask(WeakReference<TimeoutMgmHandle> handleRef) {
+			this.handleRef = handleRef;
 		}
 		
-		computeSize();
-    }
-    
-	
-
-
-	private void checkTimeout(NonBlockingConnection connection, long current) {
-
-
-       boolean timeoutOccured = connection.checkIdleTimeout(current);
-       if (timeoutOccured) {
-           countIdleTimeouts++;
-       }
-
-       timeoutOccured = connection.checkConnectionTimeout(current);
-       if (timeoutOccured) {
-           countConnectionTimeouts++;
-       }
+		public void run() {
+			TimeoutMgmHandle handle = handleRef.get();
+			if (handle != null) {
+				handle.onConnectionTimeoutExpired();
+			}
+		}
 	}
    
 
@@ -314,9 +270,16 @@ final class ConnectionManager {
 		private final NonBlockingConnection con;
 		private WeakReference<TimeoutMgmHandle> handleRef;
 		
+		private final TimingWheel.Timeout idleTimeout;
+		private final TimingWheel.Timeout connectionTimeout;
+		
 		public TimeoutMgmHandle(NonBlockingConnection connection) {
 			con = connection;
-			handleRef = new WeakReference<TimeoutMgmHandle>(this);
+			handleRef = new WeakReference<TimeoutMgmHandle>(this, collectedHandles);
+			
+			// the timeouts hold the weak ref only (connections which are not referenced anymore will be garbage collected)   
+			idleTimeout = timingWheel.newTimeout(new IdleTimeoutTask(handleRef));
+			connectionTimeout = timingWheel.newTimeout(new ConnectionTimeoutTask(handleRef));
 		}
 		
 		WeakReference<TimeoutMgmHandle> getWeakRef() {
@@ -324,11 +287,66 @@ final class ConnectionManager {
 		}
 		
 		
-		void updateCheckPeriod(long period) {
-			updateTimeoutCheckPeriod(period);
+		void scheduleIdleTimeout(long delayMillis) {
+			idleTimeout.schedule(delayMillis);
+		}
+		
+		void cancelIdleTimeout() {
+			idleTimeout.cancel();
+		}
+		
+		void scheduleConnectionTimeout(long delayMillis) {
+			connectionTimeout.schedule(delayMillis);
+		}
+		
+		void cancelConnectionTimeout() {
+			connectionTimeout.cancel();
+		}
+		
+		void cancelTimeouts() {
+			idleTimeout.cancel();
+			connectionTimeout.cancel();
+		}
+		
+		
+		private void onIdleTimeoutExpired() {
+			if (!con.isOpen()) {
+				destroy();
+				return;
+			}
+			
+			long current = System.currentTimeMillis();
+			if (con.checkIdleTimeout(current)) {
+				countIdleTimeouts++;
+			}
+			
+			// data has been received or sent in the meantime, or the timeout is still set after handling it -> reschedule
+			if (con.getIdleTimeoutMillis() != IConnection.MAX_TIMEOUT_MILLIS) {
+				idleTimeout.schedule(con.getRemainingMillisToIdleTimeout(current));
+			}
 		}
 		
-		void destroy() {
+		
+		private void onConnectionTimeoutExpired() {
+			if (!con.isOpen()) {
+				destroy();
+				return;
+			}
+			
+			long current = System.currentTimeMillis();
+			if (con.checkConnectionTimeout(current)) {
+				countConnectionTimeouts++;
+			}
+			
+			if (con.getConnectionTimeoutMillis() != IConnection.MAX_TIMEOUT_MILLIS) {
+				connectionTimeout.schedule(con.getRemainingMillisToConnectionTimeout(current));
+			}
+		}
+		
+		
+		synchronized void destroy() {
+			cancelTimeouts();
+			
 		    if (handleRef != null) {
 		        remove(handleRef);
 		        handleRef = null;
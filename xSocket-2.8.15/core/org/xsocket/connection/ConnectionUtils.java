@@ -102,7 +102,7 @@ public final class ConnectionUtils {
 			if (LOG.isLoggable(Level.FINE)) {
 				LOG.fine("[" + connection.getId() + "]insufficient data. require " + length + " got "  + connection.available());
 			}
-			throw new BufferUnderflowException();
+			throw StacklessBufferUnderflowException.INSTANCE;
 	
 		} else { 
 			// ...yes, remove mark
@@ -163,7 +163,7 @@ public final class ConnectionUtils {
 			if (LOG.isLoggable(Level.FINE)) {
 				LOG.fine("[" + connection.getId() + "]insufficient data. require " + length + " got "  + connection.available());
 			}
-			throw new BufferUnderflowException();
+			throw StacklessBufferUnderflowException.INSTANCE;
 	
 		} else { 
 			// ...yes, remove mark
@@ -773,6 +773,9 @@ public final class ConnectionUtils {
 	    if (handler instanceof HandlerChain) {
 	        return ((HandlerChain) handler).getHandlerInfo();
 	    
+	    } else if (handler instanceof FrameDecoder) {
+	        return ((FrameDecoder) handler).getHandlerInfo();
+	        
 	    } else {
     		HandlerInfo handlerInfo = handlerInfoCache.get(handler.getClass());
     		if (handlerInfo == null) {
@@ -799,6 +802,18 @@ public final class ConnectionUtils {
     }
     
 	
+	
+	/**
+	 * returns true, if the onFrame method of the given frame handler will be performed multithreaded
+	 * 
+	 * @param handler  the frame handler
+	 * @return true, if the onFrame method is multithreaded
+	 */
+	static boolean isFrameHandlerMultithreaded(IFrameHandler handler) {
+		return isMethodThreaded(handler.getClass(), "onFrame", isHandlerMultithreaded(handler), INonBlockingConnection.class, ByteBuffer[].class);
+	}
+	
+	
     /**
      * 方法上没有Execution,则和类的Execution一致.		</br>
      */
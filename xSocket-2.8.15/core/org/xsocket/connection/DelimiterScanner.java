@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+
+/**
+ * Delimiter search engine of the read queue. A single delimiter byte will be searched 8 bytes at 
+ * a time (SWAR) by using word reads of the buffer. Multi byte delimiters will be searched by 
+ * scanning for the first delimiter byte this way and comparing the remaining bytes of the 
+ * candidate. All methods use absolute positions and do not modify the buffer      
+ *
+ * <br/><br/><b>This is a xSocket internal class and subject to change</b>
+ *
+ * @author grro@xsocket.org
+ */
+final class DelimiterScanner {
+	
+	private static final long ONES = 0x0101010101010101L;
+	private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+	
+	private DelimiterScanner() { }
+	
+	
+	/**
+	 * returns the absolute index of the first occurrence of the given byte 
+	 *  
+	 * @param buffer  the buffer
+	 * @param from    the absolute start index (inclusive)
+	 * @param to      the absolute end index (exclusive)
+	 * @param b       the byte to search
+	 * @return the index or -1
+	 */
+	static int indexOf(ByteBuffer buffer, int from, int to, byte b) {
+		int i = from;
+		
+		if ((to - i) >= 8) {
+			boolean isBigEndian = (buffer.order() == ByteOrder.BIG_ENDIAN);
+			long pattern = (b & 0xFFL) * ONES;
+			
+			for (; i <= (to - 8); i += 8) {
+				long x = buffer.getLong(i) ^ pattern;
+				
+				// high bit of each zero byte will be set (exact, no borrow between bytes)  
+				long zeros = ~(((x & LOW7) + LOW7) | x | LOW7);
+				if (zeros != 0) {
+					if (isBigEndian) {
+						return i + (Long.numberOfLeadingZeros(zeros) >>> 3);
+					} else {
+						return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+					}
+				}
+			}
+		}
+		
+		for (; i < to; i++) {
+			if (buffer.get(i) == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	
+	/**
+	 * returns the absolute index of the first complete occurrence of the delimiter
+	 * 
+	 * @param buffer     the buffer
+	 * @param from       the absolute start index (inclusive)
+	 * @param to         the absolute end index (exclusive)
+	 * @param delimiter  the delimiter
+	 * @return the index or -1
+	 */
+	static int indexOf(ByteBuffer buffer, int from, int to, byte[] delimiter) {
+		int length = delimiter.length;
+		if (length == 1) {
+			return indexOf(buffer, from, to, delimiter[0]);
+		}
+		
+		int last = length - 1;
+		
+		// search the first byte and compare the remaining ones 
+		byte firstByte = delimiter[0];
+		int i = from;
+		while (true) {
+			int candidate = indexOf(buffer, i, to - last, firstByte);
+			if (candidate < 0) {
+				return -1;
+			}
+			
+			int j = 1;
+			while ((j < length) && (buffer.get(candidate + j) == delimiter[j])) {
+				j++;
+			}
+			if (j == length) {
+				return candidate;
+			}
+			i = candidate + 1;
+		}
+	}
+	
+	
+	private static boolean isMatching(ByteBuffer buffer, int pos, byte[] delimiter, int length) {
+		for (int j = 0; j < length; j++) {
+			if (buffer.get(pos + j) != delimiter[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * returns the length of the longest delimiter prefix, which is a suffix of the 
+	 * given range. The range has to be shorter than the delimiter
+	 * 
+	 * @param buffer     the buffer
+	 * @param from       the absolute start index (inclusive)
+	 * @param to         the absolute end index (exclusive)
+	 * @param delimiter  the delimiter
+	 * @return the length of the partial match 
+	 */
+	static int getPartialMatchLength(ByteBuffer buffer, int from, int to, byte[] delimiter) {
+		assert ((to - from) < delimiter.length);
+		
+		for (int candidate = from; candidate < to; candidate++) {
+			if (isMatching(buffer, candidate, delimiter, to - candidate)) {
+				return to - candidate;
+			}
+		}
+		return 0;
+	}
+	
+	
+	/**
+	 * creates the failure table (KMP) of the delimiter. Entry i contains the length of the 
+	 * longest proper prefix of delimiter[0..i], which is also a suffix of it    
+	 * 
+	 * @param delimiter  the delimiter
+	 * @return the failure table
+	 */
+	static int[] newFailureTable(byte[] delimiter) {
+		int[] failure = new int[delimiter.length];
+		int k = 0;
+		for (int i = 1; i < delimiter.length; i++) {
+			while ((k > 0) && (delimiter[i] != delimiter[k])) {
+				k = failure[k - 1];
+			}
+			if (delimiter[i] == delimiter[k]) {
+				k++;
+			}
+			failure[i] = k;
+		}
+		return failure;
+	}
+}
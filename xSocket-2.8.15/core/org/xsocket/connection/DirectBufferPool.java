@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Pool of reference counted direct buffers. A pooled buffer will be returned to the pool,
+ * if all of its references have been released. <br><br>
+ *
+ * Writing a pooled buffer by calling {@link INonBlockingConnection#write(ByteBuffer)} hands over
+ * the reference to the connection. The connection releases the buffer, after it has been
+ * written to the socket or the connection has been closed. To write the same content
+ * to more than one connection, a new reference has to be created for each
+ * connection by calling {@link DirectBufferPool#retain(ByteBuffer)}. Example:
+ *
+ * <pre>
+ *  ByteBuffer buffer = pool.acquire(size);
+ *  ...
+ *  buffer.flip();
+ *
+ *  for (INonBlockingConnection con : subscribers) {
+ *     con.write(DirectBufferPool.retain(buffer));
+ *  }
+ *
+ *  DirectBufferPool.release(buffer);
+ * </pre>
+ *
+ * A pooled buffer must not be accessed after it has been released. A reference, which becomes
+ * unreachable without being released, will be released after it has been garbage collected.
+ *
+ * @author grro@xsocket.org
+ */
+public final class DirectBufferPool {
+
+	private static final Logger LOG = Logger.getLogger(DirectBufferPool.class.getName());
+
+	public static final int DEFAULT_SLAB_SIZE = 65536;
+
+
+	// the reference count is held by the chunk. A ByteBuffer can not carry an attachment, so
+	// the chunk of a reference is looked up by the buffer identity. The references are weak keys
+	// and the map is not guarded by a global lock
+	private static final ConcurrentHashMap<IdentityKey, PooledChunk> REFERENCES = new ConcurrentHashMap<IdentityKey, PooledChunk>();
+	private static final ReferenceQueue<ByteBuffer> UNREACHABLE_REFERENCES = new ReferenceQueue<ByteBuffer>();
+	private static final AtomicInteger COUNT_REFERENCES = new AtomicInteger(0);
+
+
+	private final IoSlabMemoryManager memoryManager;
+	private final AtomicInteger countOutstanding = new AtomicInteger(0);
+
+
+
+	/**
+	 * constructor
+	 */
+	public DirectBufferPool() {
+		this(DEFAULT_SLAB_SIZE);
+	}
+
+
+	/**
+	 * constructor
+	 *
+	 * @param slabSize  the size of the memory chunk, which will be allocated to serve smaller buffers
+	 */
+	public DirectBufferPool(int slabSize) {
+		memoryManager = IoSlabMemoryManager.createPreallocatedMemoryManager(slabSize, 1, true);
+	}
+
+
+
+	/**
+	 * acquires a pooled direct buffer. The limit of the returned buffer is set to the given size
+	 *
+	 * @param size  the size
+	 * @return the pooled buffer
+	 * @throws IOException if the buffer could not be allocated
+	 */
+	public ByteBuffer acquire(int size) throws IOException {
+		expungeUnreachable();
+		
+		ByteBuffer root = memoryManager.acquireMemoryStandardSizeOrPreallocated(size);
+		root.clear();
+
+		PooledChunk chunk = new PooledChunk(this, root);
+		countOutstanding.incrementAndGet();
+
+		ByteBuffer buffer = root.duplicate();
+		buffer.limit(size);
+		register(buffer, chunk);
+
+		return buffer;
+	}
+
+
+	/**
+	 * creates a new reference of the pooled buffer. The returned buffer shares the content
+	 * of the given buffer, but has its own position and limit. The new reference has to be released
+	 * separately
+	 *
+	 * @param buffer   the pooled buffer
+	 * @return the new reference
+	 * @throws IllegalArgumentException if the buffer is not a (unreleased) pooled buffer
+	 */
+	public static ByteBuffer retain(ByteBuffer buffer) {
+		expungeUnreachable();
+		
+		PooledChunk chunk = lookup(buffer);
+		if ((chunk == null) || !chunk.retain()) {
+			throw new IllegalArgumentException("buffer is not a pooled buffer or has already been released");
+		}
+
+		ByteBuffer duplicate = buffer.duplicate();
+		register(duplicate, chunk);
+
+		return duplicate;
+	}
+
+
+	/**
+	 * releases the reference of a pooled buffer. The memory will be returned to the pool,
+	 * if the last reference has been released
+	 *
+	 * @param buffer  the buffer
+	 * @return true, if the buffer has been a pooled buffer
+	 */
+	public static boolean release(ByteBuffer buffer) {
+		if ((buffer == null) || !buffer.isDirect() || (COUNT_REFERENCES.get() == 0)) {
+			return false;
+		}
+
+		PooledChunk chunk = REFERENCES.remove(new LookupKey(buffer));
+		if (chunk == null) {
+			return false;
+		}
+
+		COUNT_REFERENCES.decrementAndGet();
+		chunk.release();
+		return true;
+	}
+
+
+	/**
+	 * returns true, if the buffer is an unreleased pooled buffer
+	 *
+	 * @param buffer  the buffer
+	 * @return true, if the buffer is an unreleased pooled buffer
+	 */
+	public static boolean isPooled(ByteBuffer buffer) {
+		return (lookup(buffer) != null);
+	}
+
+
+	/**
+	 * releases the pooled buffers of the given array
+	 *
+	 * @param buffers  the buffers (may contain non pooled buffers)
+	 */
+	static void release(ByteBuffer[] buffers) {
+		if ((buffers == null) || (COUNT_REFERENCES.get() == 0)) {
+			return;
+		}
+
+		for (ByteBuffer buffer : buffers) {
+			release(buffer);
+		}
+	}
+
+
+	private static PooledChunk lookup(ByteBuffer buffer) {
+		if ((buffer == null) || !buffer.isDirect() || (COUNT_REFERENCES.get() == 0)) {
+			return null;
+		}
+		
+		return REFERENCES.get(new LookupKey(buffer));
+	}
+	
+
+	private static void register(ByteBuffer buffer, PooledChunk chunk) {
+		REFERENCES.put(new WeakKey(buffer, chunk, UNREACHABLE_REFERENCES), chunk);
+		COUNT_REFERENCES.incrementAndGet();
+	}
+	
+	
+	/**
+	 * releases the references, which have been garbage collected without being released
+	 */
+	private static void expungeUnreachable() {
+		WeakKey key = (WeakKey) UNREACHABLE_REFERENCES.poll();
+		while (key != null) {
+			if (REFERENCES.remove(key) != null) {
+				COUNT_REFERENCES.decrementAndGet();
+				key.chunk.release();
+				
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("pooled buffer reference has been garbage collected without being released. releasing it");
+				}
+			}
+			
+			key = (WeakKey) UNREACHABLE_REFERENCES.poll();
+		}
+	}
+
+
+	/**
+	 * returns the number of acquired, not yet returned buffers
+	 *
+	 * @return the number of outstanding buffers
+	 */
+	public int getNumberOfOutstandingBuffers() {
+		return countOutstanding.get();
+	}
+
+
+	/**
+	 * returns the size of the free pooled memory
+	 *
+	 * @return the size of the free pooled memory
+	 */
+	public int getFreePoolSize() {
+		return memoryManager.getCurrentSizePreallocatedBuffer();
+	}
+
+
+	private void recycle(ByteBuffer root) {
+		countOutstanding.decrementAndGet();
+
+		// do not pool buffers, which has been allocated outside of a slab
+		if (root.capacity() > memoryManager.getSlabSize()) {
+			return;
+		}
+
+		root.clear();
+		memoryManager.recycleMemory(root);
+
+		if (LOG.isLoggable(Level.FINEST)) {
+			LOG.finest("pooled buffer " + root.capacity() + " bytes returned");
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return "outstanding=" + countOutstanding.get() + " " + memoryManager.toString();
+	}
+
+
+
+	private static final class PooledChunk {
+
+		private final DirectBufferPool pool;
+		private final ByteBuffer root;
+		private final AtomicInteger refCount = new AtomicInteger(1);
+
+		PooledChunk(DirectBufferPool pool, ByteBuffer root) {
+			this.pool = pool;
+			this.root = root;
+		}
+		
+		boolean retain() {
+			int count = refCount.get();
+			while (count > 0) {
+				if (refCount.compareAndSet(count, count + 1)) {
+					return true;
+				}
+				count = refCount.get();
+			}
+			return false;
+		}
+
+		void release() {
+			if (refCount.decrementAndGet() == 0) {
+				pool.recycle(root);
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * identity based key (ByteBuffer#equals and ByteBuffer#hashCode are content based)
+	 */
+	private static interface IdentityKey {
+		
+		ByteBuffer getBuffer();
+	}
+	
+	
+	private static boolean isSameBuffer(IdentityKey key, Object other) {
+		if (other == key) {
+			return true;
+		}
+		
+		if (!(other instanceof IdentityKey)) {
+			return false;
+		}
+		
+		ByteBuffer buffer = key.getBuffer();
+		return (buffer != null) && (buffer == ((IdentityKey) other).getBuffer());
+	}
+	
+	
+	private static final class LookupKey implements IdentityKey {
+		
+		private final ByteBuffer buffer;
+		
+		LookupKey(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		public ByteBuffer getBuffer() {
+			return buffer;
+		}
+		
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(buffer);
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return isSameBuffer(this, other);
+		}
+	}
+	
+	
+	private static final class WeakKey extends WeakReference<ByteBuffer> implements IdentityKey {
+		
+		private final int hash;
+		private final PooledChunk chunk;
+		
+		WeakKey(ByteBuffer buffer, PooledChunk chunk, ReferenceQueue<ByteBuffer> queue) {
+			super(buffer, queue);
+			this.hash = System.identityHashCode(buffer);
+			this.chunk = chunk;
+		}
+		
+		public ByteBuffer getBuffer() {
+			return get();
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return isSameBuffer(this, other);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+
+
+
+/**
+ * Factory of the supported dispatcher assignment strategies: 
+ * <ul>
+ *   <li>roundRobin: the dispatchers will be selected one after the other (default)</li>
+ *   <li>fewestHandles: the dispatcher with the fewest assigned handles will be selected</li>
+ *   <li>lowestLoad: the dispatcher with the lowest load score will be selected. The load score 
+ *       consists of the events and received KB of the last sample period plus the number of assigned handles</li>
+ *   <li>powerOfTwoChoices: two random dispatchers will be compared by the load score, and the 
+ *       lower one will be selected. This avoids scanning all dispatchers and herding on a stale minimum</li>  
+ * </ul>
+ * 
+ * @author grro@xsocket.org
+ */
+final class DispatcherAssignmentStrategies {
+	
+	private static final Logger LOG = Logger.getLogger(DispatcherAssignmentStrategies.class.getName());
+
+	public static final String ROUND_ROBIN = "roundRobin";
+	public static final String FEWEST_HANDLES = "fewestHandles";
+	public static final String LOWEST_LOAD = "lowestLoad";
+	public static final String POWER_OF_TWO_CHOICES = "powerOfTwoChoices";
+	
+
+	private DispatcherAssignmentStrategies() { }
+	
+	
+	/**
+	 * creates a strategy by name. Unknown names results in a round robin strategy 
+	 * 
+	 * @param name  the name of the strategy
+	 * @return the strategy
+	 */
+	static IDispatcherAssignmentStrategy create(String name) {
+		if ((name == null) || name.equalsIgnoreCase(ROUND_ROBIN)) {
+			return new RoundRobinStrategy();
+			
+		} else if (name.equalsIgnoreCase(FEWEST_HANDLES)) {
+			return new FewestHandlesStrategy();
+			
+		} else if (name.equalsIgnoreCase(LOWEST_LOAD)) {
+			return new LowestLoadStrategy();
+			
+		} else if (name.equalsIgnoreCase(POWER_OF_TWO_CHOICES)) {
+			return new PowerOfTwoChoicesStrategy();
+			
+		} else {
+			LOG.warning("unknown dispatcher assignment strategy " + name + " (supported: " + ROUND_ROBIN + ", " + FEWEST_HANDLES + ", " + 
+					    LOWEST_LOAD + ", " + POWER_OF_TWO_CHOICES + "). using " + ROUND_ROBIN);
+			return new RoundRobinStrategy();
+		}
+	}
+	
+	
+	
+	static final class RoundRobinStrategy implements IDispatcherAssignmentStrategy {
+		
+		private final AtomicInteger pointer = new AtomicInteger(); 
+		
+		public IoSocketDispatcher select(IoSocketDispatcher[] dispatchers) {
+			if (dispatchers.length == 0) {
+				return null;
+			}
+			
+			int idx = (pointer.getAndIncrement() & Integer.MAX_VALUE) % dispatchers.length;
+			return dispatchers[idx];
+		}
+		
+		@Override
+		public String toString() {
+			return ROUND_ROBIN;
+		}
+	}
+	
+	
+	static final class FewestHandlesStrategy implements IDispatcherAssignmentStrategy {
+		
+		public IoSocketDispatcher select(IoSocketDispatcher[] dispatchers) {
+			if (dispatchers.length == 0) {
+				return null;
+			}
+			
+			IoSocketDispatcher selected = dispatchers[0];
+			int selectedHandles = selected.getNumAssignedHandles();
+			
+			for (int i = 1; i < dispatchers.length; i++) {
+				int handles = dispatchers[i].getNumAssignedHandles();
+				if (handles < selectedHandles) {
+					selected = dispatchers[i];
+					selectedHandles = handles;
+				}
+			}
+			
+			return selected;
+		}
+		
+		@Override
+		public String toString() {
+			return FEWEST_HANDLES;
+		}
+	}
+	
+	
+	static final class LowestLoadStrategy implements IDispatcherAssignmentStrategy {
+		
+		public IoSocketDispatcher select(IoSocketDispatcher[] dispatchers) {
+			if (dispatchers.length == 0) {
+				return null;
+			}
+			
+			IoSocketDispatcher selected = dispatchers[0];
+			long selectedScore = selected.getLoadScore();
+			
+			for (int i = 1; i < dispatchers.length; i++) {
+				long score = dispatchers[i].getLoadScore();
+				if (score < selectedScore) {
+					selected = dispatchers[i];
+					selectedScore = score;
+				}
+			}
+			
+			return selected;
+		}
+		
+		@Override
+		public String toString() {
+			return LOWEST_LOAD;
+		}
+	}
+	
+	
+	static final class PowerOfTwoChoicesStrategy implements IDispatcherAssignmentStrategy {
+		
+		private final Random random = new Random();
+		
+		public IoSocketDispatcher select(IoSocketDispatcher[] dispatchers) {
+			if (dispatchers.length == 0) {
+				return null;
+				
+			} else if (dispatchers.length == 1) {
+				return dispatchers[0];
+			}
+			
+			int first = random.nextInt(dispatchers.length);
+			int second = random.nextInt(dispatchers.length - 1);
+			if (second >= first) {
+				second++;
+			}
+			
+			if (dispatchers[second].getLoadScore() < dispatchers[first].getLoadScore()) {
+				return dispatchers[second];
+			} else {
+				return dispatchers[first];
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return POWER_OF_TWO_CHOICES;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.util.List;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.xsocket.DataConverter;
+
+
+
+/**
+ * Autoscaler of the {@link IoSocketDispatcherPool}. The autoscaler samples periodically the 
+ * utilization of the dispatcher selector loops (time spent outside of <code>select</code>). 
+ * If the average utilization is above the high threshold for the required number of samples, 
+ * a dispatcher will be added. If the average utilization is below the low threshold for the required 
+ * number of samples, a dispatcher will be retired. The connections of a retired dispatcher will be 
+ * migrated to the remaining dispatchers 
+ * 
+ * @author grro@xsocket.org
+ */
+final class DispatcherPoolAutoscaler extends TimerTask {
+
+	private static final Logger LOG = Logger.getLogger(DispatcherPoolAutoscaler.class.getName());
+
+	private final IoSocketDispatcherPool pool;
+	private final int minSize;
+	private final int maxSize;
+	private final double highUtilization;
+	private final double lowUtilization;
+	private final int requiredSamples;
+	
+	private int countHighSamples = 0;
+	private int countLowSamples = 0;
+	
+	// statistics
+	private double lastAverageUtilization = 0;
+	private int countScaleUps = 0;
+	private int countScaleDowns = 0;
+	
+	
+	/**
+	 * constructor 
+	 * 
+	 * @param pool                     the pool to scale
+	 * @param minSize                  the min number of dispatchers
+	 * @param maxSize                  the max number of dispatchers
+	 * @param highUtilizationPercent   the utilization in percent, which leads to add a dispatcher 
+	 * @param lowUtilizationPercent    the utilization in percent, which leads to retire a dispatcher
+	 * @param requiredSamples          the number of consecutive samples, which are required to scale
+	 */
+	DispatcherPoolAutoscaler(IoSocketDispatcherPool pool, int minSize, int maxSize, int highUtilizationPercent, int lowUtilizationPercent, int requiredSamples) {
+		this.pool = pool;
+		this.minSize = Math.max(1, minSize);
+		this.maxSize = Math.max(this.minSize, maxSize);
+		this.highUtilization = ((double) highUtilizationPercent) / 100;
+		this.lowUtilization = ((double) lowUtilizationPercent) / 100;
+		this.requiredSamples = Math.max(1, requiredSamples);
+	}
+	
+	
+	@Override
+	public void run() {
+		try {
+			check();
+		} catch (Exception e) {
+            // eat and log exception
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("error occured by checking dispatcher pool utilization " + DataConverter.toString(e));
+			}
+		}
+	}
+	
+	
+	void check() {
+		List<IoSocketDispatcher> dispatchers = pool.getDispatchers();
+		int size = dispatchers.size();
+		if (size == 0) {
+			return;
+		}
+		
+		double totalUtilization = 0;
+		for (IoSocketDispatcher dispatcher : dispatchers) {
+			totalUtilization += dispatcher.sampleUtilization();
+		}
+		
+		double averageUtilization = totalUtilization / size;
+		lastAverageUtilization = averageUtilization;
+		
+		if (averageUtilization >= highUtilization) {
+			countHighSamples++;
+			countLowSamples = 0;
+			
+		} else if (averageUtilization <= lowUtilization) {
+			countLowSamples++;
+			countHighSamples = 0;
+			
+		} else {
+			countHighSamples = 0;
+			countLowSamples = 0;
+		}
+		
+		
+		// scale up?
+		if ((countHighSamples >= requiredSamples) && (size < maxSize)) {
+			countHighSamples = 0;
+			countScaleUps++;
+			
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("average dispatcher utilization " + toPercent(averageUtilization) + " is high. adding dispatcher (current size " + size + ")");
+			}
+			pool.incDispatcherSize();
+			
+		// .. or scale down? (the remaining dispatchers should not become highly utilized) 
+		} else if ((countLowSamples >= requiredSamples) && (size > minSize) && ((totalUtilization / (size - 1)) < highUtilization)) {
+			countLowSamples = 0;
+			countScaleDowns++;
+			
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("average dispatcher utilization " + toPercent(averageUtilization) + " is low. retiring dispatcher (current size " + size + ")");
+			}
+			pool.decDispatcherSize();
+		}
+	}
+	
+	
+	private static String toPercent(double utilization) {
+		return ((int) (utilization * 100)) + "%";
+	}
+	
+	
+	double getLastAverageUtilization() {
+		return lastAverageUtilization;
+	}
+	
+	int getNumberOfScaleUps() {
+		return countScaleUps;
+	}
+	
+	int getNumberOfScaleDowns() {
+		return countScaleDowns;
+	}
+	
+	int getMinSize() {
+		return minSize;
+	}
+	
+	int getMaxSize() {
+		return maxSize;
+	}
+}
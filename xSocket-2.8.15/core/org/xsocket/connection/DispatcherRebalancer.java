@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.xsocket.DataConverter;
+
+
+
+/**
+ * Rebalancer of the {@link IoSocketDispatcherPool}. The dispatcher assignment is performed once by 
+ * accepting a connection. A hot connection would stay on the assigned dispatcher forever. The 
+ * rebalancer samples periodically the transferred bytes (received and sent) of each connection. If the 
+ * load of the most loaded dispatcher diverges from the load of the least loaded dispatcher, connections 
+ * will be migrated from the most to the least loaded dispatcher. Only connections which reduce the 
+ * divergence (load is less than or equals the half of the load difference) will be migrated   
+ * 
+ * @author grro@xsocket.org
+ */
+final class DispatcherRebalancer extends TimerTask {
+
+	private static final Logger LOG = Logger.getLogger(DispatcherRebalancer.class.getName());
+	
+	private static final int MAX_MIGRATIONS_PER_RUN = 8;
+
+	private final IoSocketDispatcherPool pool;
+	private final int divergenceThresholdPercent;
+	private final long minLoadBytes;
+	
+	private Map<IoSocketHandler, Long> lastTransferredBytes = new IdentityHashMap<IoSocketHandler, Long>();
+	
+	// statistics
+	private int countMigrations = 0;
+	
+	
+	/**
+	 * constructor 
+	 * 
+	 * @param pool                        the pool to rebalance
+	 * @param divergenceThresholdPercent  the load of the most loaded dispatcher in percent of the least loaded one, which leads to rebalance
+	 * @param minLoadBytes                the min load (transferred bytes per sample period) of the most loaded dispatcher, which leads to rebalance
+	 */
+	DispatcherRebalancer(IoSocketDispatcherPool pool, int divergenceThresholdPercent, long minLoadBytes) {
+		this.pool = pool;
+		this.divergenceThresholdPercent = Math.max(100, divergenceThresholdPercent);
+		this.minLoadBytes = minLoadBytes;
+	}
+	
+	
+	@Override
+	public void run() {
+		try {
+			rebalance();
+		} catch (Exception e) {
+            // eat and log exception
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("error occured by rebalancing dispatcher pool " + DataConverter.toString(e));
+			}
+		}
+	}
+	
+	
+	/**
+	 * samples the load and migrates connections if the dispatcher loads diverge
+	 * 
+	 * @return the number of migrated connections
+	 */
+	int rebalance() {
+		List<IoSocketDispatcher> dispatchers = pool.getDispatchers();
+		
+		// sample the load of each connection (closed connections will be dropped by replacing the map)
+		Map<IoSocketHandler, Long> transferredBytes = new IdentityHashMap<IoSocketHandler, Long>();
+		Map<IoSocketHandler, Long> handlerLoads = new IdentityHashMap<IoSocketHandler, Long>();
+		Map<IoSocketDispatcher, Long> dispatcherLoads = new IdentityHashMap<IoSocketDispatcher, Long>();
+		
+		for (IoSocketDispatcher dispatcher : dispatchers) {
+			long dispatcherLoad = 0;
+			
+			for (IoSocketHandler handler : dispatcher.getRegistered()) {
+				if (handler.isOpen() && (handler.getDispatcher() == dispatcher)) {
+					long transferred = handler.getNumberOfReceivedBytes() + handler.getNumberOfSendBytes();
+					Long last = lastTransferredBytes.get(handler);
+					long load = (last == null) ? 0 : Math.max(0, transferred - last);
+					
+					transferredBytes.put(handler, transferred);
+					handlerLoads.put(handler, load);
+					dispatcherLoad += load;
+				}
+			}
+			dispatcherLoads.put(dispatcher, dispatcherLoad);
+		}
+		lastTransferredBytes = transferredBytes;
+		
+		if (dispatchers.size() < 2) {
+			return 0;
+		}
+		
+		
+		int migrations = 0;
+		while (migrations < MAX_MIGRATIONS_PER_RUN) {
+			
+			// find the most and the least loaded dispatcher
+			IoSocketDispatcher mostLoaded = null;
+			IoSocketDispatcher leastLoaded = null;
+			for (IoSocketDispatcher dispatcher : dispatchers) {
+				if ((mostLoaded == null) || (dispatcherLoads.get(dispatcher) > dispatcherLoads.get(mostLoaded))) {
+					mostLoaded = dispatcher;
+				}
+				if ((leastLoaded == null) || (dispatcherLoads.get(dispatcher) < dispatcherLoads.get(leastLoaded))) {
+					leastLoaded = dispatcher;
+				}
+			}
+			
+			long maxLoad = dispatcherLoads.get(mostLoaded);
+			long minLoad = dispatcherLoads.get(leastLoaded);
+			
+			// loads diverge? 
+			if ((maxLoad < minLoadBytes) || ((maxLoad * 100) <= (minLoad * divergenceThresholdPercent))) {
+				break;
+			}
+			
+			// select the most loaded connection which reduces the divergence 
+			IoSocketHandler candidate = null;
+			long candidateLoad = 0;
+			for (IoSocketHandler handler : mostLoaded.getRegistered()) {
+				Long load = handlerLoads.get(handler);
+				if ((load != null) && (load > candidateLoad) && (load <= ((maxLoad - minLoad) / 2))) {
+					candidate = handler;
+					candidateLoad = load;
+				}
+			}
+			
+			if (candidate == null) {
+				break;
+			}
+			
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("dispatcher loads diverge (" + mostLoaded.getName() + "=" + maxLoad + ", " + leastLoaded.getName() + "=" + minLoad + "). " +
+						 "migrating " + candidate.getId() + " (load " + candidateLoad + ")");
+			}
+			
+			mostLoaded.migrate(candidate, leastLoaded);
+			handlerLoads.remove(candidate);
+			dispatcherLoads.put(mostLoaded, maxLoad - candidateLoad);
+			dispatcherLoads.put(leastLoaded, minLoad + candidateLoad);
+			
+			migrations++;
+			countMigrations++;
+		}
+		
+		return migrations;
+	}
+	
+	
+	int getNumberOfMigrations() {
+		return countMigrations;
+	}
+}
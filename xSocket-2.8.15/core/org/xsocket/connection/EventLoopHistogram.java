@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+
+/**
+ * Low overhead histogram of the dispatcher event loop. The values will be recorded into 
+ * power of two buckets (bucket n contains the values between 2^(n-1) and 2^n - 1). The histogram 
+ * will only be written by the dispatcher thread. Snapshots are taken without synchronization and 
+ * could be slightly inconsistent      
+ *
+ * <br/><br/><b>This is a xSocket internal class and subject to change</b>
+ *
+ * @author grro@xsocket.org
+ */
+final class EventLoopHistogram {
+	
+	private static final int BUCKETS = 64;
+
+	private final String name;
+	private final String unit;
+	
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long sum = 0;
+	private long max = 0;
+
+	
+	EventLoopHistogram(String name, String unit) {
+		this.name = name;
+		this.unit = unit;
+	}
+	
+	
+	void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		
+		counts[BUCKETS - Long.numberOfLeadingZeros(value)]++;
+		count++;
+		sum += value;
+		if (value > max) {
+			max = value;
+		}
+	}
+	
+	
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+	
+	
+	HistogramSnapshot snapshot() {
+		return new HistogramSnapshot(name, unit, counts.clone(), count, sum, max);
+	}
+	
+	
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+
+/**
+ * Snapshot of the event loop histograms of a dispatcher. The times are recorded in nanos.   
+ * 
+ * @author grro@xsocket.org
+ */
+public final class EventLoopStatistics {
+
+	private final String dispatcherName;
+	private final HistogramSnapshot selectWaitTime;
+	private final HistogramSnapshot processingTime;
+	private final HistogramSnapshot taskQueueDepth;
+	private final HistogramSnapshot readEventTime;
+	private final HistogramSnapshot writeEventTime;
+	
+	
+	EventLoopStatistics(String dispatcherName, HistogramSnapshot selectWaitTime, HistogramSnapshot processingTime, HistogramSnapshot taskQueueDepth, HistogramSnapshot readEventTime, HistogramSnapshot writeEventTime) {
+		this.dispatcherName = dispatcherName;
+		this.selectWaitTime = selectWaitTime;
+		this.processingTime = processingTime;
+		this.taskQueueDepth = taskQueueDepth;
+		this.readEventTime = readEventTime;
+		this.writeEventTime = writeEventTime;
+	}
+	
+	
+	/**
+	 * returns the name of the dispatcher 
+	 * @return the dispatcher name
+	 */
+	public String getDispatcherName() {
+		return dispatcherName;
+	}
+	
+	/**
+	 * returns the time spent within select (including busy polling)
+	 * @return the select wait time histogram
+	 */
+	public HistogramSnapshot getSelectWaitTime() {
+		return selectWaitTime;
+	}
+	
+	/**
+	 * returns the processing time of a loop iteration (time spent outside of select) 
+	 * @return the processing time histogram
+	 */
+	public HistogramSnapshot getProcessingTime() {
+		return processingTime;
+	}
+	
+	/**
+	 * returns the number of tasks (register, key update and deregister), which have been processed by a loop iteration
+	 * @return the task queue depth histogram
+	 */
+	public HistogramSnapshot getTaskQueueDepth() {
+		return taskQueueDepth;
+	}
+	
+	/**
+	 * returns the time spent to handle a readable event (including non threaded callbacks)
+	 * @return the read event time histogram
+	 */
+	public HistogramSnapshot getReadEventTime() {
+		return readEventTime;
+	}
+	
+	/**
+	 * returns the time spent to handle a writeable event 
+	 * @return the write event time histogram
+	 */
+	public HistogramSnapshot getWriteEventTime() {
+		return writeEventTime;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return dispatcherName + "\r\n " + selectWaitTime + "\r\n " + processingTime + "\r\n " + taskQueueDepth + "\r\n " + readEventTime + "\r\n " + writeEventTime;
+	}
+}
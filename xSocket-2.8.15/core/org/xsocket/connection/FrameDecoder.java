@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.xsocket.ILifeCycle;
+import org.xsocket.MaxReadSizeExceededException;
+import org.xsocket.Resource;
+
+
+/**
+ * Decoder of length-prefixed frames. The decoder reads the length field and assembles 
+ * the frame as the data arrives. Each complete frame will be passed to the assigned 
+ * {@link IFrameHandler}. The decoding will be performed by the thread which 
+ * has received the data (the dispatcher thread). A worker thread will only be 
+ * used to perform the <code>onFrame</code> call of a multithreaded frame handler, 
+ * never to check for partial data. <br><br>
+ * 
+ * The frame header consists of <code>lengthFieldOffset</code> leading bytes 
+ * followed by the length field. The length field contains the size of the data 
+ * which follows the header. <br>
+ * 
+ * E.g.
+ * <pre>
+ *   // 4 byte big endian length field, the header will be stripped
+ *   IServer server = new Server(new FrameDecoder(new MyFrameHandler(), 64 * 1024));
+ *   server.start();
+ *   
+ *   // 1 byte message type followed by a 2 byte little endian length field, the header will be passed to the frame handler
+ *   IServer server = new Server(new FrameDecoder(new MyFrameHandler(), 1, 2, ByteOrder.LITTLE_ENDIAN, 4096, false));
+ *   server.start();
+ * </pre>
+ * 
+ * The decoder is connection scoped. If the frame handler is {@link IConnectionScoped}, it 
+ * will be cloned together with the decoder. If the length field exceeds the max frame size, 
+ * the connection will be closed. 
+ * 
+ * @author grro@xsocket.org
+ */
+public final class FrameDecoder implements IConnectHandler, IDataHandler, IDisconnectHandler, IConnectionTimeoutHandler, IIdleTimeoutHandler, ILifeCycle, IConnectionScoped {
+	
+	private static final Logger LOG = Logger.getLogger(FrameDecoder.class.getName());
+
+	
+	@Resource
+	private Server server = null;
+	
+	private IFrameHandler frameHandler = null;
+	private final HandlerInfo handlerInfo;
+	private final boolean isFrameHandlerMultithreaded;
+	private final boolean isFrameHandlerUnsynchronized;
+	
+	private final int lengthFieldOffset;
+	private final int lengthFieldSize;
+	private final boolean isBigEndian;
+	private final int maxFrameSize;
+	private final boolean isStripHeader;
+	private final int headerSize;
+	
+	// decoding state (guarded by this)
+	private byte[] header = null;
+	private int frameSize = -1;
+	
+
+	/**
+	 * constructor. The frame starts with a 4 byte big endian length field, which will be stripped
+	 * 
+	 * @param frameHandler  the frame handler
+	 * @param maxFrameSize  the max frame size
+	 */
+	public FrameDecoder(IFrameHandler frameHandler, int maxFrameSize) {
+		this(frameHandler, 0, 4, ByteOrder.BIG_ENDIAN, maxFrameSize, true);
+	}
+	
+	
+	/**
+	 * constructor 
+	 * 
+	 * @param frameHandler       the frame handler
+	 * @param lengthFieldOffset  the number of header bytes in front of the length field
+	 * @param lengthFieldSize    the size of the length field (1, 2, 4 or 8) 
+	 * @param byteOrder          the byte order of the length field 
+	 * @param maxFrameSize       the max frame size (without header)
+	 * @param isStripHeader      true, if the header should not be passed to the frame handler
+	 */
+	public FrameDecoder(IFrameHandler frameHandler, int lengthFieldOffset, int lengthFieldSize, ByteOrder byteOrder, int maxFrameSize, boolean isStripHeader) {
+		if (frameHandler == null) {
+			throw new NullPointerException("frame handler is required");
+		}
+		
+		if (lengthFieldOffset < 0) {
+			throw new IllegalArgumentException("invalid length field offset " + lengthFieldOffset);
+		}
+		
+		if ((lengthFieldSize != 1) && (lengthFieldSize != 2) && (lengthFieldSize != 4) && (lengthFieldSize != 8)) {
+			throw new IllegalArgumentException("unsupported length field size " + lengthFieldSize + " (supported are 1, 2, 4 and 8)");
+		}
+		
+		if (maxFrameSize < 0) {
+			throw new IllegalArgumentException("invalid max frame size " + maxFrameSize);
+		}
+		
+		this.frameHandler = frameHandler;
+		this.lengthFieldOffset = lengthFieldOffset;
+		this.lengthFieldSize = lengthFieldSize;
+		this.isBigEndian = (byteOrder == ByteOrder.BIG_ENDIAN);
+		this.maxFrameSize = maxFrameSize;
+		this.isStripHeader = isStripHeader;
+		
+		headerSize = lengthFieldOffset + lengthFieldSize;
+		
+		IHandlerInfo frameHandlerInfo = ConnectionUtils.getHandlerInfo(frameHandler);
+		handlerInfo = new HandlerInfo(frameHandlerInfo);
+		isFrameHandlerUnsynchronized = frameHandlerInfo.isUnsynchronized();
+		isFrameHandlerMultithreaded = ConnectionUtils.isFrameHandlerMultithreaded(frameHandler);
+	}
+	
+	
+	IHandlerInfo getHandlerInfo() {
+		return handlerInfo;
+	}
+	
+	
+	/**
+	 * returns the frame handler
+	 * 
+	 * @return the frame handler
+	 */
+	public IFrameHandler getFrameHandler() {
+		return frameHandler;
+	}
+	
+	
+	boolean isFrameHandlerMultithreaded() {
+		return isFrameHandlerMultithreaded;
+	}
+	
+	
+	boolean isFrameHandlerUnsynchronized() {
+		return isFrameHandlerUnsynchronized;
+	}
+	
+	
+	
+	/**
+	 * reads the next complete frame. The header will be consumed as soon as it is 
+	 * available, the frame data only if the whole frame is available 
+	 * 
+	 * @param connection  the connection 
+	 * @return the frame or null, if the frame is not complete  
+	 * @throws IOException if an exception occurs
+	 * @throws MaxReadSizeExceededException if the frame size exceeds the max frame size 
+	 */
+	synchronized ByteBuffer[] readFrame(INonBlockingConnection connection) throws IOException, MaxReadSizeExceededException {
+		
+		if (header == null) {
+			if (connection.available() < headerSize) {
+				return null;
+			}
+			
+			header = connection.readBytesByLength(headerSize);
+			long size = readLengthField(header);
+			
+			if ((size < 0) || (size > maxFrameSize)) {
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("[" + connection.getId() + "] frame size " + size + " exceeds max frame size " + maxFrameSize);
+				}
+				header = null;
+				throw new MaxReadSizeExceededException();
+			}
+			frameSize = (int) size;
+		}
+		
+		if (connection.available() < frameSize) {
+			return null;
+		}
+		
+		ByteBuffer[] data = connection.readByteBufferByLength(frameSize);
+		ByteBuffer[] frame;
+		if (isStripHeader) {
+			frame = data;
+		} else {
+			frame = new ByteBuffer[data.length + 1];
+			frame[0] = ByteBuffer.wrap(header);
+			System.arraycopy(data, 0, frame, 1, data.length);
+		}
+		
+		header = null;
+		frameSize = -1;
+		
+		return frame;
+	}
+	
+	
+	private long readLengthField(byte[] header) {
+		long size = 0;
+		for (int i = 0; i < lengthFieldSize; i++) {
+			int pos = isBigEndian ? (lengthFieldOffset + i) : (lengthFieldOffset + lengthFieldSize - 1 - i);
+			size = (size << 8) | (header[pos] & 0xFF);
+		}
+		
+		return size;
+	}
+	
+
+	
+	public void onInit() {
+		ConnectionUtils.injectServerField(server, frameHandler);
+		
+		if (frameHandler instanceof ILifeCycle) {
+			((ILifeCycle) frameHandler).onInit();
+		}
+	}
+	
+	
+	public void onDestroy() throws IOException {
+		if (frameHandler instanceof ILifeCycle) {
+			((ILifeCycle) frameHandler).onDestroy();
+		}
+	}
+	
+	
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean onConnect(INonBlockingConnection connection) throws IOException, BufferUnderflowException, MaxReadSizeExceededException {
+		if (frameHandler instanceof IConnectHandler) {
+			return ((IConnectHandler) frameHandler).onConnect(connection);
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * reads the complete frames and calls the frame handler for each one within the 
+	 * current thread. This method will only be called, if the decoder is used 
+	 * as a plain data handler (e.g. within a {@link HandlerChain}). 
+	 * Otherwise the frames will be decoded and dispatched by the connection  
+	 * 
+	 * {@inheritDoc}
+	 */
+	public boolean onData(INonBlockingConnection connection) throws IOException, BufferUnderflowException, MaxReadSizeExceededException {
+		ByteBuffer[] frame = readFrame(connection);
+		while (frame != null) {
+			frameHandler.onFrame(connection, frame);
+			frame = readFrame(connection);
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean onDisconnect(INonBlockingConnection connection) throws IOException {
+		if (frameHandler instanceof IDisconnectHandler) {
+			return ((IDisconnectHandler) frameHandler).onDisconnect(connection);
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean onConnectionTimeout(INonBlockingConnection connection) throws IOException {
+		if (frameHandler instanceof IConnectionTimeoutHandler) {
+			return ((IConnectionTimeoutHandler) frameHandler).onConnectionTimeout(connection);
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean onIdleTimeout(INonBlockingConnection connection) throws IOException {
+		if (frameHandler instanceof IIdleTimeoutHandler) {
+			return ((IIdleTimeoutHandler) frameHandler).onIdleTimeout(connection);
+		}
+		return false;
+	}
+	
+
+	
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		FrameDecoder copy = (FrameDecoder) super.clone();
+		
+		if (frameHandler instanceof IConnectionScoped) {
+			copy.frameHandler = (IFrameHandler) ((IConnectionScoped) frameHandler).clone();
+		}
+		
+		copy.header = null;
+		copy.frameSize = -1;
+		
+		return copy;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "FrameDecoder(" + frameHandler.getClass().getName() + ", offset=" + lengthFieldOffset + ", lengthFieldSize=" + lengthFieldSize + 
+		       ", byteOrder=" + (isBigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN) + ", maxFrameSize=" + maxFrameSize + ")";
+	}
+	
+	
+	
+	/**
+	 * the decoder handles the data by itself. All other call backs are 
+	 * handled as defined by the frame handler
+	 */
+	private static final class HandlerInfo implements IHandlerInfo {
+		
+		private final IHandlerInfo frameHandlerInfo;
+		
+		HandlerInfo(IHandlerInfo frameHandlerInfo) {
+			this.frameHandlerInfo = frameHandlerInfo;
+		}
+		
+		public boolean isConnectionScoped() {
+			return true;
+		}
+		
+		public boolean isUnsynchronized() {
+			return false;
+		}
+		
+		public boolean isLifeCycle() {
+			return true;
+		}
+		
+		public boolean isConnectExceptionHandler() {
+			return false;
+		}
+		
+		public boolean isConnectExceptionHandlerMultithreaded() {
+			return false;
+		}
+		
+		public boolean isDataHandler() {
+			return true;
+		}
+		
+		public boolean isDataHandlerMultithreaded() {
+			return false;
+		}
+		
+		public boolean isConnectHandler() {
+			return frameHandlerInfo.isConnectHandler();
+		}
+		
+		public boolean isConnectHandlerMultithreaded() {
+			return frameHandlerInfo.isConnectHandlerMultithreaded();
+		}
+		
+		public boolean isDisconnectHandler() {
+			return frameHandlerInfo.isDisconnectHandler();
+		}
+		
+		public boolean isDisconnectHandlerMultithreaded() {
+			return frameHandlerInfo.isDisconnectHandlerMultithreaded();
+		}
+		
+		public boolean isIdleTimeoutHandler() {
+			return frameHandlerInfo.isIdleTimeoutHandler();
+		}
+		
+		public boolean isIdleTimeoutHandlerMultithreaded() {
+			return frameHandlerInfo.isIdleTimeoutHandlerMultithreaded();
+		}
+		
+		public boolean isConnectionTimeoutHandler() {
+			return frameHandlerInfo.isConnectionTimeoutHandler();
+		}
+		
+		public boolean isConnectionTimeoutHandlerMultithreaded() {
+			return frameHandlerInfo.isConnectionTimeoutHandlerMultithreaded();
+		}
+	}
+}
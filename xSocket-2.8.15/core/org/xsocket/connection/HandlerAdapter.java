@@ -24,6 +24,7 @@ import java.io.IOException;
 
 
 import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -83,6 +84,22 @@ class HandlerAdapter  {
 	}
 	
 	
+	/**
+	 * returns true, if the received data will be read by the serialized onData calls 
+	 * of the handler (the handler is a data handler, which is not {@link IUnsynchronized})
+	 * 
+	 * @return true, if the received data will be read by the serialized onData calls
+	 */
+	final boolean isSerializedDataHandler() {
+		// a decoder reads the data within the dispatcher thread outside of the task queue. The multithreaded 
+		// onConnect, onFrame or onDisconnect calls of the frame handler could read the connection concurrently    
+		if (handler instanceof FrameDecoder) {
+			return false;
+		}
+		return (handler != NULL_HANDLER) && handlerInfo.isDataHandler() && !handlerInfo.isUnsynchronized();
+	}
+	
+	
 	private static String printHandler(Object handler) {
 	    return handler.getClass().getName() + "#" + handler.hashCode();
 	}
@@ -180,7 +197,11 @@ class HandlerAdapter  {
     public boolean onData(INonBlockingConnection connection, SerializedTaskQueue taskQueue, Executor workerpool, boolean ignoreException, boolean isUnsynchronized) {
         if (handlerInfo.isDataHandler()) {
             
-            if (handlerInfo.isUnsynchronized()) {
+            if (handler instanceof FrameDecoder) {
+                // decode within the current (dispatcher) thread. Only complete frames will be dispatched 
+                performDecode(connection, taskQueue, workerpool, ignoreException, (FrameDecoder) handler);
+                
+            } else if (handlerInfo.isUnsynchronized()) {
                 performOnData(connection, taskQueue, ignoreException, (IDataHandler) handler);
             
             } else {
@@ -323,6 +344,109 @@ class HandlerAdapter  {
         
 	}
 	
+	
+	/**
+	 * reads the complete frames and dispatches them to the frame handler 
+	 */
+	private static void performDecode(INonBlockingConnection connection, SerializedTaskQueue taskQueue, Executor workerpool, boolean ignoreException, FrameDecoder decoder) {
+		try {
+			// the lock keeps the frame order, if decoding is also initiated by a non dispatcher thread (e.g. resumeReceiving)   
+			synchronized (decoder) {
+				while (!connection.isReceivingSuspended()) {
+					if (connection.getHandler() != decoder) {
+						if (LOG.isLoggable(Level.FINE)) {
+							LOG.fine("[" + connection.getId() + "] handler " + " replaced by " + connection.getHandler() + ". stop decoding frames for old handler");
+						}
+						return;
+					}
+					
+					ByteBuffer[] frame = decoder.readFrame(connection);
+					if (frame == null) {
+						return;
+					}
+					
+					IFrameHandler frameHandler = decoder.getFrameHandler();
+					if (decoder.isFrameHandlerUnsynchronized()) {
+						performOnFrame(connection, frame, frameHandler);
+						
+					} else if (decoder.isFrameHandlerMultithreaded()) {
+						taskQueue.performMultiThreaded(new PerformOnFrameTask(connection, frame, frameHandler), workerpool);
+						
+					} else {
+						taskQueue.performNonThreaded(new PerformOnFrameTask(connection, frame, frameHandler), workerpool);
+					}
+				}
+			}
+			
+		} catch (MaxReadSizeExceededException mee) {
+			if (!ignoreException) {
+				LOG.warning("[" + connection.getId() + "] closing connection because max frame size is exceeded by decoding frames by " + decoder + " Reason: " + DataConverter.toString(mee));            
+				closeSilence(connection);
+			}
+			
+		} catch (IOException ioe) {
+			if (!ignoreException) {
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("[" + connection.getId() + "] closing connection because an error has been occured by decoding frames by " + decoder + " Reason: " + DataConverter.toString(ioe));
+				}
+				closeSilence(connection);
+			}
+			
+		} catch (Throwable t) {
+			if (!ignoreException) {
+				LOG.warning("[" + connection.getId() + "] closing connection. Error occured by decoding frames by " + decoder +  " " + DataConverter.toString(t));
+				closeSilence(connection);
+			}
+		}
+	}
+	
+	
+    private static final class PerformOnFrameTask implements Runnable {
+    	
+    	private final IFrameHandler handler;
+    	private final INonBlockingConnection connection;
+    	private final ByteBuffer[] frame;
+    	
+    	public PerformOnFrameTask(INonBlockingConnection connection, ByteBuffer[] frame, IFrameHandler handler) {
+    		this.connection = connection;
+    		this.frame = frame;
+    		this.handler = handler;
+		}
+    	
+        public void run() {
+            performOnFrame(connection, frame, handler);
+        }
+        
+        @Override
+        public String toString() {
+            return "PerformOnFrameTask#" + hashCode() + " "  + connection.getId();
+        }
+    }
+
+    
+	private static void performOnFrame(INonBlockingConnection connection, ByteBuffer[] frame, IFrameHandler handler) {
+		try {
+			handler.onFrame(connection, frame);
+			
+		} catch (MaxReadSizeExceededException mee) {
+			LOG.warning("[" + connection.getId() + "] closing connection because max readsize is reached by handling onFrame by appHandler. " + printHandler(handler) + " Reason: " + DataConverter.toString(mee));            
+			closeSilence(connection);
+			
+		} catch (BufferUnderflowException bue) {
+			// ignore
+			
+		} catch (IOException ioe) {
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("[" + connection.getId() + "] closing connection because an error has been occured by handling onFrame by appHandler. " + printHandler(handler) + " Reason: " + DataConverter.toString(ioe));
+			}
+			closeSilence(connection);
+			
+		} catch (Throwable t) {
+			LOG.warning("[" + connection.getId() + "] closing connection. Error occured by performing onFrame of " + printHandler(handler) +  " " + DataConverter.toString(t));
+			closeSilence(connection);
+		}
+	}
+	
 
 
     public boolean onDisconnect(INonBlockingConnection connection, SerializedTaskQueue taskQueue, Executor workerpool, boolean isUnsynchronized) {
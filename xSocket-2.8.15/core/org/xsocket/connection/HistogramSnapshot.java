@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+
+
+/**
+ * Immutable snapshot of a dispatcher event loop histogram. The values are recorded into 
+ * power of two buckets. For this reason the returned percentiles are the upper bound of the 
+ * bucket, which contains the percentile (capped by the max value)
+ *
+ * @author grro@xsocket.org
+ */
+public final class HistogramSnapshot {
+
+	private final String name;
+	private final String unit;
+	private final long[] counts;
+	private final long count;
+	private final long sum;
+	private final long max;
+	
+	
+	HistogramSnapshot(String name, String unit, long[] counts, long count, long sum, long max) {
+		this.name = name;
+		this.unit = unit;
+		this.counts = counts;
+		this.count = count;
+		this.sum = sum;
+		this.max = max;
+	}
+	
+	
+	/**
+	 * returns the name of the histogram 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * returns the unit of the recorded values 
+	 * @return the unit
+	 */
+	public String getUnit() {
+		return unit;
+	}
+	
+	/**
+	 * returns the number of recorded values 
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * returns the max recorded value 
+	 * @return the max value 
+	 */
+	public long getMax() {
+		return max;
+	}
+	
+	/**
+	 * returns the mean of the recorded values 
+	 * @return the mean
+	 */
+	public double getMean() {
+		if (count == 0) {
+			return 0;
+		}
+		return ((double) sum) / count;
+	}
+	
+	
+	/**
+	 * returns the (upper bound) value of the given percentile 
+	 * 
+	 * @param percentile  the percentile (e.g. 99.9) 
+	 * @return the value 
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		
+		if (total == 0) {
+			return 0;
+		}
+		
+		long threshold = (long) Math.ceil((percentile / 100) * total);
+		if (threshold < 1) {
+			threshold = 1;
+		}
+		
+		long cumulated = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulated += counts[i];
+			if (cumulated >= threshold) {
+				long upperBound = (i == 0) ? 0 : ((i == 63) ? Long.MAX_VALUE : (1L << i) - 1);
+				return Math.min(upperBound, max);
+			}
+		}
+		
+		return max;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return name + " count=" + count + ", mean=" + ((long) getMean()) + unit + ", p50=" + getValueAtPercentile(50) + unit + 
+		       ", p99=" + getValueAtPercentile(99) + unit + ", p99.9=" + getValueAtPercentile(99.9) + unit + ", max=" + max + unit;
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+import org.xsocket.MaxReadSizeExceededException;
+
+/**
+ * Processes complete frames of a length-prefixed protocol. A frame handler will
+ * be assigned to a connection by wrapping it with a {@link FrameDecoder}. The decoder 
+ * assembles the frames on the dispatcher thread, while the data arrives. The
+ * <code>onFrame</code> method will be called once for each complete frame, in 
+ * receiving order. It will never be called for partial data. <br><br>
+ * 
+ * Like other handler call back methods the <code>onFrame</code> method will be performed 
+ * multithreaded by default. By annotating it with {@link org.xsocket.Execution#NONTHREADED} 
+ * it will be performed by the dispatcher thread (in this case the flush mode should be set to 
+ * {@link IConnection.FlushMode#ASYNC} to avoid blocking the dispatcher). Because the frame data is handed over, 
+ * the frame handler should not read from the connection itself. Other call back 
+ * interfaces like {@link IConnectHandler} or {@link IDisconnectHandler} implemented 
+ * by the frame handler will be called by the decoder.
+ * 
+ * <pre>
+ * class MyFrameHandler implements IFrameHandler {
+ *
+ *    public boolean onFrame(INonBlockingConnection connection, ByteBuffer[] frame) throws IOException {
+ *       ...
+ *       connection.write(response);
+ *       return true;
+ *    }
+ * }
+ * 
+ * IServer server = new Server(new FrameDecoder(new MyFrameHandler(), 64 * 1024));
+ * server.start();
+ * </pre>
+ * 
+ * @author grro@xsocket.org
+ */
+public interface IFrameHandler extends IHandler {
+
+	/**
+	 * processes a complete frame received by the given connection 
+	 * 
+	 * @param connection the underlying connection
+	 * @param frame      the frame data (without the header, if the decoder strips the header) 
+	 * @return true for positive result of handling, false for negative result of handling
+	 *              
+	 * @throws IOException If some other I/O error occurs. Throwing this exception causes that the underlying connection will be closed.
+ 	 * @throws BufferUnderflowException if more incoming data is required to process. The exception will be swallowed by the framework 
+ 	 * @throws ClosedChannelException if the connection is closed
+ 	 * @throws MaxReadSizeExceededException if the max read size has been reached. Throwing this exception causes that the underlying connection will be closed.
+     * @throws RuntimeException if an runtime exception occurs. Throwing this exception causes that the underlying connection will be closed.
+	 */
+	boolean onFrame(INonBlockingConnection connection, ByteBuffer[] frame) throws IOException, BufferUnderflowException, ClosedChannelException, MaxReadSizeExceededException;
+}
@@ -21,17 +21,23 @@
 package org.xsocket.connection;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.BindException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +62,9 @@ final class IoAcceptor  {
 
 	private static final String SO_RCVBUF = IServer.SO_RCVBUF;
 	private static final String SO_REUSEADDR = IServer.SO_REUSEADDR;
+	
+	// max number of connections which will be accepted by a dispatcher per acceptable event 
+	private static final int MAX_ACCEPTS_PER_EVENT = 64;
 
 	@SuppressWarnings("rawtypes")
 	private static final Map<String, Class> SUPPORTED_OPTIONS = new HashMap<String, Class>();
@@ -85,6 +94,15 @@ final class IoAcceptor  {
     // 而不是一般的通过在Selector中注册连接事件
     /** 只能设置的Socket选项 {@link #setOption(String, Object)}  */
     private final ServerSocketChannel serverChannel;
+    
+    // additional listening channels bound to the same port by using SO_REUSEPORT. Each  
+    // channel has its own acceptor thread. The kernel load-balances the new connections    
+    private final List<ServerSocketChannel> additionalServerChannels = new ArrayList<ServerSocketChannel>();
+    
+    // non-blocking accept mode: the listening channels are registered for OP_ACCEPT on the dispatchers   
+    private final boolean isNonBlockingAccept = IoProvider.isServerAcceptorNonBlocking();
+    private final Map<ServerSocketChannel, IIoAcceptHandler> acceptHandlers = new HashMap<ServerSocketChannel, IIoAcceptHandler>();
+    private final CountDownLatch closedLatch = new CountDownLatch(1);
 
 
     // SSL
@@ -98,7 +116,8 @@ final class IoAcceptor  {
 
     
     // statistics
-    private long acceptedConnections;	// 连接数, 不是线程安全的
+    private final AtomicLong acceptedConnections = new AtomicLong(0);	// 连接数, 多个acceptor线程共享
+    private final AtomicLong totalAcceptedConnections = new AtomicLong(0);
 	private long lastRequestAccpetedRate = System.currentTimeMillis();
 
 
@@ -122,22 +141,49 @@ final class IoAcceptor  {
         serverChannel = ServerSocketChannel.open();
         assert (serverChannel != null);
         
-        // XXX 为阻塞模式
-        serverChannel.configureBlocking(true);
+        // XXX 为阻塞模式 (non-blocking accept mode: 非阻塞模式)
+        serverChannel.configureBlocking(!isNonBlockingAccept);
         // 等待客户端连接永远不会超时
         serverChannel.socket().setSoTimeout(0);  // accept method never times out
         serverChannel.socket().setReuseAddress(isReuseAddress); 
         
+        int acceptorCount = IoProvider.getServerAcceptorCount();
+        if ((acceptorCount > 1) && !setReusePort(serverChannel)) {
+        	LOG.warning("SO_REUSEPORT is not supported. Using one acceptor instead of " + acceptorCount);
+        	acceptorCount = 1;
+        }
+        
         try {
         	// 绑定地址
             serverChannel.socket().bind(address, backlog);
             
+            // bind the additional channels to the (maybe ephemeral) port of the first one 
+            for (int i = 1; i < acceptorCount; i++) {
+            	ServerSocketChannel channel = ServerSocketChannel.open();
+            	try {
+	            	channel.configureBlocking(!isNonBlockingAccept);
+	            	channel.socket().setSoTimeout(0);
+	            	channel.socket().setReuseAddress(isReuseAddress);
+	            	setReusePort(channel);
+	            	channel.socket().bind(new InetSocketAddress(address.getAddress(), getLocalPort()), backlog);
+	            	additionalServerChannels.add(channel);
+	            	
+            	} catch (IOException ioe) {
+            		channel.close();
+            		LOG.warning("could not bind additional acceptor channel to " + getLocalPort() + ". Using " + (additionalServerChannels.size() + 1) + " acceptors. Reason: " + DataConverter.toString(ioe));
+            		break;
+            	}
+            }
+            
             // IoSocketDispatcher的数量为2
             // XXX 创建IoSocketDispatcher线程,并启动
             // IoSocketDispatcherPool#updateDispatcher()
             dispatcherPool = new IoSocketDispatcherPool("Srv" + getLocalPort(), IoProvider.getServerDispatcherInitialSize());
         	
         } catch (BindException be) {
+        	for (ServerSocketChannel channel : additionalServerChannels) {
+        		channel.close();
+        	}
         	serverChannel.close();
             LOG.warning("could not bind server to " + address + ". Reason: " + DataConverter.toString(be));
             throw be;
@@ -160,12 +206,47 @@ final class IoAcceptor  {
     void setOption(String name, Object value) throws IOException {
         if (name.equals(SO_RCVBUF)) {
             serverChannel.socket().setReceiveBufferSize((Integer) value);
+            for (ServerSocketChannel channel : additionalServerChannels) {
+            	channel.socket().setReceiveBufferSize((Integer) value);
+            }
         } else if (name.equals(SO_REUSEADDR)) {
             serverChannel.socket().setReuseAddress((Boolean) value);
+            for (ServerSocketChannel channel : additionalServerChannels) {
+            	channel.socket().setReuseAddress((Boolean) value);
+            }
         } else {
             LOG.warning("option " + name + " is not supproted for " + this.getClass().getName());
         }
     }
+    
+    
+    /**
+     * sets SO_REUSEPORT. The option is accessed by reflection, because it is available 
+     * by using Java 9 or higher and supported by some platforms only (e.g. Linux)  
+     * 
+     * @param channel  the channel (has to be unbound)
+     * @return true, if the option has been set
+     */
+    private static boolean setReusePort(ServerSocketChannel channel) {
+    	try {
+    		Object reusePortOption = Class.forName("java.net.StandardSocketOptions").getField("SO_REUSEPORT").get(null);
+    		
+    		Set<?> supportedOptions = (Set<?>) ServerSocketChannel.class.getMethod("supportedOptions").invoke(channel);
+    		if (!supportedOptions.contains(reusePortOption)) {
+    			return false;
+    		}
+    		
+    		Method setOption = ServerSocketChannel.class.getMethod("setOption", Class.forName("java.net.SocketOption"), Object.class);
+    		setOption.invoke(channel, reusePortOption, Boolean.TRUE);
+    		return true;
+    		
+    	} catch (Exception e) {
+    		if (LOG.isLoggable(Level.FINE)) {
+    			LOG.fine("could not set SO_REUSEPORT " + e.toString());
+    		}
+    		return false;
+    	}
+    }
 
     
     boolean isSSLSupported() {
@@ -205,6 +286,21 @@ final class IoAcceptor  {
     IoSocketDispatcherPool getDispatcherPool() {
     	return dispatcherPool;
     }
+    
+    
+    int getNumberOfAcceptors() {
+    	return additionalServerChannels.size() + 1;
+    }
+    
+    
+    boolean isNonBlockingAccept() {
+    	return isNonBlockingAccept;
+    }
+    
+    
+    long getNumberOfAcceptedConnections() {
+    	return totalAcceptedConnections.get();
+    }
 
 	
 
@@ -234,19 +330,160 @@ final class IoAcceptor  {
     	// Server类的内部私有类的LifeCycleHandler的onConnected()方法
     	// 执行IServerListener的onInit()方法
     	callback.onConnected();
+    	
+    	if (isNonBlockingAccept) {
+    		listenNonBlocking();
+    		return;
+    	}
+    	
+    	// start the acceptor threads of the additional channels
+    	for (int i = 0; i < additionalServerChannels.size(); i++) {
+    		final ServerSocketChannel channel = additionalServerChannels.get(i);
+    		Thread t = new Thread("xAcceptor" + getLocalPort() + "#" + (i + 1)) {
+    			@Override
+    			public void run() {
+    				accept(channel);
+    			}
+    		};
+    		t.setDaemon(true);
+    		t.start();
+    	}
+    	
     	// 接收请求
-    	accept();
+    	accept(serverChannel);
     }
     
     // 测试取得一个连接耗费的时间
 //    private final SimpleDateFormat sdf = new SimpleDateFormat("mm:ss.SSS");
 
+    /**
+     * registers the listening channels on the dispatchers and waits until the acceptor is closed. Each 
+     * dispatcher gets one listening channel. If there are less channels than dispatchers, a channel will 
+     * be registered on several dispatchers (the first dispatcher which calls accept gets the connection)
+     */
+    private void listenNonBlocking() {
+    	List<ServerSocketChannel> channels = new ArrayList<ServerSocketChannel>();
+    	channels.add(serverChannel);
+    	channels.addAll(additionalServerChannels);
+    	
+    	synchronized (acceptHandlers) {
+	    	for (ServerSocketChannel channel : channels) {
+	    		acceptHandlers.put(channel, new NonBlockingAcceptHandler(channel));
+	    	}
+    	}
+    	
+    	// dispatchers which will be added later (e.g. by autoscaling) have to accept too
+    	dispatcherPool.addListener(new IIoDispatcherPoolListener() {
+    		
+    		public void onDispatcherAdded(IoSocketDispatcher dispatcher) {
+    			registerAcceptors();
+    		}
+    		
+    		public void onDispatcherRemoved(IoSocketDispatcher dispatcher) {
+    			registerAcceptors();
+    		}
+    	});
+    	registerAcceptors();
+    	
+    	
+    	while (isOpen.get()) {
+    		try {
+    			closedLatch.await();
+    		} catch (InterruptedException ie) {
+    			// Restore the interrupted status
+    			Thread.currentThread().interrupt();
+    			return;
+    		}
+    	}
+    }
+    
+    
+    private void registerAcceptors() {
+    	List<ServerSocketChannel> channels = new ArrayList<ServerSocketChannel>();
+    	channels.add(serverChannel);
+    	channels.addAll(additionalServerChannels);
+
+    	List<IoSocketDispatcher> dispatchers = dispatcherPool.getDispatchers();
+    	if (dispatchers.isEmpty()) {
+    		return;
+    	}
+    	
+    	for (int i = 0; i < Math.max(channels.size(), dispatchers.size()); i++) {
+    		ServerSocketChannel channel = channels.get(i % channels.size());
+    		
+    		IIoAcceptHandler acceptHandler = null;
+    		synchronized (acceptHandlers) {
+    			acceptHandler = acceptHandlers.get(channel);
+    		}
+    		dispatchers.get(i % dispatchers.size()).registerAcceptor(channel, acceptHandler);
+    	}
+    }
+    
+    
+    
+    private final class NonBlockingAcceptHandler implements IIoAcceptHandler {
+    	
+    	private final ServerSocketChannel serverChannel;
+    	
+    	NonBlockingAcceptHandler(ServerSocketChannel serverChannel) {
+    		this.serverChannel = serverChannel;
+		}
+    	
+    	
+    	public int onAcceptableEvent(IoSocketDispatcher dispatcher) throws IOException {
+    		int accepted = 0;
+    		
+    		while ((accepted < MAX_ACCEPTS_PER_EVENT) && isOpen.get()) {
+    			
+    			// another dispatcher could have been accepted the connection  
+    			SocketChannel channel = serverChannel.accept();
+    			if (channel == null) {
+    				break;
+    			}
+    			accepted++;
+    			
+    			IIoAcceptorCallback cb = callback;
+    			if (cb == null) {
+    				channel.close();
+    				break;
+    			}
+    			
+    			try {
+    				// the connection will be registered on the accepting dispatcher (if not exhausted) without a thread hand off 
+    				IoSocketDispatcher target = dispatcher;
+    				if (!target.preRegister()) {
+    					target = dispatcherPool.nextDispatcher();
+    				}
+	                IoChainableHandler ioHandler = ConnectionUtils.getIoProvider().createIoHandler(false, target, channel, sslContext, sslOn);
+	                cb.onConnectionAccepted(ioHandler);
+	                
+	    			acceptedConnections.incrementAndGet();
+	    			totalAcceptedConnections.incrementAndGet();
+	    			
+    			} catch (Exception e) {
+    				LOG.warning("error occured while accepting connection: " + DataConverter.toString(e));
+    				try {
+    					channel.close();
+    				} catch (IOException ioe) {
+    					// eat and log exception
+    					if (LOG.isLoggable(Level.FINE)) {
+    						LOG.fine("error occured by closing accepted channel " + ioe.toString());
+    					}
+    				}
+    			}
+    		}
+    		
+    		return accepted;
+    	}
+    }
+    
+    
     /**
      * 无限循环接收请求.
      * 有1个连接就分配一个IoSocketDispatcher去处理此连接的OP_READ、OP_WRITE事件
      * 	</br>
      */
-    private void accept() {
+    private void accept(ServerSocketChannel serverChannel) {
     	// 默认为true
         while (isOpen.get()) {
             try {
@@ -271,8 +508,8 @@ final class IoAcceptor  {
                 // XXX 注册OP_READ事件
                 /** {@link Server.LifeCycleHandler} */
                 callback.onConnectionAccepted(ioHandler);
-                // 线程不安全,运行RunServerInMultiThread,多个线程中运行Server就会出现问题
-    			acceptedConnections++;
+    			acceptedConnections.incrementAndGet();
+    			totalAcceptedConnections.incrementAndGet();
 //    			System.out.println("接收到连接预处理结束：" + sdf.format(new Date()));
 //    			System.out.println("acceptedConnections：" + acceptedConnections);
 
@@ -305,6 +542,9 @@ final class IoAcceptor  {
             try {
                 // closes the server socket
                 serverChannel.close();
+                for (ServerSocketChannel channel : additionalServerChannels) {
+                	channel.close();
+                }
             } catch (Exception e) {
                 // eat and log exception
             	if (LOG.isLoggable(Level.FINE)) {
@@ -313,6 +553,7 @@ final class IoAcceptor  {
             }
 
             dispatcherPool.close();
+            closedLatch.countDown();
 
             callback.onDisconnected();
             callback = null;   // unset reference to server
@@ -383,19 +624,19 @@ final class IoAcceptor  {
      	double rate = 0;
 		
     	long elapsed = System.currentTimeMillis() - lastRequestAccpetedRate;
+    	long accepted = acceptedConnections.getAndSet(0);
     	
-    	if (acceptedConnections == 0) {
+    	if (accepted == 0) {
     		rate = 0;
     		
     	} else if (elapsed == 0) {
     		rate = Integer.MAX_VALUE;
     		
     	} else {
-    		rate = (((double) (acceptedConnections * 1000)) / elapsed);
+    		rate = (((double) (accepted * 1000)) / elapsed);
     	}
     		
     	lastRequestAccpetedRate = System.currentTimeMillis();
-    	acceptedConnections = 0;
 
     	return rate;
     }
@@ -199,6 +199,10 @@ abstract class IoChainableHandler  {
 		return getSuccessor().getNumberOfSendBytes();
 	}
 	
+	public int getReadBufferSize() {
+		return getSuccessor().getReadBufferSize();
+	}
+	
 	public String getInfo() {
 		return getSuccessor().getInfo();
 	}
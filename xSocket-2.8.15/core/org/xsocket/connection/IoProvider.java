@@ -69,6 +69,7 @@ final class IoProvider  {
 
 	
 	private static final Timer TIMER = new Timer("xIoTimer", true);
+	private static TimingWheel timingWheel;
 	// 客户端使用
 	private static IoSocketDispatcherPool globalClientDispatcherPool;
 
@@ -97,6 +98,10 @@ final class IoProvider  {
 	public static final String COUNT_DISPATCHER_KEY                = "org.xsocket.connection.dispatcher.initialCount";	// int
 	// 服务器端调度器的初始数目
 	private static final String COUNT_SERVER_DISPATCHER_KEY        = "org.xsocket.connection.server.dispatcher.initialCount";	// int
+	// number of listening channels (SO_REUSEPORT) and acceptor threads of a server
+	public static final String COUNT_SERVER_ACCEPTOR_KEY           = "org.xsocket.connection.server.acceptor.count";	// int
+	// accept by the dispatchers (OP_ACCEPT) instead of dedicated blocking acceptor threads 
+	public static final String SERVER_ACCEPTOR_NON_BLOCKING_KEY    = "org.xsocket.connection.server.acceptor.nonBlocking";	// boolean
 	// 客户端调度器的初始数目
 	private static final String COUNT_CLIENT_DISPATCHER_KEY        = "org.xsocket.connection.client.dispatcher.initialCount";	// int
 	// 调度器处理的最大数量
@@ -105,6 +110,53 @@ final class IoProvider  {
 	private static final String DEFAULT_DETACH_HANDLE_ON_NO_OPS    = "false";
 	private static final String IS_BYPASSING_WRITE_ALLOWED         = "org.xsocket.connection.dispatcher.bypassingWriteAllowed";	// boolean
 	private static final String DEFAULT_IS_BYPASSING_WRITE_ALLOWED = "true";
+	// array-backed selected key set (requires access to sun.nio.ch). By default activated, if 
+	// sun.nio.ch is accessible without an illegal access warning (Java 8 and lower, or --add-opens)
+	public static final String SELECTED_KEYS_OPTIMIZATION_ON_KEY   = "org.xsocket.connection.dispatcher.selectedKeys.optimized";	// boolean
+	// event loop histograms of the dispatcher
+	private static final String DEFAULT_DISPATCHER_HISTOGRAMS_ON = "true";
+	public static final String DISPATCHER_HISTOGRAMS_ON_KEY        = "org.xsocket.connection.dispatcher.histograms.on";	// boolean
+	// busy poll budget of the dispatcher in micros (0 = deactivated)
+	public static final String DISPATCHER_BUSY_POLL_BUDGET_MICROS_KEY = "org.xsocket.connection.dispatcher.busyPoll.budgetMicros";	// int
+	// roundRobin, fewestHandles, lowestLoad or powerOfTwoChoices
+	public static final String DISPATCHER_ASSIGNMENT_STRATEGY_KEY = "org.xsocket.connection.dispatcher.assignmentStrategy";	// String
+	// autoscaling of the dispatcher pool based on the selector loop utilization
+	public static final String DEFAULT_DISPATCHER_AUTOSCALE_ON = "false";
+	public static final int DEFAULT_DISPATCHER_AUTOSCALE_MIN_COUNT = 1;
+	public static final int DEFAULT_DISPATCHER_AUTOSCALE_HIGH_UTILIZATION = 75;
+	public static final int DEFAULT_DISPATCHER_AUTOSCALE_LOW_UTILIZATION = 25;
+	public static final int DEFAULT_DISPATCHER_AUTOSCALE_SAMPLES = 3;
+	public static final int DEFAULT_DISPATCHER_AUTOSCALE_PERIOD_MILLIS = 1000;
+	public static final String DISPATCHER_AUTOSCALE_ON_KEY                = "org.xsocket.connection.dispatcher.autoscale.on";	// boolean
+	public static final String DISPATCHER_AUTOSCALE_MIN_COUNT_KEY         = "org.xsocket.connection.dispatcher.autoscale.minCount";	// int
+	public static final String DISPATCHER_AUTOSCALE_MAX_COUNT_KEY         = "org.xsocket.connection.dispatcher.autoscale.maxCount";	// int (default 2 * processors)
+	public static final String DISPATCHER_AUTOSCALE_HIGH_UTILIZATION_KEY  = "org.xsocket.connection.dispatcher.autoscale.highUtilization";	// int (percent)
+	public static final String DISPATCHER_AUTOSCALE_LOW_UTILIZATION_KEY   = "org.xsocket.connection.dispatcher.autoscale.lowUtilization";	// int (percent)
+	public static final String DISPATCHER_AUTOSCALE_SAMPLES_KEY           = "org.xsocket.connection.dispatcher.autoscale.samples";	// int
+	public static final String DISPATCHER_AUTOSCALE_PERIOD_MILLIS_KEY     = "org.xsocket.connection.dispatcher.autoscale.periodMillis";	// int
+	// rebalancing of the connections if the dispatcher loads diverge
+	public static final String DEFAULT_DISPATCHER_REBALANCE_ON = "false";
+	public static final int DEFAULT_DISPATCHER_REBALANCE_THRESHOLD = 200;
+	public static final int DEFAULT_DISPATCHER_REBALANCE_MIN_LOAD = 65536;
+	public static final int DEFAULT_DISPATCHER_REBALANCE_PERIOD_MILLIS = 1000;
+	public static final String DISPATCHER_REBALANCE_ON_KEY                = "org.xsocket.connection.dispatcher.rebalance.on";	// boolean
+	public static final String DISPATCHER_REBALANCE_THRESHOLD_KEY         = "org.xsocket.connection.dispatcher.rebalance.threshold";	// int (percent of the least loaded dispatcher)
+	public static final String DISPATCHER_REBALANCE_MIN_LOAD_KEY          = "org.xsocket.connection.dispatcher.rebalance.minLoad";	// int (bytes per period)
+	public static final String DISPATCHER_REBALANCE_PERIOD_MILLIS_KEY     = "org.xsocket.connection.dispatcher.rebalance.periodMillis";	// int
+	// timing wheel of the idle and connection timeouts
+	public static final int DEFAULT_TIMEOUT_WHEEL_TICK_MILLIS = 100;
+	public static final int DEFAULT_TIMEOUT_WHEEL_SIZE = 512;
+	public static final String TIMEOUT_WHEEL_TICK_MILLIS_KEY              = "org.xsocket.connection.timeoutWheel.tickMillis";	// int (accuracy of the timeouts)
+	public static final String TIMEOUT_WHEEL_SIZE_KEY                     = "org.xsocket.connection.timeoutWheel.size";	// int
+	// coarse clock of the hot path timestamping  
+	public static final String DEFAULT_COARSE_CLOCK_ON = "true";
+	public static final int DEFAULT_COARSE_CLOCK_TICK_MILLIS = 10;
+	public static final String COARSE_CLOCK_ON_KEY                        = "org.xsocket.connection.coarseClock.on";	// boolean
+	public static final String COARSE_CLOCK_TICK_MILLIS_KEY               = "org.xsocket.connection.coarseClock.tickMillis";	// int
+	// read queue without consumer side locking for handlers, which are not IUnsynchronized (opt-in).  
+	// Should only be activated, if the connection is not read by application threads outside the handler call backs
+	public static final String DEFAULT_READ_QUEUE_SINGLE_CONSUMER_ON = "false";
+	public static final String READ_QUEUE_SINGLE_CONSUMER_ON_KEY          = "org.xsocket.connection.readQueue.singleConsumer.on";	// boolean
 	
 	
 	   
@@ -144,6 +196,29 @@ final class IoProvider  {
 	public static final String SERVER_READBUFFER_PREALLOCATION_ON_KEY       = "org.xsocket.connection.server.readbuffer.preallocation.on";
 	public static final String SERVER_READBUFFER_PREALLOCATION_SIZE_KEY     = "org.xsocket.connection.server.readbuffer.preallocation.size";
 	public static final String SERVER_READBUFFER_PREALLOCATION_MIN_SIZE_KEY = "org.xsocket.connection.server.readbuffer.preallocated.minSize";
+
+	// size class based (slab) memory management
+	public static final String DEFAULT_READ_BUFFER_SLAB_ON = "false";
+	public static final String READBUFFER_SLAB_ON_KEY                      = "org.xsocket.connection.readbuffer.slab.on";
+
+	// adaptive read size
+	public static final int DEFAULT_READ_BUFFER_ADAPTIVE_MIN_SIZE = 64;
+	public static final int DEFAULT_READ_BUFFER_ADAPTIVE_INITIAL_SIZE = 8192;
+	public static final int DEFAULT_READ_BUFFER_ADAPTIVE_MAX_SIZE = 65536;
+	public static final String READBUFFER_ADAPTIVE_MIN_SIZE_KEY            = "org.xsocket.connection.readbuffer.adaptive.minSize";
+	public static final String READBUFFER_ADAPTIVE_INITIAL_SIZE_KEY        = "org.xsocket.connection.readbuffer.adaptive.initialSize";
+	public static final String READBUFFER_ADAPTIVE_MAX_SIZE_KEY            = "org.xsocket.connection.readbuffer.adaptive.maxSize";
+
+	// server-wide memory budget of buffered read and write data
+	public static final String SERVER_MEMORY_BUDGET_MAX_SIZE_KEY           = "org.xsocket.connection.server.memoryBudget.maxSize";
+	public static final String SERVER_MEMORY_BUDGET_LOW_WATERMARK_KEY      = "org.xsocket.connection.server.memoryBudget.lowWatermark";
+
+	// write accumulation buffer for primitive and small array writes (0 = deactivated)
+	public static final int DEFAULT_WRITE_BUFFER_ACCUMULATION_SIZE = 1024;
+	public static final String WRITEBUFFER_ACCUMULATION_SIZE_KEY           = "org.xsocket.connection.writebuffer.accumulation.size";
+
+	// sampling buffer leak detection (each n-th acquired buffer will be tracked)
+	public static final String MEMORY_LEAK_DETECTION_SAMPLING_INTERVAL_KEY = "org.xsocket.connection.memory.leakDetection.samplingInterval";
 	
 	
 	public static final String DEFAULT_CLIENT_MAX_READBUFFER_SIZE_KEY       = "org.xsocket.connection.client.readbuffer.defaultMaxReadBufferThreshold";
@@ -178,9 +253,14 @@ final class IoProvider  {
 	private static Integer countDispatcher;
 	private static Integer countClientDispatcher;
 	private static Integer countServerDispatcher;
+	private static int countServerAcceptor = 1;
+	private static boolean serverAcceptorNonBlocking = false;
 	private static Integer maxHandles;
 	private static boolean detachHandleOnNoOps = true; 
 	private static boolean bypassingWriteAllowed = false;
+	private static boolean selectedKeysOptimizationOn = true;
+	private static int dispatcherBusyPollBudgetMicros = 0;
+	private static boolean dispatcherHistogramsOn = true;
     
     private static Boolean suppressSyncFlushWarning;
     private static boolean suppressSyncFlushCompletionHandlerWarning;
@@ -199,6 +279,34 @@ final class IoProvider  {
 	private static int serverReadBufferPreallocationsize = DEFAULT_READ_BUFFER_PREALLOCATION_SIZE;
 	private static int serverReadBufferMinsize = DEFAULT_READ_BUFFER_MIN_SIZE;
 
+	private static boolean readBufferSlabOn = false;
+	private static int readBufferAdaptiveMinSize = DEFAULT_READ_BUFFER_ADAPTIVE_MIN_SIZE;
+	private static int readBufferAdaptiveInitialSize = DEFAULT_READ_BUFFER_ADAPTIVE_INITIAL_SIZE;
+	private static int readBufferAdaptiveMaxSize = DEFAULT_READ_BUFFER_ADAPTIVE_MAX_SIZE;
+	
+	private static Integer serverMemoryBudgetMaxSize;
+	private static Integer serverMemoryBudgetLowWatermark;
+	
+	private static String dispatcherAssignmentStrategy = DispatcherAssignmentStrategies.ROUND_ROBIN;
+	private static boolean dispatcherAutoscaleOn = false;
+	private static int dispatcherAutoscaleMinCount = DEFAULT_DISPATCHER_AUTOSCALE_MIN_COUNT;
+	private static int dispatcherAutoscaleMaxCount = 2 * Runtime.getRuntime().availableProcessors();
+	private static int dispatcherAutoscaleHighUtilization = DEFAULT_DISPATCHER_AUTOSCALE_HIGH_UTILIZATION;
+	private static int dispatcherAutoscaleLowUtilization = DEFAULT_DISPATCHER_AUTOSCALE_LOW_UTILIZATION;
+	private static int dispatcherAutoscaleSamples = DEFAULT_DISPATCHER_AUTOSCALE_SAMPLES;
+	private static int dispatcherAutoscalePeriodMillis = DEFAULT_DISPATCHER_AUTOSCALE_PERIOD_MILLIS;
+	private static boolean dispatcherRebalanceOn = false;
+	private static int dispatcherRebalanceThreshold = DEFAULT_DISPATCHER_REBALANCE_THRESHOLD;
+	private static int dispatcherRebalanceMinLoad = DEFAULT_DISPATCHER_REBALANCE_MIN_LOAD;
+	private static int dispatcherRebalancePeriodMillis = DEFAULT_DISPATCHER_REBALANCE_PERIOD_MILLIS;
+	private static int timeoutWheelTickMillis = DEFAULT_TIMEOUT_WHEEL_TICK_MILLIS;
+	private static int timeoutWheelSize = DEFAULT_TIMEOUT_WHEEL_SIZE;
+	private static boolean coarseClockOn = true;
+	private static int coarseClockTickMillis = DEFAULT_COARSE_CLOCK_TICK_MILLIS;
+	private static boolean readQueueSingleConsumerOn = true;
+	private static int writeBufferAccumulationSize = DEFAULT_WRITE_BUFFER_ACCUMULATION_SIZE;
+	private static BufferLeakDetector bufferLeakDetector;
+
 	private final static String idPrefix;
 
 
@@ -207,9 +315,14 @@ final class IoProvider  {
     	countDispatcher = readIntProperty(COUNT_DISPATCHER_KEY);
     	countClientDispatcher = readIntProperty(COUNT_CLIENT_DISPATCHER_KEY);
     	countServerDispatcher = readIntProperty(COUNT_SERVER_DISPATCHER_KEY);
+    	countServerAcceptor = readIntProperty(COUNT_SERVER_ACCEPTOR_KEY, 1);
+    	serverAcceptorNonBlocking = readBooleanProperty(SERVER_ACCEPTOR_NON_BLOCKING_KEY, "false");
     	maxHandles = readIntProperty(MAX_HANDLES);
     	detachHandleOnNoOps = readBooleanProperty(DETACH_HANDLE_ON_NO_OPS, DEFAULT_DETACH_HANDLE_ON_NO_OPS);
     	bypassingWriteAllowed = readBooleanProperty(IS_BYPASSING_WRITE_ALLOWED, DEFAULT_IS_BYPASSING_WRITE_ALLOWED);
+    	selectedKeysOptimizationOn = readBooleanProperty(SELECTED_KEYS_OPTIMIZATION_ON_KEY, Boolean.toString(SelectedSelectionKeySet.isAccessible()));
+    	dispatcherBusyPollBudgetMicros = readIntProperty(DISPATCHER_BUSY_POLL_BUDGET_MICROS_KEY, 0);
+    	dispatcherHistogramsOn = readBooleanProperty(DISPATCHER_HISTOGRAMS_ON_KEY, DEFAULT_DISPATCHER_HISTOGRAMS_ON);
     	
     	// transfer props
     	transferByteBufferMaxSize = readIntProperty(TRANSFER_MAPPED_BYTE_BUFFER_MAX_MAP_SIZE_KEY, DEFAULT_TRANSFER_BYTE_BUFFER_MAX_MAP_SIZE);
@@ -253,6 +366,55 @@ final class IoProvider  {
     		serverReadBufferMinsize = readIntProperty(IoProvider.SERVER_READBUFFER_PREALLOCATION_MIN_SIZE_KEY, DEFAULT_READ_BUFFER_MIN_SIZE);
     	}
 
+    	readBufferSlabOn = readBooleanProperty(IoProvider.READBUFFER_SLAB_ON_KEY, DEFAULT_READ_BUFFER_SLAB_ON);
+    	readBufferAdaptiveMinSize = readIntProperty(IoProvider.READBUFFER_ADAPTIVE_MIN_SIZE_KEY, DEFAULT_READ_BUFFER_ADAPTIVE_MIN_SIZE);
+    	readBufferAdaptiveInitialSize = readIntProperty(IoProvider.READBUFFER_ADAPTIVE_INITIAL_SIZE_KEY, DEFAULT_READ_BUFFER_ADAPTIVE_INITIAL_SIZE);
+    	readBufferAdaptiveMaxSize = readIntProperty(IoProvider.READBUFFER_ADAPTIVE_MAX_SIZE_KEY, DEFAULT_READ_BUFFER_ADAPTIVE_MAX_SIZE);
+    	
+    	// memory budget
+    	serverMemoryBudgetMaxSize = readIntProperty(IoProvider.SERVER_MEMORY_BUDGET_MAX_SIZE_KEY);
+    	serverMemoryBudgetLowWatermark = readIntProperty(IoProvider.SERVER_MEMORY_BUDGET_LOW_WATERMARK_KEY);
+    	
+    	// dispatcher assignment
+    	String strategy = readProperty(IoProvider.DISPATCHER_ASSIGNMENT_STRATEGY_KEY);
+    	if (strategy != null) {
+    		dispatcherAssignmentStrategy = strategy;
+    	}
+    	
+    	// dispatcher autoscaling
+    	dispatcherAutoscaleOn = readBooleanProperty(IoProvider.DISPATCHER_AUTOSCALE_ON_KEY, DEFAULT_DISPATCHER_AUTOSCALE_ON);
+    	dispatcherAutoscaleMinCount = readIntProperty(IoProvider.DISPATCHER_AUTOSCALE_MIN_COUNT_KEY, DEFAULT_DISPATCHER_AUTOSCALE_MIN_COUNT);
+    	dispatcherAutoscaleMaxCount = readIntProperty(IoProvider.DISPATCHER_AUTOSCALE_MAX_COUNT_KEY, dispatcherAutoscaleMaxCount);
+    	dispatcherAutoscaleHighUtilization = readIntProperty(IoProvider.DISPATCHER_AUTOSCALE_HIGH_UTILIZATION_KEY, DEFAULT_DISPATCHER_AUTOSCALE_HIGH_UTILIZATION);
+    	dispatcherAutoscaleLowUtilization = readIntProperty(IoProvider.DISPATCHER_AUTOSCALE_LOW_UTILIZATION_KEY, DEFAULT_DISPATCHER_AUTOSCALE_LOW_UTILIZATION);
+    	dispatcherAutoscaleSamples = readIntProperty(IoProvider.DISPATCHER_AUTOSCALE_SAMPLES_KEY, DEFAULT_DISPATCHER_AUTOSCALE_SAMPLES);
+    	dispatcherAutoscalePeriodMillis = readIntProperty(IoProvider.DISPATCHER_AUTOSCALE_PERIOD_MILLIS_KEY, DEFAULT_DISPATCHER_AUTOSCALE_PERIOD_MILLIS);
+    	
+    	// dispatcher rebalancing
+    	dispatcherRebalanceOn = readBooleanProperty(IoProvider.DISPATCHER_REBALANCE_ON_KEY, DEFAULT_DISPATCHER_REBALANCE_ON);
+    	dispatcherRebalanceThreshold = readIntProperty(IoProvider.DISPATCHER_REBALANCE_THRESHOLD_KEY, DEFAULT_DISPATCHER_REBALANCE_THRESHOLD);
+    	dispatcherRebalanceMinLoad = readIntProperty(IoProvider.DISPATCHER_REBALANCE_MIN_LOAD_KEY, DEFAULT_DISPATCHER_REBALANCE_MIN_LOAD);
+    	dispatcherRebalancePeriodMillis = readIntProperty(IoProvider.DISPATCHER_REBALANCE_PERIOD_MILLIS_KEY, DEFAULT_DISPATCHER_REBALANCE_PERIOD_MILLIS);
+    	timeoutWheelTickMillis = readIntProperty(IoProvider.TIMEOUT_WHEEL_TICK_MILLIS_KEY, DEFAULT_TIMEOUT_WHEEL_TICK_MILLIS);
+    	timeoutWheelSize = readIntProperty(IoProvider.TIMEOUT_WHEEL_SIZE_KEY, DEFAULT_TIMEOUT_WHEEL_SIZE);
+    	coarseClockOn = readBooleanProperty(IoProvider.COARSE_CLOCK_ON_KEY, DEFAULT_COARSE_CLOCK_ON);
+    	coarseClockTickMillis = readIntProperty(IoProvider.COARSE_CLOCK_TICK_MILLIS_KEY, DEFAULT_COARSE_CLOCK_TICK_MILLIS);
+    	if (coarseClockTickMillis <= 0) {
+    		LOG.warning("invalid coarse clock tick " + coarseClockTickMillis + " millis. using default " + DEFAULT_COARSE_CLOCK_TICK_MILLIS + " millis");
+    		coarseClockTickMillis = DEFAULT_COARSE_CLOCK_TICK_MILLIS;
+    	}
+    	readQueueSingleConsumerOn = readBooleanProperty(IoProvider.READ_QUEUE_SINGLE_CONSUMER_ON_KEY, DEFAULT_READ_QUEUE_SINGLE_CONSUMER_ON);
+    	
+    	// write accumulation
+    	writeBufferAccumulationSize = readIntProperty(IoProvider.WRITEBUFFER_ACCUMULATION_SIZE_KEY, DEFAULT_WRITE_BUFFER_ACCUMULATION_SIZE);
+    	
+    	// leak detection
+    	Integer leakDetectionSamplingInterval = readIntProperty(IoProvider.MEMORY_LEAK_DETECTION_SAMPLING_INTERVAL_KEY);
+    	if ((leakDetectionSamplingInterval != null) && (leakDetectionSamplingInterval > 0)) {
+    		bufferLeakDetector = new BufferLeakDetector(leakDetectionSamplingInterval);
+    		LOG.warning("buffer leak detection is activated (sampling interval " + leakDetectionSamplingInterval + "). This should be used for debugging purposes only");
+    	}
+
 
     	// prepare id prefix
     	// 准备ID的前缀
@@ -299,6 +461,7 @@ final class IoProvider  {
 				sb.append(" minBufferSize=" + DataConverter.toFormatedBytesSize(serverReadBufferMinsize));
 			} 
 			
+			sb.append(" slab=" + readBufferSlabOn);
 			sb.append(")");
 			LOG.fine(sb.toString());
 		}
@@ -316,16 +479,31 @@ final class IoProvider  {
 		// 同时创建服务器端和客户端的MemoryManager
 		// 在createIoHandler()方法中会使用到
 		// FIXME：这两个都是SSL的MemoryManager,如果不是SSL,那么在这里实例化这两个对象是没有必要的.
-		if (serverReadBufferPreallocationOn) {
-			sslMemoryManagerServer = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(serverReadBufferPreallocationsize, serverReadBufferMinsize, serverReadBufferUseDirect);
-		} else {
-			sslMemoryManagerServer = IoSynchronizedMemoryManager.createNonPreallocatedMemoryManager(serverReadBufferUseDirect);
-		}
-		
-		if (clientReadBufferPreallocationOn) {
-			sslMemoryManagerClient = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(clientReadBufferPreallocationsize, clientReadBufferMinsize, clientReadBufferUseDirect);
+		if (readBufferSlabOn) {
+			if (serverReadBufferPreallocationOn) {
+				sslMemoryManagerServer = IoSlabMemoryManager.createPreallocatedMemoryManager(serverReadBufferPreallocationsize, serverReadBufferMinsize, serverReadBufferUseDirect);
+			} else {
+				sslMemoryManagerServer = IoSlabMemoryManager.createNonPreallocatedMemoryManager(serverReadBufferUseDirect);
+			}
+			
+			if (clientReadBufferPreallocationOn) {
+				sslMemoryManagerClient = IoSlabMemoryManager.createPreallocatedMemoryManager(clientReadBufferPreallocationsize, clientReadBufferMinsize, clientReadBufferUseDirect);
+			} else {
+				sslMemoryManagerClient = IoSlabMemoryManager.createNonPreallocatedMemoryManager(clientReadBufferUseDirect);
+			}
+			
 		} else {
-			sslMemoryManagerClient = IoSynchronizedMemoryManager.createNonPreallocatedMemoryManager(clientReadBufferUseDirect);
+			if (serverReadBufferPreallocationOn) {
+				sslMemoryManagerServer = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(serverReadBufferPreallocationsize, serverReadBufferMinsize, serverReadBufferUseDirect);
+			} else {
+				sslMemoryManagerServer = IoSynchronizedMemoryManager.createNonPreallocatedMemoryManager(serverReadBufferUseDirect);
+			}
+			
+			if (clientReadBufferPreallocationOn) {
+				sslMemoryManagerClient = IoSynchronizedMemoryManager.createPreallocatedMemoryManager(clientReadBufferPreallocationsize, clientReadBufferMinsize, clientReadBufferUseDirect);
+			} else {
+				sslMemoryManagerClient = IoSynchronizedMemoryManager.createNonPreallocatedMemoryManager(clientReadBufferUseDirect);
+			}
 		}
 
 	}
@@ -397,6 +575,33 @@ final class IoProvider  {
 	/**
 	 * 服务器端创建IoSocketDispatcher的数目.
 	 */
+	/**
+	 * returns the number of listening channels and acceptor threads of a server 
+	 */
+	static int getServerAcceptorCount() {
+		return countServerAcceptor;
+	}
+	
+	/**
+	 * for test purposes only. Affects the servers which will be created afterwards
+	 */
+	static void setServerAcceptorCount(int count) {
+		countServerAcceptor = count;
+	}
+	
+	
+	static boolean isServerAcceptorNonBlocking() {
+		return serverAcceptorNonBlocking;
+	}
+	
+	/**
+	 * for test purposes only. Affects the servers which will be created afterwards
+	 */
+	static void setServerAcceptorNonBlocking(boolean isNonBlocking) {
+		serverAcceptorNonBlocking = isNonBlocking;
+	}
+	
+	
 	static int getServerDispatcherInitialSize() {
 		if (countServerDispatcher == null) {
 			return getDispatcherInitialSize();
@@ -443,6 +648,124 @@ final class IoProvider  {
     	return bypassingWriteAllowed;
     }
 
+    static boolean isSelectedKeysOptimizationOn() {
+    	return selectedKeysOptimizationOn;
+    }
+    
+    /**
+     * for test purposes only. Affects the dispatchers which will be created afterwards
+     */
+    static void setSelectedKeysOptimizationOn(boolean isOn) {
+    	selectedKeysOptimizationOn = isOn;
+    }
+
+    static boolean isCoarseClockOn() {
+    	return coarseClockOn;
+    }
+    
+    static int getCoarseClockTickMillis() {
+    	return coarseClockTickMillis;
+    }
+    
+    static boolean isReadQueueSingleConsumerOn() {
+    	return readQueueSingleConsumerOn;
+    }
+    
+    /**
+     * for test purposes only
+     */
+    static void setReadQueueSingleConsumerOn(boolean isOn) {
+    	readQueueSingleConsumerOn = isOn;
+    }
+    
+    static boolean isDispatcherHistogramsOn() {
+    	return dispatcherHistogramsOn;
+    }
+    
+    static int getDispatcherBusyPollBudgetMicros() {
+    	return dispatcherBusyPollBudgetMicros;
+    }
+
+    static boolean isReadBufferSlabActivated() {
+    	return readBufferSlabOn;
+    }
+    
+    static int getReadBufferAdaptiveMinSize() {
+    	return readBufferAdaptiveMinSize;
+    }
+    
+    static int getReadBufferAdaptiveInitialSize() {
+    	return readBufferAdaptiveInitialSize;
+    }
+    
+    static int getReadBufferAdaptiveMaxSize() {
+    	return readBufferAdaptiveMaxSize;
+    }
+    
+    static Integer getServerMemoryBudgetMaxSize() {
+    	return serverMemoryBudgetMaxSize;
+    }
+    
+    static Integer getServerMemoryBudgetLowWatermark() {
+    	return serverMemoryBudgetLowWatermark;
+    }
+    
+    static String getDispatcherAssignmentStrategy() {
+    	return dispatcherAssignmentStrategy;
+    }
+    
+    static boolean isDispatcherAutoscaleOn() {
+    	return dispatcherAutoscaleOn;
+    }
+    
+    static int getDispatcherAutoscaleMinCount() {
+    	return dispatcherAutoscaleMinCount;
+    }
+    
+    static int getDispatcherAutoscaleMaxCount() {
+    	return dispatcherAutoscaleMaxCount;
+    }
+    
+    static int getDispatcherAutoscaleHighUtilization() {
+    	return dispatcherAutoscaleHighUtilization;
+    }
+    
+    static int getDispatcherAutoscaleLowUtilization() {
+    	return dispatcherAutoscaleLowUtilization;
+    }
+    
+    static int getDispatcherAutoscaleSamples() {
+    	return dispatcherAutoscaleSamples;
+    }
+    
+    static int getDispatcherAutoscalePeriodMillis() {
+    	return dispatcherAutoscalePeriodMillis;
+    }
+    
+    static boolean isDispatcherRebalanceOn() {
+    	return dispatcherRebalanceOn;
+    }
+    
+    static int getDispatcherRebalanceThreshold() {
+    	return dispatcherRebalanceThreshold;
+    }
+    
+    static int getDispatcherRebalanceMinLoad() {
+    	return dispatcherRebalanceMinLoad;
+    }
+    
+    static int getDispatcherRebalancePeriodMillis() {
+    	return dispatcherRebalancePeriodMillis;
+    }
+    
+    static int getWriteBufferAccumulationSize() {
+    	return writeBufferAccumulationSize;
+    }
+    
+    static BufferLeakDetector getBufferLeakDetector() {
+    	return bufferLeakDetector;
+    }
+
 	/**
 	 * Return the version of this implementation. It consists of any string assigned
 	 * by the vendor of this implementation and does not have any particular syntax
@@ -655,6 +978,24 @@ final class IoProvider  {
 	static Timer getTimer() {
 		return TIMER;
 	}
+	
+	
+	/**
+	 * returns the timing wheel which drives the idle and connection timeouts
+	 * 
+	 * @return the timing wheel
+	 */
+	static synchronized TimingWheel getTimingWheel() {
+		if (timingWheel == null) {
+			int tickMillis = timeoutWheelTickMillis;
+			if (tickMillis <= 0) {
+				LOG.warning("invalid timeout wheel tick " + tickMillis + " millis. using default " + DEFAULT_TIMEOUT_WHEEL_TICK_MILLIS + " millis");
+				tickMillis = DEFAULT_TIMEOUT_WHEEL_TICK_MILLIS;
+			}
+			timingWheel = new TimingWheel(TIMER, tickMillis, timeoutWheelSize);
+		}
+		return timingWheel;
+	}
 
 	
 	static boolean isUseDirectWriteBuffer() {
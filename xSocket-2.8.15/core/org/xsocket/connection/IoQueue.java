@@ -259,8 +259,15 @@ final class IoQueue  {
 	
 	
 	   
-    public synchronized void removeLeased() {
+    /**
+     * removes the leased buffers
+     * 
+     * @return the removed leased buffers or <code>null</code>
+     */
+    public synchronized ByteBuffer[] removeLeased() {
+        ByteBuffer[] result = leased;
         leased = null;
+        return result;
     }
 
 	
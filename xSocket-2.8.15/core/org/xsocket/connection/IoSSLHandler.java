@@ -404,6 +404,9 @@ final class IoSSLHandler extends IoChainableHandler implements IoSSLProcessor.Ev
 			ByteBuffer plainData = pendingWriteMap.getPlainIfWritten(data);
 			if (plainData != null) {
 				getPreviousCallback().onWritten(plainData);
+				
+				// plain data has been encrypted and written -> return pooled buffer (if exists)
+				DirectBufferPool.release(plainData);
 			} else {
 				// else case shouldn't occur, handle it nevertheless
 				getPreviousCallback().onWritten(data);
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.xsocket.DataConverter;
+
+
+/**
+ * Size class based memory manager. Free buffers are kept by hard reference within
+ * power-of-two size classes. If a size class is empty, a new slab (a chunk of the
+ * preallocation size) will be allocated and carved into buffers of the required size class.
+ * Remaining tails of used buffers will be recycled into the largest size class they fit in.
+ *
+ * The manager is thread-safe, each size class is guarded by its own lock
+ *
+ * @author grro@xsocket.org
+ */
+final class IoSlabMemoryManager extends AbstractMemoryManager {
+
+	private static final Logger LOG = Logger.getLogger(IoSlabMemoryManager.class.getName());
+
+	// smallest size class is 64 bytes
+	static final int MIN_SIZE_CLASS_SHIFT = 6;
+
+	// max slabs worth of free memory to keep per size class
+	private static final int MAX_SLABS_PER_SIZE_CLASS = 4;
+
+
+	private final SizeClass[] sizeClasses;
+	private final int slabSize;
+
+
+
+	/**
+	 * constructor
+	 *
+	 * @param preallocationSize            the slab size
+	 * @param preallocate                  true, if buffer should be preallocated
+	 * @param minPreallocatedBufferSize    the minimal buffer size
+	 * @param useDirectMemory  true, if direct memory should be used
+	 */
+	private IoSlabMemoryManager(int preallocationSize, boolean preallocate, int minPreallocatedBufferSize, boolean useDirectMemory) {
+		super(preallocationSize, preallocate, minPreallocatedBufferSize, useDirectMemory);
+
+		int maxShift = shiftOf(Math.max(preallocationSize, 1 << MIN_SIZE_CLASS_SHIFT));
+		slabSize = 1 << maxShift;
+
+		sizeClasses = new SizeClass[maxShift - MIN_SIZE_CLASS_SHIFT + 1];
+		for (int i = 0; i < sizeClasses.length; i++) {
+			int size = 1 << (i + MIN_SIZE_CLASS_SHIFT);
+			sizeClasses[i] = new SizeClass(size, Math.max(MAX_SLABS_PER_SIZE_CLASS, (MAX_SLABS_PER_SIZE_CLASS * slabSize) / size));
+		}
+	}
+
+
+	public static IoSlabMemoryManager createPreallocatedMemoryManager(int preallocationSize, int minBufferSze, boolean useDirectMemory) {
+		return new IoSlabMemoryManager(preallocationSize, true, minBufferSze, useDirectMemory);
+	}
+
+
+	public static IoSlabMemoryManager createNonPreallocatedMemoryManager(boolean useDirectMemory) {
+		return new IoSlabMemoryManager(0, false, 1, useDirectMemory);
+	}
+
+
+	/**
+	 * returns the smallest shift, which satisfies (1 << shift) >= size
+	 */
+	static int shiftOf(int size) {
+		if (size <= 1) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+
+
+	private int classIndexCeil(int size) {
+		return Math.max(0, shiftOf(size) - MIN_SIZE_CLASS_SHIFT);
+	}
+
+
+	private int classIndexFloor(int size) {
+		return (31 - Integer.numberOfLeadingZeros(size)) - MIN_SIZE_CLASS_SHIFT;
+	}
+
+
+	int getSlabSize() {
+		return slabSize;
+	}
+
+
+	int getCountFreeBuffers(int sizeClass) {
+		int idx = classIndexCeil(sizeClass);
+		if (idx >= sizeClasses.length) {
+			return 0;
+		}
+		return sizeClasses[idx].count();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getCurrentSizePreallocatedBuffer() {
+		int size = 0;
+		for (SizeClass sizeClass : sizeClasses) {
+			size += sizeClass.count() * sizeClass.size;
+		}
+		return size;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void recyclePreallocatedMemory(ByteBuffer buffer) {
+
+		if (!isPreallocationMode()) {
+			return;
+		}
+
+		int remaining = buffer.remaining();
+		if ((remaining < getPreallocatedMinBufferSize()) || (remaining < (1 << MIN_SIZE_CLASS_SHIFT))) {
+			countRecycleRejection();
+			return;
+		}
+
+		int idx = Math.min(classIndexFloor(remaining), sizeClasses.length - 1);
+		SizeClass sizeClass = sizeClasses[idx];
+
+		// cut the buffer to the size class (capacity of the slice has to be equals to the class size)
+		if (buffer.position() != 0 || buffer.capacity() != sizeClass.size) {
+			ByteBuffer slice = buffer.slice();
+			slice.limit(sizeClass.size);
+			buffer = slice.slice();
+		}
+
+		if (sizeClass.push(buffer)) {
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("recycling " + DataConverter.toFormatedBytesSize(sizeClass.size));
+			}
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected ByteBuffer acquirePreallocatedMemory(int standardSize) throws IOException {
+		if (!isPreallocationMode()) {
+			countPoolMiss();
+			return newBuffer(standardSize);
+		}
+
+		int idx = classIndexCeil(standardSize);
+
+		// larger than the largest size class?
+		if (idx >= sizeClasses.length) {
+			countPoolMiss();
+			return newBuffer(standardSize);
+		}
+
+		// take a free buffer of the required or of a larger size class
+		for (int i = idx; i < sizeClasses.length; i++) {
+			ByteBuffer buffer = sizeClasses[i].pop();
+			if (buffer != null) {
+				countPoolHit();
+				return buffer;
+			}
+		}
+
+		// .. no free buffer, carve a new slab
+		countPoolMiss();
+		return carve(sizeClasses[idx]);
+	}
+
+
+	private ByteBuffer carve(SizeClass sizeClass) throws IOException {
+		if (sizeClass.size >= slabSize) {
+			return newBuffer(sizeClass.size);
+		}
+
+		ByteBuffer slab = newBuffer(slabSize);
+
+		ByteBuffer first = null;
+		for (int pos = 0; pos < slabSize; pos += sizeClass.size) {
+			slab.limit(pos + sizeClass.size);
+			slab.position(pos);
+			ByteBuffer piece = slab.slice();
+
+			if (first == null) {
+				first = piece;
+			} else {
+				sizeClass.push(piece);
+			}
+		}
+
+		return first;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void preallocate() throws IOException {
+		// slabs will be allocated lazy by acquiring memory
+	}
+
+
+	@Override
+	public String toString() {
+		return super.toString() + " slabSize=" + DataConverter.toFormatedBytesSize(slabSize) + " free=" + DataConverter.toFormatedBytesSize(getCurrentSizePreallocatedBuffer());
+	}
+
+
+	/**
+	 * free stack of a size class
+	 */
+	private static final class SizeClass {
+
+		private final int size;
+		private final ByteBuffer[] stack;
+		private int top = 0;
+
+		SizeClass(int size, int maxFree) {
+			this.size = size;
+			this.stack = new ByteBuffer[maxFree];
+		}
+
+		synchronized boolean push(ByteBuffer buffer) {
+			if (top == stack.length) {
+				return false;
+			}
+
+			buffer.clear();
+			stack[top++] = buffer;
+			return true;
+		}
+
+		synchronized ByteBuffer pop() {
+			if (top == 0) {
+				return null;
+			}
+
+			ByteBuffer buffer = stack[--top];
+			stack[top] = null;
+			return buffer;
+		}
+
+		synchronized int count() {
+			return top;
+		}
+	}
+}
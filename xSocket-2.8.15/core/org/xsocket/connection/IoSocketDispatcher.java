@@ -27,11 +27,15 @@ import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -83,12 +87,25 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 	private int roughNumOfRegisteredHandles;
 	// 没有OP_ACCEPT事件,只处理OP_READ、OP_WRITE事件
 	private Selector selector;
+	// array-backed selected key set (null, if not supported)
+	private SelectedSelectionKeySet selectedKeySet;
 
 	// memory management
 	private final AbstractMemoryManager memoryManager;
 	
 	// wakeup 
 	private long lastTimeWokeUp = System.currentTimeMillis();
+	private final AtomicBoolean isWakeupPending = new AtomicBoolean(false);
+	private final AtomicLong countWakeups = new AtomicLong(0);
+	private final AtomicLong countSavedWakeups = new AtomicLong(0);
+	
+	// busy poll (0 = deactivated)
+	private static final int SPINS_BEFORE_YIELD = 128;
+	private volatile long busyPollMaxBudgetNanos = TimeUnit.MICROSECONDS.toNanos(IoProvider.getDispatcherBusyPollBudgetMicros());
+	private long busyPollBudgetNanos = busyPollMaxBudgetNanos;
+	private volatile boolean isLastSelectSpinning = false;
+	private long countBusyPollHits = 0;
+	private long countBlockingSelects = 0;
 
 	// statistics
     private long statisticsStartTime = System.currentTimeMillis();
@@ -104,6 +121,36 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 	private long sentBytes = 0;		// 发送的字节数目
 
 	private long countUnregisteredWrite = 0;
+	
+	// load sampling (used by the dispatcher assignment strategies)
+	private static final long LOAD_SAMPLE_PERIOD_MILLIS = 500;
+	private long totalReceivedBytes = 0;
+	private long lastLoadSampleTime = 0;
+	private long sampledEvents = 0;
+	private long sampledReceivedBytes = 0;
+	private long recentLoad = 0;
+	
+	// utilization (busy time of the selector loop, excluding the time spent within select)
+	private volatile long busyNanos = 0;
+	private long lastUtilizationSampleTime = System.nanoTime();
+	private long lastUtilizationSampleBusyNanos = 0;
+	
+	// migration
+	private volatile IoSocketDispatcher successor;
+	private long countMigratedIn = 0;
+	private long countMigratedOut = 0;
+	
+	// non-blocking accept (written by the dispatcher thread only)
+	private volatile int numAcceptorKeys = 0;
+	private long countAccepted = 0;
+	
+	// event loop histograms (written by the dispatcher thread only)
+	private static final boolean IS_HISTOGRAM_ACTIVATED = IoProvider.isDispatcherHistogramsOn();
+	private final EventLoopHistogram selectWaitTimeHistogram = new EventLoopHistogram("selectWaitTime", "ns");
+	private final EventLoopHistogram processingTimeHistogram = new EventLoopHistogram("processingTime", "ns");
+	private final EventLoopHistogram taskQueueDepthHistogram = new EventLoopHistogram("taskQueueDepth", "");
+	private final EventLoopHistogram readEventTimeHistogram = new EventLoopHistogram("readEventTime", "ns");
+	private final EventLoopHistogram writeEventTimeHistogram = new EventLoopHistogram("writeEventTime", "ns");
 
 
 	/**
@@ -123,7 +170,7 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 		try {
 			// 打开选择器
 			// 处理OP_READ、OP_WRITE事件
-			selector = Selector.open();
+			selector = openSelector();
 		} catch (IOException ioe) {
 			String text = "exception occured while opening selector. Reason: " + ioe.toString();
 			LOG.severe(text);
@@ -163,7 +210,7 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 
     @Override
     int getNumRegisteredHandles() {
-        int hdls = selector.keys().size();
+        int hdls = selector.keys().size() - numAcceptorKeys;
         roughNumOfRegisteredHandles = hdls;
         return hdls;
     }
@@ -172,6 +219,90 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
     int getRoughNumRegisteredHandles() {
         return roughNumOfRegisteredHandles;
     }
+    
+    
+    /**
+     * returns the number of assigned handles. Handles which are assigned, but not 
+     * registered yet are included 
+     * 
+     * @return the number of assigned handles
+     */
+    int getNumAssignedHandles() {
+    	sampleLoad();
+    	return roughNumOfRegisteredHandles;
+    }
+    
+    
+    /**
+     * returns the load score, which consists of the number of handled events and the 
+     * received KB of the last sample period plus the number of assigned handles  
+     * 
+     * @return the load score 
+     */
+    long getLoadScore() {
+    	sampleLoad();
+    	return recentLoad + roughNumOfRegisteredHandles;
+    }
+    
+    
+    /**
+     * samples the load. This method will be called by the threads which assign new 
+     * connections. Concurrent sampling is tolerated, because the load score is an estimate only
+     */
+    private void sampleLoad() {
+    	long now = CoarseClock.currentTimeMillis();
+    	if ((now - lastLoadSampleTime) >= LOAD_SAMPLE_PERIOD_MILLIS) {
+    		lastLoadSampleTime = now;
+    		
+    		// counters could have been reset by resetStatistics
+    		long events = handledReads + handledWrites;
+    		long eventsDelta = Math.max(0, events - sampledEvents);
+    		sampledEvents = events;
+    		
+    		long bytes = totalReceivedBytes;
+    		long bytesDelta = Math.max(0, bytes - sampledReceivedBytes);
+    		sampledReceivedBytes = bytes;
+    		
+    		recentLoad = eventsDelta + (bytesDelta / 1024);
+    		
+    		// refresh the rough num of registered handles
+    		getNumRegisteredHandles();
+    	}
+    }
+    
+    
+    /**
+     * samples the utilization of the selector loop. The utilization is the ratio of the 
+     * busy time (time spent outside of <code>select</code>) to the elapsed time since the 
+     * last sample  
+     * 
+     * @return the utilization between 0 and 1
+     */
+    synchronized double sampleUtilization() {
+    	long now = System.nanoTime();
+    	long busy = busyNanos;
+    	
+    	double utilization = 0;
+    	long elapsed = now - lastUtilizationSampleTime;
+    	if (elapsed > 0) {
+    		utilization = Math.min(1.0, ((double) (busy - lastUtilizationSampleBusyNanos)) / elapsed);
+    	}
+    	
+    	lastUtilizationSampleTime = now;
+    	lastUtilizationSampleBusyNanos = busy;
+    	
+    	return utilization;
+    }
+    
+    
+    /**
+     * returns the accumulated busy time of the selector loop
+     *  
+     * @return the busy time in millis
+     */
+    long getBusyTimeMillis() {
+    	return TimeUnit.NANOSECONDS.toMillis(busyNanos);
+    }
 
 	
 	@Override
@@ -185,12 +316,24 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 	    keys.addAll(oldSelector.keys());
 	    
 	    // create new selector
-	    selector = Selector.open();
+	    selector = openSelector();
 
 	    // "move" all sockets to the new selector
         for (SelectionKey key : keys) {
             // get info
             int ops = key.interestOps();
+            
+            // listening channel?
+            if (key.attachment() instanceof IIoAcceptHandler) {
+            	key.cancel();
+            	try {
+            		key.channel().register(selector, ops, key.attachment());
+            	} catch (IOException ioe) {
+            		LOG.warning("could not reinit listening channel " + DataConverter.toString(ioe));
+            	}
+            	continue;
+            }
+            
             IoSocketHandler socketHandler = (IoSocketHandler) key.attachment();
 
             // cancel old key 
@@ -203,6 +346,9 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
             }
         }
 
+        // a pending wake up could have been consumed by the old selector
+        selector.wakeup();
+
         // close old selector
         oldSelector.close();
         if (LOG.isLoggable(Level.FINE)) {
@@ -212,6 +358,29 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 
 	
 	
+	private Selector openSelector() throws IOException {
+		Selector sel = Selector.open();
+		
+		if (IoProvider.isSelectedKeysOptimizationOn()) {
+			selectedKeySet = SelectedSelectionKeySet.install(sel);
+		} else {
+			selectedKeySet = null;
+		}
+		
+		return sel;
+	}
+	
+	
+	/**
+	 * returns true, if the array-backed selected key set is used 
+	 * 
+	 * @return true, if the selected keys are optimized
+	 */
+	boolean isSelectedKeysOptimized() {
+		return (selectedKeySet != null);
+	}
+	
+	
 	/**
 	 * <pre>
 	 * 服务器端：
@@ -255,7 +424,21 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 				
 				// addKeyUpdateTask()方法中也会被唤醒
 				// XXX 看这段代码的时候暂停看while里面的流程,先看XSocketServer中主方法中的server.start()
-				int eventCount = selector.select(5000); 
+				int eventCount = 0;
+				long selectStart = System.nanoTime();
+				if (busyPollMaxBudgetNanos > 0) {
+					eventCount = busyPollSelect();
+				} else {
+					// busy poll could have been switched off after a spinning select 
+					isLastSelectSpinning = false;
+					eventCount = selector.select(5000);
+				}
+				long selectReturned = System.nanoTime();
+				CoarseClock.update();
+				
+				// reset the wake up flag before the task queues will be processed. Tasks which are 
+				// added after this point will perform a new wake up
+				isWakeupPending.set(false);
 			
 				// 执行registerQueue中的RegisterTask任务
 				// RegisterTask任务中才会开始执行事件注册
@@ -278,10 +461,22 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 
 				// 读/写发生错误
 				handledTasks += performDeregisterHandlerTasks();
+				
+				// key update tasks added by the dispatcher thread itself (no wake up has been performed)
+				handledTasks += performKeyUpdateTasks();
 				//System.out.println("handledTasks：                              " + handledTasks);
 				
+				long processingTime = System.nanoTime() - selectReturned;
+				busyNanos += processingTime;
+				
+				if (IS_HISTOGRAM_ACTIVATED) {
+					selectWaitTimeHistogram.record(selectReturned - selectStart);
+					processingTimeHistogram.record(processingTime);
+					taskQueueDepthHistogram.record(handledTasks);
+				}
+				
 				// FIXME
-				checkForLooping(eventCount + handledTasks, lastTimeWokeUp);
+				checkForLooping(eventCount + handledTasks, lastTimeWokeUp, isLastSelectSpinning);
 			} catch (Throwable e) {
                 // eat and log exception
 				if (LOG.isLoggable(Level.FINE)) {
@@ -291,9 +486,17 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 		}
 
 
+		// retired dispatcher? forward the late arrived tasks
+		if (successor != null) {
+			performSuccessorTasks();
+		}
+
 		// IoSocketDispatcher关闭
         for (IoSocketHandler socketHandler : getRegistered()) {
-            socketHandler.onDeregisteredEvent();
+        	// migrated handlers have to be ignored
+        	if (socketHandler.getDispatcher() == this) {
+        		socketHandler.onDeregisteredEvent();
+        	}
         }
 
 		try {
@@ -307,57 +510,224 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 	}
 
 
+	/**
+	 * spins on <code>selectNow</code> for the current budget before falling back to the blocking 
+	 * select. The budget will be doubled (up to the max budget), if spinning results in an event or 
+	 * task, and halved if not. While spinning the wake up pending flag is set, so that threads 
+	 * which add tasks don't wake up the selector  
+	 */
+	private int busyPollSelect() throws IOException {
+		long maxBudgetNanos = busyPollMaxBudgetNanos;
+		isWakeupPending.set(true);
+		isLastSelectSpinning = true;
+
+		long start = System.nanoTime();
+		int spins = 0;
+		do {
+			int eventCount = selector.selectNow();
+			if ((eventCount > 0) || hasPendingTasks()) {
+				countBusyPollHits++;
+				busyPollBudgetNanos = Math.min(maxBudgetNanos, busyPollBudgetNanos * 2);
+				return eventCount;
+			}
+			
+			spins++;
+			if ((spins % SPINS_BEFORE_YIELD) == 0) {
+				Thread.yield();
+			}
+		} while ((System.nanoTime() - start) < busyPollBudgetNanos);
+		
+		
+		// nothing happened within the budget
+		busyPollBudgetNanos = Math.max(maxBudgetNanos / 16, busyPollBudgetNanos / 2);
+		
+		// tasks which are added after resetting the flag will wake up the selector 
+		isWakeupPending.set(false);
+		if (hasPendingTasks() || !isOpen.get()) {
+			return selector.selectNow();
+		}
+		
+		isLastSelectSpinning = false;
+		countBlockingSelects++;
+		return selector.select(5000);
+	}
+	
+	
+	private boolean hasPendingTasks() {
+		return !(registerQueue.isEmpty() && keyUpdateQueue.isEmpty() && deregisterQueue.isEmpty());
+	}
+	
+	
+	/**
+	 * sets the max busy poll budget
+	 *  
+	 * @param budgetMicros  the max budget in micros or 0 to deactivate busy polling
+	 */
+	void setBusyPollBudgetMicros(int budgetMicros) {
+		busyPollMaxBudgetNanos = TimeUnit.MICROSECONDS.toNanos(budgetMicros);
+		if (busyPollMaxBudgetNanos > 0) {
+			flushKeyUpdate();
+		}
+	}
+	
+	
+	int getBusyPollBudgetMicros() {
+		return (int) TimeUnit.NANOSECONDS.toMicros(busyPollMaxBudgetNanos);
+	}
+	
+	
+	/**
+	 * for test purposes only
+	 */
+	boolean isLastSelectSpinning() {
+		return isLastSelectSpinning;
+	}
+	
+	
+	/**
+	 * statistic method which returns the number of busy poll phases, which results in an event or task 
+	 * @return the number of busy poll hits
+	 */
+	long getNumberOfBusyPollHits() {
+		return countBusyPollHits;
+	}
+	
+	
+	/**
+	 * statistic method which returns the number of blocking selects in busy poll mode  
+	 * @return the number of blocking selects
+	 */
+	long getNumberOfBlockingSelects() {
+		return countBlockingSelects;
+	}
+	
+	
 	/**
 	 * XXX 处理读写事件
 	 */
 	private void handleReadWriteKeys() {
-		Set<SelectionKey> selectedEventKeys = selector.selectedKeys();
-		Iterator<SelectionKey> it = selectedEventKeys.iterator();
-
-		// handle read & write
-		while (it.hasNext()) {
-		    try {
-    			SelectionKey eventKey = it.next();
-    			it.remove();
+		
+		// array-backed selected keys? 
+		if (selectedKeySet != null) {
+			SelectionKey[] keys = selectedKeySet.getKeys();
+			int size = selectedKeySet.size();
+			
+			for (int i = 0; i < size; i++) {
+				SelectionKey eventKey = keys[i];
+				keys[i] = null;
+				handleReadWriteKey(eventKey);
+			}
+			selectedKeySet.clear();
+			
+		} else {
+			Set<SelectionKey> selectedEventKeys = selector.selectedKeys();
+			Iterator<SelectionKey> it = selectedEventKeys.iterator();
+	
+			// handle read & write
+			while (it.hasNext()) {
+				SelectionKey eventKey = it.next();
+				it.remove();
+				handleReadWriteKey(eventKey);
+			}
+		}
+	}
+	
+	
+	private void handleReadWriteKey(SelectionKey eventKey) {
+	    try {
+	    	// listening channel registered for OP_ACCEPT?
+	    	if (eventKey.attachment() instanceof IIoAcceptHandler) {
+	    		onAcceptableEvent((IIoAcceptHandler) eventKey.attachment());
+	    		return;
+	    	}
+	    	
+			// 附件
+			IoSocketHandler socketHandler = (IoSocketHandler) eventKey.attachment();
+
+			try {
+			    // 读数据
+    			// read data
+    			if (eventKey.isValid() && eventKey.isReadable()) {
+    				//System.out.println("read data...");
+    				onReadableEvent(socketHandler);
+    			}
     
-    			// 附件
-    			IoSocketHandler socketHandler = (IoSocketHandler) eventKey.attachment();
-   
-    			try {
-    			    // 读数据
-	    			// read data
-	    			if (eventKey.isValid() && eventKey.isReadable()) {
-	    				//System.out.println("read data...");
-	    				onReadableEvent(socketHandler);
-	    			}
-	    
-	    			// 写数据
-	    			// write data
-	    			if (eventKey.isValid() && eventKey.isWritable()) {
-	    				//System.out.println("write data...");
-	    				onWriteableEvent(socketHandler);
-	    			}
-    			} catch (Exception e) {
-    				socketHandler.close(e);
+    			// 写数据
+    			// write data
+    			if (eventKey.isValid() && eventKey.isWritable()) {
+    				//System.out.println("write data...");
+    				onWriteableEvent(socketHandler);
     			}
-		    } catch (Exception e) {
-                // eat and log exception
-		        if (LOG.isLoggable(Level.FINE)) {
-		            LOG.fine("error occured by handling selection keys + " + e.toString());
-		        }
-		    }
-		}
+			} catch (Exception e) {
+				socketHandler.close(e);
+			}
+	    } catch (Exception e) {
+            // eat and log exception
+	        if (LOG.isLoggable(Level.FINE)) {
+	            LOG.fine("error occured by handling selection keys + " + e.toString());
+	        }
+	    }
 	}
 
 
+	private void onAcceptableEvent(IIoAcceptHandler acceptHandler) {
+		try {
+			countAccepted += acceptHandler.onAcceptableEvent(this);
+		} catch (Exception e) {
+			// eat and log exception 
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("error occured by accepting connections " + DataConverter.toString(e));
+			}
+		}
+	}
+	
+	
+	/**
+	 * registers a (non-blocking) listening channel for OP_ACCEPT. The accept handler will be 
+	 * called by the dispatcher thread. Registering an already registered channel has no effect  
+	 * 
+	 * @param channel        the listening channel
+	 * @param acceptHandler  the accept handler
+	 */
+	void registerAcceptor(final ServerSocketChannel channel, final IIoAcceptHandler acceptHandler) {
+		assert (!channel.isBlocking());
+		
+		addKeyUpdateTask(new Runnable() {
+			public void run() {
+				if (channel.isOpen() && (channel.keyFor(selector) == null)) {
+					try {
+						channel.register(selector, SelectionKey.OP_ACCEPT, acceptHandler);
+						numAcceptorKeys++;
+					} catch (IOException ioe) {
+						LOG.warning("could not register listening channel " + DataConverter.toString(ioe));
+					}
+				}
+			}
+		});
+	}
+	
+	
+	/**
+	 * returns the number of connections, which has been accepted by this dispatcher  
+	 * 
+	 * @return the number of accepted connections
+	 */
+	long getNumberOfAcceptedConnections() {
+		return countAccepted;
+	}
+	
+	
 	/**
 	 * 处理读事件
 	 */
 	private void onReadableEvent(IoSocketHandler socketHandler) {
+		long start = IS_HISTOGRAM_ACTIVATED ? System.nanoTime() : 0;
+		
 		try {
 			// 读事件
 			long read = socketHandler.onReadableEvent();
 			receivedBytes += read;
+			totalReceivedBytes += read;
 			handledReads++;
 			
 		} catch (Exception t) {
@@ -372,12 +742,18 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 		    }
 			socketHandler.closeSilence(true);
 		}
+		
+		if (IS_HISTOGRAM_ACTIVATED) {
+			readEventTimeHistogram.record(System.nanoTime() - start);
+		}
 	}
 
 	/**
 	 * 处理写事件
 	 */
 	private void onWriteableEvent(IoSocketHandler socketHandler) {
+		long start = IS_HISTOGRAM_ACTIVATED ? System.nanoTime() : 0;
+		
 		try {
 			socketHandler.onWriteableEvent();
 			handledWrites++;
@@ -390,13 +766,31 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 			e = ConnectionUtils.toIOException("error occured by handling readable event. reason " + e.toString(), e);
 			socketHandler.close(e);
 		}
+		
+		if (IS_HISTOGRAM_ACTIVATED) {
+			writeEventTimeHistogram.record(System.nanoTime() - start);
+		}
 	}
 
 	
 
+	/**
+	 * wakes up the selector. The wake up will be skipped, if the caller is the dispatcher thread 
+	 * (the dispatcher is not blocked within select and processes the task queues within the current 
+	 * loop) or a wake up is already pending. By doing this at most one wake up will be performed per loop
+	 */
 	private void wakeUp() {
-		lastTimeWokeUp = System.currentTimeMillis();
-		selector.wakeup();
+		if (isDispatcherInstanceThread()) {
+			countSavedWakeups.incrementAndGet();
+			
+		} else if (isWakeupPending.compareAndSet(false, true)) {
+			lastTimeWokeUp = CoarseClock.currentTimeMillis();
+			countWakeups.incrementAndGet();
+			selector.wakeup();
+			
+		} else {
+			countSavedWakeups.incrementAndGet();
+		}
 	}
 
 
@@ -428,6 +822,13 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 	public boolean register(IoSocketHandler socketHandler, int ops) throws IOException {
 		assert (!socketHandler.getChannel().isBlocking());
 
+		// dispatcher has been retired? 
+		IoSocketDispatcher succ = successor;
+		if (succ != null) {
+			socketHandler.setDispatcher(succ);
+			return succ.register(socketHandler, ops);
+		}
+		
 		socketHandler.setMemoryManager(memoryManager);
 
 		//System.out.println("isDispatcherInstanceThread：" + isDispatcherInstanceThread());
@@ -475,9 +876,200 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 				socketHandler.close(ioe);
 			}
 		}
+		
+		void forward(IoSocketDispatcher dispatcher) {
+			socketHandler.setDispatcher(dispatcher);
+			try {
+				dispatcher.register(socketHandler, ops);
+			} catch (IOException ioe) {
+				ioe = ConnectionUtils.toIOException("error occured by forwarding handler " + socketHandler.getId() + " " + ioe.toString(), ioe);
+				socketHandler.close(ioe);
+			}
+		}
 	}
 	
 
+	
+	/**
+	 * migrates the handler to the target dispatcher without closing the underlying connection. 
+	 * The handler will be deregistered from this dispatcher and registered on the target 
+	 * dispatcher by retaining the interest ops (and by doing this the read suspension state).
+	 * Pending data of the send queue will not be touched
+	 * 
+	 * @param socketHandler  the handler to migrate
+	 * @param target         the target dispatcher
+	 */
+	void migrate(IoSocketHandler socketHandler, IoSocketDispatcher target) {
+		if (isDispatcherInstanceThread()) {
+			migrateNow(socketHandler, target);
+		} else {
+			addKeyUpdateTask(new MigrateTask(socketHandler, target));
+		}
+	}
+	
+	
+	private boolean migrateNow(IoSocketHandler socketHandler, IoSocketDispatcher target) {
+		assert (isDispatcherInstanceThread());
+		
+		if ((target == this) || (socketHandler.getDispatcher() != this)) {
+			return false;
+		}
+		
+		SelectionKey key = socketHandler.getChannel().keyFor(selector);
+		if ((key == null) || !key.isValid()) {
+			return false;
+		}
+		
+		int ops = key.interestOps();
+		key.cancel();
+		if (roughNumOfRegisteredHandles > 0) {
+		    roughNumOfRegisteredHandles--;
+		}
+		countMigratedOut++;
+		
+		// the migrate in task has to be queued before the handler is visible as 
+		// handler of the target dispatcher. By doing this key update tasks of 
+		// other threads will be performed after the registration  
+		target.acceptMigrated(socketHandler, ops);
+		socketHandler.setDispatcher(target);
+		
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.fine("[" + socketHandler.getId() + "] migrated from " + name + " to " + target.getName());
+		}
+		return true;
+	}
+	
+	
+	private void acceptMigrated(IoSocketHandler socketHandler, int ops) {
+		roughNumOfRegisteredHandles++;
+		addKeyUpdateTask(new MigrateInTask(socketHandler, ops));
+	}
+	
+	
+	/**
+	 * drains the dispatcher by migrating all registered handlers to the target dispatchers. 
+	 * Handlers which are registered after draining will be forwarded to the first target 
+	 * dispatcher. The dispatcher should be closed after draining
+	 * 
+	 * @param targets        the target dispatchers
+	 * @param strategy       the strategy to select the target dispatcher of a handler  
+	 * @param maxWaitMillis  the max time to wait for the completion
+	 * @return true, if the dispatcher has been drained
+	 */
+	boolean drain(IoSocketDispatcher[] targets, IDispatcherAssignmentStrategy strategy, long maxWaitMillis) {
+		successor = targets[0];
+		
+		DrainTask drainTask = new DrainTask(targets, strategy);
+		if (isDispatcherInstanceThread()) {
+			drainTask.run();
+		} else {
+			addKeyUpdateTask(drainTask);
+		}
+		
+		try {
+			return drainTask.latch.await(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie) {
+			// Restore the interrupted status
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	
+	/**
+	 * forwards the tasks, which have been added after the dispatcher has been drained 
+	 */
+	private void performSuccessorTasks() {
+		while (true) {
+			Runnable registerTask = registerQueue.poll();
+			if (registerTask == null) {
+				break;
+			} else {
+				((RegisterTask) registerTask).forward(successor);
+			}
+		}
+		
+		// key update tasks of migrated handlers will forward itself
+		performKeyUpdateTasks();
+		performDeregisterHandlerTasks();
+	}
+	
+	
+	private final class MigrateTask implements Runnable {
+		
+		private final IoSocketHandler socketHandler;
+		private final IoSocketDispatcher target;
+		
+		public MigrateTask(IoSocketHandler socketHandler, IoSocketDispatcher target) {
+			this.socketHandler = socketHandler;
+			this.target = target;
+		}
+		
+		public void run() {
+			migrateNow(socketHandler, target);
+		}
+	}
+	
+	
+	private final class MigrateInTask implements Runnable {
+		
+		private final IoSocketHandler socketHandler;
+		private final int ops;
+		
+		public MigrateInTask(IoSocketHandler socketHandler, int ops) {
+			this.socketHandler = socketHandler;
+			this.ops = ops;
+		}
+		
+		public void run() {
+			socketHandler.setDispatcher(IoSocketDispatcher.this);
+			socketHandler.setMemoryManager(memoryManager);
+			
+			if (socketHandler.isOpen()) {
+				try {
+					// onRegisteredEvent will not be called, because the connection is already established
+					socketHandler.getChannel().register(selector, ops, socketHandler);
+					countMigratedIn++;
+				} catch (Exception e) {
+					e = ConnectionUtils.toIOException("error occured by registering migrated handler " + socketHandler.getId() + " " + e.toString(), e);
+					socketHandler.close(e);
+				}
+			}
+		}
+	}
+	
+	
+	private final class DrainTask implements Runnable {
+		
+		private final IoSocketDispatcher[] targets;
+		private final IDispatcherAssignmentStrategy strategy;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		
+		public DrainTask(IoSocketDispatcher[] targets, IDispatcherAssignmentStrategy strategy) {
+			this.targets = targets;
+			this.strategy = strategy;
+		}
+		
+		public void run() {
+			try {
+				// register the pending handlers first  
+				performRegisterHandlerTasks();
+				
+				for (IoSocketHandler socketHandler : getRegistered()) {
+					migrateNow(socketHandler, strategy.select(targets));
+				}
+			} catch (Exception e) {
+                // eat and log exception
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("error occured by draining dispatcher " + name + " " + DataConverter.toString(e));
+				}
+			} finally {
+				latch.countDown();
+			}
+		}
+	}
+	
+	
 	/**
 	 * {@link IoSocketDispatcher#run()}
 	 */
@@ -575,6 +1167,14 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 		}
 		
 		public void run() {
+			
+			// handler has been migrated meanwhile?
+			IoSocketDispatcher currentDispatcher = socketHandler.getDispatcher();
+			if (currentDispatcher != IoSocketDispatcher.this) {
+				currentDispatcher.addKeyUpdateTask(currentDispatcher.new UpdateReadSelectionKeyTask(socketHandler, isSet));
+				return;
+			}
+			
 			assert (isDispatcherInstanceThread());
 			
 			try { 
@@ -801,8 +1401,10 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 		Set<SelectionKey> keys = selector.keys();
 
 		for (SelectionKey key : keys) {
-			IoSocketHandler socketHandler = (IoSocketHandler) key.attachment();
-			registered.add(socketHandler);
+			// ignore listening channels
+			if (key.attachment() instanceof IoSocketHandler) {
+				registered.add((IoSocketHandler) key.attachment());
+			}
 		}
 
 		return registered;
@@ -865,6 +1467,45 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 
 
 
+	/**
+	 * statistic method which returns the number of handles, which have been migrated to this dispatcher
+	 * @return the number of migrated in handles
+	 */
+	public long getNumberOfMigratedInHandles() {
+		return countMigratedIn;
+	}
+	
+	
+	/**
+	 * statistic method which returns the number of handles, which have been migrated to other dispatchers
+	 * @return the number of migrated out handles
+	 */
+	public long getNumberOfMigratedOutHandles() {
+		return countMigratedOut;
+	}
+	
+
+
+	/**
+	 * statistic method which returns the number of performed selector wake ups
+	 * @return the number of wake ups
+	 */
+	public long getNumberOfWakeups() {
+		return countWakeups.get();
+	}
+	
+	
+	/**
+	 * statistic method which returns the number of saved selector wake ups (coalesced 
+	 * wake ups and wake ups requested by the dispatcher thread itself)
+	 * @return the number of saved wake ups
+	 */
+	public long getNumberOfSavedWakeups() {
+		return countSavedWakeups.get();
+	}
+
+
+
 	/**
 	 * statistic method which returns the number of handled reads
 	 *
@@ -941,6 +1582,64 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
         return memoryManager.getCurrentSizePreallocatedBuffer();
     }
 
+    /**
+     * statistic method which returns the average read size currently predicted for the registered connections 
+     * @return the average predicted read size or 0, if no connection is registered
+     */
+    int getAveragePredictedReadSize() {
+        long sum = 0;
+        int count = 0;
+        for (IoSocketHandler handler : getRegistered()) {
+            sum += handler.getReadBufferSize();
+            count++;
+        }
+        
+        if (count == 0) {
+            return 0;
+        }
+        return (int) (sum / count);
+    }
+
+    /**
+     * statistic method which returns the max read size currently predicted for the registered connections 
+     * @return the max predicted read size or 0, if no connection is registered
+     */
+    int getMaxPredictedReadSize() {
+        int max = 0;
+        for (IoSocketHandler handler : getRegistered()) {
+            max = Math.max(max, handler.getReadBufferSize());
+        }
+        return max;
+    }
+
+    long getReceiveBufferPoolHits() {
+        return memoryManager.getNumberOfPoolHits();
+    }
+
+    long getReceiveBufferPoolMisses() {
+        return memoryManager.getNumberOfPoolMisses();
+    }
+
+    long getReceiveBufferHeapAllocations() {
+        return memoryManager.getNumberOfHeapAllocations();
+    }
+
+    long getReceiveBufferDirectAllocations() {
+        return memoryManager.getNumberOfDirectAllocations();
+    }
+
+    long getReceiveBufferAllocatedBytes() {
+        return memoryManager.getAllocatedBytes();
+    }
+
+    long getReceiveBufferRecycleRejections() {
+        return memoryManager.getNumberOfRecycleRejections();
+    }
+
+    long getReceiveBufferClearedSoftReferences() {
+        return memoryManager.getNumberOfClearedSoftReferences();
+    }
+
 
     boolean getReceiveBufferPreallocationMode() {
     	return memoryManager.isPreallocationMode();
@@ -982,11 +1681,49 @@ final class IoSocketDispatcher extends MonitoredSelector implements Runnable, Cl
 		memoryManager.setDirect(isDirect);
 	}
 
+	String getSelectWaitTimeHistogram() {
+		return selectWaitTimeHistogram.toString();
+	}
+	
+	String getProcessingTimeHistogram() {
+		return processingTimeHistogram.toString();
+	}
+	
+	String getTaskQueueDepthHistogram() {
+		return taskQueueDepthHistogram.toString();
+	}
+	
+	String getReadEventTimeHistogram() {
+		return readEventTimeHistogram.toString();
+	}
+	
+	String getWriteEventTimeHistogram() {
+		return writeEventTimeHistogram.toString();
+	}
+	
+	
+	/**
+	 * returns a snapshot of the event loop histograms 
+	 * 
+	 * @return the event loop statistics
+	 */
+	EventLoopStatistics getEventLoopStatistics() {
+		return new EventLoopStatistics(name, selectWaitTimeHistogram.snapshot(), processingTimeHistogram.snapshot(), taskQueueDepthHistogram.snapshot(), 
+									   readEventTimeHistogram.snapshot(), writeEventTimeHistogram.snapshot());
+	}
+	
+
 	/**
 	 * reset the statistics (number of ...)
 	 */
 	public void resetStatistics() {
 	    statisticsStartTime = System.currentTimeMillis();
+	    
+	    selectWaitTimeHistogram.reset();
+	    processingTimeHistogram.reset();
+	    taskQueueDepthHistogram.reset();
+	    readEventTimeHistogram.reset();
+	    writeEventTimeHistogram.reset();
 
 		handledRegistractions = 0;
 		handledReads = 0;
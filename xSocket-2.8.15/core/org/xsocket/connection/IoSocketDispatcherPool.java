@@ -41,6 +41,8 @@ final class IoSocketDispatcherPool implements Closeable {
 
 	private static final Logger LOG = Logger.getLogger(IoSocketDispatcherPool.class.getName());
 	
+	private static final long MAX_DRAIN_WAIT_MILLIS = 1000;
+	
     
     // open flag
     private volatile boolean isOpen = true;
@@ -60,13 +62,24 @@ final class IoSocketDispatcherPool implements Closeable {
 	private int bufferMinsize = IoProvider.DEFAULT_READ_BUFFER_MIN_SIZE;	// 默认64
 	private boolean preallocation = true; 
 	private boolean useDirect = false;
+	
+	// busy poll 
+	private int busyPollBudgetMicros = IoProvider.getDispatcherBusyPollBudgetMicros();
 
 	// dispatcher management
 	private final LinkedList<IoSocketDispatcher> dispatchers = new LinkedList<IoSocketDispatcher>();
 	// 在setDispatcherSize(int)方法中设置, 创建的IoSocketDispatcher的数目
 	private int size;
-	// 从dispatchers取出的索引
-	private int pointer;
+	// snapshot of the dispatchers, which is used to assign new connections 
+	private volatile IoSocketDispatcher[] dispatcherSnapshot = new IoSocketDispatcher[0];
+	
+	// assignment strategy 
+	private IDispatcherAssignmentStrategy assignmentStrategy = DispatcherAssignmentStrategies.create(IoProvider.getDispatcherAssignmentStrategy());
+	private final IDispatcherAssignmentStrategy retryStrategy = new DispatcherAssignmentStrategies.RoundRobinStrategy();
+	
+	// autoscaling and rebalancing
+	private DispatcherPoolAutoscaler autoscaler;
+	private DispatcherRebalancer rebalancer;
 	
     // statistics
     private long acceptedConnections;
@@ -81,6 +94,16 @@ final class IoSocketDispatcherPool implements Closeable {
 		// 设置调度程序的大小, 创建IoSocketDispatcher线程
 		// 
 		setDispatcherSize(size);
+		
+		if (IoProvider.isDispatcherAutoscaleOn()) {
+			setAutoscaler(new DispatcherPoolAutoscaler(this, IoProvider.getDispatcherAutoscaleMinCount(), IoProvider.getDispatcherAutoscaleMaxCount(), 
+													   IoProvider.getDispatcherAutoscaleHighUtilization(), IoProvider.getDispatcherAutoscaleLowUtilization(), 
+													   IoProvider.getDispatcherAutoscaleSamples()));
+		}
+		
+		if (IoProvider.isDispatcherRebalanceOn()) {
+			setRebalancer(new DispatcherRebalancer(this, IoProvider.getDispatcherRebalanceThreshold(), IoProvider.getDispatcherRebalanceMinLoad()));
+		}
     }
     
 
@@ -111,23 +134,24 @@ final class IoSocketDispatcherPool implements Closeable {
 		    throw new IOException("dispatcher is already closed");
 		}
 		
+		IoSocketDispatcher[] snapshot = dispatcherSnapshot;
+		if (snapshot.length == 0) {
+			throw new IOException("no dispatcher available (dispatcher pool " + name + " has a size of " + size + ")");
+		}
+		
 		try {
-			// round-robin approach
-			// 循环调用
-			// 比如,如果IoSocketDispatcherPool中有3个IoSocketDispatcher
-			// 那么这里取出IoSocketDispatcher的顺序为：
-			// 1 -> 2 -> 0 -> 1 -> 2 -> 0 -> 1 -> 2 -> 0 ...
-			// 但是如果在多线程环境中,那么就可能不会顺序调用.
-			// 不过在多线程环境中,pointer++的操作肯定会产生并发问题的,导致了pointer的值超过了size
-			// 不过这里做了pointer >= size的操作,所以也不会产生从dispatchers.get(pointer)的时候出现IndexOutOfBoundsException问题
-			pointer++;
-			if (pointer >= size) { // unsynchronized access of size is OK here (findbugs will criticize this)
-				// 继续从0开始取
-				pointer = 0;
+			// the first trial is performed by the assignment strategy. If the selected 
+			// dispatcher is exhausted, the other ones will be tried one after the other  
+			if (currentTrial == 0) {
+				dispatcher = assignmentStrategy.select(snapshot);
+			} else {
+				dispatcher = retryStrategy.select(snapshot);
 			}
-	
-			System.out.println("IoSocketDispatcher pointer：" + pointer);
-			dispatcher = dispatchers.get(pointer);
+			
+			if (dispatcher == null) {
+				throw new IOException("no dispatcher has been selected by " + assignmentStrategy);
+			}
+			
 			// 默认返回true
 			boolean peregistered = dispatcher.preRegister();
 			
@@ -135,7 +159,7 @@ final class IoSocketDispatcherPool implements Closeable {
 				return dispatcher;
 				
 			} else {
-				if (currentTrial < size) {
+				if (currentTrial < snapshot.length) {
 					return nextDispatcher(++currentTrial);
 				} else {
 					if (LOG.isLoggable(Level.FINE)) {
@@ -160,6 +184,73 @@ final class IoSocketDispatcherPool implements Closeable {
 	}
 	
 	
+	void setAssignmentStrategy(IDispatcherAssignmentStrategy assignmentStrategy) {
+		this.assignmentStrategy = assignmentStrategy;
+	}
+	
+	
+	IDispatcherAssignmentStrategy getAssignmentStrategy() {
+		return assignmentStrategy;
+	}
+	
+	
+	/**
+	 * sets the autoscaler, which will be scheduled periodically. A previous set autoscaler will be cancelled 
+	 * 
+	 * @param autoscaler  the autoscaler or <code>null</code> to deactivate autoscaling
+	 */
+	synchronized void setAutoscaler(DispatcherPoolAutoscaler autoscaler) {
+		if (this.autoscaler != null) {
+			this.autoscaler.cancel();
+		}
+		
+		this.autoscaler = autoscaler;
+		if (autoscaler != null) {
+			long periodMillis = IoProvider.getDispatcherAutoscalePeriodMillis();
+			IoProvider.getTimer().schedule(autoscaler, periodMillis, periodMillis);
+		}
+	}
+	
+	
+	synchronized DispatcherPoolAutoscaler getAutoscaler() {
+		return autoscaler;
+	}
+	
+	
+	/**
+	 * sets the rebalancer, which will be scheduled periodically. A previous set rebalancer will be cancelled 
+	 * 
+	 * @param rebalancer  the rebalancer or <code>null</code> to deactivate rebalancing
+	 */
+	synchronized void setRebalancer(DispatcherRebalancer rebalancer) {
+		if (this.rebalancer != null) {
+			this.rebalancer.cancel();
+		}
+		
+		this.rebalancer = rebalancer;
+		if (rebalancer != null) {
+			long periodMillis = IoProvider.getDispatcherRebalancePeriodMillis();
+			IoProvider.getTimer().schedule(rebalancer, periodMillis, periodMillis);
+		}
+	}
+	
+	
+	synchronized DispatcherRebalancer getRebalancer() {
+		return rebalancer;
+	}
+	
+	
+	/**
+	 * migrates a connection to the target dispatcher without closing it 
+	 * 
+	 * @param handler  the handler of the connection
+	 * @param target   the target dispatcher
+	 */
+	void migrate(IoSocketHandler handler, IoSocketDispatcher target) {
+		handler.getDispatcher().migrate(handler, target);
+	}
+	
+	
 	/**
 	 * FIXME 此方法是否一定要synchronized进行同步?
 	 * 此方法为私有,且在另一个同步方法中被调用.	</br>
@@ -169,6 +260,8 @@ final class IoSocketDispatcherPool implements Closeable {
 	private synchronized void updateDispatcher() {
 		// isOpen默认为true
 		if (isOpen) {
+			List<IoSocketDispatcher> retired = new ArrayList<IoSocketDispatcher>();
+			
 			synchronized (dispatchers) {
 				int currentRunning = dispatchers.size();	// 默认为0
 	
@@ -177,25 +270,22 @@ final class IoSocketDispatcherPool implements Closeable {
 						for (int i = size; i <  currentRunning; i++) {
 							IoSocketDispatcher dispatcher = dispatchers.getLast();
 							dispatchers.remove(dispatcher);
-							try {
-								dispatcher.close();
-							} catch (IOException ioe) {
-								if (LOG.isLoggable(Level.FINE)) {
-									LOG.fine("error occured by closing the dispatcher " + dispatcher + ". reason " + ioe.toString());
-								}
-							}
-	
-							for (IIoDispatcherPoolListener listener : listeners) {
-								listener.onDispatcherRemoved(dispatcher);
-							}
+							retired.add(dispatcher);
 						}
 	
 					} else if ( currentRunning < size) {	// 默认运行这里
 						// 创建IoSocketDispatcher线程,并设置为后台线程
 						for (int i = currentRunning; i < size; i++) {
-							IoUnsynchronizedMemoryManager memoryManager = null;
+							AbstractMemoryManager memoryManager = null;
+							if (IoProvider.isReadBufferSlabActivated()) {
+								if (preallocation) {
+									memoryManager = IoSlabMemoryManager.createPreallocatedMemoryManager(preallocationSize, bufferMinsize, useDirect);
+								} else {
+									memoryManager = IoSlabMemoryManager.createNonPreallocatedMemoryManager(useDirect);
+								}
+								
 							// 默认为true
-							if (preallocation) {
+							} else if (preallocation) {
 								// preallocationSize默认为：16384
 								// bufferMinsize默认为：64
 								// useDirect默认false
@@ -207,6 +297,7 @@ final class IoSocketDispatcherPool implements Closeable {
 							// 实例化IoSocketDispatcher,实例化过程中会打开Selector
 							// 一个IoSocketDispatcher对应一个Selector
 							IoSocketDispatcher dispatcher = new IoSocketDispatcher(memoryManager, name + "#" + i);
+							dispatcher.setBusyPollBudgetMicros(busyPollBudgetMicros);
 							dispatchers.addLast(dispatcher);
 	
 							// XXX 创建IoSocketDispatcher线程,并启动
@@ -223,13 +314,44 @@ final class IoSocketDispatcherPool implements Closeable {
 					}
 				}
 	
-				// FIXME：貌似没有任何用处
-//				IoSocketDispatcher[] connectionDispatchers = new IoSocketDispatcher[dispatchers.size()];
-//				for (int i = 0; i < connectionDispatchers.length; i++) {
-//					connectionDispatchers[i] = dispatchers.get(i);
-//				}
+				dispatcherSnapshot = dispatchers.toArray(new IoSocketDispatcher[dispatchers.size()]);
+			}
+			
+			// the removed dispatchers will be retired outside the lock, because draining takes some time 
+			for (IoSocketDispatcher dispatcher : retired) {
+				retireDispatcher(dispatcher);
+			}
+		}
+	}
+	
+	
+	/**
+	 * retires the dispatcher. The connections of the dispatcher will be migrated to the 
+	 * remaining dispatchers before the dispatcher is closed
+	 * 
+	 * @param dispatcher  the dispatcher to retire
+	 */
+	private void retireDispatcher(IoSocketDispatcher dispatcher) {
+		IoSocketDispatcher[] remaining = dispatcherSnapshot;
+		
+		if (remaining.length > 0) {
+			boolean isDrained = dispatcher.drain(remaining, assignmentStrategy, MAX_DRAIN_WAIT_MILLIS);
+			if (!isDrained && LOG.isLoggable(Level.FINE)) {
+				LOG.fine("dispatcher " + dispatcher.getName() + " has not been drained within " + MAX_DRAIN_WAIT_MILLIS + " millis. closing it");
+			}
+		}
+		
+		try {
+			dispatcher.close();
+		} catch (IOException ioe) {
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("error occured by closing the dispatcher " + dispatcher + ". reason " + ioe.toString());
 			}
 		}
+
+		for (IIoDispatcherPoolListener listener : listeners) {
+			listener.onDispatcherRemoved(dispatcher);
+		}
 	}
 
 
@@ -241,7 +363,9 @@ final class IoSocketDispatcherPool implements Closeable {
     public void close() throws IOException {
         if (isOpen) {
             isOpen = false;
-
+            
+            setAutoscaler(null);
+            setRebalancer(null);
             shutdownDispatcher();
         }
     }
@@ -276,9 +400,122 @@ final class IoSocketDispatcherPool implements Closeable {
         }
 
 		dispatchers.clear();
+		dispatcherSnapshot = new IoSocketDispatcher[0];
 	}
 
 	
+	int getAveragePredictedReadSize() {
+	    long sum = 0;
+	    int count = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        for (IoSocketHandler handler : dispatcher.getRegistered()) {
+	            sum += handler.getReadBufferSize();
+	            count++;
+	        }
+	    }
+	    
+	    if (count == 0) {
+	        return 0;
+	    }
+	    return (int) (sum / count);
+	}
+	
+	int getMaxPredictedReadSize() {
+	    int max = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        max = Math.max(max, dispatcher.getMaxPredictedReadSize());
+	    }
+	    return max;
+	}
+	
+	long getReceiveBufferPoolHits() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getReceiveBufferPoolHits();
+	    }
+	    return num;
+	}
+
+	long getReceiveBufferPoolMisses() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getReceiveBufferPoolMisses();
+	    }
+	    return num;
+	}
+
+	long getReceiveBufferHeapAllocations() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getReceiveBufferHeapAllocations();
+	    }
+	    return num;
+	}
+
+	long getReceiveBufferDirectAllocations() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getReceiveBufferDirectAllocations();
+	    }
+	    return num;
+	}
+
+	long getReceiveBufferAllocatedBytes() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getReceiveBufferAllocatedBytes();
+	    }
+	    return num;
+	}
+
+	long getReceiveBufferRecycleRejections() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getReceiveBufferRecycleRejections();
+	    }
+	    return num;
+	}
+
+	long getReceiveBufferClearedSoftReferences() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getReceiveBufferClearedSoftReferences();
+	    }
+	    return num;
+	}
+
+	List<EventLoopStatistics> getEventLoopStatistics() {
+		List<EventLoopStatistics> result = new ArrayList<EventLoopStatistics>();
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        result.add(dispatcher.getEventLoopStatistics());
+	    }
+	    return result;
+	}
+
+	long getNumberOfWakeups() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getNumberOfWakeups();
+	    }
+	    return num;
+	}
+
+	long getNumberOfSavedWakeups() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getNumberOfSavedWakeups();
+	    }
+	    return num;
+	}
+
+	long getNumberOfMigratedHandles() {
+	    long num = 0;
+	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
+	        num += dispatcher.getNumberOfMigratedOutHandles();
+	    }
+	    return num;
+	}
+
 	int getNumRegisteredHandles() {
 	    int num = 0;
 	    for (IoSocketDispatcher dispatcher : getDispatchers()) {
@@ -342,8 +579,26 @@ final class IoSocketDispatcherPool implements Closeable {
     	setDispatcherSize(getDispatcherSize() + 1);
     }
 	
+	synchronized void decDispatcherSize() {
+		if (getDispatcherSize() > 1) {
+			setDispatcherSize(getDispatcherSize() - 1);
+		}
+	}
+	
 
     
+	int getBusyPollBudgetMicros() {
+		return busyPollBudgetMicros;
+	}
+	
+	void setBusyPollBudgetMicros(int budgetMicros) {
+		this.busyPollBudgetMicros = budgetMicros;
+		for (IoSocketDispatcher dispatcher: getDispatchers()) {
+			dispatcher.setBusyPollBudgetMicros(budgetMicros);
+		}
+	}
+	
+    
 	boolean getReceiveBufferIsDirect() {
 		return useDirect;
 	}
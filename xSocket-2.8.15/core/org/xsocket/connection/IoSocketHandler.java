@@ -82,12 +82,13 @@ final class IoSocketHandler extends IoChainableHandler {
 	// dispatcher handling
 	// 设置写的SelectionKey任务
 	private final SetWriteSelectionKeyTask setWriteSelectionKeyTask = new SetWriteSelectionKeyTask();
-	private IoSocketDispatcher dispatcher;
+	private volatile IoSocketDispatcher dispatcher;
 
 
 	// memory management
 	/** {@link #setMemoryManager(AbstractMemoryManager)} */
 	private AbstractMemoryManager memoryManager;
+	private final AdaptiveReadSizePredictor readSizePredictor = new AdaptiveReadSizePredictor(IoProvider.getReadBufferAdaptiveMinSize(), IoProvider.getReadBufferAdaptiveInitialSize(), IoProvider.getReadBufferAdaptiveMaxSize());
 
 
 	// receive & send queue
@@ -106,8 +107,8 @@ final class IoSocketHandler extends IoChainableHandler {
 
 	// statistics
 	private long openTime = -1;
-	private long lastTimeReceivedMillis = System.currentTimeMillis();	// 最后接收的时间
-	private long lastTimeSentMillis = System.currentTimeMillis();		// 最后发送的时间
+	private long lastTimeReceivedMillis = CoarseClock.currentTimeMillis();	// 最后接收的时间
+	private long lastTimeSentMillis = CoarseClock.currentTimeMillis();		// 最后发送的时间
 	private final AtomicLong receivedBytes = new AtomicLong(0);			// 接收的字节数
 	private final AtomicLong sendBytes = new AtomicLong(0);				// 发送的字节数
 	
@@ -184,6 +185,19 @@ final class IoSocketHandler extends IoChainableHandler {
     void setMemoryManager(AbstractMemoryManager memoryManager) {
     	this.memoryManager = memoryManager;
     }
+    
+    
+    /**
+     * {@link IoSocketDispatcher#migrate(IoSocketHandler, IoSocketDispatcher)}
+     */
+    void setDispatcher(IoSocketDispatcher dispatcher) {
+    	this.dispatcher = dispatcher;
+    }
+    
+    
+    IoSocketDispatcher getDispatcher() {
+    	return dispatcher;
+    }
 
 
     @Override
@@ -393,6 +407,10 @@ final class IoSocketHandler extends IoChainableHandler {
 			}
 		}
 		
+		// return pooled buffers of unwritten data (if exists)
+		DirectBufferPool.release(sendQueue.removeLeased());
+		DirectBufferPool.release(sendQueue.drain());
+		
 		if (!isDisconnect.getAndSet(true)) {
 			try {
 			    getPreviousCallback().onDisconnect();
@@ -417,7 +435,7 @@ final class IoSocketHandler extends IoChainableHandler {
 	
 	
 	void incSentBytes(int addSize) {
-	    lastTimeSentMillis = System.currentTimeMillis();
+	    lastTimeSentMillis = CoarseClock.currentTimeMillis();
 	    sendBytes.getAndAdd(addSize);
 	}
 	
@@ -473,9 +491,17 @@ final class IoSocketHandler extends IoChainableHandler {
 
 		@Override
 		public void run() {
+			IoSocketDispatcher currentDispatcher = dispatcher;
+			
+			// handler has been migrated meanwhile? 
+			if (!currentDispatcher.isDispatcherInstanceThread()) {
+				currentDispatcher.addKeyUpdateTask(this);
+				return;
+			}
+			
 			try { 
 				// 设置OP_WRITE
-				dispatcher.setWriteSelectionKeyNow(IoSocketHandler.this);
+				currentDispatcher.setWriteSelectionKeyNow(IoSocketHandler.this);
 			} catch (Exception e) {
 				e = ConnectionUtils.toIOException("Error by set write selection key now " + e.toString(), e);
 				close(e);
@@ -591,20 +617,33 @@ final class IoSocketHandler extends IoChainableHandler {
 	 */
 	private ByteBuffer[] readSocket() throws IOException {
 		assert (Thread.currentThread().getName().startsWith(IoSocketDispatcher.DISPATCHER_PREFIX)) : "receiveQueue can only be accessed by the dispatcher thread";
-        assert (memoryManager instanceof IoUnsynchronizedMemoryManager);
+        assert ((memoryManager instanceof IoUnsynchronizedMemoryManager) || (memoryManager instanceof IoSlabMemoryManager));
         
 		if (isOpen()) {
 	        ByteBuffer[] received = null;
 
 	        int read = 0;	// 读取的字节数目
-	        lastTimeReceivedMillis = System.currentTimeMillis();
+	        lastTimeReceivedMillis = CoarseClock.currentTimeMillis();
 
 	        // 分配大小, 默认16384
 	        /** memoryManager 由{@link IoSocketDispatcher#updateDispatcher()} 处设置 */
-			ByteBuffer readBuffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(8192);
+	        int readSize = readSizePredictor.getNextReadSize();
+			ByteBuffer readBuffer = memoryManager.acquireMemoryStandardSizeOrPreallocated(readSize);
+			
+			// predicted size can not be served by the preallocated memory? 
+			if ((readBuffer.remaining() < readSize) && (readSize > memoryManager.getPreallocationBufferSize())) {
+				memoryManager.recycleMemory(readBuffer);
+				readBuffer = memoryManager.acquireMemoryMinSize(readSize);
+			}
 //			System.out.println("readBuffer：" + readBuffer);
 			int pos = readBuffer.position();
 			int limit = readBuffer.limit();
+			
+			// limit the read to the predicted size (the unused remainder will be recycled)
+			if (readBuffer.remaining() > readSize) {
+				readBuffer.limit(pos + readSize);
+			}
+			int readCapacity = readBuffer.remaining();
 		
 			// read from channel
 			try {
@@ -632,6 +671,7 @@ final class IoSocketHandler extends IoChainableHandler {
 
 				// end-of-stream has been reached -> throw an exception
 				case -1:
+					readBuffer.limit(limit);
 					memoryManager.recycleMemory(readBuffer);
 					try {  
 					    channel.close();    // forces that isOpen() returns false
@@ -646,6 +686,7 @@ final class IoSocketHandler extends IoChainableHandler {
 
 				// no bytes read recycle read buffer and do nothing
 				case 0:
+					readBuffer.limit(limit);
 					memoryManager.recycleMemory(readBuffer);
 					return null;
 
@@ -654,6 +695,7 @@ final class IoSocketHandler extends IoChainableHandler {
 					// 提取和回收利用内存
 					// 这里经过处理后dataBuffer就是此次过程中接收到的数据
 					ByteBuffer dataBuffer = memoryManager.extractAndRecycleMemory(readBuffer, read);
+					readSizePredictor.record(read, readCapacity);
 //					System.out.println("dataBuffer：" + dataBuffer);
 
 					received = new ByteBuffer[1];
@@ -722,10 +764,13 @@ final class IoSocketHandler extends IoChainableHandler {
 			// 写任务还未完成,有剩余数据没写入
 			// is write task not complete?
 			if (result.isAllWritten()) {
-			    sendQueue.removeLeased();
+			    ByteBuffer[] written = sendQueue.removeLeased();
 				writeTask.release();
 				result.notifyWriteCallback();
 				
+				// return pooled buffers (if exists)
+				DirectBufferPool.release(written);
+				
 			} else {
 			    pendingWriteTask = writeTask;
 			} 
@@ -804,6 +849,10 @@ final class IoSocketHandler extends IoChainableHandler {
 		return sendBytes.get();
 	}
 	
+	public int getReadBufferSize() {
+		return readSizePredictor.getNextReadSize();
+	}
+	
 	public String getInfo() {
 		return "sendQueueSize=" + sendQueue.getSize() + ", countIncompleteWrites=" + 
 		       " sendBytes=" + sendBytes+ 
@@ -849,6 +898,7 @@ final class IoSocketHandler extends IoChainableHandler {
 		       + ", age=" + DataConverter.toFormatedDuration(System.currentTimeMillis() - openTime)
 		       + ", lastReceived=" + df.format(new Date(lastTimeReceivedMillis))
 		       + ", sendQueueSize=" + DataConverter.toFormatedBytesSize(sendQueue.getSize())
+		       + ", readBufferSize=" + DataConverter.toFormatedBytesSize(readSizePredictor.getNextReadSize())
 		       + " [" + id + "]");
 
    			
@@ -23,8 +23,8 @@ package org.xsocket.connection;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,7 +33,9 @@ import org.xsocket.DataConverter;
 /**
  * 用于多线程中.		<br></br>
  * 
- * a Memory Manager implementation  
+ * a Memory Manager implementation, which can be shared by several threads. Recycled buffers 
+ * will be cached by the recycling thread first. If the thread cache is full, the buffer 
+ * will be added to a shared, lock-free overflow queue. 
  *  
  * @author grro@xsocket.org
  */
@@ -41,7 +43,23 @@ final class IoSynchronizedMemoryManager extends AbstractMemoryManager {
 	
 	private static final Logger LOG = Logger.getLogger(IoSynchronizedMemoryManager.class.getName());
 	
-	private final List<SoftReference<ByteBuffer>> memoryBuffer = new ArrayList<SoftReference<ByteBuffer>>();
+	// max buffers per thread cache 
+	static final int THREAD_CACHE_SIZE = 4;
+	
+	// max buffers of the shared overflow queue 
+	static final int MAX_SHARED_BUFFERS = 1024;
+	
+	
+	private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+		@Override
+		protected ThreadCache initialValue() {
+			return new ThreadCache();
+		}
+	};
+	
+	private final ConcurrentLinkedQueue<BufferRef> sharedBuffers = new ConcurrentLinkedQueue<BufferRef>();
+	private final AtomicInteger countSharedBuffers = new AtomicInteger(0);
+	private final AtomicInteger freeSize = new AtomicInteger(0);
 
 		
 	/**
@@ -76,23 +94,13 @@ final class IoSynchronizedMemoryManager extends AbstractMemoryManager {
 	
 
 	/**
-	 * return the free memory size
+	 * return the free memory size. Buffers which have been meanwhile 
+	 * cleared by the gc are included till they are polled  
 	 * 
 	 * @return the free memory size
 	 */
 	public int getCurrentSizePreallocatedBuffer() {
-		int size = 0;
-		
-		synchronized (memoryBuffer) {
-			for (SoftReference<ByteBuffer> bufferRef: memoryBuffer) {
-				ByteBuffer buffer = bufferRef.get();
-				if (buffer != null) {
-					size += buffer.remaining();
-				}
-			}
-		}
-		
-		return size;
+		return freeSize.get();
 	}
 			
 	
@@ -103,18 +111,33 @@ final class IoSynchronizedMemoryManager extends AbstractMemoryManager {
 	 * 
 	 * @param buffer the buffer to recycle
 	 */
-	public void recycleMemory(ByteBuffer buffer) {
+	protected void recyclePreallocatedMemory(ByteBuffer buffer) {
 		if (isPreallocationMode()) {
 			int remaining = buffer.remaining(); 
 			if (remaining >= getPreallocatedMinBufferSize()) {
-				synchronized (memoryBuffer) {
 
-					if (LOG.isLoggable(Level.FINE)) {
-						LOG.fine("recycling " + DataConverter.toFormatedBytesSize(buffer.remaining()));
-					}
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("recycling " + DataConverter.toFormatedBytesSize(buffer.remaining()));
+				}
 
-					memoryBuffer.add(new SoftReference<ByteBuffer>(buffer));
+				// thread cache has free slots?
+				if (threadCache.get().push(buffer)) {
+					freeSize.addAndGet(remaining);
+					return;
+				}
+				
+				// .. no, add it to the shared queue
+				if (countSharedBuffers.incrementAndGet() <= MAX_SHARED_BUFFERS) {
+					sharedBuffers.offer(new BufferRef(buffer, remaining));
+					freeSize.addAndGet(remaining);
+					
+				// .. shared queue is full. drop it
+				} else {
+					countSharedBuffers.decrementAndGet();
 				}
+				
+			} else {
+				countRecycleRejection();
 			}
 		}
 	}
@@ -128,33 +151,83 @@ final class IoSynchronizedMemoryManager extends AbstractMemoryManager {
 	/**
 	 * acquire free memory
 	 */
-	public ByteBuffer acquireMemoryStandardSizeOrPreallocated(int standardSize) throws IOException {		
-		ByteBuffer buffer = null;
-		
+	protected ByteBuffer acquirePreallocatedMemory(int standardSize) throws IOException {		
 
 		if (isPreallocationMode()) {
 			
-			synchronized (memoryBuffer) {
-				if (!memoryBuffer.isEmpty()) {
-					SoftReference<ByteBuffer> freeBuffer = memoryBuffer.remove(0);
-					buffer = freeBuffer.get();
-		
-					// size sufficient?
-					if ((buffer != null) && (buffer.limit() < getPreallocatedMinBufferSize())) {
-						buffer = null;			
-					}
-				} 
+			// thread cached buffer available? 
+			ByteBuffer buffer = threadCache.get().pop();
+			if (buffer != null) {
+				freeSize.addAndGet(-buffer.remaining());
+				countPoolHit();
+				return buffer;
 			}
-							
-						
-			if (buffer == null) {
-				buffer = newBuffer(standardSize);
+
+			// .. no, try to get a shared one 
+			BufferRef bufferRef = sharedBuffers.poll();
+			while (bufferRef != null) {
+				countSharedBuffers.decrementAndGet();
+				freeSize.addAndGet(-bufferRef.size);
+				
+				buffer = bufferRef.get();
+				if (buffer == null) {
+					countClearedSoftReference();
+				
+				// size sufficient?
+				} else if (buffer.limit() >= getPreallocatedMinBufferSize()) {
+					countPoolHit();
+					return buffer;
+				}
+				
+				bufferRef = sharedBuffers.poll();
 			}
-						
-			return buffer;
+			
+			countPoolMiss();
+			return newBuffer(standardSize);
 			
 		} else {
+			countPoolMiss();
 			return newBuffer(standardSize);
 		}
 	}	
-}
\ No newline at end of file
+	
+	
+	
+	private static final class BufferRef extends SoftReference<ByteBuffer> {
+		
+		private final int size;
+		
+		BufferRef(ByteBuffer buffer, int size) {
+			super(buffer);
+			this.size = size;
+		}
+	}
+	
+	
+	/**
+	 * per thread cache. The cache will be accessed by the owning thread only
+	 */
+	private static final class ThreadCache {
+		
+		private final ByteBuffer[] buffers = new ByteBuffer[THREAD_CACHE_SIZE];
+		private int top = 0;
+		
+		boolean push(ByteBuffer buffer) {
+			if (top == buffers.length) {
+				return false;
+			}
+			buffers[top++] = buffer;
+			return true;
+		}
+		
+		ByteBuffer pop() {
+			if (top == 0) {
+				return null;
+			}
+			
+			ByteBuffer buffer = buffers[--top];
+			buffers[top] = null;
+			return buffer;
+		}
+	}
+}
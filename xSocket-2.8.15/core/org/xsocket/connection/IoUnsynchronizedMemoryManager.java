@@ -87,14 +87,19 @@ final class IoUnsynchronizedMemoryManager extends AbstractMemoryManager {
 	/**
 	 * {@inheritDoc}
 	 */
-	public void recycleMemory(ByteBuffer buffer) {
+	protected void recyclePreallocatedMemory(ByteBuffer buffer) {
 		
 		// preallocate mode?
-		if (isPreallocationMode() && (buffer.remaining() >= getPreallocatedMinBufferSize())) {
-			if (LOG.isLoggable(Level.FINE)) {
-				LOG.fine("recycling " + DataConverter.toFormatedBytesSize(buffer.remaining()));
+		if (isPreallocationMode()) {
+			if (buffer.remaining() >= getPreallocatedMinBufferSize()) {
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("recycling " + DataConverter.toFormatedBytesSize(buffer.remaining()));
+				}
+				freeBuffer = buffer;
+				
+			} else {
+				countRecycleRejection();
 			}
-			freeBuffer = buffer;
 		} 
 	}
 	
@@ -102,12 +107,19 @@ final class IoUnsynchronizedMemoryManager extends AbstractMemoryManager {
 	/**
 	 * {@inheritDoc}
 	 */
-	public ByteBuffer acquireMemoryStandardSizeOrPreallocated(int standardSize) throws IOException {
+	protected ByteBuffer acquirePreallocatedMemory(int standardSize) throws IOException {
 		// createPreallocatedMemoryManager中为true
 		if (isPreallocationMode()) {
+			if ((freeBuffer != null) && (freeBuffer.remaining() >= getPreallocatedMinBufferSize())) {
+				countPoolHit();
+			} else {
+				countPoolMiss();
+			}
+			
 			// 分配大小
 			preallocate();
 		} else {
+			countPoolMiss();
 			freeBuffer = newBuffer(standardSize);
 		}
 
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.xsocket.DataConverter;
+
+
+
+/**
+ * Memory budget, which limits the data buffered by the read and write queues of all
+ * attached connections. If the budget is exceeded, receiving of the heaviest connections
+ * will be suspended. Receiving will be resumed, if the buffered data falls below the low watermark
+ *
+ * @author grro@xsocket.org
+ */
+final class MemoryBudget {
+
+	private static final Logger LOG = Logger.getLogger(MemoryBudget.class.getName());
+
+	private final long maxSize;
+	private final long lowWatermark;
+
+	private final AtomicLong used = new AtomicLong(0);
+
+	// buffered size per connection
+	private final ConcurrentHashMap<NonBlockingConnection, AtomicLong> connections = new ConcurrentHashMap<NonBlockingConnection, AtomicLong>();
+	private final ConcurrentHashMap<NonBlockingConnection, Boolean> suspended = new ConcurrentHashMap<NonBlockingConnection, Boolean>();
+
+	// statistics
+	private long countSuspends = 0;
+	private long countResumes = 0;
+
+
+
+	/**
+	 * constructor
+	 *
+	 * @param maxSize       the max size of buffered data
+	 * @param lowWatermark  the size, at which suspended connections will be resumed
+	 */
+	MemoryBudget(long maxSize, long lowWatermark) {
+		if (lowWatermark > maxSize) {
+			throw new IllegalArgumentException("low watermark " + lowWatermark + " is larger than max size " + maxSize);
+		}
+
+		this.maxSize = maxSize;
+		this.lowWatermark = lowWatermark;
+	}
+
+
+	/**
+	 * updates the buffered size of the connection
+	 *
+	 * @param connection   the connection
+	 * @param size         the current buffered size of the connection
+	 */
+	void update(NonBlockingConnection connection, long size) {
+
+		AtomicLong reported = connections.get(connection);
+		if (reported == null) {
+			if (!connection.isOpen()) {
+				return;
+			}
+
+			AtomicLong newReported = new AtomicLong(0);
+			reported = connections.putIfAbsent(connection, newReported);
+			if (reported == null) {
+				reported = newReported;
+			}
+		}
+
+		long delta = size - reported.getAndSet(size);
+		if (delta == 0) {
+			return;
+		}
+
+		long current = used.addAndGet(delta);
+
+		// budget exceeded?
+		if ((delta > 0) && (current > maxSize)) {
+			suspendHeaviest(current);
+
+		// ... or dropped below low watermark
+		} else if ((delta < 0) && (current < lowWatermark) && !suspended.isEmpty()) {
+			resumeAll();
+		}
+	}
+
+
+	/**
+	 * removes the connection
+	 *
+	 * @param connection  the connection
+	 */
+	void remove(NonBlockingConnection connection) {
+		AtomicLong reported = connections.remove(connection);
+		suspended.remove(connection);
+
+		if (reported != null) {
+			long current = used.addAndGet(-reported.getAndSet(0));
+			if ((current < lowWatermark) && !suspended.isEmpty()) {
+				resumeAll();
+			}
+		}
+	}
+
+
+
+	private synchronized void suspendHeaviest(long current) {
+
+		// has meanwhile be handled by another thread?
+		if (used.get() <= maxSize) {
+			return;
+		}
+
+		List<Entry<NonBlockingConnection, AtomicLong>> candidates = new ArrayList<Entry<NonBlockingConnection, AtomicLong>>();
+		for (Entry<NonBlockingConnection, AtomicLong> entry : connections.entrySet()) {
+			if (!suspended.containsKey(entry.getKey())) {
+				candidates.add(entry);
+			}
+		}
+
+		Collections.sort(candidates, new Comparator<Entry<NonBlockingConnection, AtomicLong>>() {
+			public int compare(Entry<NonBlockingConnection, AtomicLong> e1, Entry<NonBlockingConnection, AtomicLong> e2) {
+				long s1 = e1.getValue().get();
+				long s2 = e2.getValue().get();
+				return (s1 < s2) ? 1 : ((s1 == s2) ? 0 : -1);
+			}
+		});
+
+
+		// suspend the heaviest connections until the released data would be sufficient to fall below the low watermark
+		long toRelease = current - lowWatermark;
+		for (Entry<NonBlockingConnection, AtomicLong> entry : candidates) {
+			if (toRelease <= 0) {
+				break;
+			}
+
+			// connections without buffered data will not be suspended
+			if (entry.getValue().get() == 0) {
+				continue;
+			}
+
+			NonBlockingConnection connection = entry.getKey();
+			if (connection.suspendReceivingByBudget()) {
+				suspended.put(connection, Boolean.TRUE);
+				countSuspends++;
+				toRelease -= entry.getValue().get();
+
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("[" + connection.getId() + "] memory budget " + DataConverter.toFormatedBytesSize(maxSize) + " exceeded (" +
+							 DataConverter.toFormatedBytesSize(current) + "). suspending receiving (connection buffered " + DataConverter.toFormatedBytesSize(entry.getValue().get()) + ")");
+				}
+			}
+		}
+	}
+
+
+	private synchronized void resumeAll() {
+		if (used.get() >= lowWatermark) {
+			return;
+		}
+
+		for (NonBlockingConnection connection : suspended.keySet()) {
+			suspended.remove(connection);
+			connection.resumeReceivingByBudget();
+			countResumes++;
+
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("[" + connection.getId() + "] buffered data fell below low watermark " + DataConverter.toFormatedBytesSize(lowWatermark) + ". resuming receiving");
+			}
+		}
+	}
+
+
+	long getMaxSize() {
+		return maxSize;
+	}
+
+	long getLowWatermark() {
+		return lowWatermark;
+	}
+
+	long getUsed() {
+		return used.get();
+	}
+
+	int getNumberOfSuspendedConnections() {
+		return suspended.size();
+	}
+
+	synchronized long getNumberOfSuspends() {
+		return countSuspends;
+	}
+
+	synchronized long getNumberOfResumes() {
+		return countResumes;
+	}
+
+
+	@Override
+	public String toString() {
+		return "used=" + DataConverter.toFormatedBytesSize(used.get()) + " maxSize=" + DataConverter.toFormatedBytesSize(maxSize) +
+		       " lowWatermark=" + DataConverter.toFormatedBytesSize(lowWatermark) + " suspended=" + suspended.size();
+	}
+}
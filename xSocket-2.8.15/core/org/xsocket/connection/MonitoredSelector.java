@@ -58,7 +58,25 @@ abstract class MonitoredSelector {
     }
     
     final protected void checkForLooping(int eventCount, long lastTimeWokeUpManually) {
+    	checkForLooping(eventCount, lastTimeWokeUpManually, false);
+    }
+    
+    
+    /**
+     * checks if the selector is looping (returns immediately without selected keys)
+     * 
+     * @param eventCount                the number of events and tasks
+     * @param lastTimeWokeUpManually    the last time the selector has been woken up manually  
+     * @param isIntentionalSpinning     true, if the selector returned from an intentional spinning (busy poll) 
+     */
+    final protected void checkForLooping(int eventCount, long lastTimeWokeUpManually, boolean isIntentionalSpinning) {
         
+    	// spinning by intention is not a looping selector 
+    	if (isIntentionalSpinning) {
+    		zeroCounter = 0;
+    		return;
+    	}
+    	
         if (IS_LOOPING_CHECK_ACTIVATED) {
         
             if (eventCount == 0) {
@@ -165,6 +165,10 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	private final Object suspendGuard = new Object(); 
 	private Integer maxReadBufferSize;
 	
+	// memory budget
+	private MemoryBudget memoryBudget = null;
+	private final AtomicBoolean isBudgetSuspended = new AtomicBoolean(false);
+	
 
 
 	/**
@@ -729,7 +733,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 		
 		setAttachment(attachment);
 		
-		handlerAdapterRef.set(HandlerAdapter.newInstance(appHdl));
+		setHandlerAdapter(HandlerAdapter.newInstance(appHdl));
 		isServerSide = false;
 		
 		// 创建客户端SocketChannel
@@ -926,7 +930,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	 *  server-side constructor
 	 */
 	protected NonBlockingConnection(ConnectionManager connectionManager, HandlerAdapter hdlAdapter) throws IOException {
-		handlerAdapterRef.set(hdlAdapter);
+		setHandlerAdapter(hdlAdapter);
 		
 		isServerSide = true;
 		isConnected.set(true);
@@ -1095,6 +1099,18 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	
 
 
+	/**
+	 * sets the handler adapter. If the single consumer mode is activated (opt-in by 
+	 * org.xsocket.connection.readQueue.singleConsumer.on) and the received data will be 
+	 * read by the serialized onData calls of the handler, the read buffer will be accessed 
+	 * without locking. In this case the connection must not be read by other threads  
+	 */
+	private void setHandlerAdapter(HandlerAdapter adapter) {
+		handlerAdapterRef.set(adapter);
+		setReadBufferSingleConsumer(IoProvider.isReadQueueSingleConsumerOn() && adapter.isSerializedDataHandler());
+	}
+	
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1118,7 +1134,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
         
         boolean callDisconnect = false;
         synchronized (disconnectedGuard) {
-            handlerAdapterRef.set(adapter);
+            setHandlerAdapter(adapter);
             if (isChangeListener) {
                 handlerReplaceListenerRef.set((IHandlerChangeListener) hdl);
             }
@@ -1318,7 +1334,9 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
                     }
                 }
             }
-        }   
+        }
+        
+        updateMemoryBudget();
     }
 
     
@@ -1340,7 +1358,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
             
             // check if receiving has to be resumed
             synchronized (suspendGuard) {
-                if (ioHandler.isReadSuspended() && ((getReadQueueSize() < maxReadBufferSize))) {
+                if (ioHandler.isReadSuspended() && ((getReadQueueSize() < maxReadBufferSize)) && !isBudgetSuspended.get()) {
                     try {
                         if (LOG.isLoggable(Level.FINE)) {
                             LOG.fine("[" + getId() + "] resuming read, because read buffer size is lower than max read buffers size " + maxReadBufferSize);
@@ -1358,9 +1376,84 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
             }
         }
         
+        updateMemoryBudget();
+        
         return readBufs;
     }
     
+    
+    /**
+     * sets the memory budget the buffered data of this connection is accounted to 
+     * 
+     * @param memoryBudget  the memory budget
+     */
+    void setMemoryBudget(MemoryBudget memoryBudget) {
+    	this.memoryBudget = memoryBudget;
+    	updateMemoryBudget();
+    }
+    
+    
+    private void updateMemoryBudget() {
+    	MemoryBudget budget = memoryBudget;
+    	if (budget != null) {
+    		budget.update(this, getReadQueueSize() + getPendingWriteDataSize());
+    	}
+    }
+    
+    
+    /**
+     * suspends receiving caused by an exceeded memory budget 
+     * 
+     * @return true, if receiving has been suspended
+     */
+    boolean suspendReceivingByBudget() {
+    	synchronized (suspendGuard) {
+    		if (isBudgetSuspended.getAndSet(true)) {
+    			return false;
+    		}
+    		
+    		try {
+    			ioHandler.suspendRead();
+    			return true;
+    		} catch (IOException ioe) {
+    			isBudgetSuspended.set(false);
+    			if (LOG.isLoggable(Level.FINE)) {
+    				LOG.fine("[" + getId() + "] error occured by suspending read (caused by memory budget) " + ioe.toString());
+    			}
+    			return false;
+    		}
+		}
+    }
+    
+    
+    /**
+     * resumes receiving, if it has been suspended by the memory budget
+     */
+    void resumeReceivingByBudget() {
+    	synchronized (suspendGuard) {
+    		if (isBudgetSuspended.getAndSet(false)) {
+    			
+    			// suspended by user or by max read buffer threshold? 
+    			if (isSuspended.get() || ((maxReadBufferSize != null) && (getReadQueueSize() >= maxReadBufferSize))) {
+    				return;
+    			}
+    			
+    			try {
+    				ioHandler.resumeRead();
+    			} catch (IOException ioe) {
+    				if (LOG.isLoggable(Level.FINE)) {
+    					LOG.fine("[" + getId() + "] error occured by resuming read (caused by memory budget) " + ioe.toString());
+    				}
+    			}
+    		}
+		}
+    }
+    
+    
+    boolean isReceivingSuspendedByBudget() {
+    	return isBudgetSuspended.get();
+    }
+    
 	
 
     /**
@@ -1382,6 +1475,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	private void onWritten(ByteBuffer data) {
 		synchronWriter.onWritten(data);
 		writeCompletionManager.onWritten(data);
+		updateMemoryBudget();
 	}
 
 	
@@ -1420,11 +1514,19 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 		}
 
         isConnected.set(false);
+        
+        // the data can not be written anymore 
+        discardWriteBuffer();
 	        
 		TimeoutMgmHandle hdl = timeoutMgmHandle; 
 		if (hdl != null) {
 		    hdl.destroy();
 		}
+		
+		MemoryBudget budget = memoryBudget;
+		if (budget != null) {
+			budget.remove(this);
+		}
 	        
 		if (adapter != null) {
             // call first onData
@@ -1529,7 +1631,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	}
 
 
-	private long getRemainingMillisToConnectionTimeout(long currentMillis) {
+	long getRemainingMillisToConnectionTimeout(long currentMillis) {
 		return connectionTimeoutDateMillis - currentMillis;
 	}
 
@@ -1543,7 +1645,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	}
 	
 
-	private long getRemainingMillisToIdleTimeout(long currentMillis) {
+	long getRemainingMillisToIdleTimeout(long currentMillis) {
 		
 		long remaining = idleTimeoutDateMillis - currentMillis;
 
@@ -1559,6 +1661,16 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 		}
 	}
 	
+	/**
+	 * returns the (predicted) size of the next socket read
+	 * 
+	 * @return the size of the next socket read 
+	 */
+	int getReadBufferSize() {
+		return ioHandler.getReadBufferSize();
+	}
+	
+	
 	String getRegisteredOpsInfo() {
 		return ioHandler.getRegisteredOpsInfo();
 	}
@@ -1727,13 +1839,12 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 		}
 
 		
-		if ((timeoutMillis != IConnection.MAX_TIMEOUT_MILLIS) && (isConnected.get())) {
-			long period = idleTimeoutMillis;
-			if (idleTimeoutMillis > 500) {
-				period = idleTimeoutMillis / 5;
+		if (isConnected.get()) {
+			if (timeoutMillis != IConnection.MAX_TIMEOUT_MILLIS) {
+				timeoutMgmHandle.scheduleIdleTimeout(idleTimeoutMillis);
+			} else {
+				timeoutMgmHandle.cancelIdleTimeout();
 			}
-			
-			timeoutMgmHandle.updateCheckPeriod(period);
 		}
 	}
 	
@@ -1754,13 +1865,12 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 		this.connectionTimeoutDateMillis = System.currentTimeMillis() + connectionTimeoutMillis;
 
 
-		if ((timeoutMillis != IConnection.MAX_TIMEOUT_MILLIS) && (isConnected.get())) {
-			long period = connectionTimeoutMillis;
-			if (connectionTimeoutMillis > 500) {
-				period = connectionTimeoutMillis / 5;
+		if (isConnected.get()) {
+			if (timeoutMillis != IConnection.MAX_TIMEOUT_MILLIS) {
+				timeoutMgmHandle.scheduleConnectionTimeout(connectionTimeoutMillis);
+			} else {
+				timeoutMgmHandle.cancelConnectionTimeout();
 			}
-			
-			timeoutMgmHandle.updateCheckPeriod(period);
 		}
 	}
 
@@ -1861,7 +1971,10 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	public void resumeReceiving() throws IOException {
 	    synchronized (suspendGuard) {
 	    	if (isReceivingSuspended()) {
-		        ioHandler.resumeRead();
+	    		// still suspended by memory budget?
+	    		if (!isBudgetSuspended.get()) {
+	    			ioHandler.resumeRead();
+	    		}
 		        isSuspended.set(false);
 			
 		        if (getReadQueueSize() > 0) {
@@ -2107,6 +2220,8 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 		if (isAutoflush()) {
 			internalFlush(null);
 		}
+		
+		updateMemoryBudget();
 	}
 
 
@@ -2158,6 +2273,8 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 	private void forceClose() {
 		try {
 			isOpen.set(false);
+			discardWriteBuffer();
+			
 			if (ioHandler != null) {
 				ioHandler.close(true);
 			}
@@ -2510,7 +2627,7 @@ public final class NonBlockingConnection extends AbstractNonBlockingStream imple
 			return "id=" + getId() + ", remote=" + getRemoteAddress().getCanonicalHostName() + "(" + getRemoteAddress() + ":" + getRemotePort() + 
 			       ") lastTimeReceived=" + df.format(new Date(getLastTimeReceivedMillis())) + " reveived=" + getNumberOfReceivedBytes() +
 			       " lastTimeSent=" + df.format(new Date(getLastTimeSendMillis())) + 
-			       " send=" + getNumberOfSendBytes() + " ops={" + getRegisteredOpsInfo() + "}";
+			       " send=" + getNumberOfSendBytes() + " readBufferSize=" + getReadBufferSize() + " ops={" + getRegisteredOpsInfo() + "}";
 		} else {
 			return "id=" + getId() + " (closed)";
 		}
@@ -23,6 +23,9 @@ package org.xsocket.connection;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -50,6 +53,24 @@ final class ReadQueue {
 	private int readMarkVersion = -1;
 
 	
+	/**
+	 * sets the single consumer mode. In this mode the read operations will not be synchronized. 
+	 * The mode can be set, if the read operations will be performed by one thread at the same time 
+	 * (e.g. by the serialized onData calls of a handler, which is not {@link IUnsynchronized}). The 
+	 * append operation never takes the monitor of the queue    
+	 * 
+	 * @param isSingleConsumer  true, if only one thread at the same time reads  
+	 */
+	void setSingleConsumer(boolean isSingleConsumer) {
+		queue.setSingleConsumer(isSingleConsumer);
+	}
+	
+	
+	boolean isSingleConsumer() {
+		return queue.isSingleConsumer();
+	}
+	
+	
 	public void reset() {
 		readMarkBuffer = null;
 		isReadMarked = false;
@@ -163,6 +184,19 @@ final class ReadQueue {
 	}
 
 
+	/**
+	 * reads by using a delimiter or returns <code>null</code>, if the delimiter has not been found 
+	 */
+	public ByteBuffer[] tryReadByteBufferByDelimiter(byte[] delimiter, int maxLength) throws IOException, MaxReadSizeExceededException {
+		ByteBuffer[] buffers = queue.tryReadByteBufferByDelimiter(delimiter, maxLength);
+		if (buffers != null) {
+			onExtracted(buffers, delimiter);
+		}
+		
+		return buffers;
+	}
+
+
 	public void unread(ByteBuffer[] buffers) throws IOException  {
 	    if (isReadMarked) {
 	        throw new IOException("unread() is not supported in marked read mode");
@@ -180,9 +214,22 @@ final class ReadQueue {
 	}
 	
 
+	/**
+	 * reads by using a length or returns <code>null</code>, if not enough data is available 
+	 */
+	public ByteBuffer[] tryReadByteBufferByLength(int length) {
+		ByteBuffer[] buffers = queue.tryReadByteBufferByLength(length);
+		if (buffers != null) {
+			onExtracted(buffers);
+		}
+		
+		return buffers;
+	}
+	
+
 	public ByteBuffer readSingleByteBuffer(int length) throws BufferUnderflowException {
 		if (getSize() < length) {
-			throw new BufferUnderflowException();
+			throw StacklessBufferUnderflowException.INSTANCE;
 		}
 		
 
@@ -194,6 +241,20 @@ final class ReadQueue {
 
 		
 
+	/**
+	 * reads a single buffer or returns <code>null</code>, if not enough data is available 
+	 */
+	public ByteBuffer tryReadSingleByteBuffer(int length) {
+		ByteBuffer buffer = queue.tryReadSingleByteBuffer(length);
+		if (buffer != null) {
+			onExtracted(buffer);
+		}
+		
+		return buffer;
+	}
+
+		
+
 	public void markReadPosition() {
 		if (LOG.isLoggable(Level.FINE)) {
 			LOG.fine("mark read position");
@@ -297,14 +358,31 @@ final class ReadQueue {
 		
 		private static final int THRESHOLD_COMPACT_BUFFER_COUNT_TOTAL = 20;
 		private static final int THRESHOLD_COMPACT_BUFFER_COUNT_EMPTY = 10;	// 空的ByteBuffer合并的阀值
+
+
+		// producer side
+		// The producer (the dispatcher thread) appends the received buffers as linked segments 
+		// without taking the monitor of the queue. The consumer moves the segments into the 
+		// consumer side buffers before each read operation 
+		// 生产者(dispatcher线程)不需要取锁, 接收的数据以链表形式追加 
+		private final AtomicReference<Segment> tail;
+		private final AtomicLong appendedBytes = new AtomicLong(0);	// 总共追加的字节数
+		private final AtomicInteger appendVersion = new AtomicInteger(0);
 		
 		
-		// queue
+		// consumer side
+		// 消费者(worker线程)
+		private Segment head;
 		private ByteBuffer[] buffers = null;	// 所有读取的数据
+		private int readPos = 0;				// 读游标: 第一个未读取的buffer的位置 (之前的元素均为null)
 		
 		private Integer currentSize = null; 	// 当前读取的数据的大小
-		private int version = 0;				// 操作的版本
-		private boolean isAppended = false;		// 是否追加
+		private volatile long removedBytes = 0;	// 总共被读取的字节数 (减去 unread的字节数)
+		private volatile int consumerVersion = 0;
+		private volatile int appendVersionOfMark = 0;
+		
+		// single consumer mode (consumer operations will not be synchronized) 
+		private volatile boolean isSingleConsumer = false;
 
 		
 		// cache support
@@ -312,15 +390,46 @@ final class ReadQueue {
 		private Index cachedIndex = null;
 
 		
+		
+		public Queue() {
+			head = new Segment(null, 0);
+			tail = new AtomicReference<Segment>(head);
+		}
+		
+
+		void setSingleConsumer(boolean isSingleConsumer) {
+			this.isSingleConsumer = isSingleConsumer;
+		}
+		
+		boolean isSingleConsumer() {
+			return isSingleConsumer;
+		}
+		
 
 		/**
 		 * clean the queue
 		 */
-		public synchronized void reset() {
+		public void reset() {
+			if (isSingleConsumer) {
+				resetQueue();
+				
+			} else {
+				synchronized (this) {
+					resetQueue();
+				}
+			}
+		}
+		
+		
+		private void resetQueue() {
+			pull();
+			removedBytes += size();
+			
 			buffers = null;
+			readPos = 0;
 			currentSize = null;
 			cachedIndex = null;		
-			isAppended = false;
+			appendVersionOfMark = appendVersion.get();
 		}
 	
 
@@ -331,33 +440,51 @@ final class ReadQueue {
 		 *
 		 * @return the modify version
 		 */
-		public synchronized int getVersion(boolean mark) {
+		public int getVersion(boolean mark) {
+			int currentAppendVersion = appendVersion.get();
 		    if (mark) {
-		        isAppended = false;
+		        appendVersionOfMark = currentAppendVersion;
 		    }
-			return version;
+			return currentAppendVersion + consumerVersion;
 		}
 		
 		
-		public synchronized void setVersion(int version) {
-			if (!isAppended) {
-				this.version = version;
+		public void setVersion(int version) {
+			if (isSingleConsumer) {
+				setQueueVersion(version);
+				
+			} else {
+				synchronized (this) {
+					setQueueVersion(version);
+				}
+			}
+		}
+		
+		
+		private void setQueueVersion(int version) {
+			int currentAppendVersion = appendVersion.get();
+			
+			// no data appended since the mark?
+			if (currentAppendVersion == appendVersionOfMark) {
+				consumerVersion = version - currentAppendVersion;
 			}
 		}
 		
 	
 		/**
-		 * return the current size
+		 * return the current size. This method can be called by each thread
 		 *
 		 * @return  the current size
 		 */
-		public synchronized int getSize() {
-			return size();
+		public int getSize() {
+			// the linked data could already be removed before it is counted by the producer
+			long removed = removedBytes;
+			return (int) Math.max(0, appendedBytes.get() - removed);
 		}
 
 		
 		/**
-		 * 得到缓冲区的大小
+		 * 得到缓冲区的大小 (消费者端)
 		 */
 		private int size() {
 			// 性能优化：如果大小已经计算过
@@ -372,7 +499,7 @@ final class ReadQueue {
 					
 			} else {
 				int size = 0;
-				for (int i = 0; i < buffers.length; i++) {
+				for (int i = readPos; i < buffers.length; i++) {
 					if (buffers[i] != null) {
 						size += buffers[i].remaining();
 					}
@@ -396,43 +523,110 @@ final class ReadQueue {
 		 * @param bufs  the ByteBuffers
 		 * @param size  the size 
 		 */
-		public synchronized void append(ByteBuffer[] bufs, int size) {
-			isAppended = true;
-			version++;
-			
+		public void append(ByteBuffer[] bufs, int size) {
 			assert (!containsEmptyBuffer(bufs));
 			
-			// 第一次为null
-			if (buffers == null) {
-				buffers = bufs;
-				currentSize = size;
-									
-			}  else {
-				// 第二次及以后
-				currentSize = null;
+			// the tail will be swapped atomically, so a further producer 
+			// (e.g. the ssl handshake of a worker thread) is also safe 
+			Segment segment = new Segment(bufs, size);
+			Segment predecessor = tail.getAndSet(segment);
+			predecessor.next = segment;
+			
+			// update the counters after the segment is linked. The size must never contain 
+			// bytes, which can not be read yet (the size will be under-reported instead)  
+			appendedBytes.addAndGet(size);
+			appendVersion.incrementAndGet();
+		}
+		
+		
+		/**
+		 * moves the appended segments into the consumer side buffers
+		 * 将追加的数据移动到消费者端的buffers中
+		 */
+		private void pull() {
+			Segment first = head.next;
+			if (first == null) {
+				return;
+			}
+			
+			// collect the linked segments (segments, which are linked concurrently will be handled by the next pull) 
+			int count = 0;
+			int pulledSize = 0;
+			Segment last = first;
+			for (Segment segment = first; segment != null; segment = segment.next) {
+				count += segment.buffers.length;
+				pulledSize += segment.size;
+				last = segment;
+			}
+			
+			// 第一次为null, 只有一个segment
+			if ((buffers == null) && (first == last)) {
+				buffers = first.buffers;
+				readPos = 0;
+				currentSize = first.size;
 				
-				// 数据复制
-				// 上一次和本次
-				ByteBuffer[] newBuffers = new ByteBuffer[buffers.length + bufs.length];
-				// 将buffers中的数据复制到newBuffers中.
-				// buffers存放的是上一次为止的数据.
-				// 现在newBuffers中的最后bufs.length个元素为null
-				System.arraycopy(buffers, 0, newBuffers, 0, buffers.length);
-				// 填充newBuffers中的最后bufs.length个元素为本次读取的bufs
-				System.arraycopy(bufs, 0, newBuffers, buffers.length, bufs.length);
+			} else {
+				if (currentSize != null) {
+					currentSize = currentSize + pulledSize;
+				}
+				
+				if (buffers == null) {
+					readPos = 0;
+				}
+				int offset = (buffers == null) ? 0 : buffers.length;
+				ByteBuffer[] newBuffers = new ByteBuffer[offset + count];
+				if (buffers != null) {
+					System.arraycopy(buffers, 0, newBuffers, 0, offset);
+				}
+				
+				for (Segment segment = first; ; segment = segment.next) {
+					System.arraycopy(segment.buffers, 0, newBuffers, offset, segment.buffers.length);
+					offset += segment.buffers.length;
+					if (segment == last) {
+						break;
+					}
+				}
 				buffers = newBuffers;
-			}			
+			}
+			
+			// the last segment becomes the new head
+			for (Segment segment = first; ; segment = segment.next) {
+				segment.buffers = null;
+				if (segment == last) {
+					break;
+				}
+			}
+			head = last;
 		}
 		
 		
-		public synchronized void addFirst(ByteBuffer[] bufs) {
-			version++;
+		public void addFirst(ByteBuffer[] bufs) {
+			if (isSingleConsumer) {
+				addFirstToQueue(bufs);
+				
+			} else {
+				synchronized (this) {
+					addFirstToQueue(bufs);
+				}
+			}
+		}
+		
+		
+		private void addFirstToQueue(ByteBuffer[] bufs) {
+			consumerVersion++;
 			currentSize = null;
 			cachedIndex = null;
 			
 			assert (!containsEmptyBuffer(bufs));
 
-			addFirstSilence(bufs);	
+			pull();
+			addFirstSilence(bufs);
+			
+			int size = 0;
+			for (ByteBuffer buf : bufs) {
+				size += buf.remaining();
+			}
+			removedBytes -= size;
 		}
 
 		
@@ -446,11 +640,12 @@ final class ReadQueue {
 				buffers = bufs;
 							
 			} else {
-				ByteBuffer[] newBuffers = new ByteBuffer[buffers.length + bufs.length]; 
+				ByteBuffer[] newBuffers = new ByteBuffer[(buffers.length - readPos) + bufs.length]; 
 				System.arraycopy(bufs, 0, newBuffers, 0, bufs.length);
-				System.arraycopy(buffers, 0, newBuffers, bufs.length, buffers.length);
+				System.arraycopy(buffers, readPos, newBuffers, bufs.length, buffers.length - readPos);
 				buffers = newBuffers;
 			}			
+			readPos = 0;
 		}
 
 		
@@ -476,22 +671,52 @@ final class ReadQueue {
 		 * 
 		 * @return the content
 		 */
-		public synchronized ByteBuffer[] drain() {
+		public ByteBuffer[] drain() {
+			if (isSingleConsumer) {
+				pull();
+				return drainQueue();
+				
+			} else {
+				synchronized (this) {
+					pull();
+					return drainQueue();
+				}
+			}
+		}
+		
+		
+		private ByteBuffer[] drainQueue() {
+			removedBytes += size();
+			
 			currentSize = null;
 			cachedIndex = null;
 			
 			ByteBuffer[] result = buffers;
 			buffers = null;
+			readPos = 0;
 
 			if (result != null) {
-				version++;
+				consumerVersion++;
 			}
 			
 			return removeEmptyBuffers(result);
 		}
 		
 
-		public synchronized ByteBuffer[] copy() {
+		public ByteBuffer[] copy() {
+			if (isSingleConsumer) {
+				return copyQueue();
+				
+			} else {
+				synchronized (this) {
+					return copyQueue();
+				}
+			}
+		}
+		
+		
+		private ByteBuffer[] copyQueue() {
+			pull();
 			
 			if (buffers == null) {
 				return new ByteBuffer[0];
@@ -499,8 +724,10 @@ final class ReadQueue {
 			
 			
 			ByteBuffer[] result = new ByteBuffer[buffers.length];
-			for (int i = 0; i < buffers.length; i++) {
-				result[i] = buffers[i].duplicate();
+			for (int i = readPos; i < buffers.length; i++) {
+				if (buffers[i] != null) {
+					result[i] = buffers[i].duplicate();
+				}
 			}
 			
 			return removeEmptyBuffers(result);
@@ -515,17 +742,30 @@ final class ReadQueue {
 		 * @return the read bytes
 	 	 * @throws BufferUnderflowException if the buffer`s limit has been reached
 		 */
-		public synchronized ByteBuffer readSingleByteBuffer(int length) throws BufferUnderflowException {
+		public ByteBuffer readSingleByteBuffer(int length) throws BufferUnderflowException {
+			if (isSingleConsumer) {
+				return readSingleByteBufferOfQueue(length);
+				
+			} else {
+				synchronized (this) {
+					return readSingleByteBufferOfQueue(length);
+				}
+			}
+		}
+		
+		
+		private ByteBuffer readSingleByteBufferOfQueue(int length) throws BufferUnderflowException {
+			pull();
 			
 			// data available?
 			if (buffers == null) {
-				throw new BufferUnderflowException();
+				throw StacklessBufferUnderflowException.INSTANCE;
 			}
 		
 			// 字节数是否足够
 			// enough bytes available ?
 			if (!isSizeEqualsOrLargerThan(length)) {
-				throw new BufferUnderflowException();
+				throw StacklessBufferUnderflowException.INSTANCE;
 			}
 		
 			// length 0 requested?
@@ -535,12 +775,10 @@ final class ReadQueue {
 
 			
 			ByteBuffer result = null;
-			int countEmptyBuffer = 0;	// 空的ByteBuffer的
 			
 			bufLoop : 
-			for (int i = 0; i < buffers.length; i++) {
+			for (int i = readPos; i < buffers.length; i++) {
 				if (buffers[i] == null) {
-					countEmptyBuffer++;
 					continue;
 				}
 					
@@ -580,7 +818,6 @@ final class ReadQueue {
 			
 					for (int j = i; j < buffers.length; j++) {
 						if (buffers[j] == null) {
-							countEmptyBuffer++;
 							continue;
 							
 						} else {
@@ -613,22 +850,21 @@ final class ReadQueue {
 			
 			
 			if (result == null) {
-				throw new BufferUnderflowException();
+				throw StacklessBufferUnderflowException.INSTANCE;
 				
 			} else {
-				if (countEmptyBuffer >= THRESHOLD_COMPACT_BUFFER_COUNT_EMPTY) {
-					compact();
-				}
+				compact();
 				
-				currentSize = null;
+				removedBytes += length;
+				if (currentSize != null) {
+					currentSize = currentSize - length;
+				}
 				cachedIndex = null;
 
-				version++;
+				consumerVersion++;
 				return result;
 			}
 		}
-
-		
 		
 		
 		public ByteBuffer[] readByteBufferByLength(int length) throws BufferUnderflowException {
@@ -641,30 +877,138 @@ final class ReadQueue {
 		}
 		
 		
+		/**
+		 * reads by using a length or returns <code>null</code>, if not enough data is available 
+		 * 
+		 * @param length  the length
+		 * @return the read buffers or <code>null</code>
+		 */
+		public ByteBuffer[] tryReadByteBufferByLength(int length) {
+			if (isSingleConsumer) {
+				return tryReadByteBufferByLengthOfQueue(length);
+				
+			} else {
+				synchronized (this) {
+					return tryReadByteBufferByLengthOfQueue(length);
+				}
+			}
+		}
+		
+		
+		private ByteBuffer[] tryReadByteBufferByLengthOfQueue(int length) {
+			pull();
+			
+			if (size() < length) {
+				return null;
+			}
+			
+			if (length == 0) {
+				return new ByteBuffer[0];
+			}
+			
+			return extractOfQueue(length, 0);
+		}
+		
+		
+		/**
+		 * reads a single buffer or returns <code>null</code>, if not enough data is available 
+		 * 
+		 * @param length  the length
+		 * @return the read buffer or <code>null</code>
+		 */
+		public ByteBuffer tryReadSingleByteBuffer(int length) {
+			if (isSingleConsumer) {
+				return tryReadSingleByteBufferOfQueue(length);
+				
+			} else {
+				synchronized (this) {
+					return tryReadSingleByteBufferOfQueue(length);
+				}
+			}
+		}
+		
+		
+		private ByteBuffer tryReadSingleByteBufferOfQueue(int length) {
+			pull();
+			
+			if (!isSizeEqualsOrLargerThan(length)) {
+				return null;
+			}
+			
+			return readSingleByteBufferOfQueue(length);
+		}
+		
+		
 		
 		public ByteBuffer[] readByteBufferByDelimiter(byte[] delimiter, int maxLength) throws IOException, BufferUnderflowException, MaxReadSizeExceededException {
+			if (isSingleConsumer) {
+				return readByteBufferByDelimiterOfQueue(delimiter, maxLength);
+				
+			} else {
+				synchronized (this) {
+					return readByteBufferByDelimiterOfQueue(delimiter, maxLength);
+				}
+			}
+		}
+		
+		
+		private ByteBuffer[] readByteBufferByDelimiterOfQueue(byte[] delimiter, int maxLength) throws IOException, BufferUnderflowException, MaxReadSizeExceededException {
+			ByteBuffer[] extracted = tryReadByteBufferByDelimiterOfQueue(delimiter, maxLength);
 			
-			synchronized (this) {
-				if (buffers == null) {
-					throw new BufferUnderflowException();
+			// delimiter found?
+			// 是否找到了指定的分隔符
+			if (extracted != null) {
+				return extracted;
+
+			} else { 
+				// 找不到抛异常, 不会被被xSocket吞掉
+				/** {@link HandlerAdapter#performOnData()} */
+				throw StacklessBufferUnderflowException.INSTANCE;
+			}
+		}
+		
+		
+		/**
+		 * reads by using a delimiter or returns <code>null</code>, if the delimiter has not been found 
+		 * 
+		 * @param delimiter  the delimiter
+		 * @param maxLength  the max length
+		 * @return the read buffers or <code>null</code>
+		 * @throws MaxReadSizeExceededException if the max read size has been reached
+		 */
+		public ByteBuffer[] tryReadByteBufferByDelimiter(byte[] delimiter, int maxLength) throws IOException, MaxReadSizeExceededException {
+			if (isSingleConsumer) {
+				return tryReadByteBufferByDelimiterOfQueue(delimiter, maxLength);
+				
+			} else {
+				synchronized (this) {
+					return tryReadByteBufferByDelimiterOfQueue(delimiter, maxLength);
 				}
 			}
+		}
+		
+		
+		private ByteBuffer[] tryReadByteBufferByDelimiterOfQueue(byte[] delimiter, int maxLength) throws IOException, MaxReadSizeExceededException {
+			pull();
+			
+			if (buffers == null) {
+				return null;
+			}
 			
 			// 查找指定分隔符的索引位置
-			int index = retrieveIndexOf(delimiter, maxLength);
+			int index = retrieveIndexOfQueue(delimiter, maxLength);
 				
 			// delimiter found?
 			// 是否找到了指定的分隔符
 			if (index >= 0) {
 				// 返回提取出的ByteBuffers
-				return extract(index, delimiter.length);
+				return extractOfQueue(index, delimiter.length);
 
 			} else { 
-				// 找不到抛异常, 不会被被xSocket吞掉
-				/** {@link HandlerAdapter#performOnData()} */
-				throw new BufferUnderflowException();
+				return null;
 			}
 		}
+		
 
 		/**
 		 * 从缓冲区中提取出指定的长度的缓冲
@@ -672,18 +1016,32 @@ final class ReadQueue {
 		 * @param length
 		 * @param countTailingBytesToRemove		从尾部要删除的字节数目(分隔符数目)
 		 */
-		synchronized ByteBuffer[] extract(int length, int countTailingBytesToRemove) throws BufferUnderflowException {
+		ByteBuffer[] extract(int length, int countTailingBytesToRemove) throws BufferUnderflowException {
+			if (isSingleConsumer) {
+				pull();
+				return extractOfQueue(length, countTailingBytesToRemove);
+				
+			} else {
+				synchronized (this) {
+					pull();
+					return extractOfQueue(length, countTailingBytesToRemove);
+				}
+			}
+		}
+		
+		
+		private ByteBuffer[] extractOfQueue(int length, int countTailingBytesToRemove) throws BufferUnderflowException {
 			ByteBuffer[] extracted = null;
 			
 			int size = size();	// 缓冲区大小
 					
 			// 有可能是读取的时候是根据长度来读取的
 			if (length == size) {
-				return drain();
+				return drainQueue();
 			}
 			
 			if (size < length) {
-				throw new BufferUnderflowException();
+				throw StacklessBufferUnderflowException.INSTANCE;
 			}
 			
 			// 根据长度提取出ByteBuffer
@@ -697,10 +1055,11 @@ final class ReadQueue {
 			// 
 			compact();
 			
-			currentSize = null;
+			removedBytes += (length + countTailingBytesToRemove);
+			currentSize = size - (length + countTailingBytesToRemove);
 			cachedIndex = null;
 
-			version++;
+			consumerVersion++;
 			return extracted;
 		}
 
@@ -717,30 +1076,28 @@ final class ReadQueue {
 		 * @throws MaxReadSizeExceededException if the max read size has been reached 
 		 */
 		public int retrieveIndexOf(byte[] delimiter, int maxReadSize) throws IOException, MaxReadSizeExceededException {
-			ByteBuffer[] bufs = null;	// 临时变量保存当前的读缓冲
-			
-			// get the current buffers
-			// 读取当前的缓冲区
-			// 要取锁,防止在读取的过程中客户端发送新的数据过来
-			synchronized (this) {
-				if (buffers == null) {
-					return -1;
+			if (isSingleConsumer) {
+				pull();
+				return retrieveIndexOfQueue(delimiter, maxReadSize);
+				
+			} else {
+				// the producer doesn't take the monitor. Scanning within the monitor blocks other consumers only
+				// 生产者不需要取锁, 扫描的过程中只阻塞其他消费者
+				synchronized (this) {
+					pull();
+					return retrieveIndexOfQueue(delimiter, maxReadSize);
 				}
-					
-				bufs = buffers;
-				buffers = null;
+			}
+		}
+		
+		
+		private int retrieveIndexOfQueue(byte[] delimiter, int maxReadSize) throws IOException, MaxReadSizeExceededException {
+			if (buffers == null) {
+				return -1;
 			}
 
-			// .. scan it
 			// 扫描分隔符, 取得索引位置
-			int index = retrieveIndexOf(delimiter, bufs, maxReadSize);
-			
-			// .. and return the buffers
-			// 取锁, 如果此时已经有新的数据进来(读缓冲区已经改变), 那么此时要将其加入到缓冲区的最前面
-			// 当前的缓冲区与后面的缓冲区合并
-			synchronized (this) {
-				addFirstSilence(bufs);
-			}
+			int index = retrieveIndexOf(delimiter, buffers, maxReadSize);
 				
 			if (index == -2) {
 				throw new MaxReadSizeExceededException();
@@ -840,7 +1197,7 @@ final class ReadQueue {
 			}
 
 			int bufferSize = 0;
-			for (int i = 0; i < buffers.length; i++) {
+			for (int i = readPos; i < buffers.length; i++) {
 				if (buffers[i] != null) {
 					bufferSize += buffers[i].remaining();
 					if (bufferSize >= requiredSize) {
@@ -860,7 +1217,7 @@ final class ReadQueue {
 			int remainingToExtract = length;	// 剩余提取的大小
 			ByteBuffer buffer = null;
 
-			for (int i = 0; i < buffers.length; i++) {
+			for (int i = readPos; i < buffers.length; i++) {
 			
 				// get the first buffer 
 				buffer = buffers[i];
@@ -932,34 +1289,27 @@ final class ReadQueue {
 		
 		// FIXME：		
 		private void compact() {
-			if ((buffers != null) && (buffers.length > THRESHOLD_COMPACT_BUFFER_COUNT_TOTAL)) {
+			if (buffers == null) {
+				return;
+			}
+			
+			// move the read cursor to the first non empty buffer
+			// 读游标移动到第一个非空的buffer
+			while ((readPos < buffers.length) && (buffers[readPos] == null)) {
+				readPos++;
+			}
+			
+			if (readPos == buffers.length) {
+				buffers = null;
+				readPos = 0;
 				
-				// count empty buffers
-				int emptyBuffers = 0;
-				for (int i = 0; i < buffers.length; i++) {
-					if (buffers[i] == null) {
-						emptyBuffers++;
-					}
-				}
-						
-				// enough empty buffers found? create new compact array
-				if (emptyBuffers > THRESHOLD_COMPACT_BUFFER_COUNT_EMPTY) {
-					if (emptyBuffers == buffers.length) {
-						buffers = null;
-								
-					} else {
-						ByteBuffer[] newByteBuffer = new ByteBuffer[buffers.length - emptyBuffers];
-						int num = 0;
-						for (int i = 0; i < buffers.length; i++) {
-							if (buffers[i] != null) {
-								newByteBuffer[num] = buffers[i];
-								num++;
-							}
-						}
-								
-						buffers = newByteBuffer;
-					}
-				}
+			// enough empty buffers in front of the cursor? create new compact array (amortized by the half of the array size)
+			// 游标前空的buffer足够多, 创建新的数组
+			} else if ((buffers.length > THRESHOLD_COMPACT_BUFFER_COUNT_TOTAL) && (readPos > THRESHOLD_COMPACT_BUFFER_COUNT_EMPTY) && ((readPos * 2) >= buffers.length)) {
+				ByteBuffer[] newByteBuffer = new ByteBuffer[buffers.length - readPos];
+				System.arraycopy(buffers, readPos, newByteBuffer, 0, newByteBuffer.length);
+				buffers = newByteBuffer;
+				readPos = 0;
 			}
 		}
 		
@@ -1022,7 +1372,21 @@ final class ReadQueue {
    		}
   		 
   	 
-  		public synchronized String toString(String encoding) {
+  		public String toString(String encoding) {
+			if (isSingleConsumer) {
+				pull();
+				return print(encoding);
+				
+			} else {
+				synchronized (this) {
+					pull();
+					return print(encoding);
+				}
+			}
+  		}
+  		
+  		
+  		private String print(String encoding) {
 			try {
 				ByteBuffer[] copy = buffers.clone();
 				for (int i = 0; i < copy.length; i++) {
@@ -1075,7 +1439,7 @@ final class ReadQueue {
   		}
 
   		private int findFirstBufferToScan(ByteBuffer[] buffers, Index index) {
-  			int i = 0;
+  			int i = readPos;
   			
   			// jump to next buffer which follows the cached one   
   			// 跳到下一个缓冲区
@@ -1083,7 +1447,7 @@ final class ReadQueue {
   				
   				// find the last scanned buffer 
   				// 找到最后一个扫描的buffer
-  				for (int j = 0; j < buffers.length; j++) {
+  				for (int j = readPos; j < buffers.length; j++) {
   					if (buffers[j] == index.lastScannedBuffer) {
   						i = j;
   						break;
@@ -1129,78 +1493,84 @@ final class ReadQueue {
   		private void findInBuffer(ByteBuffer buffer, Index index) {
   			// 最后一次扫描的buffer
   			index.lastScannedBuffer = buffer;
-  			int dataSize = buffer.remaining();
   			
   			byte[] delimiter = index.delimiterBytes;				// 分隔字节
   			int delimiterLength = index.delimiterLength;			// 分隔符长度	
-  			int delimiterPosition = index.delimiterPos;				// 分隔位置
-  			byte nextDelimiterByte = delimiter[delimiterPosition];	// 单个的分隔字节
-  			boolean delimiterPartsFound = delimiterPosition > 0;	// 分隔符部分已经找到(匹配的第一个字节true,在后面的匹配过程中有可能会置为false)
+  			int delimiterPosition = index.delimiterPos;				// 分隔位置(前面的buffer中已经匹配的字节数)
   			
+  			int start = buffer.position();
+  			int end = buffer.limit();
+  			int pos = start;
   			
-  			for (int i = 0; i < dataSize; i++) {
-  				
-  				byte b = buffer.get();
+  			
+  			// continue the partial match of the previous buffer(s)
+  			// 继续前面buffer中部分匹配的分隔符
+  			if (delimiterPosition > 0) {
+  				int[] failure = index.getFailureTable();
   				
-  				// is current byte a delimiter byte?
-  				// 当前字节是否为一个分隔符字节
-  				if (b == nextDelimiterByte) {
-  					delimiterPosition++;
+  				while ((pos < end) && (delimiterPosition > 0)) {
+  					byte b = buffer.get(pos++);
+  					while ((delimiterPosition > 0) && (b != delimiter[delimiterPosition])) {
+  						delimiterPosition = failure[delimiterPosition - 1];
+  					}
+  					if (b == delimiter[delimiterPosition]) {
+  						delimiterPosition++;
+  					}
   					
-  					// is single byte delimiter?
-  					// 分隔符是否只是一个字节, 是, 退出for循环, 退出该方法
-  					if (delimiterLength  == 1) {
+  					// last delimiter byte found?
+  					// 最后的分隔符字节是否已经找到?
+  					if (delimiterPosition == delimiterLength) {
   						index.hasDelimiterFound = true;
   						index.delimiterPos = delimiterPosition;
-  						index.readBytes += (i + 1);
+  						index.readBytes += (pos - start);
   						return;
-  					
-  					// .. no, it is a multi byte delimiter
-  					// 多字节的分隔符
-  					} else {
-  						index.delimiterPos = delimiterPosition;
-  						
-  						// last delimiter byte found?
-  						// 最后的分隔符字节是否已经找到?
-  						if (delimiterPosition == delimiterLength) {
-  							index.hasDelimiterFound = true;
-  							index.readBytes += (i + 1);
-  							return;
-  						}
-  						
-  						// 下一个分隔符的字节
-  						nextDelimiterByte = delimiter[delimiterPosition];
-  					}
-  					
-  					delimiterPartsFound = true;
-
-  				// byte doesn't match
-  				// 不匹配
-  				} else {
-  					
-  					if (delimiterPartsFound) {
-  						delimiterPosition = 0;
-  						index.delimiterPos = 0;
-  						nextDelimiterByte = delimiter[delimiterPosition];
-  						// 如果前面已经匹配上, 要置为false
-  						delimiterPartsFound = false;
-  						
-  						// check if byte is equals to first delimiter byte 
-  						// 检查字节是否与第一个分隔符字节相等
-  						if ((delimiterLength  > 1) && (b == nextDelimiterByte)) {
-  							delimiterPosition++;
-  							nextDelimiterByte = delimiter[delimiterPosition];
-  							index.delimiterPos = delimiterPosition;
-  						}
   					}
   				}
+  				
+  				// buffer is exhausted 
+  				if (delimiterPosition > 0) {
+  					index.delimiterPos = delimiterPosition;
+  					index.readBytes += (end - start);
+  					return;
+  				}
+  			}
+  			
+  			
+  			// search the complete delimiter within the remaining bytes 
+  			// 在剩余的字节中查找完整的分隔符
+  			int found = DelimiterScanner.indexOf(buffer, pos, end, delimiter);
+  			if (found >= 0) {
+  				index.hasDelimiterFound = true;
+  				index.delimiterPos = delimiterLength;
+  				index.readBytes += ((found + delimiterLength) - start);
+  				return;
   			}
   			
-  			index.readBytes += dataSize;
+  			// .. not found. Does the buffer end with a part of the delimiter? 
+  			// 没有找到, buffer的末尾是否包含分隔符的一部分
+  			index.delimiterPos = DelimiterScanner.getPartialMatchLength(buffer, Math.max(pos, end - (delimiterLength - 1)), end, delimiter);
+  			index.readBytes += (end - start);
   		}
 	}
 	
 	
+	/**
+	 * linked segment of appended buffers
+	 * 追加的数据(链表节点)
+	 */
+	private static final class Segment {
+		
+		private ByteBuffer[] buffers;
+		private final int size;
+		private volatile Segment next = null;
+		
+		Segment(ByteBuffer[] buffers, int size) {
+			this.buffers = buffers;
+			this.size = size;
+		}
+	}
+	
+	
 	/**
 	 * 缓存分隔符
 	 */
@@ -1212,6 +1582,9 @@ final class ReadQueue {
 			
 			// consumed bytes
 			private int readBytes = 0;
+			
+			// failure table of the delimiter (will be computed lazily)
+			private int[] failureTable = null;
 					
 			// cache support
 			// 缓存支持：最后扫描的ByteBuffer
@@ -1234,6 +1607,13 @@ final class ReadQueue {
 				this.delimiterLength =  delimiterBytes.length;
 			}
 			
+			int[] getFailureTable() {
+				if (failureTable == null) {
+					failureTable = DelimiterScanner.newFailureTable(delimiterBytes);
+				}
+				return failureTable;
+			}
+			
 			public boolean hasDelimiterFound() {
 				return hasDelimiterFound;
 			}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+
+/**
+ * Array-backed selected key set, which replaces the hash set based selected key set of the 
+ * JDK selector implementation. Adding a key doesn't require hashing or allocations, and the 
+ * dispatcher iterates the keys by index.  <br><br>
+ * 
+ * The set will be installed by reflection. This requires access to the <code>sun.nio.ch</code> 
+ * package (for Java 9 and higher <code>--add-opens java.base/sun.nio.ch=ALL-UNNAMED</code>). If 
+ * the selector implementation doesn't allow to replace the set, the JDK set will be used. By 
+ * default the set will only be installed, if the package is accessible without an illegal 
+ * access (see {@link SelectedSelectionKeySet#isAccessible()})   
+ *
+ * <br/><br/><b>This is a xSocket internal class and subject to change</b>
+ *
+ * @author grro@xsocket.org
+ */
+final class SelectedSelectionKeySet extends AbstractSet<SelectionKey> {
+	
+	private static final Logger LOG = Logger.getLogger(SelectedSelectionKeySet.class.getName());
+	
+	private static final int INITIAL_SIZE = 1024;
+
+	private SelectionKey[] keys = new SelectionKey[INITIAL_SIZE];
+	private int size = 0;
+	
+	
+	/**
+	 * returns true, if the <code>sun.nio.ch</code> package is accessible without an illegal access. 
+	 * This is true for Java 8 and lower, or if the package is opened (Java 9 and higher). On Java 9 
+	 * to 15 installing the set without opening the package would log an illegal access warning 
+	 * 
+	 * @return true, if the package is accessible
+	 */
+	static boolean isAccessible() {
+		try {
+			Method getModuleMethod = Class.class.getMethod("getModule");
+			Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+			
+			Object nioModule = getModuleMethod.invoke(selectorImplClass);
+			Object module = getModuleMethod.invoke(SelectedSelectionKeySet.class);
+			Method isOpenMethod = nioModule.getClass().getMethod("isOpen", String.class, getModuleMethod.getReturnType());
+			return (Boolean) isOpenMethod.invoke(nioModule, "sun.nio.ch", module);
+			
+		} catch (NoSuchMethodException nsme) {
+			// Java 8 and lower (no modules)
+			return true;
+			
+		} catch (Throwable t) {
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("could not check the access of sun.nio.ch. reason " + t.toString());
+			}
+			return false;
+		}
+	}
+	
+	
+	/**
+	 * replaces the selected key set of the selector 
+	 * 
+	 * @param selector  the selector 
+	 * @return the installed set or <code>null</code>, if the selector doesn't support replacing 
+	 */
+	static SelectedSelectionKeySet install(Selector selector) {
+		try {
+			Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+			if (!selectorImplClass.isAssignableFrom(selector.getClass())) {
+				return null;
+			}
+			
+			Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+			Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+			selectedKeysField.setAccessible(true);
+			publicSelectedKeysField.setAccessible(true);
+			
+			SelectedSelectionKeySet keySet = new SelectedSelectionKeySet();
+			selectedKeysField.set(selector, keySet);
+			publicSelectedKeysField.set(selector, keySet);
+			
+			return keySet;
+			
+		} catch (Throwable t) {
+			// e.g. inaccessible sun.nio.ch package 
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("could not install array-backed selected key set (using default). reason " + t.toString());
+			}
+			return null;
+		}
+	}
+	
+	
+	@Override
+	public boolean add(SelectionKey key) {
+		if (key == null) {
+			return false;
+		}
+		
+		if (size == keys.length) {
+			SelectionKey[] newKeys = new SelectionKey[keys.length * 2];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			keys = newKeys;
+		}
+		
+		keys[size++] = key;
+		return true;
+	}
+	
+	
+	/**
+	 * returns always false. The selector checks by calling contains, if the ready ops of the key 
+	 * have to be updated or set. Because the dispatcher clears the set after each 
+	 * select, the keys will always be added and set 
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return false;
+	}
+	
+	
+	/**
+	 * does nothing. Cancelled keys will be skipped by the dispatcher 
+	 */
+	@Override
+	public boolean remove(Object o) {
+		return false;
+	}
+	
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			keys[i] = null;
+		}
+		size = 0;
+	}
+	
+	
+	/**
+	 * returns the key array. The array is only valid until the next select 
+	 * 
+	 * @return the key array 
+	 */
+	SelectionKey[] getKeys() {
+		return keys;
+	}
+	
+	
+	@Override
+	public Iterator<SelectionKey> iterator() {
+		return new Iterator<SelectionKey>() {
+			
+			private int pos = 0;
+			
+			public boolean hasNext() {
+				return pos < size;
+			}
+			
+			public SelectionKey next() {
+				if (pos >= size) {
+					throw new NoSuchElementException();
+				}
+				return keys[pos++];
+			}
+			
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -100,8 +100,7 @@ public class Server implements IServer {
 
 	
 	//connection manager
-	// XXX 创建Watchdog任务, 用来监控连接的超时时间和空闲时间
-	/** {@link ConnectionManager.WachdogTask}*/
+	// XXX 通过TimingWheel监控连接的超时时间和空闲时间
 	private ConnectionManager connectionManager = new ConnectionManager();
 	// 最大并发连接数
 	private int maxConcurrentConnections = Integer.MAX_VALUE;
@@ -120,6 +119,9 @@ public class Server implements IServer {
 	// 最大的读缓冲区
 	private Integer maxReadBufferThreshold = null;
 	
+	// memory budget 
+	private MemoryBudget memoryBudget = null;
+	
 	// timeouts
 	// 空闲超时时间, 默认为long类型的最大值
 	private long idleTimeoutMillis = IConnection.MAX_TIMEOUT_MILLIS;
@@ -519,6 +521,17 @@ public class Server implements IServer {
 		localHostname = acceptor.getLocalAddress().getHostName();
 		localPort = acceptor.getLocalPort();
 		
+		// memory budget configured by system properties? 
+		Integer budgetMaxSize = IoProvider.getServerMemoryBudgetMaxSize();
+		if (budgetMaxSize != null) {
+			Integer budgetLowWatermark = IoProvider.getServerMemoryBudgetLowWatermark();
+			if (budgetLowWatermark != null) {
+				setMemoryBudget(budgetMaxSize, budgetLowWatermark);
+			} else {
+				setMemoryBudget(budgetMaxSize);
+			}
+		}
+		
 		// 设置处理器 
 		setHandler(handler);
 	}
@@ -793,12 +806,8 @@ public class Server implements IServer {
 	
 
 	
-	final long getConnectionManagerWatchDogPeriodMillis() {
-		return connectionManager.getWatchDogPeriodMillis();
-	}
-	
-	final int getConnectionManagerWatchDogRuns() {
-		return connectionManager.getWatchDogRuns();
+	final TimingWheel getConnectionManagerTimingWheel() {
+		return connectionManager.getTimingWheel();
 	}
 	
 
@@ -888,6 +897,63 @@ public class Server implements IServer {
         this.maxReadBufferThreshold = maxSize;
     }
     
+    
+    /**
+     * set the server-wide memory budget of the buffered read and write data. If the 
+     * budget is exceeded, receiving of the connections with the most buffered data 
+     * will be suspended until the buffered data falls below 75% of the budget. 
+     * The budget applies to connections accepted after calling this method
+     * 
+     * @param maxSize  the max size of buffered data of all connections 
+     */
+    public void setMemoryBudget(long maxSize) {
+    	setMemoryBudget(maxSize, (maxSize * 3) / 4);
+    }
+    
+    
+    /**
+     * set the server-wide memory budget of the buffered read and write data. If the 
+     * budget is exceeded, receiving of the connections with the most buffered data 
+     * will be suspended until the buffered data falls below the low watermark.
+     * The budget applies to connections accepted after calling this method
+     * 
+     * @param maxSize       the max size of buffered data of all connections
+     * @param lowWatermark  the size, at which suspended connections will be resumed 
+     */
+    public void setMemoryBudget(long maxSize, long lowWatermark) {
+    	memoryBudget = new MemoryBudget(maxSize, lowWatermark);
+    }
+    
+    
+    final long getMemoryBudgetMaxSize() {
+    	MemoryBudget budget = memoryBudget;
+    	if (budget == null) {
+    		return -1;
+    	} else {
+    		return budget.getMaxSize();
+    	}
+    }
+    
+    
+    final long getMemoryBudgetUsed() {
+    	MemoryBudget budget = memoryBudget;
+    	if (budget == null) {
+    		return 0;
+    	} else {
+    		return budget.getUsed();
+    	}
+    }
+    
+    
+    final int getNumberOfMemoryBudgetSuspendedConnections() {
+    	MemoryBudget budget = memoryBudget;
+    	if (budget == null) {
+    		return 0;
+    	} else {
+    		return budget.getNumberOfSuspendedConnections();
+    	}
+    }
+    
 	
 	/**
 	 * returns the number of max concurrent connections 
@@ -925,6 +991,46 @@ public class Server implements IServer {
         acceptor.setDispatcherSize(size);
     }
     
+    final int getNumberOfAcceptors() {
+        return acceptor.getNumberOfAcceptors();
+    }
+    
+    final long getNumberOfAcceptedConnections() {
+        return acceptor.getNumberOfAcceptedConnections();
+    }
+    
+    final IoSocketDispatcherPool getDispatcherPool() {
+        return acceptor.getDispatcherPool();
+    }
+    
+    final int getDispatcherBusyPollBudgetMicros() {
+        return acceptor.getDispatcherPool().getBusyPollBudgetMicros();
+    }
+    
+    final void setDispatcherBusyPollBudgetMicros(int budgetMicros) {
+        acceptor.getDispatcherPool().setBusyPollBudgetMicros(budgetMicros);
+    }
+    
+    final long getNumberOfDispatcherWakeups() {
+        return acceptor.getDispatcherPool().getNumberOfWakeups();
+    }
+    
+    final long getNumberOfSavedDispatcherWakeups() {
+        return acceptor.getDispatcherPool().getNumberOfSavedWakeups();
+    }
+    
+    final long getNumberOfMigratedConnections() {
+        return acceptor.getDispatcherPool().getNumberOfMigratedHandles();
+    }
+    
+    final String getDispatcherAssignmentStrategy() {
+        return acceptor.getDispatcherPool().getAssignmentStrategy().toString();
+    }
+    
+    final void setDispatcherAssignmentStrategy(String strategy) {
+        acceptor.getDispatcherPool().setAssignmentStrategy(DispatcherAssignmentStrategies.create(strategy));
+    }
+    
     
     final boolean getReceiveBufferIsDirect() {
         return acceptor.getReceiveBufferIsDirect();
@@ -942,6 +1048,57 @@ public class Server implements IServer {
             return null;
         } 
     }
+    
+    final long getReceiveBufferPoolHits() {
+        return acceptor.getDispatcherPool().getReceiveBufferPoolHits();
+    }
+    
+    final long getReceiveBufferPoolMisses() {
+        return acceptor.getDispatcherPool().getReceiveBufferPoolMisses();
+    }
+    
+    final long getReceiveBufferHeapAllocations() {
+        return acceptor.getDispatcherPool().getReceiveBufferHeapAllocations();
+    }
+    
+    final long getReceiveBufferDirectAllocations() {
+        return acceptor.getDispatcherPool().getReceiveBufferDirectAllocations();
+    }
+    
+    final long getReceiveBufferAllocatedBytes() {
+        return acceptor.getDispatcherPool().getReceiveBufferAllocatedBytes();
+    }
+    
+    final long getReceiveBufferRecycleRejections() {
+        return acceptor.getDispatcherPool().getReceiveBufferRecycleRejections();
+    }
+    
+    final int getAveragePredictedReadSize() {
+        return acceptor.getDispatcherPool().getAveragePredictedReadSize();
+    }
+    
+    final int getMaxPredictedReadSize() {
+        return acceptor.getDispatcherPool().getMaxPredictedReadSize();
+    }
+    
+    final long getReceiveBufferClearedSoftReferences() {
+        return acceptor.getDispatcherPool().getReceiveBufferClearedSoftReferences();
+    }
+	
+	
+	/**
+	 * returns a snapshot of the event loop histograms of each dispatcher. The histograms 
+	 * record the select wait time, the processing time per loop iteration, the number of 
+	 * processed tasks per loop iteration and the time spent to handle readable and writeable 
+	 * events. The histograms can be deactivated by setting the system property 
+	 * <code>org.xsocket.connection.dispatcher.histograms.on</code> to false      
+	 * 
+	 * @return the event loop statistics of each dispatcher
+	 */
+	public EventLoopStatistics[] getEventLoopStatistics() {
+		List<EventLoopStatistics> statistics = acceptor.getDispatcherPool().getEventLoopStatistics();
+		return statistics.toArray(new EventLoopStatistics[statistics.size()]);
+	}
 	
 	
 	public Set<INonBlockingConnection> getOpenConnections() {
@@ -1218,6 +1375,10 @@ public class Server implements IServer {
 	            }
 	            connection.closeQuietly();
 	            
+	            // non-blocking accept mode: the dispatcher must not be blocked -> reject only 
+	            if (ConnectionUtils.isDispatcherThread()) {
+	            	return;
+	            }
 
 	            // 无限等待,直到最大的连接数超过
                 // wait while max connection size is exceeded
@@ -1279,6 +1440,11 @@ public class Server implements IServer {
             if (maxReadBufferThreshold != null) {
                 connection.setMaxReadBufferThreshold(maxReadBufferThreshold);
             }
+            
+            // and memory budget
+            if (memoryBudget != null) {
+            	connection.setMemoryBudget(memoryBudget);
+            }
 		}
 	}
 	
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.nio.BufferUnderflowException;
+
+
+
+/**
+ * Preallocated buffer underflow exception without stack trace. The exception is used to signal  
+ * that not enough data is available. It is thrown on the hot path (e.g. by reading fragmented 
+ * data within the onData method) and caught by xSocket, so capturing a stack trace would be 
+ * expensive and useless  
+ * 
+ * <br/><br/><b>This is a xSocket internal class and subject to change</b>
+ *
+ * @author grro@xsocket.org
+ */
+final class StacklessBufferUnderflowException extends BufferUnderflowException {
+	
+	private static final long serialVersionUID = 4473862398571604318L;
+	
+	static final StacklessBufferUnderflowException INSTANCE = new StacklessBufferUnderflowException();
+	
+	
+	private StacklessBufferUnderflowException() {
+		setStackTrace(new StackTraceElement[0]);
+	}
+	
+	
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) xlightweb.org, 2006 - 2010. All rights reserved.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please refer to the LGPL license at: http://www.gnu.org/copyleft/lesser.txt
+ * The latest copy of this software may be found on http://www.xsocket.org/
+ */
+package org.xsocket.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.xsocket.DataConverter;
+
+
+
+/**
+ * Hashed timing wheel. Scheduling, rescheduling and cancelling a timeout is O(1). The 
+ * wheel will be driven by a tick task of the given timer, which processes one slot per tick. 
+ * A timeout fires within one tick after its deadline. The timeout tasks will be executed 
+ * by the timer thread and should not block    
+ *
+ * <br/><br/><b>This is a xSocket internal class and subject to change</b>
+ *
+ * @author grro@xsocket.org
+ */
+final class TimingWheel {
+	
+	private static final Logger LOG = Logger.getLogger(TimingWheel.class.getName());
+	
+	// guard for very large delays (the delay will be computed in ticks)
+	private static final long MAX_DELAY_MILLIS = Long.MAX_VALUE / 4;
+
+	
+	private final long tickMillis;
+	private final Timeout[] slots;
+	private final int mask;
+	private final long startNanos = System.nanoTime();
+	
+	// guarded by this
+	private long currentTick = 0;
+	private int size = 0;
+	
+	private final Ticker ticker = new Ticker();
+	
+	// statistics
+	private long countTicks = 0;
+	private long countExpired = 0;
+	
+
+	/**
+	 * constructor 
+	 * 
+	 * @param timer       the timer to run the tick task 
+	 * @param tickMillis  the tick duration (accuracy) in millis  
+	 * @param wheelSize   the number of slots (will be rounded up to a power of two) 
+	 */
+	TimingWheel(Timer timer, long tickMillis, int wheelSize) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("tickMillis has to be larger than 0 (" + tickMillis + ")");
+		}
+		this.tickMillis = tickMillis;
+		
+		int normalizedSize = 1;
+		while (normalizedSize < wheelSize) {
+			normalizedSize <<= 1;
+		}
+		mask = normalizedSize - 1;
+		
+		// each slot is a circular double linked list with a sentinel head 
+		slots = new Timeout[normalizedSize];
+		for (int i = 0; i < normalizedSize; i++) {
+			slots[i] = new Timeout(null);
+		}
+		
+		timer.scheduleAtFixedRate(ticker, tickMillis, tickMillis);
+	}
+	
+	
+	/**
+	 * creates a new (unscheduled) timeout 
+	 * 
+	 * @param task   the task to execute if the timeout fires
+	 * @return the timeout
+	 */
+	Timeout newTimeout(Runnable task) {
+		return new Timeout(task);
+	}
+	
+	
+	long getTickMillis() {
+		return tickMillis;
+	}
+	
+	int getWheelSize() {
+		return slots.length;
+	}
+	
+	synchronized int getSize() {
+		return size;
+	}
+	
+	synchronized long getNumberOfTicks() {
+		return countTicks;
+	}
+	
+	synchronized long getNumberOfExpiredTimeouts() {
+		return countExpired;
+	}
+	
+	
+	void close() {
+		ticker.cancel();
+	}
+	
+	
+	private long computeDeadlineTick(long delayMillis) {
+		if (delayMillis > MAX_DELAY_MILLIS) {
+			delayMillis = MAX_DELAY_MILLIS;
+		} else if (delayMillis < 0) {
+			delayMillis = 0;
+		}
+		
+		long elapsedMillis = (System.nanoTime() - startNanos) / 1000000L;
+		long deadlineTick = (elapsedMillis + delayMillis + tickMillis - 1) / tickMillis;
+		
+		// a timeout can not be placed into a processed tick
+		if (deadlineTick <= currentTick) {
+			deadlineTick = currentTick + 1;
+		}
+		return deadlineTick;
+	}
+	
+	
+	private void expire(long tick) {
+		List<Timeout> expired = null;
+		
+		synchronized (this) {
+			Timeout head = slots[(int) (tick & mask)];
+			Timeout timeout = head.next;
+			while (timeout != head) {
+				Timeout next = timeout.next;
+				if (timeout.deadlineTick <= tick) {
+					timeout.unlink();
+					if (expired == null) {
+						expired = new ArrayList<Timeout>();
+					}
+					expired.add(timeout);
+				}
+				timeout = next;
+			}
+			
+			currentTick = tick;
+			countTicks++;
+			if (expired != null) {
+				countExpired += expired.size();
+			}
+		}
+		
+		if (expired != null) {
+			for (Timeout timeout : expired) {
+				try {
+					timeout.task.run();
+				} catch (Throwable t) {
+					// eat and log exception
+					if (LOG.isLoggable(Level.FINE)) {
+						LOG.fine("error occured by executing timeout task " + timeout.task + " " + DataConverter.toString(t));
+					}
+				}
+			}
+		}
+	}
+	
+
+	
+	private final class Ticker extends TimerTask {
+		
+		@Override
+		public void run() {
+			
+			// process all elapsed ticks (catch up if the timer has been delayed). currentTick will only be modified by the timer thread 
+			long elapsedTicks = ((System.nanoTime() - startNanos) / 1000000L) / tickMillis;
+			while (currentTick < elapsedTicks) {
+				expire(currentTick + 1);
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * a timeout of the wheel. A timeout can be scheduled several times  
+	 */
+	final class Timeout {
+
+		private final Runnable task;
+		
+		// guarded by the wheel
+		private Timeout prev;
+		private Timeout next;
+		private long deadlineTick;
+		
+		
+		private Timeout(Runnable task) {
+			this.task = task;
+			
+			// sentinel
+			if (task == null) {
+				prev = this;
+				next = this;
+			}
+		}
+		
+		
+		/**
+		 * (re)schedules the timeout 
+		 * 
+		 * @param delayMillis the delay in millis
+		 */
+		void schedule(long delayMillis) {
+			synchronized (TimingWheel.this) {
+				unlink();
+
+				deadlineTick = computeDeadlineTick(delayMillis);
+				Timeout head = slots[(int) (deadlineTick & mask)];
+				prev = head.prev;
+				next = head;
+				head.prev.next = this;
+				head.prev = this;
+				size++;
+			}
+		}
+		
+		
+		/**
+		 * cancels the timeout. Cancelling an unscheduled timeout has no effect
+		 */
+		void cancel() {
+			synchronized (TimingWheel.this) {
+				unlink();
+			}
+		}
+		
+		
+		boolean isScheduled() {
+			synchronized (TimingWheel.this) {
+				return (next != null);
+			}
+		}
+
+		
+		private void unlink() {
+			if (next != null) {
+				prev.next = next;
+				next.prev = prev;
+				prev = null;
+				next = null;
+				size--;
+			}
+		}
+	}
+}
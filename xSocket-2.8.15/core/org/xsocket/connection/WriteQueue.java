@@ -20,6 +20,7 @@
  */
 package org.xsocket.connection;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -28,11 +29,21 @@ import org.xsocket.DataConverter;
 import org.xsocket.connection.AbstractNonBlockingStream.ISink;
 
 /**
- * the WriteQueue
+ * the WriteQueue. <br><br>
+ * 
+ * Primitives and small byte arrays will be copied into a per queue accumulation buffer instead of 
+ * wrapping them into a dedicated ByteBuffer each. The accumulated data will be sealed into the queue 
+ * by draining the queue, by appending a ByteBuffer or if the accumulation buffer is full. 
  * 
  * @author grro
  */
 final class WriteQueue implements Cloneable {
+	
+	// accumulation buffer support
+	private static final int ACCUMULATION_BUFFER_SIZE = IoProvider.getWriteBufferAccumulationSize();
+	private static final int MAX_ACCUMULATED_ARRAY_SIZE = ACCUMULATION_BUFFER_SIZE / 4;
+	private static final AbstractMemoryManager ACCUMULATION_MEMORY_MANAGER = (ACCUMULATION_BUFFER_SIZE > 0) ? IoSynchronizedMemoryManager.createPreallocatedMemoryManager(ACCUMULATION_BUFFER_SIZE, 64, false) : null;
+	
 
 	// queue
 	private final Queue queue = new Queue(); 
@@ -52,6 +63,14 @@ final class WriteQueue implements Cloneable {
 	}
 	
 	
+	/**
+	 * for test purposes only
+	 */
+	static AbstractMemoryManager getAccumulationMemoryManager() {
+		return ACCUMULATION_MEMORY_MANAGER;
+	}
+	
+	
 	
 	/**
 	 * returns true, if empty
@@ -118,6 +137,100 @@ final class WriteQueue implements Cloneable {
 	
 	
 	
+	/**
+	 * append a byte to this queue 
+	 * 
+	 * @param b  the byte to append
+	 * @throws IOException if the accumulation buffer can not be acquired
+	 */
+	public void append(byte b) throws IOException {
+		if (isWriteMarked || (ACCUMULATION_MEMORY_MANAGER == null)) {
+			append(DataConverter.toByteBuffer(b));
+		} else {
+			queue.accumulate(b);
+		}
+	}
+	
+	
+	/**
+	 * append a short to this queue 
+	 * 
+	 * @param s  the short to append
+	 * @throws IOException if the accumulation buffer can not be acquired
+	 */
+	public void append(short s) throws IOException {
+		if (isWriteMarked || (ACCUMULATION_MEMORY_MANAGER == null)) {
+			append(DataConverter.toByteBuffer(s));
+		} else {
+			queue.accumulate(s);
+		}
+	}
+	
+	
+	/**
+	 * append an int to this queue 
+	 * 
+	 * @param i  the int to append
+	 * @throws IOException if the accumulation buffer can not be acquired
+	 */
+	public void append(int i) throws IOException {
+		if (isWriteMarked || (ACCUMULATION_MEMORY_MANAGER == null)) {
+			append(DataConverter.toByteBuffer(i));
+		} else {
+			queue.accumulate(i);
+		}
+	}
+	
+	
+	/**
+	 * append a long to this queue 
+	 * 
+	 * @param l  the long to append
+	 * @throws IOException if the accumulation buffer can not be acquired
+	 */
+	public void append(long l) throws IOException {
+		if (isWriteMarked || (ACCUMULATION_MEMORY_MANAGER == null)) {
+			append(DataConverter.toByteBuffer(l));
+		} else {
+			queue.accumulate(l);
+		}
+	}
+	
+	
+	/**
+	 * append a double to this queue 
+	 * 
+	 * @param d  the double to append
+	 * @throws IOException if the accumulation buffer can not be acquired
+	 */
+	public void append(double d) throws IOException {
+		if (isWriteMarked || (ACCUMULATION_MEMORY_MANAGER == null)) {
+			append(DataConverter.toByteBuffer(d));
+		} else {
+			queue.accumulate(d);
+		}
+	}
+	
+	
+	/**
+	 * append a byte array to this queue. Small arrays will be copied, larger 
+	 * arrays become part of the queue and should not be modified outside the queue 
+	 * 
+	 * @param bytes   the bytes
+	 * @param offset  the offset
+	 * @param length  the length
+	 * @throws IOException if the accumulation buffer can not be acquired
+	 */
+	public void append(byte[] bytes, int offset, int length) throws IOException {
+		if (isWriteMarked || (ACCUMULATION_MEMORY_MANAGER == null) || (length > MAX_ACCUMULATED_ARRAY_SIZE)) {
+			append(DataConverter.toByteBuffer(bytes, offset, length));
+		} else {
+			queue.accumulate(bytes, offset, length);
+		}
+	}
+
+	
+	
 	/**
 	 * append a list of byte buffer to this queue. By adding a list,
 	 * the list becomes part of to the buffer, and should not be modified outside the buffer
@@ -325,6 +438,10 @@ final class WriteQueue implements Cloneable {
 	 */
 	private static final class Queue implements ISink {
 		private ByteBuffer[] buffers;
+		
+		// accumulation buffer. The data between the sealed position and the position is not sealed yet
+		private ByteBuffer accumulationBuffer;
+		private int sealedPosition = 0;
 
 		
 		/**
@@ -332,7 +449,27 @@ final class WriteQueue implements Cloneable {
 		 */
 		@Override
 		public synchronized void reset() {
+			// return the pooled buffers of the unwritten data 
+			DirectBufferPool.release(buffers);
 			buffers = null;
+			
+			// return the unsealed part of the accumulation buffer
+			if (accumulationBuffer != null) {
+				recycleAccumulationBuffer();
+			}
+		}
+		
+		
+		/**
+		 * returns the unsealed part of the accumulation buffer to the memory manager. The acquired 
+		 * buffer instance itself will be recycled (not a slice of it). The sealed part is referenced 
+		 * by slices within the queue, which are independent of the buffer position  
+		 */
+		private void recycleAccumulationBuffer() {
+			accumulationBuffer.limit(accumulationBuffer.capacity());
+			accumulationBuffer.position(sealedPosition);
+			ACCUMULATION_MEMORY_MANAGER.recycleMemory(accumulationBuffer);
+			accumulationBuffer = null;
 		}
 	
 		
@@ -344,13 +481,87 @@ final class WriteQueue implements Cloneable {
 		 */
 		@Override
 		public synchronized boolean isEmpty() {
-			return empty();
+			return empty() && (getAccumulatedSize() == 0);
 		}
 		
 
 		private boolean empty() {
 			return (buffers == null);
 		}
+		
+		
+		private int getAccumulatedSize() {
+			if (accumulationBuffer == null) {
+				return 0;
+			} else {
+				return accumulationBuffer.position() - sealedPosition;
+			}
+		}
+		
+		
+		synchronized void accumulate(byte b) throws IOException {
+			ensureAccumulationSpace(1).put(b);
+		}
+		
+		synchronized void accumulate(short s) throws IOException {
+			ensureAccumulationSpace(2).putShort(s);
+		}
+		
+		synchronized void accumulate(int i) throws IOException {
+			ensureAccumulationSpace(4).putInt(i);
+		}
+		
+		synchronized void accumulate(long l) throws IOException {
+			ensureAccumulationSpace(8).putLong(l);
+		}
+		
+		synchronized void accumulate(double d) throws IOException {
+			ensureAccumulationSpace(8).putDouble(d);
+		}
+		
+		synchronized void accumulate(byte[] bytes, int offset, int length) throws IOException {
+			ensureAccumulationSpace(length).put(bytes, offset, length);
+		}
+		
+		
+		private ByteBuffer ensureAccumulationSpace(int size) throws IOException {
+			
+			// accumulation buffer full?
+			if ((accumulationBuffer == null) || (accumulationBuffer.remaining() < size)) {
+				if (accumulationBuffer != null) {
+					seal();
+					recycleAccumulationBuffer();
+				}
+				
+				// .. yes, get a new one. This could be a recycled tail or a new buffer of the accumulation size 
+				accumulationBuffer = ACCUMULATION_MEMORY_MANAGER.acquireMemoryStandardSizeOrPreallocated(ACCUMULATION_BUFFER_SIZE);
+				
+				// recycled tail too small for the data (large arrays only)? 
+				if (accumulationBuffer.remaining() < size) {
+					// return it. The tail will be popped and replaced by a new buffer 
+					ACCUMULATION_MEMORY_MANAGER.recycleMemory(accumulationBuffer);
+					accumulationBuffer = ACCUMULATION_MEMORY_MANAGER.acquireMemoryMinSize(ACCUMULATION_BUFFER_SIZE);
+				}
+				sealedPosition = accumulationBuffer.position();
+			}
+			
+			return accumulationBuffer;
+		}
+		
+		
+		/**
+		 * seals the accumulated data into the queue 
+		 */
+		private void seal() {
+			if (getAccumulatedSize() > 0) {
+				ByteBuffer data = accumulationBuffer.duplicate();
+				data.limit(accumulationBuffer.position());
+				data.position(sealedPosition);
+				sealedPosition = accumulationBuffer.position();
+				
+				add(data.slice());
+			}
+		}
 			
 
 		/**
@@ -361,10 +572,10 @@ final class WriteQueue implements Cloneable {
 		@Override
 		public synchronized int getSize() {
 			if (empty()) {
-				return 0;
+				return getAccumulatedSize();
 				
 			} else {
-				int size = 0;
+				int size = getAccumulatedSize();
 				if (buffers != null) {
 					for (int i = 0; i < buffers.length; i++) {
 						if (buffers[i] != null) {
@@ -379,7 +590,13 @@ final class WriteQueue implements Cloneable {
 		
 		
 		@Override
-		public synchronized void append(ByteBuffer data) {			
+		public synchronized void append(ByteBuffer data) {
+			seal();
+			add(data);
+		}
+		
+		
+		private void add(ByteBuffer data) {
 			// 第一次
 			if (buffers == null) {
 				buffers = new ByteBuffer[1];
@@ -408,6 +625,8 @@ final class WriteQueue implements Cloneable {
 		 */
 		@Override
 		public synchronized void append(ByteBuffer[] bufs) {
+			seal();
+			
 			if (buffers == null) {
 				buffers = bufs;
 										
@@ -430,6 +649,8 @@ final class WriteQueue implements Cloneable {
 		 */
 		@Override
 		public synchronized ByteBuffer[] drain() {
+			seal();
+			
 			ByteBuffer[] result = buffers;
 			buffers = null;
 						
@@ -439,6 +660,7 @@ final class WriteQueue implements Cloneable {
 		
 		@Override
 		public synchronized ByteBuffer[] copy()  {
+			seal();
 			return ConnectionUtils.copy(buffers);
 		}
 		
@@ -458,6 +680,8 @@ final class WriteQueue implements Cloneable {
 		 */
 		@Override
 		public synchronized String toString(String encoding) {
+			seal();
+			
 			StringBuilder sb = new StringBuilder();
 			if (buffers != null) {
 				ByteBuffer[] copy = new ByteBuffer[buffers.length];
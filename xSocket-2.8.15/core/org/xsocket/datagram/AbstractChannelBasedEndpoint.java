@@ -54,7 +54,7 @@ abstract class AbstractChannelBasedEndpoint extends AbstractEndpoint {
 
 	private static final Logger LOG = Logger.getLogger(AbstractChannelBasedEndpoint.class.getName());
 
-	private static final MemoryManager memoryManager = new MemoryManager(65536, false);
+	private static final int MAX_POOLED_PACKET_BUFFERS = 64;
 	private static IoSocketDispatcher dispatcher = createDispatcher();
 
 	@SuppressWarnings("unchecked")
@@ -74,6 +74,9 @@ abstract class AbstractChannelBasedEndpoint extends AbstractEndpoint {
 	private final DatagramChannel channel;
 	private final ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
 
+	// memory management (packet buffers will be returned by releasing the received datagrams)
+	private final MemoryManager memoryManager = new MemoryManager(MAX_POOLED_PACKET_BUFFERS, false);
+
 
 	// send queue
 	private final List<UserDatagram> sendQueue = Collections.synchronizedList(new LinkedList<UserDatagram>());
@@ -245,6 +248,14 @@ abstract class AbstractChannelBasedEndpoint extends AbstractEndpoint {
 
 
 
+	/**
+	 * for test purposes only
+	 */
+	final MemoryManager getMemoryManager() {
+		return memoryManager;
+	}
+
+
 	final void onReadableEvent() {
 		if (isOpen()) {
 
@@ -257,6 +268,7 @@ abstract class AbstractChannelBasedEndpoint extends AbstractEndpoint {
 					
 					// datagram is not immediately available
 					if (address == null) {
+						memoryManager.recycleMemory(readBuffer);
 						return;
 
 					// datagram is available
@@ -264,11 +276,13 @@ abstract class AbstractChannelBasedEndpoint extends AbstractEndpoint {
 
 						// nothing has been read
 						if (readBuffer.position() == 0) {
+							memoryManager.recycleMemory(readBuffer);
 							return;
 						}
 
-						readBuffer.flip();
-						onData(address, readBuffer);
+						ByteBuffer data = memoryManager.extractReceivedData(readBuffer);
+						data.order(byteOrder);
+						onData(address, data, memoryManager, readBuffer);
 					}
 				}
 			} catch (IOException ioe) {
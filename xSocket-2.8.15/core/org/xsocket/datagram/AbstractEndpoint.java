@@ -172,7 +172,20 @@ abstract class AbstractEndpoint implements IEndpoint {
 	}
 	
 	protected final void onData(SocketAddress address, ByteBuffer data) {
-		UserDatagram packet = new UserDatagram(address, data, getDefaultEncoding());
+		onData(address, data, null, null);
+	}
+	
+	
+	/**
+	 * handles received data, which is a slice of a pooled packet buffer 
+	 * 
+	 * @param address        the remote address
+	 * @param data           the received data
+	 * @param memoryManager  the memory manager of the packet buffer or <code>null</code>
+	 * @param packetBuffer   the packet buffer to return by releasing the datagram or <code>null</code>
+	 */
+	final void onData(SocketAddress address, ByteBuffer data, MemoryManager memoryManager, ByteBuffer packetBuffer) {
+		UserDatagram packet = new UserDatagram(address, data, getDefaultEncoding(), memoryManager, packetBuffer);
 		receiveQueue.offer(packet);
 			
 		if (LOG.isLoggable(Level.FINE)) {
@@ -156,7 +156,8 @@ public interface IEndpoint extends Closeable {
 
 
 	/**
-	 * receive a datagram packet (receive timeout = 0)
+	 * receive a datagram packet (receive timeout = 0). The packet buffer of a 
+	 * processed datagram can be reused by calling {@link UserDatagram#release()} 
 	 *
 	 * @return the received datagram packet or null if no datagram is available
      * @throws IOException If some other I/O error occurs
@@ -20,10 +20,10 @@
  */
 package org.xsocket.datagram;
 
-import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,112 +31,123 @@ import org.xsocket.DataConverter;
 
 
 /**
- * a Memory Manager implementation  
+ * a Memory Manager implementation, which pools the packet buffers. A packet 
+ * buffer has the receive size. The packet will be received into a pooled buffer, 
+ * and the received data will be handed over as a slice of it (no copy). The 
+ * buffer returns into the pool, if the received datagram is released by calling 
+ * {@link UserDatagram#release()}. A datagram, which is not released, will be 
+ * garbage collected as usual.<br><br>
+ * 
+ * Packet buffers will be acquired by the dispatcher thread only, but released by 
+ * arbitrary threads. For this reason the pool is a lock-free queue
  *  
  * @author grro@xsocket.org
  */
-class MemoryManager { 
+final class MemoryManager { 
 	
 	private static final Logger LOG = Logger.getLogger(MemoryManager.class.getName());
 	
-		
-	private List<SoftReference<ByteBuffer>> memoryBuffer = new ArrayList<SoftReference<ByteBuffer>>();
-
-	private boolean useDirectMemory = false;
-	private int preallocationSize = 4096;
+	private final boolean useDirectMemory;
+	private final int maxPooledBuffers;
+	
+	private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger pooledBuffers = new AtomicInteger(0);
+	
+	// statistics
+	private long countAllocations = 0;
 		
 	
 	/**
 	 * constructor 
 	 * 
-	 * @param preallocationSize   the preallocation size
-	 * @param useDirectMemory     true, if direct memory should be used
+	 * @param maxPooledBuffers    the max number of pooled packet buffers
+	 * @param useDirectMemory     true, if direct memory should be used for the packet buffers
 	 */
-	MemoryManager(int preallocationSize, boolean useDirectMemory) {
-		this.preallocationSize = preallocationSize;
+	MemoryManager(int maxPooledBuffers, boolean useDirectMemory) {
+		this.maxPooledBuffers = maxPooledBuffers;
 		this.useDirectMemory = useDirectMemory;
 	}
 		
 	
 	/**
-	 * return the free memory size
+	 * return the number of pooled packet buffers
 	 * 
-	 * @return the free memory size
+	 * @return the number of pooled packet buffers
 	 */
-	public final synchronized int getFreeBufferSize() {
-		int size = 0;
-		for (SoftReference<ByteBuffer> bufferRef: memoryBuffer) {
-			ByteBuffer buffer = bufferRef.get();
-			if (buffer != null) {
-				size += buffer.remaining();
-			}
-		}
-		return size;
+	public final int getNumberOfPooledBuffers() {
+		return pooledBuffers.get();
 	}
-			
 	
 
-	private void recycleMemory(ByteBuffer buffer) {
-		if (buffer.hasRemaining()) {
-			memoryBuffer.add(new SoftReference<ByteBuffer>(buffer.slice()));
-		}
-	}
-
-			
 	/**
-	 * aquires free memory
+	 * acquires a packet buffer of the given size. After receiving, the received data 
+	 * has to be extracted by calling {@link MemoryManager#extractReceivedData(ByteBuffer)}. 
+	 * If nothing has been received, the buffer has to be returned by calling 
+	 * {@link MemoryManager#recycleMemory(ByteBuffer)}
 	 * 
-	 * @param minSize  the min size of the aquired memory
+	 * @param size  the receive size
+	 * @return the packet buffer
 	 */
-	public final synchronized ByteBuffer acquireMemory(int size) {		
-		ByteBuffer buffer = null;
+	public final ByteBuffer acquireMemory(int size) {		
 		
-		if (!memoryBuffer.isEmpty()) {
-			SoftReference<ByteBuffer> freeBuffer = memoryBuffer.remove(0);
-			buffer = freeBuffer.get();
-
-			// size sufficient?
-			if ((buffer != null) && (buffer.limit() < size)) {
-				buffer = null;			
-			}
-		} 
-					
-				
-		if (buffer == null) {
-			int allocationSize = getPreallocationSize();
-			if (getPreallocationSize() < allocationSize) {
-				allocationSize = size * 4;
+		ByteBuffer buffer = pool.poll();
+		while (buffer != null) {
+			pooledBuffers.decrementAndGet();
+			
+			// pooled buffers of a former receive size will be dropped
+			if (buffer.capacity() == size) {
+				buffer.clear();
+				return buffer;
 			}
-							
-			buffer = newBuffer(size);
+			buffer = pool.poll();
 		}
 		
-		int savedLimit = buffer.limit();
-		
-		buffer.limit(size);
-		ByteBuffer result = buffer.slice();
-		
-		buffer.position(size);
-		buffer.limit(savedLimit);
-		ByteBuffer remaining = buffer.slice();
-		recycleMemory(remaining);
-		
-		return result;
+		return newBuffer(size);
 	}	
 	
 	
 	/**
-	 * return the preallocation size
+	 * returns a packet buffer into the pool
+	 * 
+	 * @param buffer  the packet buffer, acquired by {@link MemoryManager#acquireMemory(int)}
+	 */
+	public final void recycleMemory(ByteBuffer buffer) {
+		if (pooledBuffers.incrementAndGet() <= maxPooledBuffers) {
+			pool.offer(buffer);
+		} else {
+			pooledBuffers.decrementAndGet();
+		}
+	}
+	
+	
+	/**
+	 * extracts the received data of the packet buffer. The data is a slice of the 
+	 * packet buffer, so that the packet buffer must not be recycled before the data 
+	 * has been processed 
+	 *   
+	 * @param buffer  the packet buffer, acquired by {@link MemoryManager#acquireMemory(int)}
+	 * @return the received data
+	 */
+	public final ByteBuffer extractReceivedData(ByteBuffer buffer) {
+		buffer.flip();
+		return buffer.slice();
+	}
+	
+	
+	/**
+	 * return the number of allocated packet buffers
 	 *  
-	 * @return the preallocation size
+	 * @return the number of allocated packet buffers
 	 */
-	int getPreallocationSize() {
-		return preallocationSize;
+	long getNumberOfAllocations() {
+		return countAllocations;
 	}
 	
 	
 	
 	private final ByteBuffer newBuffer(int size) {
+		countAllocations++;
+		
 		if (useDirectMemory) {
 			if (LOG.isLoggable(Level.FINE)) {
 				LOG.fine("allocating " + DataConverter.toFormatedBytesSize(size) + " direct memory");
@@ -152,4 +163,4 @@ class MemoryManager {
 			return ByteBuffer.allocate(size);
 		}
 	}
-}
\ No newline at end of file
+}
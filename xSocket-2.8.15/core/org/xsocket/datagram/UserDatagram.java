@@ -53,6 +53,10 @@ public final class UserDatagram implements IDataSource, IDataSink {
 	private SocketAddress remoteSocketAddress = null;
 	private ByteBuffer data;
 	private String defaultEncoding = "UTF-8";
+	
+	// pooled packet buffer of a received datagram
+	private MemoryManager memoryManager = null;
+	private ByteBuffer packetBuffer = null;
 		
 	
 	/**
@@ -130,8 +134,24 @@ public final class UserDatagram implements IDataSource, IDataSink {
 	 * @param defaultEncoding      the default encoding to use
 	 */
 	UserDatagram(SocketAddress remoteSocketAddress, ByteBuffer data, String defaultEncoding) {
+		this(remoteSocketAddress, data, defaultEncoding, null, null);
+	}
+
+	
+	/**
+	 * constructor. creates a received packet, which data is a slice of a pooled packet buffer 
+	 * 
+	 * @param remoteSocketAddress  the remote address
+	 * @param data                 the received data
+	 * @param defaultEncoding      the default encoding to use
+	 * @param memoryManager        the memory manager of the packet buffer or <code>null</code>
+	 * @param packetBuffer         the packet buffer or <code>null</code>
+	 */
+	UserDatagram(SocketAddress remoteSocketAddress, ByteBuffer data, String defaultEncoding, MemoryManager memoryManager, ByteBuffer packetBuffer) {
 		init(remoteSocketAddress, data);
 		this.defaultEncoding = defaultEncoding;
+		this.memoryManager = memoryManager;
+		this.packetBuffer = packetBuffer;
 	}
 
 	
@@ -181,6 +201,26 @@ public final class UserDatagram implements IDataSource, IDataSink {
 	}
 	
 	
+	/**
+	 * releases a received packet. By releasing the underlying buffer will be reused 
+	 * to receive further packets. The packet and the buffers returned by its read 
+	 * methods must not be used after releasing. Releasing is optional. A packet, 
+	 * which is not released, will be garbage collected as usual 
+	 */
+	public void release() {
+		if (packetBuffer != null) {
+			MemoryManager mm = memoryManager;
+			ByteBuffer buffer = packetBuffer;
+			
+			memoryManager = null;
+			packetBuffer = null;
+			data = ByteBuffer.allocate(0);
+			
+			mm.recycleMemory(buffer);
+		}
+	}
+	
+	
 	/**
 	 * prepares the packet to send
 	 *